@@ -20,6 +20,7 @@ import com.flowci.core.agent.domain.Agent;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -34,5 +35,7 @@ public interface AgentDao extends MongoRepository<Agent, String>, CustomAgentDao
 
     Agent findByName(String name);
 
+    boolean existsByNameIn(Collection<String> names);
+
     boolean existsAgentByToken(String token);
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.agent.dao;
+
+import com.flowci.core.agent.domain.AgentDemand;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface AgentDemandDao extends MongoRepository<AgentDemand, String>, CustomAgentDemandDao {
+
+    /**
+     * Num of jobs waiting for agent from host since the time
+     */
+    long countByHostIdAndAcquiredAtIsNullAndSinceAfter(String hostId, Instant since);
+
+    /**
+     * Num of jobs started waiting for agent from host since the time
+     */
+    long countByHostIdAndSinceAfter(String hostId, Instant since);
+}
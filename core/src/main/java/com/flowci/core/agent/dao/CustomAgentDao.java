@@ -10,4 +10,45 @@ public interface CustomAgentDao {
     long updateAllStatus(Agent.Status status);
 
     List<Agent> findAll(Collection<String> tags, Collection<Agent.Status> statuses);
+
+    /**
+     * Find an idle agent that matches tags and set it to busy with job id, atomic
+     *
+     * @return agent after updated, or null if no idle agent matched
+     */
+    Agent acquire(Collection<String> tags, String jobId);
+
+    /**
+     * Set agent to busy with job id if agent matches tags and its current status is expected, atomic
+     *
+     * @return agent after updated, or null if agent not matched
+     */
+    Agent acquire(String agentId, Collection<String> tags, Agent.Status expected, String jobId);
+
+    /**
+     * Set agent status and remove job id if its current status is expected, atomic
+     *
+     * @return agent after updated, or null if agent not matched
+     */
+    Agent updateStatus(String agentId, Collection<Agent.Status> expected, Agent.Status status);
+
+    /**
+     * Set agent offline and keep job id if its current status is expected, atomic,
+     * the job id is removed on release
+     *
+     * @return agent after updated, or null if agent not matched
+     */
+    Agent updateToOffline(String agentId, Collection<Agent.Status> expected);
+
+    /**
+     * Set connection info of agent, and status if its current status is expected, atomic
+     *
+     * @return agent after updated
+     */
+    Agent updateConnection(Agent agent, Collection<Agent.Status> expected, Agent.Status status);
+
+    /**
+     * Set container id of agent
+     */
+    void updateContainerId(String agentId, String containerId);
 }
@@ -4,16 +4,20 @@ import com.flowci.common.helper.ObjectsHelper;
 import com.flowci.core.agent.domain.Agent;
 import com.mongodb.client.result.UpdateResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 
 public class CustomAgentDaoImpl implements CustomAgentDao {
 
+    private final static FindAndModifyOptions ReturnNew = FindAndModifyOptions.options().returnNew(true);
+
     @Autowired
     private MongoOperations operations;
 
@@ -26,12 +30,7 @@ public class CustomAgentDaoImpl implements CustomAgentDao {
     @Override
     public List<Agent> findAll(Collection<String> tags, Collection<Agent.Status> statuses) {
         Query q = new Query();
-
-        if (ObjectsHelper.hasCollection(tags)) {
-            q.addCriteria(Criteria.where("tags").in(tags));
-        } else {
-            q.addCriteria(Criteria.where("tags.0").exists(false));
-        }
+        q.addCriteria(tagsCriteria(tags));
 
         if (ObjectsHelper.hasCollection(statuses)) {
             q.addCriteria(Criteria.where("status").in(statuses));
@@ -40,5 +39,103 @@ public class CustomAgentDaoImpl implements CustomAgentDao {
         return operations.find(q, Agent.class);
     }
 
+    @Override
+    public Agent acquire(Collection<String> tags, String jobId) {
+        Query q = new Query();
+        q.addCriteria(tagsCriteria(tags));
+        q.addCriteria(Criteria.where("status").is(Agent.Status.IDLE));
+
+        return operations.findAndModify(q, busyWithJob(jobId), ReturnNew, Agent.class);
+    }
+
+    @Override
+    public Agent acquire(String agentId, Collection<String> tags, Agent.Status expected, String jobId) {
+        Query q = new Query();
+        q.addCriteria(Criteria.where("_id").is(agentId));
+        q.addCriteria(tagsCriteria(tags));
+        q.addCriteria(Criteria.where("status").is(expected));
 
+        Update u = busyWithJob(jobId);
+        if (expected == Agent.Status.BUSY) {
+            u = new Update().set("jobId", jobId);
+        }
+
+        return operations.findAndModify(q, u, ReturnNew, Agent.class);
+    }
+
+    @Override
+    public Agent updateStatus(String agentId, Collection<Agent.Status> expected, Agent.Status status) {
+        Query q = new Query();
+        q.addCriteria(Criteria.where("_id").is(agentId));
+        q.addCriteria(Criteria.where("status").in(expected));
+
+        Update u = new Update()
+                .set("status", status)
+                .set("statusUpdatedAt", Instant.now())
+                .unset("jobId");
+
+        return operations.findAndModify(q, u, ReturnNew, Agent.class);
+    }
+
+    @Override
+    public void updateContainerId(String agentId, String containerId) {
+        Query q = new Query(Criteria.where("_id").is(agentId));
+        operations.updateFirst(q, new Update().set("containerId", containerId), Agent.class);
+    }
+
+    @Override
+    public Agent updateToOffline(String agentId, Collection<Agent.Status> expected) {
+        Query q = new Query();
+        q.addCriteria(Criteria.where("_id").is(agentId));
+        q.addCriteria(Criteria.where("status").in(expected));
+
+        Update u = new Update()
+                .set("status", Agent.Status.OFFLINE)
+                .set("statusUpdatedAt", Instant.now());
+
+        return operations.findAndModify(q, u, ReturnNew, Agent.class);
+    }
+
+    @Override
+    public Agent updateConnection(Agent agent, Collection<Agent.Status> expected, Agent.Status status) {
+        Query q = new Query();
+        q.addCriteria(Criteria.where("_id").is(agent.getId()));
+        q.addCriteria(Criteria.where("status").in(expected));
+
+        Update u = connection(agent)
+                .set("status", status)
+                .set("statusUpdatedAt", Instant.now());
+
+        Agent updated = operations.findAndModify(q, u, ReturnNew, Agent.class);
+        if (updated != null) {
+            return updated;
+        }
+
+        // status changed by others, ex: acquired by job
+        q = new Query(Criteria.where("_id").is(agent.getId()));
+        return operations.findAndModify(q, connection(agent), ReturnNew, Agent.class);
+    }
+
+    private static Update connection(Agent agent) {
+        return new Update()
+                .set("isK8sCluster", agent.isK8sCluster())
+                .set("isDocker", agent.isDocker())
+                .set("url", agent.getUrl())
+                .set("os", agent.getOs())
+                .set("connectedAt", agent.getConnectedAt());
+    }
+
+    private static Update busyWithJob(String jobId) {
+        return new Update()
+                .set("status", Agent.Status.BUSY)
+                .set("statusUpdatedAt", Instant.now())
+                .set("jobId", jobId);
+    }
+
+    private static Criteria tagsCriteria(Collection<String> tags) {
+        if (ObjectsHelper.hasCollection(tags)) {
+            return Criteria.where("tags").in(tags);
+        }
+        return Criteria.where("tags.0").exists(false);
+    }
 }
@@ -0,0 +1,22 @@
+package com.flowci.core.agent.dao;
+
+import com.flowci.core.agent.domain.AgentDemand;
+
+import java.util.Optional;
+
+public interface CustomAgentDemandDao {
+
+    /**
+     * Record job waiting for agent from host, keep the wait time if job already waiting
+     *
+     * @return true if it's a new demand
+     */
+    boolean demand(String jobId, String hostId);
+
+    /**
+     * Mark job got agent
+     *
+     * @return the demand if job was waiting
+     */
+    Optional<AgentDemand> acquired(String jobId);
+}
@@ -0,0 +1,46 @@
+package com.flowci.core.agent.dao;
+
+import com.flowci.core.agent.domain.AgentDemand;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public class CustomAgentDemandDaoImpl implements CustomAgentDemandDao {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public boolean demand(String jobId, String hostId) {
+        Instant now = Instant.now();
+        Query q = new Query(Criteria.where("_id").is(jobId));
+        Update u = new Update().set("hostId", hostId).setOnInsert("since", now);
+
+        AgentDemand old = operations.findAndModify(q, u, FindAndModifyOptions.options().upsert(true), AgentDemand.class);
+        if (old == null) {
+            return true;
+        }
+
+        if (old.getAcquiredAt() == null) {
+            return false;
+        }
+
+        // job waiting again after got agent
+        Query acquired = new Query(Criteria.where("_id").is(jobId).and("acquiredAt").ne(null));
+        Update renew = new Update().set("since", now).unset("acquiredAt");
+        return operations.updateFirst(acquired, renew, AgentDemand.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public Optional<AgentDemand> acquired(String jobId) {
+        Query q = new Query(Criteria.where("_id").is(jobId).and("acquiredAt").is(null));
+        Update u = new Update().set("acquiredAt", Instant.now());
+        return Optional.ofNullable(operations.findAndModify(q, u, AgentDemand.class));
+    }
+}
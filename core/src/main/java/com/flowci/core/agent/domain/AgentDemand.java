@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.agent.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Job waiting for agent from a host, shared by all servers to size agent pools.
+ * It's removed 10 minutes after job started waiting.
+ */
+@Getter
+@Setter
+@Document(collection = "agent_demand")
+public class AgentDemand {
+
+    @Id
+    private String jobId;
+
+    @Indexed(name = "index_agent_demand_host")
+    private String hostId;
+
+    @Indexed(name = "index_agent_demand_since", expireAfterSeconds = 600)
+    private Instant since;
+
+    /**
+     * Null if job still waiting for agent
+     */
+    private Instant acquiredAt;
+}
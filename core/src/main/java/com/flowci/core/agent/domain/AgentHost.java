@@ -75,6 +75,16 @@ public abstract class AgentHost extends Mongoable {
      */
     private int maxSize = 5;
 
+    /**
+     * Num of idle agents kept warm on the host
+     */
+    private int minIdle;
+
+    /**
+     * Idle agents over min idle will be stopped after idle timeout in seconds
+     */
+    private int idleTimeout = 600;
+
     /**
      * Tags for all agent holed by host
      */
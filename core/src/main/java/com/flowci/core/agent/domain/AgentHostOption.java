@@ -59,6 +59,14 @@ public class AgentHostOption {
     @Max(Integer.MAX_VALUE)
     private int maxSize = 5;
 
+    @Min(0)
+    @Max(Integer.MAX_VALUE)
+    private int minIdle;
+
+    @Min(1)
+    @Max(Integer.MAX_VALUE)
+    private int idleTimeout = 600;
+
     public AgentHost toObj() {
         if (type == AgentHost.Type.SSH) {
             SshAgentHost host = new SshAgentHost();
@@ -69,6 +77,8 @@ public class AgentHostOption {
             host.setUser(user);
             host.setIp(ip);
             host.setMaxSize(maxSize);
+            host.setMinIdle(minIdle);
+            host.setIdleTimeout(idleTimeout);
             host.setPort(port);
             host.setExitOnIdle(exitOnIdle);
             return host;
@@ -80,6 +90,8 @@ public class AgentHostOption {
             host.setName(name);
             host.setTags(tags);
             host.setMaxSize(maxSize);
+            host.setMinIdle(minIdle);
+            host.setIdleTimeout(idleTimeout);
             host.setExitOnIdle(exitOnIdle);
             return host;
         }
@@ -92,6 +104,8 @@ public class AgentHostOption {
             host.setSecret(secret);
             host.setNamespace(namespace);
             host.setMaxSize(maxSize);
+            host.setMinIdle(minIdle);
+            host.setIdleTimeout(idleTimeout);
             host.setExitOnIdle(exitOnIdle);
             return host;
         }
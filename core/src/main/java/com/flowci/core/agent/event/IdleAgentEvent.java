@@ -16,19 +16,31 @@
 
 package com.flowci.core.agent.event;
 
-import com.flowci.core.common.event.AbstractEvent;
+import com.flowci.core.common.event.BroadcastEvent;
 import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Collections;
+import java.util.Set;
 
 /**
- * The return boolean value indicate the agent should push back to queue or not
+ * Broadcast to all servers when agent becomes idle, to match it with waiting steps
  */
-public class IdleAgentEvent extends AbstractEvent<Boolean> {
+@Getter
+@Setter
+public class IdleAgentEvent extends BroadcastEvent {
+
+    private String agentId;
 
-    @Getter
-    private final String agentId;
+    private Set<String> tags = Collections.emptySet();
+
+    public IdleAgentEvent() {
+        super();
+    }
 
-    public IdleAgentEvent(Object source, String agentId) {
+    public IdleAgentEvent(Object source, String agentId, Set<String> tags) {
         super(source);
         this.agentId = agentId;
+        this.tags = tags;
     }
 }
@@ -20,6 +20,8 @@ import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Handle event from agent via websocket
@@ -42,14 +44,25 @@ public class AgentEventManager extends BinaryWebSocketHandler {
 
     private final static String HeaderToken = "Token";
 
+    private final static int NumOfWriteLocks = 64;
+
     private final Map<String, WebSocketSession> agentSessionStore = new ConcurrentHashMap<>();
 
+    // striped by session id, not synchronized on session since sending blocks and pins carrier of virtual thread
+    private final Lock[] writeLocks = new Lock[NumOfWriteLocks];
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @Autowired
     private SpringEventManager eventManager;
 
+    public AgentEventManager() {
+        for (int i = 0; i < NumOfWriteLocks; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
+    }
+
     public <T> void writeMessage(String token, ResponseMessage<T> msg) {
         WebSocketSession session = agentSessionStore.get(token);
 
@@ -135,12 +148,14 @@ public class AgentEventManager extends BinaryWebSocketHandler {
     }
 
     private void writeMessage(WebSocketSession session, byte[] body) {
-        synchronized (session) {
-            try {
-                session.sendMessage(new BinaryMessage(body));
-            } catch (IOException e) {
-                log.warn("Unable to send message", e);
-            }
+        Lock lock = writeLocks[Math.floorMod(session.getId().hashCode(), NumOfWriteLocks)];
+        lock.lock();
+        try {
+            session.sendMessage(new BinaryMessage(body));
+        } catch (IOException e) {
+            log.warn("Unable to send message", e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.agent.manager;
+
+import com.flowci.core.agent.domain.Agent;
+import com.flowci.core.agent.domain.AgentHost;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decide the size of agent pool on each host from pending jobs, job arrival rate and idle time
+ */
+public interface AgentPoolManager {
+
+    /**
+     * Record the job is waiting for an agent from the host
+     */
+    void onDemand(AgentHost host, String jobId);
+
+    /**
+     * Record the job got an agent
+     */
+    void onAcquired(String jobId);
+
+    /**
+     * Forget the job waiting for agent since it's finished
+     */
+    void onFinished(String jobId);
+
+    /**
+     * Remove pool and its meters of the host
+     */
+    void remove(AgentHost host);
+
+    /**
+     * Num of agents to start on the host
+     *
+     * @param agents all agents of the host
+     */
+    int numToStart(AgentHost host, List<Agent> agents);
+
+    /**
+     * Idle agents to stop on the host
+     *
+     * @param agents all agents of the host
+     */
+    List<Agent> toStop(AgentHost host, List<Agent> agents);
+
+    /**
+     * Spread num of agents to start over hosts, one by one to the host with most free capacity.
+     * Free capacity is the slots left on host minus pending jobs not covered by idle or starting agents
+     *
+     * @param hosts all agents of each host
+     * @return num of agents to start of hosts, host without free capacity not included
+     */
+    Map<AgentHost, Integer> spread(Map<AgentHost, List<Agent>> hosts, int num);
+}
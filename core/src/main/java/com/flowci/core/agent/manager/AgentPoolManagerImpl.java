@@ -0,0 +1,280 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.agent.manager;
+
+import com.flowci.core.agent.dao.AgentDemandDao;
+import com.flowci.core.agent.domain.Agent;
+import com.flowci.core.agent.domain.AgentDemand;
+import com.flowci.core.agent.domain.AgentHost;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scale up = pending jobs + min idle + arrival rate * agent startup time - idle - starting,
+ * limited by batch size and max size of host. Scale down idle agents over min idle after idle timeout.
+ *
+ * Pending jobs and arrivals are counted from agent demands in db, so the scaling task
+ * on any server sees jobs waiting on all servers.
+ */
+@Slf4j
+@Component
+public class AgentPoolManagerImpl implements AgentPoolManager {
+
+    private static final int MaxBatch = 50;
+
+    /**
+     * Expected seconds from agent start to idle, jobs arrived in this period need agents in advance
+     */
+    private static final double StartupSeconds = 30;
+
+    /**
+     * Arrival rate is averaged over this period
+     */
+    private static final Duration RateWindow = Duration.ofSeconds(60);
+
+    /**
+     * Forget pending job if not got agent in time, ex: job finished event missed
+     */
+    private static final Duration PendingTimeout = Duration.ofMinutes(10);
+
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    private final AgentDemandDao agentDemandDao;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Timer timeToAgent;
+
+    public AgentPoolManagerImpl(AgentDemandDao agentDemandDao, MeterRegistry meterRegistry) {
+        this.agentDemandDao = agentDemandDao;
+        this.meterRegistry = meterRegistry;
+        this.timeToAgent = Timer.builder("agent_time_to_ready")
+                .description("Time from job waiting for agent to agent acquired")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onDemand(AgentHost host, String jobId) {
+        // job waiting again for agent is not a new arrival
+        agentDemandDao.demand(jobId, host.getId());
+    }
+
+    @Override
+    public void onAcquired(String jobId) {
+        Optional<AgentDemand> demand = agentDemandDao.acquired(jobId);
+        demand.ifPresent(d -> timeToAgent.record(Duration.between(d.getSince(), Instant.now())));
+    }
+
+    @Override
+    public void onFinished(String jobId) {
+        agentDemandDao.deleteById(jobId);
+    }
+
+    @Override
+    public void remove(AgentHost host) {
+        Pool pool = pools.remove(host.getId());
+        if (pool != null) {
+            pool.meters.forEach(meterRegistry::remove);
+        }
+    }
+
+    @Override
+    public int numToStart(AgentHost host, List<Agent> agents) {
+        Pool pool = getPool(host);
+        int idle = 0, starting = 0, busy = 0, online = 0;
+
+        for (Agent agent : agents) {
+            switch (agent.getStatus()) {
+                case IDLE:
+                    idle++;
+                    online++;
+                    break;
+                case STARTING:
+                    starting++;
+                    break;
+                case BUSY:
+                    busy++;
+                    online++;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        pool.update(idle, busy, online);
+
+        int predicted = (int) (rate(host.getId()) * StartupSeconds);
+        int need = numOfPending(host.getId()) + host.getMinIdle() + predicted - idle - starting;
+
+        if (host.getMaxSize() != AgentHost.NoLimit) {
+            need = Math.min(need, host.getMaxSize() - idle - starting - busy);
+        }
+
+        return Math.max(0, Math.min(need, MaxBatch));
+    }
+
+    @Override
+    public List<Agent> toStop(AgentHost host, List<Agent> agents) {
+        Instant expired = Instant.now().minusSeconds(host.getIdleTimeout());
+        List<Agent> idle = new ArrayList<>();
+
+        for (Agent agent : agents) {
+            if (agent.getStatus() == Agent.Status.IDLE) {
+                idle.add(agent);
+            }
+        }
+
+        // keep min idle and agents for pending jobs
+        int keep = host.getMinIdle() + numOfPending(host.getId());
+        if (idle.size() <= keep) {
+            return List.of();
+        }
+
+        // stop the longest idle first
+        idle.sort(Comparator.comparing(Agent::getStatusUpdatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        List<Agent> list = new ArrayList<>();
+        for (Agent agent : idle.subList(0, idle.size() - keep)) {
+            if (agent.getStatusUpdatedAt() == null || agent.getStatusUpdatedAt().isBefore(expired)) {
+                list.add(agent);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public Map<AgentHost, Integer> spread(Map<AgentHost, List<Agent>> hosts, int num) {
+        Map<AgentHost, Integer> free = new LinkedHashMap<>(hosts.size());
+        for (Map.Entry<AgentHost, List<Agent>> entry : hosts.entrySet()) {
+            int n = numOfFree(entry.getKey(), entry.getValue());
+            if (n > 0) {
+                free.put(entry.getKey(), n);
+            }
+        }
+
+        Map<AgentHost, Integer> spread = new LinkedHashMap<>(free.size());
+        for (int i = 0; i < num; i++) {
+            AgentHost target = null;
+            int max = 0;
+
+            for (Map.Entry<AgentHost, Integer> entry : free.entrySet()) {
+                if (entry.getValue() > max) {
+                    target = entry.getKey();
+                    max = entry.getValue();
+                }
+            }
+
+            if (target == null) {
+                break;
+            }
+
+            free.put(target, max - 1);
+            spread.merge(target, 1, Integer::sum);
+        }
+        return spread;
+    }
+
+    private int numOfFree(AgentHost host, List<Agent> agents) {
+        int ready = 0, used = 0;
+        for (Agent agent : agents) {
+            switch (agent.getStatus()) {
+                case IDLE:
+                case STARTING:
+                    ready++;
+                    used++;
+                    break;
+                case BUSY:
+                    used++;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        int reserved = Math.max(0, numOfPending(host.getId()) - ready);
+        if (host.getMaxSize() == AgentHost.NoLimit) {
+            return Integer.MAX_VALUE / 2 - reserved;
+        }
+        return host.getMaxSize() - used - reserved;
+    }
+
+    private int numOfPending(String hostId) {
+        Instant timeout = Instant.now().minus(PendingTimeout);
+        return (int) agentDemandDao.countByHostIdAndAcquiredAtIsNullAndSinceAfter(hostId, timeout);
+    }
+
+    /**
+     * Num of jobs started waiting for agent from host per second
+     */
+    private double rate(String hostId) {
+        Instant from = Instant.now().minus(RateWindow);
+        return (double) agentDemandDao.countByHostIdAndSinceAfter(hostId, from) / RateWindow.toSeconds();
+    }
+
+    private Pool getPool(AgentHost host) {
+        return pools.computeIfAbsent(host.getId(), id -> {
+            Pool pool = new Pool();
+            pool.meters.add(Gauge.builder("agent_pool_utilization", pool, Pool::utilization)
+                    .tag("host", host.getName())
+                    .description("Busy agents / online agents of host")
+                    .register(meterRegistry));
+            pool.meters.add(Gauge.builder("agent_pool_idle", pool, p -> p.idle.get())
+                    .tag("host", host.getName())
+                    .register(meterRegistry));
+            return pool;
+        });
+    }
+
+    private static class Pool {
+
+        private final List<Meter> meters = new ArrayList<>(2);
+
+        private final AtomicInteger idle = new AtomicInteger();
+
+        private final AtomicInteger busy = new AtomicInteger();
+
+        private final AtomicInteger online = new AtomicInteger();
+
+        void update(int idle, int busy, int online) {
+            this.idle.set(idle);
+            this.busy.set(busy);
+            this.online.set(online);
+        }
+
+        double utilization() {
+            int total = online.get();
+            return total == 0 ? 0 : (double) busy.get() / total;
+        }
+    }
+}
@@ -43,6 +43,14 @@ public interface AgentHostService {
      */
     boolean start(AgentHost host);
 
+    /**
+     * Start num of agents over the hosts by free capacity, agents are created in one batch
+     * and started concurrently on each host
+     *
+     * @return num of agents started
+     */
+    int start(List<AgentHost> hosts, int num);
+
     /**
      * Sync agents between db and host
      */
@@ -16,6 +16,7 @@
 
 package com.flowci.core.agent.service;
 
+import com.flowci.common.exception.DuplicateException;
 import com.flowci.common.exception.NotAvailableException;
 import com.flowci.common.exception.NotFoundException;
 import com.flowci.common.helper.StringHelper;
@@ -23,18 +24,23 @@ import com.flowci.core.agent.dao.AgentDao;
 import com.flowci.core.agent.dao.AgentHostDao;
 import com.flowci.core.agent.domain.*;
 import com.flowci.core.agent.event.AgentHostStatusEvent;
+import com.flowci.core.agent.event.AgentStatusEvent;
+import com.flowci.core.agent.manager.AgentPoolManager;
 import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.domain.Variables;
 import com.flowci.core.common.helper.CacheHelper;
+import com.flowci.core.common.helper.ThreadHelper;
 import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.common.manager.SpringTaskManager;
 import com.flowci.core.common.service.SettingService;
+import com.flowci.core.job.event.JobFinishedEvent;
 import com.flowci.core.job.event.NoIdleAgentEvent;
 import com.flowci.core.secret.domain.KubeConfigSecret;
 import com.flowci.core.secret.domain.RSASecret;
 import com.flowci.core.secret.domain.Secret;
 import com.flowci.core.secret.event.GetSecretEvent;
 import com.flowci.core.user.domain.User;
+import com.flowci.docker.ContainerInventory;
 import com.flowci.docker.ContainerManager;
 import com.flowci.docker.DockerManager;
 import com.flowci.docker.DockerSSHManager;
@@ -59,6 +65,10 @@ import javax.annotation.Nullable;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.flowci.core.secret.domain.Secret.Category.KUBE_CONFIG;
 import static com.flowci.core.secret.domain.Secret.Category.SSH_RSA;
@@ -73,11 +83,19 @@ public class AgentHostServiceImpl implements AgentHostService {
 
     private static final String ContainerNamePrefix = "flowci-agent";
 
+    private static final int ParallelStartsPerHost = 5;
+
+    private static final long ScaleUpDelay = 100;
+
+    private static final int MaxScaleUpRetries = 5;
+
     private final Map<Class<?>, HostAdaptor> mapping = new HashMap<>(3);
 
     private final Cache<AgentHost, DockerManager> poolManagerCache =
             CacheHelper.createLocalCache(10, 600, new PoolManagerRemover());
 
+    private final AtomicBoolean scaleUpRequested = new AtomicBoolean(false);
+
     @Autowired
     private Environment environment;
 
@@ -96,6 +114,9 @@ public class AgentHostServiceImpl implements AgentHostService {
     @Autowired
     private TaskExecutor appTaskExecutor;
 
+    @Autowired
+    private TaskExecutor agentProvisionExecutor;
+
     @Autowired
     private DockerManager dockerManager;
 
@@ -108,6 +129,9 @@ public class AgentHostServiceImpl implements AgentHostService {
     @Autowired
     private SettingService settingService;
 
+    @Autowired
+    private AgentPoolManager poolManager;
+
     {
         mapping.put(LocalUnixAgentHost.class, new LocalSocketHostAdaptor());
         mapping.put(SshAgentHost.class, new SshHostAdaptor());
@@ -147,6 +171,7 @@ public class AgentHostServiceImpl implements AgentHostService {
     public AgentHost delete(String name) {
         AgentHost host = get(name);
         agentHostDao.deleteById(host.getId());
+        poolManager.remove(host);
         appTaskExecutor.execute(() -> {
             removeAll(host);
         });
@@ -175,11 +200,12 @@ public class AgentHostServiceImpl implements AgentHostService {
             return;
         }
 
-        ContainerManager cm = optional.get().getContainerManager();
+        DockerManager manager = optional.get();
+        ContainerManager cm = manager.getContainerManager();
         List<Unit> containerList;
 
         try {
-            containerList = cm.list(null, ContainerNamePrefix + "*");
+            containerList = manager.getInventory().list(ContainerNamePrefix);
         } catch (Exception e) {
             log.warn("Cannot list containers of host {}", host.getName());
             return;
@@ -194,10 +220,7 @@ public class AgentHostServiceImpl implements AgentHostService {
 
         for (AgentItemWrapper item : containerSet) {
             try {
-                List<Unit> list = cm.list(null, item.getName());
-                if (list.size() > 0) {
-                    cm.delete(list.get(0).getId());
-                }
+                cm.delete(item.getId());
                 log.info("Agent {} has been cleaned up", item.getName());
             } catch (Exception ignore) {
             }
@@ -206,12 +229,6 @@ public class AgentHostServiceImpl implements AgentHostService {
 
     @Override
     public boolean start(AgentHost host) {
-        Optional<DockerManager> manager = getDockerManager(host);
-        if (!manager.isPresent()) {
-            log.warn("Fail to get pool manager of host: {}", host.getName());
-            return false;
-        }
-
         if (host.isDisabled()) {
             log.info("Agent host {} is disabled", host.getName());
             return false;
@@ -219,86 +236,14 @@ public class AgentHostServiceImpl implements AgentHostService {
 
         log.info("try to start agent from host {}", host.getName());
 
-        List<Agent> agents = agentDao.findAllByHostId(host.getId());
-        List<Agent> startList = new LinkedList<>();
-
-        DockerManager dockerManager = manager.get();
-        ContainerManager cm = dockerManager.getContainerManager();
-
-        // try to resume if offline, add to start list if resume failed
-        for (Agent agent : agents) {
-            if (!agent.isOffline()) {
-                continue;
-            }
-
-            try {
-                List<Unit> list = cm.list(null, getContainerName(agent));
-
-                // container not exist
-                if (list.isEmpty()) {
-                    startList.add(agent);
-                    continue;
-                }
-
-                Unit container = list.get(0);
-                cm.resume(container.getId());
-                log.info("Agent {} been resumed", agent.getName());
-                return true;
-            } catch (Exception e) {
-                log.warn("Unable to resume agent {}", agent.getName());
-                startList.add(agent);
-            }
-        }
-
-        // start from offline, and delete if cannot be started
-        for (Agent agent : startList) {
-            try {
-                StartOption startOption = mapping.get(host.getClass()).buildStartOption(host, agent);
-                cm.start(startOption);
-                log.info("Agent {} been started", agent.getName());
-                return true;
-            } catch (Exception e) {
-                log.warn("Unable to restart agent {}", agent.getName());
-
-                //TODO: send notification
-                agentService.delete(agent);
-                agents.remove(agent);
-            }
-        }
-
-        // create new agent
-        if (agents.size() < host.getMaxSize()) {
-            String random = StringHelper.randomString(5);
-            String name = String.format("%s-%s", host.getName(), random);
-
-            Agent agent = null;
-            try {
-                agent = agentService.create(new AgentOption()
-                        .setName(name)
-                        .setTags(host.getTags())
-                        .setExitOnIdle(host.getExitOnIdle())
-                        .setHostId(host.getId())
-                );
-
-                StartOption startOption = mapping.get(host.getClass()).buildStartOption(host, agent);
-                String cid = cm.start(startOption);
-
-                agent.setContainerId(cid);
-                agentService.update(agent, Agent.Status.STARTING);
-
-                log.info("Agent {} been created and started", name);
-                return true;
-            } catch (Exception e) {
-                if (agent != null) {
-                    agentService.delete(agent);
-                    log.warn("Unable to start created agent {}, since {}", agent.getName(), e.getMessage());
-                }
-                return false;
-            }
-        }
+        Map<AgentHost, List<Agent>> agents = Map.of(host, agentDao.findAllByHostId(host.getId()));
+        return provision(Map.of(host, 1), agents) > 0;
+    }
 
-        log.warn("Unable to start agent since over the limit size {}", host.getMaxSize());
-        return false;
+    @Override
+    public int start(List<AgentHost> hosts, int num) {
+        Map<AgentHost, List<Agent>> agents = loadAgents(hosts);
+        return provision(poolManager.spread(agents, num), agents);
     }
 
     @Override
@@ -310,7 +255,7 @@ public class AgentHostServiceImpl implements AgentHostService {
         }
 
         try {
-            return optional.get().getContainerManager().list(null, ContainerNamePrefix + "*").size();
+            return optional.get().getInventory().list(ContainerNamePrefix).size();
         } catch (Exception e) {
             log.warn("Cannot get container size of host {}", host.getName());
             return -1;
@@ -362,7 +307,7 @@ public class AgentHostServiceImpl implements AgentHostService {
 
         ContainerManager cm = optional.get().getContainerManager();
         try {
-            List<Unit> containers = cm.list(null, ContainerNamePrefix + "*");
+            List<Unit> containers = optional.get().getInventory().list(ContainerNamePrefix);
             for (Unit c : containers) {
                 cm.delete(c.getId());
             }
@@ -380,6 +325,23 @@ public class AgentHostServiceImpl implements AgentHostService {
         });
     }
 
+    /**
+     * Keep warm agents and stop agents idle over timeout
+     */
+    @Scheduled(cron = "0/30 * * * * ?")
+    public void scheduleScale() {
+        taskManager.run("agent-host-scale", false, () -> {
+            List<AgentHost> hosts = list();
+            for (AgentHost host : hosts) {
+                if (host.isDisabled()) {
+                    continue;
+                }
+                scaleDown(host, agentDao.findAllByHostId(host.getId()));
+            }
+            scaleUp(hosts);
+        });
+    }
+
     //====================================================================
     //        %% Internal events
     //====================================================================
@@ -394,17 +356,272 @@ public class AgentHostServiceImpl implements AgentHostService {
             return;
         }
 
-        for (AgentHost host : hosts) {
-            if (start(host)) {
-                return;
-            }
+        // assign job to the matched host with most free capacity
+        Map<AgentHost, Integer> spread = poolManager.spread(loadAgents(hosts), 1);
+        if (spread.isEmpty()) {
+            log.warn("No capacity on matched agent hosts for job {}", event.getJobId());
+            return;
         }
+
+        poolManager.onDemand(spread.keySet().iterator().next(), event.getJobId());
+        requestScaleUp(0);
+    }
+
+    @EventListener
+    public void onAgentStatusChanged(AgentStatusEvent event) {
+        Agent agent = event.getAgent();
+        if (agent.getStatus() == Agent.Status.BUSY && agent.getJobId() != null) {
+            poolManager.onAcquired(agent.getJobId());
+        }
+    }
+
+    @EventListener
+    public void onJobFinished(JobFinishedEvent event) {
+        poolManager.onFinished(event.getJob().getId());
     }
 
     //====================================================================
     //        %% Private functions
     //====================================================================
 
+    /**
+     * Jobs waiting for agents in a short period are served by one scale up,
+     * it runs as the scheduled scale task, so only one server provisions for the demands at a time.
+     * The request is retried with doubled delay up to MaxScaleUpRetries if the task is running on other server,
+     * since demands may be added after it planned, then left to the scheduled scale task
+     */
+    private void requestScaleUp(int retry) {
+        if (!scaleUpRequested.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            appTaskExecutor.execute(() -> {
+                ThreadHelper.sleep(ScaleUpDelay << retry);
+                scaleUpRequested.set(false);
+
+                if (taskManager.run("agent-host-scale", false, () -> scaleUp(list()))) {
+                    return;
+                }
+
+                if (retry < MaxScaleUpRetries) {
+                    requestScaleUp(retry + 1);
+                    return;
+                }
+
+                log.debug("Scale up not requested after {} retries, left to scheduled scale", retry);
+            });
+        } catch (RuntimeException e) {
+            scaleUpRequested.set(false);
+            log.warn("Unable to request scale up: {}", e.getMessage());
+        }
+    }
+
+    private int scaleUp(List<AgentHost> hosts) {
+        Map<AgentHost, List<Agent>> agents = loadAgents(hosts);
+        Map<AgentHost, Integer> plan = new LinkedHashMap<>(agents.size());
+
+        for (Map.Entry<AgentHost, List<Agent>> entry : agents.entrySet()) {
+            int numToStart = poolManager.numToStart(entry.getKey(), entry.getValue());
+            if (numToStart > 0) {
+                plan.put(entry.getKey(), numToStart);
+            }
+        }
+
+        return provision(plan, agents);
+    }
+
+    /**
+     * Resume offline agents and create the rest in one batch on each host,
+     * then start containers of all hosts concurrently on agent provision executor,
+     * limited by ParallelStartsPerHost on each host
+     *
+     * @param plan   num of agents to start of hosts
+     * @param agents all agents of hosts
+     * @return num of agents started
+     */
+    private int provision(Map<AgentHost, Integer> plan, Map<AgentHost, List<Agent>> agents) {
+        List<HostStarts> batches = new ArrayList<>(plan.size());
+        for (Map.Entry<AgentHost, Integer> entry : plan.entrySet()) {
+            AgentHost host = entry.getKey();
+            prepare(host, agents.get(host), entry.getValue()).ifPresent(batches::add);
+        }
+
+        if (batches.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (HostStarts batch : batches) {
+            int workers = Math.min(ParallelStartsPerHost, batch.tasks.size());
+            for (int i = 0; i < workers; i++) {
+                futures.add(runAsync(batch::drain));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        int started = 0;
+        for (HostStarts batch : batches) {
+            started += batch.started.get();
+
+            if (batch.started.get() > 0) {
+                log.info("{} agents started on host {}", batch.started.get(), batch.host.getName());
+            }
+        }
+        return started;
+    }
+
+    private Optional<HostStarts> prepare(AgentHost host, List<Agent> agents, int num) {
+        Optional<DockerManager> manager = getDockerManager(host);
+        if (!manager.isPresent()) {
+            log.warn("Fail to get pool manager of host: {}", host.getName());
+            return Optional.empty();
+        }
+
+        HostStarts batch = new HostStarts(host, manager.get());
+
+        // try to resume if offline
+        for (Agent agent : agents) {
+            if (batch.tasks.size() == num) {
+                break;
+            }
+
+            if (agent.isOffline()) {
+                batch.tasks.add(() -> batch.resume(agent));
+            }
+        }
+
+        int numToCreate = num - batch.tasks.size();
+        if (host.getMaxSize() != AgentHost.NoLimit) {
+            numToCreate = Math.min(numToCreate, host.getMaxSize() - agents.size());
+        }
+
+        if (numToCreate > 0) {
+            try {
+                for (Agent agent : agentService.create(newAgentOptions(host, numToCreate), Agent.Status.STARTING)) {
+                    batch.tasks.add(() -> batch.create(agent));
+                }
+            } catch (DuplicateException e) {
+                log.warn("Unable to create agents on host {}: {}", host.getName(), e.getMessage());
+            }
+        }
+
+        if (batch.tasks.isEmpty()) {
+            log.warn("Unable to start agent since over the limit size {}", host.getMaxSize());
+            return Optional.empty();
+        }
+        return Optional.of(batch);
+    }
+
+    private static List<AgentOption> newAgentOptions(AgentHost host, int num) {
+        Set<String> names = new HashSet<>(num);
+        while (names.size() < num) {
+            names.add(String.format("%s-%s", host.getName(), StringHelper.randomString(5)));
+        }
+
+        List<AgentOption> options = new ArrayList<>(num);
+        for (String name : names) {
+            options.add(new AgentOption()
+                    .setName(name)
+                    .setTags(host.getTags())
+                    .setExitOnIdle(host.getExitOnIdle())
+                    .setHostId(host.getId())
+            );
+        }
+        return options;
+    }
+
+    private CompletableFuture<Void> runAsync(Runnable task) {
+        try {
+            return CompletableFuture.runAsync(task, agentProvisionExecutor);
+        } catch (RuntimeException e) {
+            // executor is full, run on current thread
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Enabled hosts with all agents of each host
+     */
+    private Map<AgentHost, List<Agent>> loadAgents(List<AgentHost> hosts) {
+        Map<AgentHost, List<Agent>> agents = new LinkedHashMap<>(hosts.size());
+        for (AgentHost host : hosts) {
+            if (host.isDisabled()) {
+                continue;
+            }
+            agents.put(host, agentDao.findAllByHostId(host.getId()));
+        }
+        return agents;
+    }
+
+    private void scaleDown(AgentHost host, List<Agent> agents) {
+        List<Agent> toStop = poolManager.toStop(host, agents);
+        if (toStop.isEmpty()) {
+            return;
+        }
+
+        Optional<DockerManager> optional = getDockerManager(host);
+        if (!optional.isPresent()) {
+            return;
+        }
+
+        ContainerManager cm = optional.get().getContainerManager();
+        for (Agent agent : toStop) {
+            if (agent.getContainerId() == null) {
+                continue;
+            }
+
+            // mark as offline first, skip if agent been acquired by job
+            Agent updated = agentDao.updateStatus(agent.getId(), Set.of(Agent.Status.IDLE), Agent.Status.OFFLINE);
+            if (updated == null) {
+                continue;
+            }
+            eventManager.publish(new AgentStatusEvent(this, updated));
+
+            try {
+                cm.stop(agent.getContainerId());
+                log.info("Agent {} stopped since idle over {} seconds", agent.getName(), host.getIdleTimeout());
+            } catch (Exception e) {
+                log.warn("Unable to stop idle agent {}: {}", agent.getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Collect agent immediately if container exited before agent started
+     */
+    private void onContainerExited(AgentHost host, Unit unit) {
+        String name = unit.getName().startsWith("/") ? unit.getName().substring(1) : unit.getName();
+        if (!name.startsWith(ContainerNamePrefix)) {
+            return;
+        }
+
+        for (Agent agent : agentDao.findAllByHostId(host.getId())) {
+            if (!name.equals(getContainerName(agent))) {
+                continue;
+            }
+
+            if (agent.getStatus() != Agent.Status.STARTING) {
+                return;
+            }
+
+            Optional<DockerManager> optional = getDockerManager(host);
+            if (!optional.isPresent()) {
+                return;
+            }
+
+            try {
+                optional.get().getContainerManager().delete(unit.getId());
+                agentService.delete(agent);
+                log.info("Agent {} is collected since container exited with {}", agent.getName(), unit.getExitCode());
+            } catch (Exception e) {
+                log.warn("failed to collect agent {} : {}", agent.getName(), e.getMessage());
+            }
+            return;
+        }
+    }
+
     private String getContainerName(Agent agent) {
         return String.format("%s-%s", ContainerNamePrefix, StringHelper.escapeNumber(agent.getName()));
     }
@@ -440,7 +657,11 @@ public class AgentHostServiceImpl implements AgentHostService {
     private Optional<DockerManager> getDockerManager(AgentHost host) {
         DockerManager manager = poolManagerCache.get(host, (h) -> {
             try {
-                return mapping.get(host.getClass()).init(host);
+                DockerManager m = mapping.get(host.getClass()).init(host);
+                ContainerInventory inventory = m.getInventory();
+                inventory.onExited(unit -> appTaskExecutor.execute(() -> onContainerExited(host, unit)));
+                appTaskExecutor.execute(inventory::watch);
+                return m;
             } catch (Exception e) {
                 log.warn(e.getMessage());
                 host.setError(e.getMessage());
@@ -623,6 +844,77 @@ public class AgentHostServiceImpl implements AgentHostService {
         }
     }
 
+    /**
+     * Containers to start on a host, tasks are drained by workers concurrently
+     */
+    private class HostStarts {
+
+        private final AgentHost host;
+
+        private final ContainerManager cm;
+
+        private final ContainerInventory inventory;
+
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger started = new AtomicInteger();
+
+        HostStarts(AgentHost host, DockerManager manager) {
+            this.host = host;
+            this.cm = manager.getContainerManager();
+            this.inventory = manager.getInventory();
+        }
+
+        void drain() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        void resume(Agent agent) {
+            try {
+                Optional<Unit> container = inventory.get(getContainerName(agent));
+                if (container.isPresent()) {
+                    cm.resume(container.get().getId());
+                    started.incrementAndGet();
+                    log.info("Agent {} been resumed", agent.getName());
+                    return;
+                }
+            } catch (Exception e) {
+                log.warn("Unable to resume agent {}", agent.getName());
+            }
+
+            // start from offline, and delete if cannot be started
+            try {
+                containerStarted(agent, cm.start(mapping.get(host.getClass()).buildStartOption(host, agent)));
+                log.info("Agent {} been started", agent.getName());
+            } catch (Exception e) {
+                log.warn("Unable to restart agent {}", agent.getName());
+
+                //TODO: send notification
+                agentService.delete(agent);
+            }
+        }
+
+        void create(Agent agent) {
+            try {
+                containerStarted(agent, cm.start(mapping.get(host.getClass()).buildStartOption(host, agent)));
+                log.info("Agent {} been created and started", agent.getName());
+            } catch (Exception e) {
+                agentService.delete(agent);
+                log.warn("Unable to start created agent {}, since {}", agent.getName(), e.getMessage());
+            }
+        }
+
+        // save container id once started, so the container can be found if other starts on the host are slow
+        void containerStarted(Agent agent, String containerId) {
+            agent.setContainerId(containerId);
+            agentDao.updateContainerId(agent.getId(), containerId);
+            started.incrementAndGet();
+        }
+    }
+
     @AllArgsConstructor(staticName = "of")
     public static class AgentItemWrapper {
 
@@ -638,6 +930,18 @@ public class AgentHostServiceImpl implements AgentHostService {
 
         private final Object object;
 
+        public String getId() {
+            if (object instanceof Agent) {
+                return ((Agent) object).getContainerId();
+            }
+
+            if (object instanceof Unit) {
+                return ((Unit) object).getId();
+            }
+
+            throw new IllegalArgumentException();
+        }
+
         public String getName() {
             if (object instanceof Agent) {
                 return ((Agent) object).getName();
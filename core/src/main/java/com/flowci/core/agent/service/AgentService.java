@@ -96,6 +96,11 @@ public interface AgentService {
      */
     Agent create(AgentOption option);
 
+    /**
+     * Create agents with initial status, inserted in one batch
+     */
+    List<Agent> create(List<AgentOption> options, Agent.Status status);
+
     /**
      * Update agent name or and tags
      */
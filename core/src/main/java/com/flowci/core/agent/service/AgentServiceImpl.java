@@ -17,10 +17,9 @@
 package com.flowci.core.agent.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flowci.common.domain.SimpleKeyPair;
 import com.flowci.common.exception.DuplicateException;
 import com.flowci.common.exception.NotFoundException;
-import com.flowci.common.exception.StatusException;
-import com.flowci.common.helper.ObjectsHelper;
 import com.flowci.core.agent.dao.AgentDao;
 import com.flowci.core.agent.dao.AgentProfileDao;
 import com.flowci.core.agent.domain.*;
@@ -29,15 +28,12 @@ import com.flowci.core.agent.event.*;
 import com.flowci.core.agent.manager.AgentEventManager;
 import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.domain.PushEvent;
-import com.flowci.core.common.helper.CipherHelper;
-import com.flowci.core.common.helper.ThreadHelper;
 import com.flowci.core.common.manager.SocketPushManager;
 import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.common.manager.SpringTaskManager;
-import com.flowci.core.common.rabbit.RabbitOperations;
 import com.flowci.core.job.event.NoIdleAgentEvent;
+import com.flowci.core.secret.manager.KeyPoolManager;
 import com.flowci.tree.Selector;
-import com.flowci.zookeeper.InterLock;
 import com.flowci.zookeeper.ZookeeperClient;
 import com.google.common.collect.Sets;
 import javax.annotation.PostConstruct;
@@ -57,6 +53,7 @@ import static com.flowci.core.agent.domain.Agent.Status.*;
  * Manage agent from zookeeper nodes
  * - The ephemeral node present agent, path is /{root}/{agent id}
  * - The persistent node present agent of lock, path is /{root}/{agent id}-lock, managed by server side
+ * - Agent status is switched by compare-and-set on the agent document, so no global lock on acquire and release
  *
  * @author yang
  */
@@ -64,13 +61,15 @@ import static com.flowci.core.agent.domain.Agent.Status.*;
 @Service
 public class AgentServiceImpl implements AgentService {
 
-    private static final String FetchAgentLockKey = "fetch-agent";
+    private static final Set<Status> BusyStatus = Sets.newHashSet(BUSY);
 
-    private static final int DefaultAgentLockTimeout = 20; // seconds
+    private static final Set<Status> OfflineStatus = Sets.newHashSet(OFFLINE);
 
-    private static final int MinIdleAgentPushBack = 2; // seconds
+    private static final Set<Status> OnlineStatus = Sets.newHashSet(STARTING, IDLE, BUSY);
 
-    private static final int MaxIdleAgentPushBack = 10; // seconds
+    private static final Set<Status> ConnectableStatus = Sets.newHashSet(OFFLINE, STARTING, IDLE);
+
+    private static final Set<Status> AllStatus = EnumSet.allOf(Status.class);
 
     @Autowired
     private String topicForAgentProfile;
@@ -100,13 +99,10 @@ public class AgentServiceImpl implements AgentService {
     private AgentEventManager agentEventManager;
 
     @Autowired
-    private String idleAgentQueue;
-
-    @Autowired
-    private RabbitOperations idleAgentQueueManager;
+    private SocketPushManager socketPushManager;
 
     @Autowired
-    private SocketPushManager socketPushManager;
+    private KeyPoolManager keyPoolManager;
 
     @PostConstruct
     public void initAgentStatus() {
@@ -123,48 +119,30 @@ public class AgentServiceImpl implements AgentService {
     }
 
     @PostConstruct
-    public void subscribeIdleAgentQueue() throws IOException {
-        idleAgentQueueManager.startConsumer(idleAgentQueue, false, (header, body, envelope) -> {
-            String agentId = new String(body);
-            log.debug("Got an idle agent {}", agentId);
-
-            Agent agent = get(agentId);
-            if (!agent.isIdle()) {
-                log.debug("Agent {} is not idle", agentId);
-                return true;
-            }
+    public void lockNodeCleanup() {
+        String root = zkProperties.getAgentRoot();
+        List<String> children = zk.children(root);
+        if (children.isEmpty()) {
+            return;
+        }
 
-            try {
-                IdleAgentEvent event = new IdleAgentEvent(this, agentId);
-                eventManager.publish(event);
+        Map<String, String> agentIdToNode = new HashMap<>(children.size());
+        for (String child : children) {
+            agentIdToNode.put(Util.getAgentIdFromLockPath(child), child);
+        }
 
-                // agent not used after event, push back to queue
-                Boolean shouldPushBack = event.getFetched();
-                if (shouldPushBack) {
-                    int randomSec = ObjectsHelper.randomNumber(MinIdleAgentPushBack, MaxIdleAgentPushBack);
-                    ThreadHelper.sleep(randomSec * 1000L);
-                    idleAgentQueueManager.publish(idleAgentQueue, agentId.getBytes());
-                }
-            } catch (Exception e) {
-                log.warn(e.getMessage());
-            }
-            return true;
-        }, null);
-    }
+        for (Agent agent : agentDao.findAllById(agentIdToNode.keySet())) {
+            agentIdToNode.remove(agent.getId());
+        }
 
-    @PostConstruct
-    public void lockNodeCleanup() {
-        List<String> children = zk.children(zkProperties.getAgentRoot());
-        for (String path : children) {
-            String agentId = Util.getAgentIdFromLockPath(path);
-            Optional<Agent> optional = agentDao.findById(agentId);
-
-            if (optional.isEmpty()) {
-                try {
-                    zk.delete(path, true);
-                } catch (Throwable ignore) {
-                }
-            }
+        List<String> paths = new ArrayList<>(agentIdToNode.size());
+        for (String child : agentIdToNode.values()) {
+            paths.add(zk.makePath(root, child));
+        }
+
+        try {
+            zk.deleteAll(paths);
+        } catch (Throwable ignore) {
         }
     }
 
@@ -238,80 +216,44 @@ public class AgentServiceImpl implements AgentService {
 
     @Override
     public Optional<Agent> acquire(String jobId, Selector selector, String agentId, boolean shouldIdle) {
-        Optional<InterLock> lock = lock();
-        if (!lock.isPresent()) {
-            return Optional.empty();
+        Agent agent = agentDao.acquire(agentId, selector.getLabel(), IDLE, jobId);
+        if (agent != null) {
+            eventManager.publish(new AgentStatusEvent(this, agent));
+            return Optional.of(agent);
         }
 
-        try {
-            Optional<Agent> optional = agentDao.findById(agentId);
-            if (!optional.isPresent()) {
-                return Optional.empty();
-            }
-
-            Agent agent = optional.get();
-            if (shouldIdle && !agent.isIdle()) {
-                return Optional.empty();
-            }
-
-            if (!agent.match(selector)) {
-                return Optional.empty();
-            }
-
-            agent.setJobId(jobId);
-            update(agent, BUSY);
-            return optional;
-        } finally {
-            unlock(lock.get());
+        if (shouldIdle) {
+            return Optional.empty();
         }
+
+        // agent is still busy and owned by the job
+        return Optional.ofNullable(agentDao.acquire(agentId, selector.getLabel(), BUSY, jobId));
     }
 
     @Override
     public Optional<Agent> acquire(String jobId, Selector selector) {
-        Optional<InterLock> lock = lock();
-        if (!lock.isPresent()) {
-            throw new StatusException("Unable to get lock");
+        Agent agent = agentDao.acquire(selector.getLabel(), jobId);
+        if (agent == null) {
+            eventManager.publish(new NoIdleAgentEvent(this, jobId, selector));
+            return Optional.empty();
         }
 
-        try {
-            List<Agent> agents = agentDao.findAll(selector.getLabel(), Sets.newHashSet(IDLE));
-            if (agents.isEmpty()) {
-                eventManager.publish(new NoIdleAgentEvent(this, jobId, selector));
-                return Optional.empty();
-            }
-
-            Agent agent = agents.get(0);
-            agent.setJobId(jobId);
-            update(agent, BUSY);
-
-            return Optional.of(agent);
-        } finally {
-            unlock(lock.get());
-        }
+        eventManager.publish(new AgentStatusEvent(this, agent));
+        return Optional.of(agent);
     }
 
     @Override
     public void release(Collection<String> ids) {
-        Optional<InterLock> lock = lock();
-        if (!lock.isPresent()) {
-            throw new StatusException("Unable to get lock");
-        }
-
-        try {
-            for (String agentId : ids) {
-                Agent agent = get(agentId);
-                agent.setJobId(null);
-
-                switch (agent.getStatus()) {
-                    case OFFLINE:
-                        update(agent, OFFLINE);
-                    case BUSY:
-                        update(agent, IDLE);
-                        idleAgentQueueManager.publish(idleAgentQueue, agentId.getBytes());
-                }
+        for (String agentId : ids) {
+            Agent agent = agentDao.updateStatus(agentId, BusyStatus, IDLE);
+            if (agent != null) {
+                eventManager.publish(new AgentStatusEvent(this, agent));
+                eventManager.publish(new IdleAgentEvent(this, agentId, agent.getTags()));
+                continue;
             }
-        } finally {
-            unlock(lock.get());
+
+            // remove job id only if agent went offline while running the job
+            agentDao.updateStatus(agentId, OfflineStatus, OFFLINE);
         }
     }
 
@@ -325,14 +267,7 @@ public class AgentServiceImpl implements AgentService {
         }
 
         try {
-            // create agent
-            Agent agent = new Agent(name, option.getTags());
-            agent.setToken(UUID.randomUUID().toString());
-            agent.setHostId(option.getHostId());
-            agent.setExitOnIdle(option.getExitOnIdle());
-
-            String dummyEmailForAgent = "agent." + name + "@flow.ci";
-            agent.setRsa(CipherHelper.RSA.gen(dummyEmailForAgent));
+            Agent agent = newAgent(option);
             agentDao.insert(agent);
 
             eventManager.publish(new AgentCreatedEvent(this, agent));
@@ -342,6 +277,42 @@ public class AgentServiceImpl implements AgentService {
         }
     }
 
+    @Override
+    public List<Agent> create(List<AgentOption> options, Status status) {
+        List<String> names = new ArrayList<>(options.size());
+        for (AgentOption option : options) {
+            names.add(option.getName());
+        }
+
+        if (agentDao.existsByNameIn(names)) {
+            throw new DuplicateException("Agent names {0} are already defined", names.toString());
+        }
+
+        List<String> emails = new ArrayList<>(options.size());
+        for (AgentOption option : options) {
+            emails.add(dummyEmail(option));
+        }
+        List<SimpleKeyPair> pairs = keyPoolManager.take(emails);
+
+        List<Agent> agents = new ArrayList<>(options.size());
+        for (int i = 0; i < options.size(); i++) {
+            Agent agent = newAgent(options.get(i), pairs.get(i));
+            agent.setStatus(status);
+            agents.add(agent);
+        }
+
+        try {
+            agentDao.insert(agents);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateException("Agent names {0} are already defined", names.toString());
+        }
+
+        for (Agent agent : agents) {
+            eventManager.publish(new AgentCreatedEvent(this, agent));
+        }
+        return agents;
+    }
+
     @Override
     public Agent update(AgentOption option) {
         Agent agent = getByToken(option.getToken());
@@ -387,32 +358,28 @@ public class AgentServiceImpl implements AgentService {
 
     @EventListener
     public void onConnected(OnConnectedEvent event) {
-        Optional<InterLock> lock = lock();
-        if (!lock.isPresent()) {
-            log.error("Agent lock not available");
-            return;
-        }
+        Agent target = getByToken(event.getToken());
+        AgentInit init = event.getInit();
 
-        try {
-            Agent target = getByToken(event.getToken());
-            AgentInit init = event.getInit();
-
-            target.setK8sCluster(init.getIsK8sCluster());
-            target.setDocker(init.getIsDocker());
-            target.setUrl("http://" + init.getIp() + ":" + init.getPort());
-            target.setOs(init.getOs());
-            target.setConnectedAt(Instant.now());
+        target.setK8sCluster(init.getIsK8sCluster());
+        target.setDocker(init.getIsDocker());
+        target.setUrl("http://" + init.getIp() + ":" + init.getPort());
+        target.setOs(init.getOs());
+        target.setConnectedAt(Instant.now());
 
-            update(target, init.getStatus());
+        // agent acquired by job concurrently should not be set back to idle
+        Set<Status> expected = init.getStatus() == BUSY ? AllStatus : ConnectableStatus;
+        Agent connected = agentDao.updateConnection(target, expected, init.getStatus());
 
-            if (target.isIdle() && event.isToIdleQueue()) {
-                idleAgentQueueManager.publish(idleAgentQueue, target.getId().getBytes());
-            }
+        if (connected.getStatus() != target.getStatus()) {
+            eventManager.publish(new AgentStatusEvent(this, connected));
+        }
 
-            event.setAgent(target);
-        } finally {
-            unlock(lock.get());
+        if (connected.isIdle() && event.isToIdleQueue()) {
+            eventManager.publish(new IdleAgentEvent(this, connected.getId(), connected.getTags()));
         }
+
+        event.setAgent(connected);
     }
 
     @EventListener
@@ -423,34 +390,36 @@ public class AgentServiceImpl implements AgentService {
 
     @EventListener
     public void onDisconnected(OnDisconnectedEvent event) {
-        Optional<InterLock> lock = lock();
-        try {
-            Agent target = getByToken(event.getToken());
-            update(target, OFFLINE);
-        } catch (NotFoundException ignore) {
+        Agent target = agentDao.findByToken(event.getToken());
+        if (Objects.isNull(target)) {
+            return;
+        }
 
-        } finally {
-            lock.ifPresent(this::unlock);
+        // keep job id, so the job of agent will be cancelled
+        Agent offline = agentDao.updateToOffline(target.getId(), OnlineStatus);
+        if (offline != null) {
+            eventManager.publish(new AgentStatusEvent(this, offline));
         }
     }
 
     //====================================================================
-    //        %% Private methods
+    //        %% Private functions
     //====================================================================
 
-    private Optional<InterLock> lock() {
-        String path = zk.makePath("/agent-locks", FetchAgentLockKey);
-        Optional<InterLock> lock = zk.lock(path, DefaultAgentLockTimeout);
-        lock.ifPresent(interLock -> log.debug("Lock: {}", FetchAgentLockKey));
-        return lock;
+    private Agent newAgent(AgentOption option) {
+        return newAgent(option, keyPoolManager.take(dummyEmail(option)));
     }
 
-    private void unlock(InterLock lock) {
-        try {
-            zk.release(lock);
-            log.debug("Unlock: {}", FetchAgentLockKey);
-        } catch (Exception warn) {
-            log.warn("Unable to unlock agent", warn);
-        }
+    private static Agent newAgent(AgentOption option, SimpleKeyPair rsa) {
+        Agent agent = new Agent(option.getName(), option.getTags());
+        agent.setToken(UUID.randomUUID().toString());
+        agent.setHostId(option.getHostId());
+        agent.setExitOnIdle(option.getExitOnIdle());
+        agent.setRsa(rsa);
+        return agent;
+    }
+
+    private static String dummyEmail(AgentOption option) {
+        return "agent." + option.getName() + "@flow.ci";
     }
 }
@@ -18,20 +18,21 @@ package com.flowci.core.common.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flowci.common.helper.FileHelper;
-import com.flowci.core.common.event.AsyncEvent;
+import com.flowci.core.common.event.RoutedEventMulticaster;
+import com.flowci.core.common.event.RoutedEventMulticaster.Overflow;
 import com.flowci.core.common.helper.JacksonHelper;
 import com.flowci.core.common.helper.ThreadHelper;
+import com.flowci.core.job.event.JobFinishedEvent;
+import com.flowci.core.job.event.NoIdleAgentEvent;
+import io.micrometer.core.instrument.MeterRegistry;
 import javax.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.context.ApplicationEvent;
-import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.ApplicationEventMulticaster;
-import org.springframework.context.event.SimpleApplicationEventMulticaster;
-import org.springframework.core.ResolvableType;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -41,7 +42,6 @@ import java.net.http.HttpClient;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
-import java.util.concurrent.Executor;
 
 /**
  * @author yang
@@ -94,38 +94,48 @@ public class AppConfig {
     public ThreadPoolTaskExecutor getAppTaskExecutor() {
         int corePoolSize = appProperties.getCorePoolSize();
         int maxPoolSize = appProperties.getMaxPoolSize();
-        return ThreadHelper.createTaskExecutor(maxPoolSize, corePoolSize, 100, "app-task-");
+        boolean virtual = appProperties.isVirtualThreads();
+
+        if (virtual && !ThreadHelper.isVirtualThreadSupported()) {
+            log.warn("Virtual threads not supported by jvm {}, platform threads will be used", Runtime.version());
+        }
+
+        return ThreadHelper.createTaskExecutor(maxPoolSize, corePoolSize, 100, "app-task-", virtual);
+    }
+
+    /**
+     * Executor to start agent containers, separated from app task executor
+     * since provisioning is triggered from tasks on app task executor and waits for the starts
+     */
+    @Bean("agentProvisionExecutor")
+    public ThreadPoolTaskExecutor agentProvisionExecutor() {
+        return ThreadHelper.createTaskExecutor(20, 5, 100, "agent-provision-");
+    }
+
+    /**
+     * Executor to fill rsa key pool, key generation is cpu bound, one thread is enough
+     */
+    @Bean("rsaPoolExecutor")
+    public ThreadPoolTaskExecutor rsaPoolExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("rsa-pool-");
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.setDaemon(true);
+        return executor;
     }
 
     @Bean(name = "applicationEventMulticaster")
-    public ApplicationEventMulticaster simpleApplicationEventMulticaster(TaskExecutor appTaskExecutor) {
-        SimpleApplicationEventMulticaster multicaster = new SimpleApplicationEventMulticaster() {
-
-            private ResolvableType resolveDefaultEventType(ApplicationEvent event) {
-                return ResolvableType.forInstance(event);
-            }
-
-            @Override
-            public void multicastEvent(ApplicationEvent event, ResolvableType eventType) {
-                ResolvableType type = (eventType != null ? eventType : resolveDefaultEventType(event));
-                Executor executor = getTaskExecutor();
-                for (ApplicationListener<?> listener : getApplicationListeners(event, type)) {
-                    if (executor == null) {
-                        invokeListener(listener, event);
-                        continue;
-                    }
-
-                    if (listener instanceof AsyncEvent) {
-                        executor.execute(() -> invokeListener(listener, event));
-                        continue;
-                    }
-
-                    invokeListener(listener, event);
-                }
-            }
-        };
-
-        multicaster.setTaskExecutor(appTaskExecutor);
+    public ApplicationEventMulticaster routedEventMulticaster(ObjectProvider<MeterRegistry> meterRegistry) {
+        RoutedEventMulticaster multicaster = new RoutedEventMulticaster(meterRegistry, appProperties.isVirtualThreads());
+
+        // side effects of finished job, such as git status, notifications and stats
+        multicaster.route(JobFinishedEvent.class, "job-finished", 4, 200, Overflow.CALLER_RUNS);
+
+        // agent host will be asked again by the next job waiting for agent
+        multicaster.route(NoIdleAgentEvent.class, "no-idle-agent", 2, 50, Overflow.DROP);
         return multicaster;
     }
 
@@ -65,6 +65,11 @@ public class AppProperties {
 
     private int maxPoolSize;
 
+    // run blocking tasks on virtual threads if supported by jvm
+    private boolean virtualThreads;
+
+    private int rsaPoolSize; // num of pre-generated rsa key pairs, 0 to disable
+
     @Bean("zkProperties")
     @ConfigurationProperties(prefix = "app.zookeeper")
     public Zookeeper zk() {
@@ -117,6 +122,12 @@ public class AppProperties {
     public static class Job {
 
         private int retryWaitingSeconds;
+
+        private int logBufferMb; // max direct memory for live log buffer
+
+        private int queueShards; // num of shard queues to dispatch jobs
+
+        private int conditionPoolSize; // max concurrent condition scripts on platform threads
     }
 
     @Data
@@ -138,6 +149,8 @@ public class AppProperties {
 
         private String cronRoot;
 
+        private String serverRoot;
+
         private Integer timeout;
 
         private Integer retry;
@@ -160,9 +173,15 @@ public class AppProperties {
 
         private String eventBroadcastEx; // fanout exchange for event broadcast event
 
+        private String jobQueue; // prefix of job shard queues
+
         private String jobDlQueue; // job dead letter queue
 
         private String jobDlExchange; // job dead letter exchange
+
+        private int publishChannels; // num of publisher channels, 0 for num of cpu
+
+        private int consumerPoolSize; // max concurrent consumer callbacks on platform threads
     }
 
     @Data
@@ -189,6 +208,11 @@ public class AppProperties {
         private String key;
 
         private String secret;
+
+        /**
+         * Max parts uploading in parallel for a multipart upload
+         */
+        private Integer uploadParallelism = 4;
     }
 
     @Data
@@ -41,12 +41,20 @@ public class QueueConfig {
 
     public static final String JobDlRoutingKey = "jobtimeout";
 
+    @Autowired
+    private AppProperties appProperties;
+
     @Autowired
     private AppProperties.RabbitMQ rabbitProperties;
 
+    /**
+     * Pool size is the limit of concurrent consumer callbacks on platform threads,
+     * virtual threads are not pooled and bounded by the consumer prefetch
+     */
     @Bean("rabbitTaskExecutor")
     public ThreadPoolTaskExecutor rabbitConsumerExecutor() {
-        return ThreadHelper.createTaskExecutor(20, 10, 100, "rabbit-task-");
+        int poolSize = rabbitProperties.getConsumerPoolSize();
+        return ThreadHelper.createTaskExecutor(poolSize, Math.max(1, poolSize / 2), 100, "rabbit-task-", appProperties.isVirtualThreads());
     }
 
     @Bean
@@ -62,7 +70,7 @@ public class QueueConfig {
 
     @Bean("jobsQueueManager")
     public RabbitOperations jobsQueueManager(Connection rabbitConnection) throws IOException {
-        RabbitOperations manager = new RabbitOperations(rabbitConnection, 1);
+        RabbitOperations manager = new RabbitOperations(rabbitConnection, 1, numOfPublishChannels());
 
         // setup dead letter queue
         String queue = rabbitProperties.getJobDlQueue();
@@ -75,18 +83,6 @@ public class QueueConfig {
         return manager;
     }
 
-    @Bean("idleAgentQueue")
-    public String idleAgentQueue() {
-        return "flow.idle.agent";
-    }
-
-    @Bean("idleAgentQueueManager")
-    public RabbitOperations idleAgentQueueManager(Connection rabbitConnection, String idleAgentQueue) throws IOException {
-        RabbitOperations manager = new RabbitOperations(rabbitConnection, 1);
-        manager.declareTemp(idleAgentQueue);
-        return manager;
-    }
-
     @Bean("wsBroadcastQueue")
     public String wsBroadcastQueue() {
         return "bc.ws.q." + StringHelper.randomString(8);
@@ -101,7 +97,7 @@ public class QueueConfig {
     public RabbitOperations broadcastQueueManager(Connection rabbitConnection,
                                                   String wsBroadcastQueue,
                                                   String eventBroadcastQueue) throws IOException {
-        RabbitOperations manager = new RabbitOperations(rabbitConnection, 10);
+        RabbitOperations manager = new RabbitOperations(rabbitConnection, 10, numOfPublishChannels());
         manager.declareTemp(wsBroadcastQueue);
         manager.declareExchangeAndBind(
                 rabbitProperties.getWsBroadcastEx(),
@@ -119,4 +115,9 @@ public class QueueConfig {
         );
         return manager;
     }
+
+    private int numOfPublishChannels() {
+        int num = rabbitProperties.getPublishChannels();
+        return num > 0 ? num : Runtime.getRuntime().availableProcessors();
+    }
 }
@@ -16,31 +16,63 @@
 
 package com.flowci.core.common.config;
 
+import com.flowci.core.job.dao.BlobRefDao;
+import com.flowci.store.BlobStore;
 import com.flowci.store.FileManager;
 import com.flowci.store.LocalFileManager;
 import com.flowci.store.MinioFileManager;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import io.minio.http.HttpUtils;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.annotation.PreDestroy;
 import java.net.URL;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class StorageConfig {
 
+    // same as default timeout of minio client
+    private static final long HttpTimeout = TimeUnit.MINUTES.toMillis(5);
+
     @Autowired
     private AppProperties appProperties;
 
     @Autowired
     private AppProperties.Minio minioProperties;
 
+    /**
+     * Connection pool and dispatcher shared by minio sync and async clients
+     */
+    private OkHttpClient minioHttpClient;
+
+    @PreDestroy
+    public synchronized void close() {
+        if (minioHttpClient == null) {
+            return;
+        }
+
+        minioHttpClient.dispatcher().executorService().shutdown();
+        minioHttpClient.connectionPool().evictAll();
+        minioHttpClient = null;
+    }
+
     @Bean("fileManager")
     @ConditionalOnProperty(name = "app.minio.enabled", havingValue = "true")
     public FileManager minioFileManager(MinioClient client) {
-        return new MinioFileManager(client, minioProperties.getBucket());
+        MinioAsyncClient asyncClient = MinioAsyncClient.builder()
+                .endpoint(minioProperties.getEndpoint())
+                .credentials(minioProperties.getKey(), minioProperties.getSecret())
+                .httpClient(minioHttpClient())
+                .build();
+
+        return new MinioFileManager(client, asyncClient, minioProperties.getBucket(), minioProperties.getUploadParallelism());
     }
 
     @Bean
@@ -53,6 +85,7 @@ public class StorageConfig {
         return MinioClient.builder()
                 .endpoint(endpoint)
                 .credentials(key, secret)
+                .httpClient(minioHttpClient())
                 .build();
     }
 
@@ -61,4 +94,16 @@ public class StorageConfig {
     public FileManager localFileManager() {
         return new LocalFileManager(appProperties.getFlowDir());
     }
+
+    @Bean
+    public BlobStore blobStore(FileManager fileManager, BlobRefDao blobRefDao) {
+        return new BlobStore(fileManager, blobRefDao);
+    }
+
+    private synchronized OkHttpClient minioHttpClient() {
+        if (minioHttpClient == null) {
+            minioHttpClient = HttpUtils.newDefaultHttpClient(HttpTimeout, HttpTimeout, HttpTimeout);
+        }
+        return minioHttpClient;
+    }
 }
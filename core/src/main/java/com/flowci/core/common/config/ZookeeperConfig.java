@@ -21,6 +21,8 @@ import com.flowci.core.common.helper.ThreadHelper;
 import com.flowci.zookeeper.LocalServer;
 import com.flowci.zookeeper.ZookeeperClient;
 import com.flowci.zookeeper.ZookeeperException;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
 import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.zookeeper.CreateMode;
@@ -32,6 +34,7 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author yang
@@ -48,7 +51,7 @@ public class ZookeeperConfig {
     private AppProperties.Zookeeper zkProperties;
 
     @Bean(name = "zk")
-    public ZookeeperClient zookeeperClient(TaskExecutor appTaskExecutor) {
+    public ZookeeperClient zookeeperClient(TaskExecutor appTaskExecutor, MeterRegistry meterRegistry) {
         if (zkProperties.getEmbedded()) {
             startEmbeddedServer();
             log.info("Embedded zookeeper been started ~");
@@ -63,6 +66,17 @@ public class ZookeeperConfig {
 
         initRoots(client, zkProperties.getCronRoot());
         initRoots(client, zkProperties.getAgentRoot());
+        initRoots(client, zkProperties.getServerRoot());
+
+        // task lock checked on every scheduled run of each server, served from local cache
+        cacheRoot(client, zkProperties.getCronRoot());
+
+        client.getStats().forEach((op, stats) -> FunctionTimer.builder("zk_op", stats,
+                        ZookeeperClient.OpStats::getCount,
+                        ZookeeperClient.OpStats::getTotalNanos,
+                        TimeUnit.NANOSECONDS)
+                .tag("op", op)
+                .register(meterRegistry));
 
         return client;
     }
@@ -86,6 +100,16 @@ public class ZookeeperConfig {
         }
     }
 
+    private void cacheRoot(ZookeeperClient client, String rootPath) {
+        try {
+            if (!client.cache(rootPath)) {
+                log.warn("Zookeeper root {} not cached", rootPath);
+            }
+        } catch (ZookeeperException e) {
+            log.warn(e.getMessage());
+        }
+    }
+
     private void startEmbeddedServer() {
         Path path = Paths.get(zkProperties.getDataDir());
         String address = "0.0.0.0";
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.common.domain;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring, each member is placed on the ring with VirtualNodes points,
+ * so only keys of the changed member move when members join or leave
+ */
+public final class HashRing {
+
+    private static final int VirtualNodes = 128;
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public HashRing(Collection<String> members) {
+        for (String member : members) {
+            for (int i = 0; i < VirtualNodes; i++) {
+                ring.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    /**
+     * Member owns the key, or null if ring is empty
+     */
+    public String ownerOf(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+
+    private static long hash(String value) {
+        return Hashing.murmur3_128().hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.common.event;
+
+import com.flowci.core.common.helper.ThreadHelper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+import org.springframework.context.event.SmartApplicationListener;
+import org.springframework.core.ResolvableType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listeners of a routed event type are invoked on the bounded executor of the route,
+ * others are invoked on the publisher thread. Latency of each listener is recorded
+ * to 'event_listener_latency' timer.
+ */
+@Slf4j
+public class RoutedEventMulticaster extends SimpleApplicationEventMulticaster implements DisposableBean {
+
+    public enum Overflow {
+
+        /**
+         * Publisher waits until queue has space
+         */
+        BLOCK,
+
+        /**
+         * Publisher runs the listener
+         */
+        CALLER_RUNS,
+
+        /**
+         * Event is dropped for the listener
+         */
+        DROP
+    }
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final boolean virtualThreads;
+
+    // key as event type
+    private final Map<Class<?>, Route> routes = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public RoutedEventMulticaster(ObjectProvider<MeterRegistry> meterRegistry, boolean virtualThreads) {
+        this.meterRegistry = meterRegistry;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Route listeners of event type and its sub types to a dedicated executor
+     */
+    public void route(Class<? extends ApplicationEvent> eventType, String name, int poolSize, int queueSize, Overflow overflow) {
+        routes.put(eventType, new Route(name, poolSize, queueSize, overflow));
+    }
+
+    @Override
+    public void multicastEvent(ApplicationEvent event, ResolvableType eventType) {
+        ResolvableType type = (eventType != null ? eventType : ResolvableType.forInstance(event));
+        Route route = findRoute(event.getClass());
+
+        for (ApplicationListener<?> listener : getApplicationListeners(event, type)) {
+            if (route == null) {
+                invokeAndRecord(listener, event);
+                continue;
+            }
+
+            try {
+                route.executor.execute(() -> invokeAndRecord(listener, event));
+            } catch (RejectedExecutionException e) {
+                if (route.dropped != null) {
+                    route.dropped.increment();
+                }
+                log.warn("Event {} dropped for listener {} on route {}", event.getClass().getSimpleName(), idOf(listener), route.name);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        routes.values().forEach(r -> r.executor.shutdown());
+    }
+
+    private Route findRoute(Class<?> eventType) {
+        if (routes.isEmpty()) {
+            return null;
+        }
+
+        for (Class<?> c = eventType; c != null && c != ApplicationEvent.class; c = c.getSuperclass()) {
+            Route route = routes.get(c);
+            if (route != null) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private void invokeAndRecord(ApplicationListener<?> listener, ApplicationEvent event) {
+        long start = System.nanoTime();
+        try {
+            invokeListener(listener, event);
+        } finally {
+            Timer timer = timerOf(listener, event);
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private Timer timerOf(ApplicationListener<?> listener, ApplicationEvent event) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return null;
+        }
+
+        String eventName = event.getClass().getSimpleName();
+        String listenerId = idOf(listener);
+
+        return timers.computeIfAbsent(eventName + "/" + listenerId, k -> Timer.builder("event_listener_latency")
+                .description("duration of event listener")
+                .tag("event", eventName)
+                .tag("listener", listenerId)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private static String idOf(ApplicationListener<?> listener) {
+        if (listener instanceof SmartApplicationListener) {
+            String id = ((SmartApplicationListener) listener).getListenerId();
+            if (!id.isEmpty()) {
+                return id;
+            }
+        }
+        return listener.getClass().getName();
+    }
+
+    private class Route {
+
+        private final String name;
+
+        private final ThreadPoolTaskExecutor executor;
+
+        private final Counter dropped;
+
+        Route(String name, int poolSize, int queueSize, Overflow overflow) {
+            this.name = name;
+            this.executor = ThreadHelper.createTaskExecutor(poolSize, poolSize, queueSize, "event-" + name + "-", virtualThreads);
+            this.executor.getThreadPoolExecutor().setRejectedExecutionHandler(toHandler(overflow));
+
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            this.dropped = registry == null ? null : Counter.builder("event_dropped")
+                    .description("num of events dropped since route queue is full")
+                    .tag("route", name)
+                    .register(registry);
+        }
+    }
+
+    private static RejectedExecutionHandler toHandler(Overflow overflow) {
+        switch (overflow) {
+            case BLOCK:
+                return (r, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("executor is shutdown");
+                    }
+
+                    try {
+                        executor.getQueue().put(r);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(e);
+                    }
+                };
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            default:
+                return new ThreadPoolExecutor.AbortPolicy();
+        }
+    }
+}
@@ -73,6 +73,14 @@ public abstract class CipherHelper {
             }
         }
 
+        /**
+         * Replace comment of ssh public key, ex: key generated in advance for an email
+         */
+        public static SimpleKeyPair withComment(SimpleKeyPair pair, String comment) {
+            String[] line = pair.getPublicKey().trim().split(" ", 3);
+            return SimpleKeyPair.of(line[0] + " " + line[1] + " " + comment + "\n", pair.getPrivateKey());
+        }
+
         public static String fingerprintMd5(String publicKey) throws NoSuchAlgorithmException {
             String derFormat = publicKey.split(" ")[1].trim();
             MessageDigest messageDigest = MessageDigest.getInstance("MD5");
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.common.helper;
+
+import com.flowci.store.StoredFile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Write stored file to http response with conditional GET and single byte range support
+ */
+public abstract class DownloadHelper {
+
+    private static final int BufferSize = 64 * 1024;
+
+    private static final String SendfileSupport = "org.apache.tomcat.sendfile.support";
+
+    private static final String SendfileName = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SendfileStart = "org.apache.tomcat.sendfile.start";
+
+    private static final String SendfileEnd = "org.apache.tomcat.sendfile.end";
+
+    public static void write(StoredFile file,
+                             String downloadName,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        String etag = "\"" + file.getEtag() + "\"";
+        long size = file.getSize();
+
+        // set etag and last modified, respond 304 if not modified
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (webRequest.checkNotModified(etag, file.getLastModified())) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + downloadName + "\"");
+
+        long start = 0;
+        long end = size - 1;
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && isIfRangeMatched(request, etag, file.getLastModified())) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = null;
+            }
+
+            // malformed or multiple ranges are ignored, the full content will be sent
+            if (ranges != null && ranges.size() == 1 && !isSatisfiable(ranges.get(0), size)) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+
+            if (ranges != null && ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(size);
+                end = ranges.get(0).getRangeEnd(size);
+
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+
+        if (length <= 0 || "HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        // let tomcat send local file from kernel to socket after the response is committed
+        if (file.getLocalPath() != null && Boolean.TRUE.equals(request.getAttribute(SendfileSupport))) {
+            request.setAttribute(SendfileName, file.getLocalPath().toAbsolutePath().toString());
+            request.setAttribute(SendfileStart, start);
+            request.setAttribute(SendfileEnd, end + 1);
+            return;
+        }
+
+        try (ReadableByteChannel in = file.read(start, length)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            copy(in, out, start, length);
+        }
+
+        response.flushBuffer();
+    }
+
+    /**
+     * Copy length of bytes, local file will be transferred by FileChannel.transferTo,
+     * it is zero copy only if the target is a file or socket channel, not a wrapped stream
+     */
+    public static long copy(ReadableByteChannel in, WritableByteChannel out, long position, long length) throws IOException {
+        long remaining = length;
+
+        if (in instanceof FileChannel) {
+            FileChannel fc = (FileChannel) in;
+            while (remaining > 0) {
+                long n = fc.transferTo(position, remaining, out);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+                remaining -= n;
+            }
+            return length - remaining;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(BufferSize, length));
+        while (remaining > 0) {
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+
+            int n = in.read(buffer);
+            if (n < 0) {
+                break;
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            remaining -= n;
+        }
+        return length - remaining;
+    }
+
+    private static boolean isSatisfiable(HttpRange range, long size) {
+        try {
+            return size > 0 && range.getRangeStart(size) < size && range.getRangeStart(size) <= range.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isIfRangeMatched(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
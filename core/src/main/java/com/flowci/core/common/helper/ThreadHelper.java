@@ -19,6 +19,7 @@ package com.flowci.core.common.helper;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -26,6 +27,53 @@ import java.util.concurrent.ThreadPoolExecutor;
  */
 public abstract class ThreadHelper {
 
+    private static final boolean VirtualThreadSupported = createVirtualThreadFactory("probe-") != null;
+
+    /**
+     * Virtual thread is available from JDK 21, or JDK 19/20 with preview enabled
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreadSupported;
+    }
+
+    /**
+     * Create executor runs tasks on virtual threads if virtual is true and supported by the runtime,
+     * otherwise on platform threads with given pool size
+     */
+    public static ThreadPoolTaskExecutor createTaskExecutor(int maxPoolSize,
+                                                            int corePoolSize,
+                                                            int queueSize,
+                                                            String threadNamePrefix,
+                                                            boolean virtual) {
+        ThreadFactory factory = virtual ? createVirtualThreadFactory(threadNamePrefix) : null;
+        return createTaskExecutor(maxPoolSize, corePoolSize, queueSize, threadNamePrefix, factory);
+    }
+
+    /**
+     * Create executor runs each task on a new thread from virtual thread factory without pool and queue bounds,
+     * since virtual threads are cheap, limits have to be applied on the downstream resources.
+     * Blocking inside synchronized pins the carrier thread before JDK 24, use ReentrantLock for sections run on it.
+     * Runs on platform threads with given pool size if factory is null.
+     */
+    public static ThreadPoolTaskExecutor createTaskExecutor(int maxPoolSize,
+                                                            int corePoolSize,
+                                                            int queueSize,
+                                                            String threadNamePrefix,
+                                                            ThreadFactory virtualThreadFactory) {
+        if (virtualThreadFactory == null) {
+            return createTaskExecutor(maxPoolSize, corePoolSize, queueSize, threadNamePrefix);
+        }
+
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(0);
+        taskExecutor.setMaxPoolSize(Integer.MAX_VALUE);
+        taskExecutor.setQueueCapacity(0);
+        taskExecutor.setKeepAliveSeconds(0);
+        taskExecutor.setThreadFactory(virtualThreadFactory);
+        taskExecutor.initialize();
+        return taskExecutor;
+    }
+
     public static ThreadPoolTaskExecutor createTaskExecutor(int maxPoolSize,
                                                             int corePoolSize,
                                                             int queueSize,
@@ -41,6 +89,22 @@ public abstract class ThreadHelper {
         return taskExecutor;
     }
 
+    /**
+     * Thread.ofVirtual().name(prefix, 0).factory() by reflection since compiled with JDK 17
+     *
+     * @return null if virtual thread not supported
+     */
+    private static ThreadFactory createVirtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
     public static void sleep(long millis) {
         try {
             Thread.sleep(millis);
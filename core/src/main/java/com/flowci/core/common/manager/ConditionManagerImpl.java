@@ -1,13 +1,21 @@
 package com.flowci.core.common.manager;
 
 import com.flowci.common.domain.Vars;
+import com.flowci.common.helper.HashingHelper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.base.Strings;
 import groovy.lang.Binding;
 import groovy.lang.GroovyRuntimeException;
-import groovy.lang.GroovyShell;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
 import groovy.util.ScriptException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
@@ -17,19 +25,41 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+/**
+ * Compiled script classes are cached by script hash, each evaluation creates a script instance with its own binding.
+ * Each script is compiled by its own class loader, so the class can be unloaded once evicted from cache
+ */
 @Slf4j
 @Component
 public class ConditionManagerImpl implements ConditionManager {
 
-    private final int DefaultTimeout = 2; // seconds
+    private static final int DefaultTimeout = 2; // seconds
 
-    @Autowired
-    private ThreadPoolTaskExecutor jobConditionExecutor;
+    private static final int MaxCachedScripts = 500;
+
+    private final Cache<String, Class<? extends Script>> scriptCache = Caffeine.newBuilder()
+            .maximumSize(MaxCachedScripts)
+            .recordStats()
+            .build();
+
+    private final ThreadPoolTaskExecutor jobConditionExecutor;
+
+    private final Timer compileTimer;
+
+    public ConditionManagerImpl(@Qualifier("jobConditionExecutor") ThreadPoolTaskExecutor jobConditionExecutor,
+                                MeterRegistry meterRegistry) {
+        this.jobConditionExecutor = jobConditionExecutor;
+        this.compileTimer = Timer.builder("condition_script_compile")
+                .description("time of compiling groovy condition script")
+                .register(meterRegistry);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, scriptCache, "condition_script");
+    }
 
     @Override
     public void verify(@Nullable String condition) throws ScriptException {
         try {
-            new GroovyShell().parse(condition);
+            compile(condition);
         } catch (Exception e) {
             throw new ScriptException("Invalid groovy condition: " + e.getMessage());
         }
@@ -48,8 +78,8 @@ public class ConditionManagerImpl implements ConditionManager {
             }
 
             try {
-                GroovyShell groovy = new GroovyShell(binding);
-                Object value = groovy.evaluate(groovyScript);
+                Script script = InvokerHelper.createScript(compile(groovyScript), binding);
+                Object value = script.run();
                 if (value instanceof Boolean) {
                     return (Boolean) value;
                 }
@@ -70,4 +100,19 @@ public class ConditionManagerImpl implements ConditionManager {
             throw new ScriptException("Condition script timeout");
         }
     }
+
+    private Class<? extends Script> compile(String groovyScript) {
+        String key = HashingHelper.md5(groovyScript);
+        return scriptCache.get(key, k -> compileTimer.record(() -> parse(groovyScript)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<? extends Script> parse(String groovyScript) {
+        GroovyClassLoader loader = new GroovyClassLoader(getClass().getClassLoader());
+        Class<?> scriptClass = loader.parseClass(groovyScript);
+        if (!Script.class.isAssignableFrom(scriptClass)) {
+            throw new GroovyRuntimeException("Condition is not a script");
+        }
+        return (Class<? extends Script>) scriptClass;
+    }
 }
@@ -27,9 +27,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * @author yang
@@ -40,6 +44,12 @@ public class SocketPushManager {
 
     private final static String HeaderTopic = "TOPIC";
 
+    private final static String HeaderEncoding = "ENCODING";
+
+    private final static String EncodingGzip = "gzip";
+
+    private final static int MinBytesToCompress = 1024;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -60,6 +70,12 @@ public class SocketPushManager {
         broadcastQueueManager.startConsumer(wsBroadcastQueue, true, (headers, body, envelope) -> {
             try {
                 String topic = headers.get(HeaderTopic).toString();
+                Object encoding = headers.get(HeaderEncoding);
+
+                if (encoding != null && EncodingGzip.equals(encoding.toString())) {
+                    body = gunzip(body);
+                }
+
                 simpMessagingTemplate.convertAndSend(topic, body);
             } catch (Exception e) {
                 log.warn("", e);
@@ -78,13 +94,37 @@ public class SocketPushManager {
         }
     }
 
+    /**
+     * Body will be compressed through the broadcast exchange if it's large,
+     * and decompressed before sending to websocket clients
+     */
     public void push(String topic, byte[] bytes) {
         try {
-            Map<String, Object> headers = new HashMap<>(1);
+            Map<String, Object> headers = new HashMap<>(2);
             headers.put(HeaderTopic, topic);
+
+            if (bytes.length >= MinBytesToCompress) {
+                headers.put(HeaderEncoding, EncodingGzip);
+                bytes = gzip(bytes);
+            }
+
             broadcastQueueManager.sendToEx(rabbitProperties.getWsBroadcastEx(), bytes, headers);
         } catch (Exception e) {
             log.warn(e.getMessage());
         }
     }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzip.readAllBytes();
+        }
+    }
 }
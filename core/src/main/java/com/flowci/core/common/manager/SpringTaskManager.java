@@ -28,16 +28,18 @@ public class SpringTaskManager {
      * @param name task name
      * @param once indicate the task only can be run once
      * @param task task body
+     * @return false if the task is running or ran on other server
      */
-    public void run(String name, boolean once, Runnable task) {
-        try {
-            if (!lock(name)) {
-                return;
-            }
+    public boolean run(String name, boolean once, Runnable task) {
+        if (!lock(name)) {
+            return false;
+        }
 
+        try {
             log.info("task {} started", name);
             task.run();
             log.info("task {} finished", name);
+            return true;
         } finally {
             if (!once) {
                 release(name);
@@ -48,6 +50,12 @@ public class SpringTaskManager {
     private boolean lock(String name) {
         try {
             String path = ZKPaths.makePath(zkProperties.getCronRoot(), name);
+
+            // cron root is cached, skip the round trip if other server is running the task
+            if (zk.exist(path)) {
+                return false;
+            }
+
             zk.create(CreateMode.EPHEMERAL, path, null);
             return true;
         } catch (ZookeeperException e) {
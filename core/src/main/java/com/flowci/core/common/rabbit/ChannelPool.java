@@ -0,0 +1,204 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.common.rabbit;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownSignalException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Fixed size pool of publisher channels in confirm mode,
+ * each publish borrows a channel and returns a future completed by broker ack or nack.
+ *
+ * The future is completed exceptionally if the channel is shut down before confirm,
+ * or no confirm received within the confirm timeout. A shut down channel is replaced on next publish.
+ */
+@Slf4j
+public class ChannelPool implements AutoCloseable {
+
+    public static final Duration DefaultConfirmTimeout = Duration.ofSeconds(30);
+
+    private final Connection conn;
+
+    private final Duration confirmTimeout;
+
+    private final List<PooledChannel> all;
+
+    private final BlockingQueue<PooledChannel> idle;
+
+    public ChannelPool(Connection conn, int size) throws IOException {
+        this(conn, size, DefaultConfirmTimeout);
+    }
+
+    public ChannelPool(Connection conn, int size, Duration confirmTimeout) throws IOException {
+        this.conn = conn;
+        this.confirmTimeout = confirmTimeout;
+        this.all = new ArrayList<>(size);
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        for (int i = 0; i < size; i++) {
+            PooledChannel pc = new PooledChannel();
+            pc.open();
+            all.add(pc);
+            idle.add(pc);
+        }
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    /**
+     * Num of published messages waiting for broker confirm
+     */
+    public int numOfPending() {
+        int count = 0;
+        for (PooledChannel pc : all) {
+            count += pc.pending.size();
+        }
+        return count;
+    }
+
+    public CompletableFuture<Boolean> publish(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body) {
+        PooledChannel pc;
+        try {
+            pc = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(false);
+        }
+
+        try {
+            return pc.publish(exchange, routingKey, props, body);
+        } finally {
+            idle.add(pc);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (PooledChannel pc : all) {
+            pc.fail(pc.pending, new IllegalStateException("Publisher channel pool closed"));
+            try {
+                pc.channel.close();
+            } catch (Exception ignore) {
+
+            }
+        }
+    }
+
+    private class PooledChannel {
+
+        // key as publish seq no, replaced with the channel when reopen
+        private volatile ConcurrentSkipListMap<Long, CompletableFuture<Boolean>> pending = new ConcurrentSkipListMap<>();
+
+        private volatile Channel channel;
+
+        void open() throws IOException {
+            // confirm and shutdown callbacks only complete futures published on this channel
+            ConcurrentSkipListMap<Long, CompletableFuture<Boolean>> confirms = new ConcurrentSkipListMap<>();
+
+            Channel c = conn.createChannel();
+            c.confirmSelect();
+            c.addConfirmListener(
+                    (tag, multiple) -> confirm(confirms, tag, multiple, true),
+                    (tag, multiple) -> confirm(confirms, tag, multiple, false)
+            );
+            c.addShutdownListener(cause -> onShutdown(confirms, cause));
+
+            pending = confirms;
+            channel = c;
+        }
+
+        CompletableFuture<Boolean> publish(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body) {
+            if (!channel.isOpen() && !reopen()) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            ConcurrentSkipListMap<Long, CompletableFuture<Boolean>> confirms = pending;
+            long seq = channel.getNextPublishSeqNo();
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            confirms.put(seq, future);
+
+            try {
+                channel.basicPublish(exchange, routingKey, props, body);
+            } catch (IOException | AlreadyClosedException e) {
+                log.warn("Unable to publish to {}/{}: {}", exchange, routingKey, e.getMessage());
+                confirms.remove(seq);
+                return CompletableFuture.completedFuture(false);
+            }
+
+            future.orTimeout(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((ack, e) -> {
+                if (e != null) {
+                    confirms.remove(seq, future);
+                }
+            });
+            return future;
+        }
+
+        void confirm(ConcurrentSkipListMap<Long, CompletableFuture<Boolean>> confirms, long tag, boolean multiple, boolean ack) {
+            if (!ack) {
+                log.warn("Message {} is nacked by broker, multiple = {}", tag, multiple);
+            }
+
+            if (!multiple) {
+                CompletableFuture<Boolean> future = confirms.remove(tag);
+                if (future != null) {
+                    future.complete(ack);
+                }
+                return;
+            }
+
+            ConcurrentNavigableMap<Long, CompletableFuture<Boolean>> confirmed = confirms.headMap(tag, true);
+            confirmed.values().forEach(f -> f.complete(ack));
+            confirmed.clear();
+        }
+
+        void onShutdown(ConcurrentSkipListMap<Long, CompletableFuture<Boolean>> confirms, ShutdownSignalException cause) {
+            if (!confirms.isEmpty()) {
+                log.warn("Publisher channel shutdown with {} unconfirmed messages: {}", confirms.size(), cause.getMessage());
+            }
+            fail(confirms, cause);
+        }
+
+        // messages not confirmed on a closed channel are treated as lost
+        void fail(ConcurrentSkipListMap<Long, CompletableFuture<Boolean>> confirms, Throwable cause) {
+            confirms.values().forEach(f -> f.completeExceptionally(cause));
+            confirms.clear();
+        }
+
+        boolean reopen() {
+            fail(pending, new IllegalStateException("Publisher channel closed"));
+            try {
+                open();
+                return true;
+            } catch (IOException | AlreadyClosedException e) {
+                log.warn("Unable to reopen publisher channel: {}", e.getMessage());
+                return false;
+            }
+        }
+    }
+}
@@ -26,24 +26,35 @@ import org.springframework.core.task.TaskExecutor;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Declare with a shared channel, publish through a pool of confirm channels
+ * and consume on a dedicated channel per queue
+ */
 @Slf4j
-@Getter
 public class RabbitOperations implements AutoCloseable {
 
+    @Getter
     private final Connection conn;
 
+    private final int prefetch;
+
     private final Channel channel;
 
-    // key as queue name, value as consumer tag
-    private final ConcurrentHashMap<String, String> consumers = new ConcurrentHashMap<>();
+    @Getter
+    private final ChannelPool publishers;
 
+    // key as queue name
+    private final ConcurrentHashMap<String, QueueConsumer> consumers = new ConcurrentHashMap<>();
 
-    public RabbitOperations(Connection conn, int prefetch) throws IOException {
+    public RabbitOperations(Connection conn, int prefetch, int publishChannels) throws IOException {
         this.conn = conn;
+        this.prefetch = prefetch;
         this.channel = conn.createChannel();
-        this.channel.basicQos(prefetch, false);
+        this.publishers = new ChannelPool(conn, publishChannels);
     }
 
     public void declareExchangeAndBind(String exchange, BuiltinExchangeType type, String queue, String routingKey) throws IOException {
@@ -74,13 +85,58 @@ public class RabbitOperations implements AutoCloseable {
         ));
     }
 
-    public void declare(String queue, boolean durable, Integer maxPriority, String dlExName) throws IOException {
-        this.channel.queueDeclare(queue, durable, false, false, Map.of(
+    /**
+     * Declare priority queue with dead letter exchange
+     *
+     * @return num of messages in the queue
+     */
+    public int declare(String queue, boolean durable, Integer maxPriority, String dlExName) throws IOException {
+        return this.channel.queueDeclare(queue, durable, false, false, Map.of(
                 "x-max-priority", maxPriority,
                 "x-dead-letter-exchange", dlExName,
                 "x-dead-letter-routing-key", QueueConfig.JobDlRoutingKey,
                 "x-single-active-consumer", true
-        ));
+        )).getMessageCount();
+    }
+
+    /**
+     * Move messages one by one from queue to the other queue through the default exchange,
+     * each message is acked on source only after the broker confirmed it on target.
+     * The source queue is deleted once it's empty and has no consumer.
+     *
+     * @return num of messages moved, 0 if the source queue not existed
+     */
+    public int move(String from, String to) throws IOException {
+        Channel c = conn.createChannel();
+        try {
+            try {
+                c.queueDeclarePassive(from);
+            } catch (IOException e) {
+                // queue not found, the channel is closed by broker
+                return 0;
+            }
+
+            c.confirmSelect();
+            int count = 0;
+            GetResponse response;
+
+            while ((response = c.basicGet(from, false)) != null) {
+                c.basicPublish(StringHelper.EMPTY, to, response.getProps(), response.getBody());
+                c.waitForConfirmsOrDie(ChannelPool.DefaultConfirmTimeout.toMillis());
+                c.basicAck(response.getEnvelope().getDeliveryTag(), false);
+                count++;
+            }
+
+            c.queueDelete(from, true, true);
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while moving messages from " + from);
+        } catch (TimeoutException e) {
+            throw new IOException("Messages not confirmed while moving from " + from);
+        } finally {
+            closeQuietly(c);
+        }
     }
 
     public boolean delete(String queue) {
@@ -101,46 +157,45 @@ public class RabbitOperations implements AutoCloseable {
         }
     }
 
+    /**
+     * Publish to exchange without waiting for broker confirm
+     *
+     * @return false if unable to write to channel
+     */
     public boolean sendToEx(String ex, byte[] body, Map<String, Object> headers) {
-        try {
-            AMQP.BasicProperties props = new AMQP.BasicProperties.Builder().headers(headers).build();
-            this.channel.basicPublish(ex, StringHelper.EMPTY, props, body);
-            return true;
-        } catch (IOException e) {
-            return false;
-        }
+        AMQP.BasicProperties props = new AMQP.BasicProperties.Builder().headers(headers).build();
+        return !isFailed(publishers.publish(ex, StringHelper.EMPTY, props, body));
     }
 
     /**
      * Publish data with routing key to default exchange
+     *
+     * @return future completed with true if broker confirmed,
+     * or completed exceptionally if channel shutdown or confirm timeout
      */
-    public boolean publish(String routingKey, byte[] body) {
-        try {
-            this.channel.basicPublish(StringHelper.EMPTY, routingKey, null, body);
-            return true;
-        } catch (IOException e) {
-            return false;
-        }
+    public CompletableFuture<Boolean> publish(String routingKey, byte[] body) {
+        return publishers.publish(StringHelper.EMPTY, routingKey, null, body);
     }
 
     /**
      * Publish data with routing key and priority to default exchange
+     *
+     * @return future completed with true if broker confirmed,
+     * or completed exceptionally if channel shutdown or confirm timeout
      */
-    public boolean publish(String routingKey, byte[] body, Integer priority, int expireInSecond) {
-        try {
-            AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
-                    .priority(priority)
-                    .expiration(Integer.toString(expireInSecond * 1000))
-                    .build();
+    public CompletableFuture<Boolean> publish(String routingKey, byte[] body, Integer priority, int expireInSecond) {
+        AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
+                .priority(priority)
+                .expiration(Integer.toString(expireInSecond * 1000))
+                .build();
 
-            this.channel.basicPublish(StringHelper.EMPTY, routingKey, props, body);
-            return true;
-        } catch (IOException e) {
-            return false;
-        }
+        return publishers.publish(StringHelper.EMPTY, routingKey, props, body);
     }
 
     public void startConsumer(String queue, boolean autoAck, OnMessage onMessage, TaskExecutor executor) throws IOException {
+        Channel channel = conn.createChannel();
+        channel.basicQos(prefetch, false);
+
         Consumer consumer = new DefaultConsumer(channel) {
             @Override
             public void handleDelivery(String consumerTag,
@@ -148,28 +203,28 @@ public class RabbitOperations implements AutoCloseable {
                                        AMQP.BasicProperties properties,
                                        byte[] body) {
                 if (executor == null) {
-                    doHandleDelivery(envelope, properties, body, onMessage);
+                    doHandleDelivery(channel, envelope, properties, body, onMessage);
                     return;
                 }
 
-                executor.execute(() -> doHandleDelivery(envelope, properties, body, onMessage));
+                executor.execute(() -> doHandleDelivery(channel, envelope, properties, body, onMessage));
             }
         };
 
-        String tag = getChannel().basicConsume(queue, autoAck, consumer);
-        consumers.put(queue, tag);
+        String tag = channel.basicConsume(queue, autoAck, consumer);
+        consumers.put(queue, new QueueConsumer(channel, tag));
         log.info("[Consumer STARTED] queue {} with tag {}", queue, tag);
     }
 
     public void removeConsumer(String queue) {
-        String consumerTag = consumers.remove(queue);
-        if (consumerTag == null) {
+        QueueConsumer consumer = consumers.remove(queue);
+        if (consumer == null) {
             return;
         }
 
         try {
-            getChannel().basicCancel(consumerTag);
-        } catch (IOException e) {
+            consumer.cancel();
+        } catch (Exception e) {
             log.warn("Fail to remove rabbit consumer", e);
         }
     }
@@ -181,27 +236,64 @@ public class RabbitOperations implements AutoCloseable {
      */
     @Override
     public void close() throws Exception {
-        consumers.forEach((s, consumerTag) -> {
+        consumers.forEach((s, consumer) -> {
             try {
-                getChannel().basicCancel(consumerTag);
-            } catch (IOException ignore) {
+                consumer.cancel();
+            } catch (Exception ignore) {
 
             }
         });
+        publishers.close();
         channel.close();
     }
 
-    private void doHandleDelivery(Envelope envelope, AMQP.BasicProperties properties, byte[] body, OnMessage onMessage) {
+    private static void closeQuietly(Channel c) {
+        if (!c.isOpen()) {
+            return;
+        }
+
+        try {
+            c.close();
+        } catch (Exception ignore) {
+
+        }
+    }
+
+    private static boolean isFailed(CompletableFuture<Boolean> future) {
+        return future.isDone() && (future.isCompletedExceptionally() || !future.getNow(false));
+    }
+
+    private void doHandleDelivery(Channel channel, Envelope envelope, AMQP.BasicProperties properties, byte[] body, OnMessage onMessage) {
         boolean isSendAck = onMessage.on(properties.getHeaders(), body, envelope);
         if (isSendAck) {
             try {
-                getChannel().basicAck(envelope.getDeliveryTag(), false);
+                channel.basicAck(envelope.getDeliveryTag(), false);
             } catch (Exception e) {
                 log.warn("Fail to send ack", e);
             }
         }
     }
 
+    private static class QueueConsumer {
+
+        private final Channel channel;
+
+        private final String tag;
+
+        QueueConsumer(Channel channel, String tag) {
+            this.channel = channel;
+            this.tag = tag;
+        }
+
+        void cancel() throws Exception {
+            try {
+                channel.basicCancel(tag);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
     public interface OnMessage {
 
         /**
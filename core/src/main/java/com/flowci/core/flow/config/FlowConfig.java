@@ -30,6 +30,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
 
@@ -87,6 +88,10 @@ public class FlowConfig {
         }
     }
 
+    /**
+     * Default scheduler, also used by @Scheduled tasks
+     */
+    @Primary
     @Bean("cronScheduler")
     public TaskScheduler concurrentTaskScheduler() {
         return new ConcurrentTaskScheduler();
@@ -0,0 +1,33 @@
+/*
+ *   Copyright (c) 2023 flow.ci
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.flowci.core.flow.dao;
+
+import com.flowci.core.flow.domain.MatrixCounter;
+import com.flowci.core.flow.domain.MatrixItem;
+
+public interface CustomizedMatrixItemDao {
+
+    /**
+     * Atomic increase counter and num of today on item of (flow id, day, type), create it if not existed
+     */
+    MatrixItem increase(String flowId, int day, String type, MatrixCounter counter);
+
+    /**
+     * Set total counter and num of total if they are greater than existing values
+     */
+    MatrixItem updateTotal(MatrixItem item, MatrixItem totalItem);
+}
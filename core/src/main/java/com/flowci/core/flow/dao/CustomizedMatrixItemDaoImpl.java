@@ -0,0 +1,70 @@
+/*
+ *   Copyright (c) 2023 flow.ci
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package com.flowci.core.flow.dao;
+
+import com.flowci.core.flow.domain.MatrixCounter;
+import com.flowci.core.flow.domain.MatrixItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Map;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+
+public class CustomizedMatrixItemDaoImpl implements CustomizedMatrixItemDao {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public MatrixItem increase(String flowId, int day, String type, MatrixCounter counter) {
+        Query q = Query.query(Criteria.where("flowId").is(flowId).and("day").is(day).and("type").is(type));
+
+        // id is fixed on insert, so concurrent upserts of the same item cannot create duplicates
+        Update u = new Update()
+                .inc("numOfToday", 1)
+                .setOnInsert("_id", String.format("%s-%d-%s", flowId, day, type));
+
+        for (Map.Entry<String, Float> entry : counter.entrySet()) {
+            u.inc("counter." + entry.getKey(), entry.getValue());
+        }
+
+        try {
+            return mongoTemplate.findAndModify(q, u, options().returnNew(true).upsert(true), MatrixItem.class);
+        } catch (DuplicateKeyException e) {
+            // the other upsert inserted the item, update it
+            return mongoTemplate.findAndModify(q, u, options().returnNew(true), MatrixItem.class);
+        }
+    }
+
+    @Override
+    public MatrixItem updateTotal(MatrixItem item, MatrixItem totalItem) {
+        Query q = Query.query(Criteria.where("_id").is(item.getId()));
+
+        // total only grows, max keeps the latest total when updates applied out of order
+        Update u = new Update().max("numOfTotal", totalItem.getNumOfToday());
+        for (Map.Entry<String, Float> entry : totalItem.getCounter().entrySet()) {
+            u.max("total." + entry.getKey(), entry.getValue());
+        }
+
+        return mongoTemplate.findAndModify(q, u, options().returnNew(true), MatrixItem.class);
+    }
+}
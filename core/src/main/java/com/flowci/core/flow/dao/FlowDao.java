@@ -17,6 +17,8 @@
 package com.flowci.core.flow.dao;
 
 import com.flowci.core.flow.domain.Flow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -35,4 +37,6 @@ public interface FlowDao extends MongoRepository<Flow, String> {
     List<Flow> findAllByParentId(String parentId);
 
     List<Flow> findAllByIdIn(Collection<String> id);
+
+    Slice<Flow> findAllBy(Pageable pageable);
 }
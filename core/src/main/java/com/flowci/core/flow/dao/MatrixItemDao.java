@@ -30,7 +30,7 @@ import java.util.Optional;
  * @author yang
  */
 @Repository
-public interface MatrixItemDao extends MongoRepository<MatrixItem, String> {
+public interface MatrixItemDao extends MongoRepository<MatrixItem, String>, CustomizedMatrixItemDao {
 
     @Query("{'flowId':?0, 'type': ?1, 'day' : {$gte : ?2, $lte : ?3}}")
     List<MatrixItem> findByFlowIdAndTypeDayBetween(String flowId, String type, int dayGT, int dayLT, Sort sort);
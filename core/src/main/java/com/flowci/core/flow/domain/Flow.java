@@ -104,11 +104,6 @@ public final class Flow extends FlowItem implements Pathable {
         return StringHelper.hasValue(cron);
     }
 
-    @JsonIgnore
-    public String getQueueName() {
-        return "flow.q." + id + ".job";
-    }
-
     @JsonIgnore
     @Override
     public String pathName() {
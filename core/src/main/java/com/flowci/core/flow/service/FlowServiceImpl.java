@@ -46,16 +46,25 @@ import com.flowci.common.exception.NotFoundException;
 import com.flowci.common.exception.StatusException;
 import com.flowci.store.FileManager;
 import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author yang
@@ -65,6 +74,10 @@ import java.util.*;
 @AllArgsConstructor
 public class FlowServiceImpl implements FlowService {
 
+    private static final int InitBatchSize = 500;
+
+    private static final int MaxInitBatchesInFlight = 4;
+
     private final FlowDao flowDao;
 
     private final FlowGroupDao flowGroupDao;
@@ -87,9 +100,54 @@ public class FlowServiceImpl implements FlowService {
 
     private final AppProperties appProperties;
 
+    private final TaskExecutor appTaskExecutor;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Load flows page by page and init each page in parallel by FlowInitEvent,
+     * duration of each phase recorded to 'startup_phase' timer
+     */
     @EventListener(ContextRefreshedEvent.class)
     public void initFlows() {
-        eventManager.publish(new FlowInitEvent(this, flowDao.findAll()));
+        Timer loadTimer = startupTimer("load_flows");
+        Timer initTimer = startupTimer("init_flows");
+        Timer.Sample total = Timer.start(meterRegistry);
+
+        Deque<CompletableFuture<Void>> inFlight = new LinkedList<>();
+        Pageable pageable = PageRequest.of(0, InitBatchSize, Sort.by("id"));
+        Slice<Flow> slice;
+        int numOfFlows = 0;
+
+        do {
+            long start = System.nanoTime();
+            slice = flowDao.findAllBy(pageable);
+            loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            List<Flow> flows = slice.getContent();
+            if (flows.isEmpty()) {
+                break;
+            }
+            numOfFlows += flows.size();
+
+            if (inFlight.size() >= MaxInitBatchesInFlight) {
+                inFlight.poll().join();
+            }
+
+            CompletableFuture<Void> future = CompletableFuture
+                    .runAsync(() -> initTimer.record(() -> eventManager.publish(new FlowInitEvent(this, flows))), appTaskExecutor)
+                    .exceptionally(e -> {
+                        log.error("Unable to init {} flows", flows.size(), e);
+                        return null;
+                    });
+
+            inFlight.add(future);
+            pageable = slice.nextPageable();
+        } while (slice.hasNext());
+
+        inFlight.forEach(CompletableFuture::join);
+        long duration = total.stop(startupTimer("total"));
+        log.info("{} flows initialized in {} ms", numOfFlows, TimeUnit.NANOSECONDS.toMillis(duration));
     }
 
     // ====================================================================
@@ -277,6 +335,13 @@ public class FlowServiceImpl implements FlowService {
     // %% Utils
     // ====================================================================
 
+    private Timer startupTimer(String phase) {
+        return Timer.builder("startup_phase")
+                .description("duration of server startup phase")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+
     private String getBase64Content(CreateOption option) {
         if (option.hasTemplateTitle()) {
             try {
@@ -27,7 +27,7 @@ import com.flowci.core.flow.domain.MatrixItem;
 import com.flowci.core.flow.domain.MatrixType;
 import com.flowci.core.flow.event.FlowDeletedEvent;
 import com.flowci.core.job.domain.Job;
-import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.event.JobFinishedEvent;
 import com.flowci.core.plugin.domain.Plugin;
 import com.flowci.core.plugin.service.PluginService;
 import com.flowci.common.exception.NotFoundException;
@@ -39,7 +39,6 @@ import org.springframework.context.event.EventListener;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.util.*;
@@ -89,7 +88,7 @@ public class MatrixServiceImpl implements MatrixService {
     }
 
     @EventListener
-    public void onJobStatusChange(JobStatusChangeEvent event) {
+    public void onJobFinished(JobFinishedEvent event) {
         Job job = event.getJob();
 
         if (!job.isDone()) {
@@ -157,29 +156,9 @@ public class MatrixServiceImpl implements MatrixService {
     }
 
     @Override
-    @Transactional
     public MatrixItem add(String flowId, int day, String type, MatrixCounter counter) {
-        MatrixItem totalItem = getItem(flowId, MatrixItem.ZERO_DAY, type);
-        totalItem.plusDayCounter(counter);
-        totalItem.plusOneToday();
-
-        MatrixItem dayItem = getItem(flowId, day, type);
-        dayItem.plusDayCounter(counter);
-        dayItem.plusOneToday();
-
-        dayItem.setTotal(totalItem.getCounter());
-        dayItem.setNumOfTotal(totalItem.getNumOfToday());
-
-        matrixItemDao.saveAll(Arrays.asList(dayItem, totalItem));
-        return dayItem;
-    }
-
-    private MatrixItem getItem(String flowId, int day, String type) {
-        Optional<MatrixItem> optional = matrixItemDao.findByFlowIdAndDayAndType(flowId, day, type);
-
-        return optional.orElseGet(() -> new MatrixItem()
-                .setDay(day)
-                .setFlowId(flowId)
-                .setType(type));
+        MatrixItem totalItem = matrixItemDao.increase(flowId, MatrixItem.ZERO_DAY, type, counter);
+        MatrixItem dayItem = matrixItemDao.increase(flowId, day, type, counter);
+        return matrixItemDao.updateTotal(dayItem, totalItem);
     }
 }
@@ -96,8 +96,7 @@ public class YmlServiceImpl implements YmlService {
                 ymlContentList[i] = StringHelper.fromBase64(list.get(i).getRawInB64());
             }
 
-            FlowNode root = YmlParser.load(ymlContentList);
-            return NodeTree.create(root);
+            return YmlParser.loadTree(ymlContentList);
         });
     }
 
@@ -109,8 +108,8 @@ public class YmlServiceImpl implements YmlService {
             ymlContentList[i] = StringHelper.fromBase64(list.get(i).getRawInB64());
         }
 
-        FlowNode root = YmlParser.load(ymlContentList);
-        NodeTree tree = NodeTree.create(root);
+        NodeTree tree = YmlParser.loadTree(ymlContentList);
+        FlowNode root = tree.getRoot();
 
         for (NodeElementChecker checker : elementCheckers) {
             Optional<RuntimeException> exception = checker.apply(tree);
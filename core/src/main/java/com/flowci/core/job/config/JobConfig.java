@@ -21,7 +21,7 @@ import com.flowci.core.common.config.AppProperties;
 import com.flowci.core.common.helper.CacheHelper;
 import com.flowci.core.common.helper.ThreadHelper;
 import com.flowci.core.job.domain.JobSmContext;
-import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.domain.StepDelta;
 import com.flowci.common.sm.StateMachine;
 import com.flowci.tree.NodeTree;
 import com.github.benmanes.caffeine.cache.Cache;
@@ -30,11 +30,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
 
 /**
  * @author yang
@@ -46,6 +46,9 @@ public class JobConfig {
     @Autowired
     private AppProperties appProperties;
 
+    @Autowired
+    private AppProperties.Job jobProperties;
+
     @Autowired
     private ThreadPoolTaskExecutor appTaskExecutor;
 
@@ -55,7 +58,7 @@ public class JobConfig {
     }
 
     @Bean("jobStepCache")
-    public Cache<String, List<Step>> jobStepCache() {
+    public Cache<String, StepDelta> jobStepCache() {
         return CacheHelper.createLocalCache(100, 60);
     }
 
@@ -66,9 +69,46 @@ public class JobConfig {
         return FileHelper.createDirectory(pluginDir);
     }
 
+    /**
+     * Pool size is the limit of concurrent conditions on platform threads, virtual threads are not pooled
+     */
     @Bean("jobConditionExecutor")
     public ThreadPoolTaskExecutor jobConditionExecutor() {
-        return ThreadHelper.createTaskExecutor(20, 20, 100, "job-cond-");
+        int poolSize = jobProperties.getConditionPoolSize();
+        return ThreadHelper.createTaskExecutor(poolSize, poolSize, 100, "job-cond-", appProperties.isVirtualThreads());
+    }
+
+    /**
+     * Time out jobs which are waiting for previous builds of the flow
+     */
+    @Bean(name = "queueTimeoutScheduler", destroyMethod = "destroy")
+    public ThreadPoolTaskScheduler queueTimeoutScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("job-queue-");
+        scheduler.setDaemon(true);
+        return scheduler;
+    }
+
+    /**
+     * Release job leases which are idle or no longer owned by this server
+     */
+    @Bean(name = "jobLeaseScheduler", destroyMethod = "destroy")
+    public ThreadPoolTaskScheduler jobLeaseScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("job-lease-");
+        scheduler.setDaemon(true);
+        return scheduler;
+    }
+
+    /**
+     * Flush buffered shell log lines of steps
+     */
+    @Bean(name = "logBatchScheduler", destroyMethod = "destroy")
+    public ThreadPoolTaskScheduler logBatchScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("log-batch-");
+        scheduler.setDaemon(true);
+        return scheduler;
     }
 
     @Bean("sm")
@@ -103,6 +103,13 @@ public class JobController extends BaseController {
         return stepService.list(job);
     }
 
+    @GetMapping("/{flow}/{buildNumberOrLatest}/steps/snapshot")
+    @Action(JobAction.LIST_STEPS)
+    public StepDelta stepsSnapshot(@PathVariable String flow, @PathVariable String buildNumberOrLatest) {
+        Job job = get(flow, buildNumberOrLatest);
+        return stepService.snapshot(job);
+    }
+
     @GetMapping("/{flow}/{buildNumberOrLatest}/related")
     @Action(JobAction.LIST)
     public List<JobDesc> relatedJobs(@PathVariable String flow, @PathVariable String buildNumberOrLatest) {
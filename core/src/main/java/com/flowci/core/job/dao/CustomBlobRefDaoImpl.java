@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.BlobRef;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class CustomBlobRefDaoImpl implements CustomBlobRefDao {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public State increase(String hash, long size) {
+        try {
+            BlobRef ref = operations.findAndModify(
+                    query(where("_id").is(hash).and("removing").ne(true)),
+                    new Update().inc("refs", 1).set("size", size).set("updatedAt", Instant.now()),
+                    options().returnNew(true).upsert(true),
+                    BlobRef.class);
+            return ref != null && ref.isReady() ? State.READY : State.PENDING;
+        } catch (DuplicateKeyException e) {
+            // upsert conflicts with the record marked as removing
+            return State.REMOVING;
+        }
+    }
+
+    @Override
+    public long decrease(String hash) {
+        BlobRef ref = operations.findAndModify(
+                query(where("_id").is(hash).and("refs").gt(0)),
+                new Update().inc("refs", -1).set("updatedAt", Instant.now()),
+                options().returnNew(true),
+                BlobRef.class);
+        return ref == null ? 0 : ref.getRefs();
+    }
+
+    @Override
+    public void ready(String hash) {
+        operations.updateFirst(query(where("_id").is(hash)), new Update().set("ready", true), BlobRef.class);
+    }
+
+    @Override
+    public List<String> findUnreferenced(Instant before, int limit) {
+        Query q = query(where("refs").lte(0).and("updatedAt").lt(before)).limit(limit);
+        q.fields().include("_id");
+
+        List<BlobRef> refs = operations.find(q, BlobRef.class);
+        List<String> hashes = new ArrayList<>(refs.size());
+        for (BlobRef ref : refs) {
+            hashes.add(ref.getId());
+        }
+        return hashes;
+    }
+
+    @Override
+    public boolean markRemoving(String hash, Instant before) {
+        Query q = query(where("_id").is(hash).and("refs").lte(0).and("updatedAt").lt(before));
+        return operations.updateFirst(q, new Update().set("removing", true), BlobRef.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public void unmarkRemoving(String hash) {
+        operations.updateFirst(query(where("_id").is(hash).and("removing").is(true)), new Update().unset("removing"), BlobRef.class);
+    }
+
+    @Override
+    public void remove(String hash) {
+        operations.remove(query(where("_id").is(hash).and("removing").is(true)), BlobRef.class);
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.Step;
+
+import java.util.Collection;
+
+public interface CustomExecutedCmdDao {
+
+    /**
+     * Replace steps and set status fields (status, error, start and finish time) of
+     * related steps in a single bulk write
+     */
+    void bulkSave(Collection<Step> steps, Collection<Step> statusOnly);
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.Step;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class CustomExecutedCmdDaoImpl implements CustomExecutedCmdDao {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public void bulkSave(Collection<Step> steps, Collection<Step> statusOnly) {
+        if (steps.isEmpty() && statusOnly.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = operations.bulkOps(BulkOperations.BulkMode.UNORDERED, Step.class);
+
+        for (Step step : steps) {
+            bulk.replaceOne(query(where("_id").is(step.getId())), step);
+        }
+
+        for (Step step : statusOnly) {
+            Update update = new Update()
+                    .set("status", step.getStatus())
+                    .set("error", step.getError())
+                    .set("startAt", step.getStartAt())
+                    .set("finishAt", step.getFinishAt());
+
+            bulk.updateOne(query(where("_id").is(step.getId())), update);
+        }
+
+        bulk.execute();
+    }
+}
@@ -22,4 +22,9 @@ import com.flowci.core.job.domain.JobNumber;
 public interface CustomJobNumberDao {
 
     JobNumber increaseBuildNumber(String flowId);
+
+    /**
+     * Insert job number of flow if not existed, safe to be called concurrently
+     */
+    void createIfAbsent(String flowId);
 }
@@ -19,6 +19,7 @@ package com.flowci.core.job.dao;
 
 import com.flowci.core.job.domain.JobNumber;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.query.Update;
 
@@ -39,4 +40,16 @@ public class CustomJobNumberDaoImpl implements CustomJobNumberDao {
                 options().returnNew(true).upsert(true),
                 JobNumber.class);
     }
+
+    @Override
+    public void createIfAbsent(String flowId) {
+        try {
+            operations.upsert(
+                    query(where("flowId").is(flowId)),
+                    new Update().setOnInsert("number", 0L),
+                    JobNumber.class);
+        } catch (DuplicateKeyException ignore) {
+            // inserted by concurrent upsert
+        }
+    }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.StepSeq;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class CustomStepSeqDaoImpl implements CustomStepSeqDao {
+
+    @Autowired
+    private MongoOperations operations;
+
+    @Override
+    public long increase(String jobId, String flowId) {
+        StepSeq seq = operations.findAndModify(
+                query(where("jobId").is(jobId)),
+                new Update().inc("seq", 1).setOnInsert("flowId", flowId),
+                options().returnNew(true).upsert(true),
+                StepSeq.class);
+
+        return seq.getSeq();
+    }
+}
@@ -29,7 +29,7 @@ import java.util.Optional;
  * @author yang
  */
 @Repository
-public interface ExecutedCmdDao extends MongoRepository<Step, String> {
+public interface ExecutedCmdDao extends MongoRepository<Step, String>, CustomExecutedCmdDao {
 
     Long deleteByFlowId(String flowId);
 
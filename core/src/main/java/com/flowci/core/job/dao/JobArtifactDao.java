@@ -26,4 +26,8 @@ import java.util.List;
 public interface JobArtifactDao extends MongoRepository<JobArtifact, String> {
 
     List<JobArtifact> findAllByJobId(String jobId);
+
+    List<JobArtifact> findAllByFlowId(String flowId);
+
+    void deleteAllByFlowId(String flowId);
 }
@@ -20,10 +20,15 @@ import com.flowci.core.job.domain.JobCache;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface JobCacheDao extends MongoRepository<JobCache, String> {
 
     Optional<JobCache> findByFlowIdAndKey(String flowId, String key);
+
+    List<JobCache> findAllByFlowId(String flowId);
+
+    void deleteAllByFlowId(String flowId);
 }
@@ -31,5 +31,7 @@ public interface JobDao extends MongoRepository<Job, String>, CustomJobDao {
 
     Optional<Job> findByKey(String key);
 
+    List<Job> findAllByStatus(Job.Status status);
+
     Long deleteAllByFlowId(String flowId);
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.dao;
+
+import com.flowci.core.job.domain.StepSeq;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface StepSeqDao extends MongoRepository<StepSeq, String>, CustomStepSeqDao {
+
+    Optional<StepSeq> findByJobId(String jobId);
+
+    Long deleteByFlowId(String flowId);
+
+    Long deleteByJobId(String jobId);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.core.job.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Reference count of content addressed blob, id is the sha256 of content
+ */
+@Getter
+@Setter
+@Document(collection = "blob_ref")
+@CompoundIndex(name = "index_refs_updated_at", def = "{'refs': 1, 'updatedAt': 1}")
+public class BlobRef {
+
+    @Id
+    private String id;
+
+    private Long size;
+
+    private Long refs = 0L;
+
+    private boolean ready;
+
+    private boolean removing;
+
+    private Instant updatedAt;
+}
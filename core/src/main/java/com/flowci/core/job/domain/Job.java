@@ -266,6 +266,11 @@ public class Job extends Mongoable implements Pathable {
         this.expireAt = (Date.from(expireAt));
     }
 
+    @JsonIgnore
+    public boolean isQueued() {
+        return status == Status.QUEUED;
+    }
+
     @JsonIgnore
     public boolean isRunning() {
         return status == Status.RUNNING;
@@ -286,11 +291,6 @@ public class Job extends Mongoable implements Pathable {
         return status == Status.FAILURE;
     }
 
-    @JsonIgnore
-    public String getQueueName() {
-        return "flow.q." + flowId + ".job";
-    }
-
     @JsonIgnore
     @Override
     public String pathName() {
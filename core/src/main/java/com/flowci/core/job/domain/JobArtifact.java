@@ -18,6 +18,7 @@ package com.flowci.core.job.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.flowci.store.Pathable;
+import com.flowci.store.StoredFile;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -25,8 +26,6 @@ import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.io.InputStream;
-
 @Getter
 @Setter
 @EqualsAndHashCode(callSuper = true)
@@ -40,6 +39,9 @@ public class JobArtifact extends JobOutput {
 
     public static final Pathable ArtifactPath = () -> "artifacts";
 
+    @JsonIgnore
+    private String flowId;
+
     private String srcDir;
 
     /**
@@ -47,7 +49,13 @@ public class JobArtifact extends JobOutput {
      */
     private String md5;
 
+    /**
+     * Blob hash of content, it's null for artifact saved before blob store
+     */
+    @JsonIgnore
+    private String blob;
+
     @JsonIgnore
     @Transient
-    private InputStream src;
+    private StoredFile src;
 }
@@ -26,6 +26,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -47,6 +48,11 @@ public class JobCache extends Mongoable {
      */
     private List<String> files;
 
+    /**
+     * File name to blob hash, it's null for cache saved before blob store
+     */
+    private Map<String, String> blobs;
+
     @JsonIgnore
     @Transient
     private InputStream src;
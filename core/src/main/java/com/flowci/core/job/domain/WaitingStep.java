@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * Step in WAITING_AGENT status, ordered by job priority (high first) then waiting sequence
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode(of = {"jobId", "nodePath"})
+public final class WaitingStep implements Comparable<WaitingStep> {
+
+    private static final Comparator<WaitingStep> Order = Comparator
+            .comparingInt(WaitingStep::getPriority).reversed()
+            .thenComparingLong(WaitingStep::getSequence)
+            .thenComparing(WaitingStep::getJobId)
+            .thenComparing(WaitingStep::getNodePath);
+
+    private final String jobId;
+
+    private final String nodePath;
+
+    private final Set<String> labels;
+
+    private final int priority;
+
+    private final long sequence;
+
+    @Override
+    public int compareTo(WaitingStep o) {
+        return Order.compare(this, o);
+    }
+}
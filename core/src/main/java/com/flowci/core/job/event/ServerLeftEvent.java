@@ -0,0 +1,36 @@
+/*
+ * Copyright 2021 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Set;
+
+/**
+ * Servers removed from zookeeper, jobs owned by them are moved to live servers
+ */
+@Getter
+public class ServerLeftEvent extends ApplicationEvent {
+
+    private final Set<String> servers;
+
+    public ServerLeftEvent(Object source, Set<String> servers) {
+        super(source);
+        this.servers = servers;
+    }
+}
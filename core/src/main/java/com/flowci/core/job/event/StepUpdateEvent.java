@@ -17,12 +17,20 @@
 package com.flowci.core.job.event;
 
 import com.flowci.core.job.domain.Step;
+import lombok.Getter;
 
 import java.util.List;
 
+/**
+ * Items are all steps of job if init, otherwise changed steps only
+ */
+@Getter
 public class StepUpdateEvent extends ExecutedEvent<Step> {
 
-    public StepUpdateEvent(Object source, String jobId, List<Step> items, boolean init) {
+    private final long seq;
+
+    public StepUpdateEvent(Object source, String jobId, List<Step> items, boolean init, long seq) {
         super(source, jobId, items, init);
+        this.seq = seq;
     }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Step;
+import com.flowci.tree.Selector;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory index of idle agents (tags -> agents) and waiting steps (selector label -> steps),
+ * it's a hint for matching, the agent status still have to be acquired from agent service
+ */
+public interface AgentMatchManager {
+
+    /**
+     * Add step that in WAITING_AGENT status
+     */
+    void addWaiting(Job job, Step step, Selector selector);
+
+    /**
+     * Remove step from waiting index
+     */
+    void removeWaiting(Step step);
+
+    /**
+     * Remove all waiting steps of job
+     */
+    void removeJob(String jobId);
+
+    /**
+     * Find job ids that have waiting step can be run on agent with tags,
+     * ordered by job priority and waiting time
+     */
+    List<String> findWaitingJobs(Collection<String> tags, int limit);
+
+    /**
+     * Add idle agent with tags
+     */
+    void addIdle(String agentId, Collection<String> tags);
+
+    /**
+     * Remove agent from idle index
+     */
+    void removeIdle(String agentId);
+
+    /**
+     * Find idle agent ids that match the selector, ordered by idle time
+     */
+    List<String> findIdleAgents(Selector selector, int limit);
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.agent.domain.Agent;
+import com.flowci.core.agent.event.AgentStatusEvent;
+import com.flowci.core.agent.event.IdleAgentEvent;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.domain.WaitingStep;
+import com.flowci.tree.Selector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Steps and agents are indexed by each label, an agent matches a step if any tag is in the selector labels,
+ * or both of them have no label. All operations are O(log n) within one monitor.
+ */
+@Slf4j
+@Component
+public class AgentMatchManagerImpl implements AgentMatchManager {
+
+    private static final String NoLabel = "";
+
+    private long sequence = 0L;
+
+    private final Map<String, NavigableSet<WaitingStep>> waitingByLabel = new HashMap<>();
+
+    private final Map<String, Map<String, WaitingStep>> waitingByJob = new HashMap<>();
+
+    private final Map<String, NavigableSet<IdleAgent>> idleByLabel = new HashMap<>();
+
+    private final Map<String, IdleAgent> idleAgents = new HashMap<>();
+
+    @EventListener
+    public void onAgentStatusChange(AgentStatusEvent event) {
+        Agent agent = event.getAgent();
+        if (agent.isIdle()) {
+            addIdle(agent.getId(), agent.getTags());
+            return;
+        }
+        removeIdle(agent.getId());
+    }
+
+    @EventListener
+    public void onIdleAgent(IdleAgentEvent event) {
+        addIdle(event.getAgentId(), event.getTags());
+    }
+
+    @Override
+    public synchronized void addWaiting(Job job, Step step, Selector selector) {
+        Map<String, WaitingStep> steps = waitingByJob.computeIfAbsent(job.getId(), k -> new HashMap<>());
+        if (steps.containsKey(step.getNodePath())) {
+            return;
+        }
+
+        Set<String> labels = labelsOf(selector.getLabel());
+        WaitingStep ws = new WaitingStep(job.getId(), step.getNodePath(), labels, job.getPriority(), sequence++);
+
+        steps.put(ws.getNodePath(), ws);
+        for (String label : labels) {
+            waitingByLabel.computeIfAbsent(label, k -> new TreeSet<>()).add(ws);
+        }
+    }
+
+    @Override
+    public synchronized void removeWaiting(Step step) {
+        Map<String, WaitingStep> steps = waitingByJob.get(step.getJobId());
+        if (steps == null) {
+            return;
+        }
+
+        WaitingStep ws = steps.remove(step.getNodePath());
+        if (ws != null) {
+            removeFromLabels(waitingByLabel, ws.getLabels(), ws);
+        }
+
+        if (steps.isEmpty()) {
+            waitingByJob.remove(step.getJobId());
+        }
+    }
+
+    @Override
+    public synchronized void removeJob(String jobId) {
+        Map<String, WaitingStep> steps = waitingByJob.remove(jobId);
+        if (steps == null) {
+            return;
+        }
+
+        for (WaitingStep ws : steps.values()) {
+            removeFromLabels(waitingByLabel, ws.getLabels(), ws);
+        }
+    }
+
+    @Override
+    public synchronized List<String> findWaitingJobs(Collection<String> tags, int limit) {
+        List<String> jobs = new ArrayList<>(limit);
+        for (WaitingStep ws : merge(waitingByLabel, labelsOf(tags))) {
+            if (jobs.size() == limit) {
+                break;
+            }
+
+            if (!jobs.contains(ws.getJobId())) {
+                jobs.add(ws.getJobId());
+            }
+        }
+        return jobs;
+    }
+
+    @Override
+    public synchronized void addIdle(String agentId, Collection<String> tags) {
+        if (idleAgents.containsKey(agentId)) {
+            return;
+        }
+
+        IdleAgent idle = new IdleAgent(agentId, labelsOf(tags), sequence++);
+        idleAgents.put(agentId, idle);
+
+        for (String label : idle.labels) {
+            idleByLabel.computeIfAbsent(label, k -> new TreeSet<>()).add(idle);
+        }
+    }
+
+    @Override
+    public synchronized void removeIdle(String agentId) {
+        IdleAgent idle = idleAgents.remove(agentId);
+        if (idle != null) {
+            removeFromLabels(idleByLabel, idle.labels, idle);
+        }
+    }
+
+    @Override
+    public synchronized List<String> findIdleAgents(Selector selector, int limit) {
+        List<String> agents = new ArrayList<>(limit);
+        for (IdleAgent idle : merge(idleByLabel, labelsOf(selector.getLabel()))) {
+            if (agents.size() == limit) {
+                break;
+            }
+
+            if (!agents.contains(idle.agentId)) {
+                agents.add(idle.agentId);
+            }
+        }
+        return agents;
+    }
+
+    private static Set<String> labelsOf(Collection<String> labels) {
+        if (labels == null || labels.isEmpty()) {
+            return Collections.singleton(NoLabel);
+        }
+        return new HashSet<>(labels);
+    }
+
+    private static <T> void removeFromLabels(Map<String, NavigableSet<T>> index, Set<String> labels, T item) {
+        for (String label : labels) {
+            NavigableSet<T> set = index.get(label);
+            if (set == null) {
+                continue;
+            }
+
+            set.remove(item);
+            if (set.isEmpty()) {
+                index.remove(label);
+            }
+        }
+    }
+
+    /**
+     * Merge ordered sets of labels into one ordered iteration
+     */
+    private static <T extends Comparable<T>> Iterable<T> merge(Map<String, NavigableSet<T>> index, Set<String> labels) {
+        List<NavigableSet<T>> sets = new ArrayList<>(labels.size());
+        for (String label : labels) {
+            NavigableSet<T> set = index.get(label);
+            if (set != null) {
+                sets.add(set);
+            }
+        }
+
+        if (sets.size() == 1) {
+            return sets.get(0);
+        }
+
+        return () -> new Iterator<>() {
+
+            private final PriorityQueue<PeekingItem<T>> queue = init();
+
+            private PriorityQueue<PeekingItem<T>> init() {
+                PriorityQueue<PeekingItem<T>> q = new PriorityQueue<>(Math.max(sets.size(), 1));
+                for (NavigableSet<T> set : sets) {
+                    Iterator<T> iter = set.iterator();
+                    if (iter.hasNext()) {
+                        q.add(new PeekingItem<>(iter.next(), iter));
+                    }
+                }
+                return q;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                PeekingItem<T> head = queue.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+
+                if (head.iterator.hasNext()) {
+                    queue.add(new PeekingItem<>(head.iterator.next(), head.iterator));
+                }
+                return head.item;
+            }
+        };
+    }
+
+    private static final class PeekingItem<T extends Comparable<T>> implements Comparable<PeekingItem<T>> {
+
+        private final T item;
+
+        private final Iterator<T> iterator;
+
+        private PeekingItem(T item, Iterator<T> iterator) {
+            this.item = item;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public int compareTo(PeekingItem<T> o) {
+            return item.compareTo(o.item);
+        }
+    }
+
+    private static final class IdleAgent implements Comparable<IdleAgent> {
+
+        private final String agentId;
+
+        private final Set<String> labels;
+
+        private final long sequence;
+
+        private IdleAgent(String agentId, Set<String> labels, long sequence) {
+            this.agentId = agentId;
+            this.labels = labels;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(IdleAgent o) {
+            int c = Long.compare(sequence, o.sequence);
+            return c != 0 ? c : agentId.compareTo(o.agentId);
+        }
+    }
+}
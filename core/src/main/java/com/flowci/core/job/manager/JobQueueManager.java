@@ -0,0 +1,39 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.job.domain.Job;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dispatch queued jobs through a fixed num of shard queues, flow is mapped to shard by flow id
+ */
+public interface JobQueueManager {
+
+    /**
+     * Name of shard queue for the flow
+     */
+    String queueName(String flowId);
+
+    /**
+     * Publish job to shard queue of its flow, and start consumer of the shard if not started
+     *
+     * @return future completed with true if broker confirmed
+     */
+    CompletableFuture<Boolean> enqueue(Job job);
+}
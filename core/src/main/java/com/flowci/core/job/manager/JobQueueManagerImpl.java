@@ -0,0 +1,187 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.common.rabbit.RabbitOperations;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.event.JobActionEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shard queues are declared on startup, the consumer of a shard is started only if the shard
+ * has pending messages or once a job is enqueued to it. Jobs of a flow always go to the same shard,
+ * and the shard is consumed one message at a time, so the order of jobs in a flow is kept.
+ *
+ * Flows on a shard do not block each other while a job waits for agent, since the consumer
+ * only moves the job to running and acks the message, agents are matched later by {@link AgentMatchManager}.
+ *
+ * Messages left in the per flow queues of previous version are moved to the shard queues on startup.
+ */
+@Slf4j
+@Component
+public class JobQueueManagerImpl implements JobQueueManager {
+
+    private static final int MaxPriority = 255;
+
+    private final int numOfShards;
+
+    private final String queuePrefix;
+
+    private final String dlExchange;
+
+    private final RabbitOperations jobsQueueManager;
+
+    private final JobDao jobDao;
+
+    private final SpringEventManager eventManager;
+
+    private final TaskExecutor appTaskExecutor;
+
+    private final Set<Integer> activated = ConcurrentHashMap.newKeySet();
+
+    // not synchronized since consumer started with network call, which pins carrier of virtual thread
+    private final Lock activateLock = new ReentrantLock();
+
+    public JobQueueManagerImpl(AppProperties.Job jobProperties,
+                               AppProperties.RabbitMQ rabbitProperties,
+                               @Qualifier("jobsQueueManager") RabbitOperations jobsQueueManager,
+                               JobDao jobDao,
+                               SpringEventManager eventManager,
+                               @Qualifier("appTaskExecutor") TaskExecutor appTaskExecutor) {
+        this.numOfShards = Math.max(1, jobProperties.getQueueShards());
+        this.queuePrefix = rabbitProperties.getJobQueue();
+        this.dlExchange = rabbitProperties.getJobDlExchange();
+        this.jobsQueueManager = jobsQueueManager;
+        this.jobDao = jobDao;
+        this.eventManager = eventManager;
+        this.appTaskExecutor = appTaskExecutor;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        for (int shard = 0; shard < numOfShards; shard++) {
+            int numOfMessages = jobsQueueManager.declare(queueName(shard), true, MaxPriority, dlExchange);
+            if (numOfMessages > 0) {
+                activate(shard);
+            }
+        }
+
+        moveFromFlowQueues();
+        log.info("{} job queue shards declared, {} activated", numOfShards, activated.size());
+    }
+
+    public boolean isActivated(String flowId) {
+        return activated.contains(shardOf(flowId));
+    }
+
+    @Override
+    public String queueName(String flowId) {
+        return queueName(shardOf(flowId));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> enqueue(Job job) {
+        int shard = shardOf(job.getFlowId());
+        if (!activate(shard)) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        byte[] payload = job.getId().getBytes();
+        return jobsQueueManager.publish(queueName(shard), payload, job.getPriority(), job.getExpire());
+    }
+
+    /**
+     * Move queued jobs from per flow queue 'flow.q.{flowId}.job' of previous version to the shard queue
+     */
+    private void moveFromFlowQueues() {
+        Set<String> flowIds = new HashSet<>();
+        for (Job job : jobDao.findAllByStatus(Job.Status.QUEUED)) {
+            flowIds.add(job.getFlowId());
+        }
+
+        for (String flowId : flowIds) {
+            int shard = shardOf(flowId);
+            String flowQueue = "flow.q." + flowId + ".job";
+
+            try {
+                int numOfMoved = jobsQueueManager.move(flowQueue, queueName(shard));
+                if (numOfMoved > 0) {
+                    activate(shard);
+                    log.info("{} jobs moved from {} to {}", numOfMoved, flowQueue, queueName(shard));
+                }
+            } catch (IOException e) {
+                log.warn("Unable to move jobs from {}: {}", flowQueue, e.getMessage());
+            }
+        }
+    }
+
+    private boolean activate(int shard) {
+        if (activated.contains(shard)) {
+            return true;
+        }
+
+        activateLock.lock();
+        try {
+            if (activated.contains(shard)) {
+                return true;
+            }
+
+            try {
+                jobsQueueManager.startConsumer(queueName(shard), false, (header, body, envelope) -> {
+                    try {
+                        String jobId = new String(body);
+                        eventManager.publish(new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_RUN));
+                    } catch (Exception e) {
+                        log.warn("Fail to publish job action RUN", e);
+                    }
+                    return true;
+                }, appTaskExecutor);
+
+                activated.add(shard);
+                return true;
+            } catch (IOException e) {
+                log.error("Unable to start consumer of job queue shard {}", shard, e);
+                return false;
+            }
+        } finally {
+            activateLock.unlock();
+        }
+    }
+
+    private int shardOf(String flowId) {
+        return Math.floorMod(flowId.hashCode(), numOfShards);
+    }
+
+    private String queueName(int shard) {
+        return queuePrefix + "." + shard;
+    }
+}
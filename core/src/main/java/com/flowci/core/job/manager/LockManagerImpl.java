@@ -14,35 +14,191 @@
  * limitations under the License.
  */
 
+
 package com.flowci.core.job.manager;
 
+import com.flowci.common.helper.StringHelper;
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.domain.HashRing;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.job.event.ServerLeftEvent;
 import com.flowci.zookeeper.InterLock;
 import com.flowci.zookeeper.ZookeeperClient;
+import com.flowci.zookeeper.ZookeeperException;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Component;
 
-import java.util.Optional;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Job is owned by a server from consistent hash over live servers registered in zookeeper.
+ * The owner takes the zookeeper lock of the job as a lease and keeps it until not used for LeaseIdleMillis,
+ * so a burst of transitions of the job on the owner, ex: step callback then dispatch next step,
+ * only takes the in-jvm striped lock.
+ * Other servers take the zookeeper lock for each lock call, and put a node under WantRoot while waiting,
+ * the owner watches WantRoot and gives up the lease of the job once its current lock released,
+ * so waiting on other servers is bounded by a lock hold of the owner instead of LeaseIdleMillis.
+ */
 @Slf4j
 @Component
 public class LockManagerImpl implements LockManager {
 
     private static final int DefaultJobLockTimeout = 20; // seconds
 
-    @Autowired
-    private ZookeeperClient zk;
+    private static final int NumOfStripes = 256;
+
+    private static final long LeaseIdleMillis = 5000;
+
+    private static final String LockRoot = "/job-locks";
+
+    private static final String WantRoot = "/job-lock-wants";
+
+    private final ZookeeperClient zk;
+
+    private final AppProperties.Zookeeper zkProperties;
+
+    private final SpringEventManager eventManager;
+
+    private final String serverId = StringHelper.randomString(16);
+
+    private final Semaphore[] stripes = new Semaphore[NumOfStripes];
+
+    // key as job id
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    // key as job id, the lock returned by the owner path while its stripe is held
+    private final Map<String, InterLock> stripeHolders = new ConcurrentHashMap<>();
+
+    private final ThreadPoolTaskScheduler leaseScheduler;
+
+    private ScheduledFuture<?> leaseTask;
+
+    // not synchronized since servers loaded from zookeeper, which pins carrier of virtual thread
+    private final Lock serversLock = new ReentrantLock();
+
+    private volatile HashRing ring = new HashRing(List.of());
+
+    private Set<String> servers = Collections.emptySet();
+
+    public LockManagerImpl(ZookeeperClient zk,
+                           AppProperties.Zookeeper zkProperties,
+                           SpringEventManager eventManager,
+                           @Qualifier("jobLeaseScheduler") ThreadPoolTaskScheduler leaseScheduler) {
+        this.zk = zk;
+        this.zkProperties = zkProperties;
+        this.eventManager = eventManager;
+        this.leaseScheduler = leaseScheduler;
+
+        for (int i = 0; i < NumOfStripes; i++) {
+            stripes[i] = new Semaphore(1);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        String root = zkProperties.getServerRoot();
+        zk.create(CreateMode.EPHEMERAL, zk.makePath(root, serverId), null);
+        zk.watchChildren(root, (client, event) -> refreshServers());
+
+        try {
+            zk.create(CreateMode.PERSISTENT, WantRoot, null);
+        } catch (ZookeeperException ignore) {
+            // created by other server
+        }
+        zk.watchChildren(WantRoot, (client, event) -> {
+            if (event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED) {
+                onLeaseWanted(event.getData().getPath());
+            }
+        });
+        zk.onConnectionLost(this::dropLeases);
+        zk.onReconnected(this::onReconnected);
+        refreshServers();
+
+        leaseTask = leaseScheduler.scheduleWithFixedDelay(this::releaseIdleLeases, LeaseIdleMillis / 2);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseTask.cancel(false);
+        releaseLeases();
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public boolean isOwner(String jobId) {
+        return serverId.equals(ring.ownerOf(jobId));
+    }
+
+    public boolean hasLease(String jobId) {
+        return leases.containsKey(jobId);
+    }
+
+    public void refreshServers() {
+        serversLock.lock();
+        try {
+            List<String> children = zk.children(zkProperties.getServerRoot());
+            ring = new HashRing(children);
+
+            Set<String> left = new HashSet<>(servers);
+            left.removeAll(children);
+            servers = new HashSet<>(children);
+
+            if (!left.isEmpty()) {
+                log.info("Servers {} left", left);
+                eventManager.publish(new ServerLeftEvent(this, left));
+            }
+        } catch (ZookeeperException e) {
+            log.warn("Unable to load servers: {}", e.getMessage());
+        } finally {
+            serversLock.unlock();
+        }
+    }
 
     @Override
     public Optional<InterLock> lock(String jobId) {
-        String path = zk.makePath("/job-locks", jobId);
-        Optional<InterLock> lock = zk.lock(path, DefaultJobLockTimeout);
-        lock.ifPresent(interLock -> log.debug("Lock: {}", jobId));
-        return lock;
+        try {
+            Optional<InterLock> lock = isOwner(jobId) ? lockAsOwner(jobId) : lockAsOther(jobId, DefaultJobLockTimeout);
+            lock.ifPresent(l -> log.debug("Lock: {}", jobId));
+            return lock;
+        } catch (ZookeeperException e) {
+            log.warn("Unable to lock job {}: {}", jobId, e.getMessage());
+            return Optional.empty();
+        }
     }
 
     @Override
     public void unlock(InterLock lock, String jobId) {
+        // the stripe is released even if the lease has been dropped with the session in the meantime
+        if (stripeHolders.remove(jobId, lock)) {
+            Lease lease = leases.get(jobId);
+            if (lease != null && lease.lock == lock) {
+                lease.lastUsed = System.currentTimeMillis();
+            }
+
+            if (lease != null && lease.wanted) {
+                releaseLeaseWithStripe(jobId);
+            }
+
+            stripeOf(jobId).release();
+            log.debug("Unlock: {}", jobId);
+            return;
+        }
+
         try {
             zk.release(lock);
             log.debug("Unlock: {}", jobId);
@@ -50,4 +206,192 @@ public class LockManagerImpl implements LockManager {
             log.warn("Unable to release lock", warn);
         }
     }
+
+    /**
+     * Take the lease without holding the stripe, so waiting on zookeeper doesn't block other jobs of the stripe
+     */
+    private Optional<InterLock> lockAsOwner(String jobId) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DefaultJobLockTimeout);
+        Semaphore stripe = stripeOf(jobId);
+
+        while (true) {
+            long remain = deadline - System.nanoTime();
+            if (remain <= 0) {
+                return Optional.empty();
+            }
+
+            if (!leases.containsKey(jobId)) {
+                Optional<InterLock> lock = zk.lease(pathOf(jobId), (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remain)));
+                if (lock.isEmpty()) {
+                    return lock;
+                }
+
+                // lease taken by other thread at the same time
+                if (leases.putIfAbsent(jobId, new Lease(lock.get())) != null) {
+                    zk.release(lock.get());
+                }
+            }
+
+            try {
+                if (!stripe.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    return Optional.empty();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+
+            // lease might be released or wanted by other server while waiting for the stripe
+            Lease lease = leases.get(jobId);
+            if (lease != null && !lease.wanted) {
+                stripeHolders.put(jobId, lease.lock);
+                return Optional.of(lease.lock);
+            }
+
+            if (lease != null) {
+                releaseLeaseWithStripe(jobId);
+            }
+            stripe.release();
+
+            if (!isOwner(jobId)) {
+                return lockAsOther(jobId, (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime())));
+            }
+        }
+    }
+
+    /**
+     * Take the zookeeper lock for the call, the want node asks the owner to give up its lease
+     */
+    private Optional<InterLock> lockAsOther(String jobId, int timeout) {
+        String want = zk.create(CreateMode.EPHEMERAL_SEQUENTIAL, zk.makePath(WantRoot, jobId + "-"), null);
+        try {
+            return zk.lease(pathOf(jobId), timeout);
+        } finally {
+            try {
+                zk.delete(want, false);
+            } catch (ZookeeperException e) {
+                log.warn("Unable to delete lock want node {}: {}", want, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lease wanted by other server, release it now if the job is not locked,
+     * otherwise it will be released on unlock
+     */
+    private void onLeaseWanted(String wantPath) {
+        String node = ZKPaths.getNodeFromPath(wantPath);
+        int index = node.lastIndexOf('-');
+        if (index <= 0) {
+            return;
+        }
+
+        String jobId = node.substring(0, index);
+        Lease lease = leases.get(jobId);
+        if (lease == null) {
+            return;
+        }
+
+        lease.wanted = true;
+        releaseLease(jobId);
+    }
+
+    /**
+     * Release leases not used within LeaseIdleMillis, wanted by other server or no longer owned,
+     * skip the lease if its job is locked at the moment
+     */
+    private void releaseIdleLeases() {
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            String jobId = entry.getKey();
+            Lease lease = entry.getValue();
+            boolean isIdle = now - lease.lastUsed > LeaseIdleMillis;
+
+            if (isIdle || lease.wanted || !isOwner(jobId)) {
+                releaseLease(jobId);
+            }
+        }
+    }
+
+    private void releaseLease(String jobId) {
+        Semaphore stripe = stripeOf(jobId);
+        if (!stripe.tryAcquire()) {
+            return;
+        }
+
+        try {
+            releaseLeaseWithStripe(jobId);
+        } finally {
+            stripe.release();
+        }
+    }
+
+    /**
+     * Must be called with stripe of the job held
+     */
+    private void releaseLeaseWithStripe(String jobId) {
+        try {
+            Lease lease = leases.remove(jobId);
+            if (lease != null) {
+                zk.release(lease.lock);
+                log.debug("Lease released: {}", jobId);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to release lease of job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * Connection back after suspended or with a new session once the previous one lost,
+     * the server node is gone with the lost session, register it again to take jobs back from the ring
+     */
+    private void onReconnected() {
+        String path = zk.makePath(zkProperties.getServerRoot(), serverId);
+        try {
+            if (!zk.exist(path)) {
+                zk.create(CreateMode.EPHEMERAL, path, null);
+                log.info("Server node {} registered again", path);
+            }
+        } catch (ZookeeperException e) {
+            log.warn("Unable to register server node {}: {}", path, e.getMessage());
+        }
+
+        releaseLeases();
+        refreshServers();
+    }
+
+    // connection back with the session, lease nodes held through the suspension are released and taken on next lock
+    private void releaseLeases() {
+        leases.keySet().forEach(this::releaseLease);
+    }
+
+    // zk nodes are gone with the session, leases have to be taken again
+    private void dropLeases() {
+        if (!leases.isEmpty()) {
+            log.warn("Zookeeper session lost, {} job leases dropped", leases.size());
+            leases.clear();
+        }
+    }
+
+    private Semaphore stripeOf(String jobId) {
+        return stripes[Math.floorMod(jobId.hashCode(), NumOfStripes)];
+    }
+
+    private String pathOf(String jobId) {
+        return zk.makePath(LockRoot, jobId);
+    }
+
+    private static class Lease {
+
+        private final InterLock lock;
+
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private volatile boolean wanted;
+
+        Lease(InterLock lock) {
+            this.lock = lock;
+        }
+    }
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+/**
+ * Aggregate shell log lines per step and push them to clients in batch
+ */
+public interface LogBatchManager {
+
+    /**
+     * Buffer base64 log of step, it will be flushed once batch size reached or on interval
+     */
+    void add(String jobId, String stepId, String b64Log);
+
+    /**
+     * Flush and remove all buffers of job
+     */
+    void flush(String jobId);
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flowci.core.common.manager.SocketPushManager;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.job.domain.StepLogItem;
+import com.flowci.core.job.event.CacheShellLogEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log lines of a step are buffered until MaxBatchBytes or FlushInterval reached,
+ * then pushed as a single StepLogItem with concatenated content,
+ * so a batch is one cache event and one broadcast message instead of one per line
+ */
+@Slf4j
+@Component
+public class LogBatchManagerImpl implements LogBatchManager {
+
+    private static final int MaxBatchBytes = 16 * 1024;
+
+    private static final Duration FlushInterval = Duration.ofMillis(50);
+
+    private static final long IdleBufferMillis = TimeUnit.MINUTES.toMillis(1);
+
+    // buffer by step id
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+
+    private final ScheduledFuture<?> flushTask;
+
+    private final String topicForLogs;
+
+    private final ObjectMapper objectMapper;
+
+    private final SocketPushManager socketPushManager;
+
+    private final SpringEventManager eventManager;
+
+    private final Counter receivedLines;
+
+    private final Counter flushedBatches;
+
+    private final DistributionSummary batchBytes;
+
+    private final Timer batchLatency;
+
+    public LogBatchManagerImpl(@Qualifier("topicForLogs") String topicForLogs,
+                               ObjectMapper objectMapper,
+                               SocketPushManager socketPushManager,
+                               SpringEventManager eventManager,
+                               MeterRegistry meterRegistry,
+                               @Qualifier("logBatchScheduler") ThreadPoolTaskScheduler logBatchScheduler) {
+        this.topicForLogs = topicForLogs;
+        this.objectMapper = objectMapper;
+        this.socketPushManager = socketPushManager;
+        this.eventManager = eventManager;
+
+        this.receivedLines = Counter.builder("shell_log_lines")
+                .description("num of shell log lines received from agents")
+                .register(meterRegistry);
+        this.flushedBatches = Counter.builder("shell_log_batches")
+                .description("num of shell log batches pushed to clients")
+                .register(meterRegistry);
+        this.batchBytes = DistributionSummary.builder("shell_log_batch_size")
+                .description("decoded bytes of shell log batch")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.batchLatency = Timer.builder("shell_log_batch_latency")
+                .description("time from first line buffered to batch pushed")
+                .register(meterRegistry);
+
+        this.flushTask = logBatchScheduler.scheduleWithFixedDelay(this::flushAll, FlushInterval);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushTask.cancel(false);
+        flushAll();
+    }
+
+    @Override
+    public void add(String jobId, String stepId, String b64Log) {
+        byte[] bytes = Base64.getDecoder().decode(b64Log);
+        receivedLines.increment();
+
+        while (true) {
+            Buffer buffer = buffers.computeIfAbsent(stepId, k -> new Buffer(jobId, stepId));
+
+            synchronized (buffer) {
+                // removed by flusher, get a new one
+                if (buffer.closed) {
+                    continue;
+                }
+
+                buffer.append(bytes);
+                if (buffer.size() >= MaxBatchBytes) {
+                    flush(buffer);
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void flush(String jobId) {
+        for (Buffer buffer : buffers.values()) {
+            if (!buffer.jobId.equals(jobId)) {
+                continue;
+            }
+
+            synchronized (buffer) {
+                flush(buffer);
+                close(buffer);
+            }
+        }
+    }
+
+    private void flushAll() {
+        long now = System.currentTimeMillis();
+
+        for (Buffer buffer : buffers.values()) {
+            synchronized (buffer) {
+                if (buffer.size() > 0) {
+                    flush(buffer);
+                    continue;
+                }
+
+                if (now - buffer.lastFlushAt > IdleBufferMillis) {
+                    close(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called with buffer lock, so batches of a step are pushed in order
+     */
+    private void flush(Buffer buffer) {
+        if (buffer.size() == 0) {
+            return;
+        }
+
+        try {
+            String content = Base64.getEncoder().encodeToString(buffer.out.toByteArray());
+            byte[] body = objectMapper.writeValueAsBytes(new StepLogItem(buffer.stepId, content));
+
+            eventManager.publish(new CacheShellLogEvent(this, buffer.jobId, buffer.stepId, body));
+            socketPushManager.push(topicForLogs + "/" + buffer.jobId, body);
+
+            flushedBatches.increment();
+            batchBytes.record(buffer.size());
+            batchLatency.record(System.nanoTime() - buffer.firstLineAt, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            log.warn("Unable to push log batch of step {}: {}", buffer.stepId, e.getMessage());
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    private void close(Buffer buffer) {
+        buffer.closed = true;
+        buffers.remove(buffer.stepId, buffer);
+    }
+
+    private static class Buffer {
+
+        private final String jobId;
+
+        private final String stepId;
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+        private long firstLineAt;
+
+        private long lastFlushAt = System.currentTimeMillis();
+
+        private boolean closed;
+
+        Buffer(String jobId, String stepId) {
+            this.jobId = jobId;
+            this.stepId = stepId;
+        }
+
+        void append(byte[] bytes) {
+            if (out.size() == 0) {
+                firstLineAt = System.nanoTime();
+            }
+            out.writeBytes(bytes);
+        }
+
+        int size() {
+            return out.size();
+        }
+
+        void reset() {
+            out.reset();
+            lastFlushAt = System.currentTimeMillis();
+        }
+    }
+}
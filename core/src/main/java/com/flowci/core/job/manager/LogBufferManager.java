@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Size bounded buffer of live log records of running jobs
+ */
+public interface LogBufferManager {
+
+    /**
+     * Start buffering log for job
+     */
+    void open(String jobId);
+
+    /**
+     * Append log record of step, ignored if job not opened
+     */
+    void append(String jobId, String stepId, byte[] record);
+
+    /**
+     * Read only views of buffered records of step, oldest records may be evicted
+     */
+    List<ByteBuffer> read(String stepId);
+
+    /**
+     * Release all records of job
+     */
+    void remove(String jobId);
+}
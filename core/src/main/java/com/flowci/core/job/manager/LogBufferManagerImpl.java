@@ -0,0 +1,236 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.manager;
+
+import com.flowci.core.common.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records are written into direct memory chunks as [length][bytes], chunks are allocated
+ * from a global byte budget and the oldest chunk of any job is evicted when the budget is exceeded.
+ *
+ * Appends and reads are locked per job. Eviction only detaches the buffer from the chunk,
+ * the owner job drops evicted chunks on its next append. Records are read as read only slices
+ * without copy, a chunk is never written again once detached, so the slices pin the chunk
+ * and stay valid after eviction, the memory is freed when readers drop the slices.
+ */
+@Slf4j
+@Component
+public class LogBufferManagerImpl implements LogBufferManager {
+
+    private static final int ChunkSize = 32 * 1024;
+
+    private static final int RecordHeaderSize = Integer.BYTES;
+
+    private static final long MB = 1024 * 1024;
+
+    private final long maxBytes;
+
+    private final Map<String, JobBuffer> jobs = new ConcurrentHashMap<>();
+
+    // step id to buffer of job
+    private final Map<String, JobBuffer> steps = new ConcurrentHashMap<>();
+
+    // all chunks in allocation order for eviction
+    private final Deque<Chunk> allocated = new ConcurrentLinkedDeque<>();
+
+    private final AtomicLong bytesHeld = new AtomicLong();
+
+    private final Counter evictions;
+
+    public LogBufferManagerImpl(AppProperties.Job jobProperties, MeterRegistry meterRegistry) {
+        this.maxBytes = jobProperties.getLogBufferMb() * MB;
+
+        Gauge.builder("log_buffer_bytes", this, LogBufferManagerImpl::getBytesHeld)
+                .description("bytes of memory held by live log buffer")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        this.evictions = Counter.builder("log_buffer_evictions")
+                .description("num of log chunks evicted since buffer is full")
+                .register(meterRegistry);
+    }
+
+    public long getBytesHeld() {
+        return bytesHeld.get();
+    }
+
+    @Override
+    public void open(String jobId) {
+        jobs.putIfAbsent(jobId, new JobBuffer());
+    }
+
+    @Override
+    public void append(String jobId, String stepId, byte[] record) {
+        JobBuffer job = jobs.get(jobId);
+        if (job == null) {
+            return;
+        }
+
+        int size = RecordHeaderSize + record.length;
+        if (size > maxBytes) {
+            log.warn("Log record of step {} with {} bytes over the buffer size", stepId, record.length);
+            return;
+        }
+
+        synchronized (job) {
+            if (job.removed) {
+                return;
+            }
+
+            Deque<Chunk> chunks = job.steps.computeIfAbsent(stepId, k -> {
+                steps.put(stepId, job);
+                return new ArrayDeque<>();
+            });
+
+            // drop chunks evicted by other jobs
+            while (!chunks.isEmpty() && chunks.peekFirst().buffer.get() == null) {
+                chunks.pollFirst();
+            }
+
+            Chunk last = chunks.peekLast();
+            ByteBuffer buffer = last == null ? null : last.buffer.get();
+
+            if (buffer == null || buffer.remaining() < size) {
+                buffer = ByteBuffer.allocateDirect(Math.max(ChunkSize, size));
+                chunks.addLast(allocate(jobId, buffer));
+            }
+
+            buffer.putInt(record.length).put(record);
+        }
+    }
+
+    @Override
+    public List<ByteBuffer> read(String stepId) {
+        JobBuffer job = steps.get(stepId);
+        if (job == null) {
+            return Collections.emptyList();
+        }
+
+        synchronized (job) {
+            Deque<Chunk> chunks = job.steps.get(stepId);
+            if (chunks == null) {
+                return Collections.emptyList();
+            }
+
+            // record never spans chunks
+            List<ByteBuffer> records = new LinkedList<>();
+            for (Chunk chunk : chunks) {
+                ByteBuffer buffer = chunk.buffer.get();
+                if (buffer == null) {
+                    continue;
+                }
+
+                ByteBuffer view = buffer.asReadOnlyBuffer().flip();
+                while (view.remaining() >= RecordHeaderSize) {
+                    int length = view.getInt();
+                    records.add(view.slice(view.position(), length));
+                    view.position(view.position() + length);
+                }
+            }
+            return records;
+        }
+    }
+
+    @Override
+    public void remove(String jobId) {
+        JobBuffer job = jobs.remove(jobId);
+        if (job == null) {
+            return;
+        }
+
+        synchronized (job) {
+            job.removed = true;
+            for (Map.Entry<String, Deque<Chunk>> entry : job.steps.entrySet()) {
+                steps.remove(entry.getKey(), job);
+                for (Chunk chunk : entry.getValue()) {
+                    release(chunk);
+                }
+            }
+            job.steps.clear();
+        }
+
+        allocated.removeIf(chunk -> chunk.jobId.equals(jobId));
+    }
+
+    private Chunk allocate(String jobId, ByteBuffer buffer) {
+        long held = bytesHeld.addAndGet(buffer.capacity());
+
+        while (held > maxBytes) {
+            Chunk oldest = allocated.pollFirst();
+            if (oldest == null) {
+                break;
+            }
+
+            if (release(oldest)) {
+                evictions.increment();
+            }
+            held = bytesHeld.get();
+        }
+
+        Chunk chunk = new Chunk(jobId, buffer);
+        allocated.addLast(chunk);
+        return chunk;
+    }
+
+    /**
+     * Detach buffer from chunk, it can be called from any job
+     *
+     * @return false if chunk already released
+     */
+    private boolean release(Chunk chunk) {
+        ByteBuffer buffer = chunk.buffer.getAndSet(null);
+        if (buffer == null) {
+            return false;
+        }
+
+        bytesHeld.addAndGet(-buffer.capacity());
+        return true;
+    }
+
+    private static class JobBuffer {
+
+        // step id to chunks of step
+        private final Map<String, Deque<Chunk>> steps = new HashMap<>();
+
+        private boolean removed;
+    }
+
+    private static class Chunk {
+
+        private final String jobId;
+
+        // set to null once evicted or removed
+        private final AtomicReference<ByteBuffer> buffer;
+
+        Chunk(String jobId, ByteBuffer buffer) {
+            this.jobId = jobId;
+            this.buffer = new AtomicReference<>(buffer);
+        }
+    }
+}
@@ -78,8 +78,7 @@ public class YmlManagerImpl implements YmlManager {
         return jobTreeCache.get(jobId, s -> {
             log.debug("Cache tree for job: {}", jobId);
             JobYml yml = jobYmlDao.findById(jobId).get();
-            FlowNode root = YmlParser.load(yml.getRawArray());
-            return NodeTree.create(root);
+            return YmlParser.loadTree(yml.getRawArray());
         });
     }
 
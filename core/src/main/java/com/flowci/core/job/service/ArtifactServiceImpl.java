@@ -20,22 +20,24 @@ import com.flowci.common.exception.DuplicateException;
 import com.flowci.common.exception.NotAvailableException;
 import com.flowci.common.exception.NotFoundException;
 import com.flowci.common.helper.StringHelper;
+import com.flowci.core.flow.event.FlowDeletedEvent;
 import com.flowci.core.job.dao.JobArtifactDao;
 import com.flowci.core.job.dao.JobDao;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.JobArtifact;
+import com.flowci.store.BlobStore;
 import com.flowci.store.FileManager;
 import com.flowci.store.Pathable;
 import com.flowci.store.StringPath;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -56,6 +58,9 @@ public class ArtifactServiceImpl implements ArtifactService {
     @Autowired
     private FileManager fileManager;
 
+    @Autowired
+    private BlobService blobService;
+
     @Override
     public List<JobArtifact> list(Job job) {
         return jobArtifactDao.findAllByJobId(job.getId());
@@ -64,30 +69,49 @@ public class ArtifactServiceImpl implements ArtifactService {
     @Override
     public void save(Job job, String srcDir, String md5, MultipartFile file) {
         srcDir = formatSrcDir(srcDir);
-        Pathable[] artifactPath = getArtifactPath(job, srcDir);
 
-        try (InputStream reportRaw = file.getInputStream()) {
-            // save to file manager by file name
-            String path = fileManager.save(file.getOriginalFilename(), reportRaw, file.getSize(), artifactPath);
+        String hash;
+        try {
+            // save content once as blob, same artifact from other jobs are not uploaded again
+            hash = blobService.put(file);
+        } catch (IOException e) {
+            throw new NotAvailableException("Invalid artifact data");
+        }
 
+        try {
             JobArtifact artifact = new JobArtifact();
             artifact.setJobId(job.getId());
+            artifact.setFlowId(job.getFlowId());
             artifact.setFileName(file.getOriginalFilename());
             artifact.setContentType(file.getContentType());
             artifact.setContentSize(file.getSize());
-            artifact.setPath(path);
+            artifact.setPath(BlobStore.pathOf(hash));
             artifact.setSrcDir(srcDir);
             artifact.setMd5(md5);
+            artifact.setBlob(hash);
 
             jobArtifactDao.save(artifact);
             jobDao.increaseNumOfArtifact(job.getId());
-        } catch (IOException e) {
-            throw new NotAvailableException("Invalid artifact data");
         } catch (DuplicateKeyException e) {
+            blobService.release(List.of(hash));
             throw new DuplicateException("Duplicate job artifact");
         }
     }
 
+    @EventListener
+    public void onFlowDeleted(FlowDeletedEvent event) {
+        String flowId = event.getFlow().getId();
+        List<String> hashes = new ArrayList<>();
+        for (JobArtifact artifact : jobArtifactDao.findAllByFlowId(flowId)) {
+            if (artifact.getBlob() != null) {
+                hashes.add(artifact.getBlob());
+            }
+        }
+
+        blobService.release(hashes);
+        jobArtifactDao.deleteAllByFlowId(flowId);
+    }
+
     @Override
     public JobArtifact fetch(Job job, String artifactId) {
         Optional<JobArtifact> optional = jobArtifactDao.findById(artifactId);
@@ -97,9 +121,13 @@ public class ArtifactServiceImpl implements ArtifactService {
 
         try {
             JobArtifact artifact = optional.get();
+            if (artifact.getBlob() != null) {
+                artifact.setSrc(blobService.stat(artifact.getBlob()));
+                return artifact;
+            }
+
             Pathable[] artifactPath = getArtifactPath(job, artifact.getSrcDir());
-            InputStream stream = fileManager.read(artifact.getFileName(), artifactPath);
-            artifact.setSrc(stream);
+            artifact.setSrc(fileManager.stat(artifact.getFileName(), artifactPath));
             return artifact;
         } catch (IOException e) {
             throw new NotAvailableException("Invalid job artifact");
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.service;
+
+import com.flowci.store.StoredFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * Files of job caches and artifacts saved by sha256 of content,
+ * jobs uploading the same content share one blob
+ */
+public interface BlobService {
+
+    /**
+     * Save file as blob by sha256 of content, upload skipped if same content stored
+     *
+     * @return blob hash
+     */
+    String put(MultipartFile file) throws IOException;
+
+    /**
+     * Release references, blobs without reference will be removed by gc
+     */
+    void release(Collection<String> hashes);
+
+    InputStream read(String hash) throws IOException;
+
+    StoredFile stat(String hash) throws IOException;
+
+    /**
+     * Remove unreferenced blobs, return num of blob removed
+     */
+    int gc();
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.job.service;
+
+import com.flowci.core.common.manager.SpringTaskManager;
+import com.flowci.store.BlobStore;
+import com.flowci.store.StoredFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+
+@Slf4j
+@Service
+public class BlobServiceImpl implements BlobService {
+
+    /**
+     * Keep unreferenced blobs for a while, since a released cache is likely to be uploaded again
+     */
+    private static final Duration GcGracePeriod = Duration.ofDays(1);
+
+    private static final int GcBatchSize = 1000;
+
+    private static final int BufferSize = 64 * 1024;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private SpringTaskManager taskManager;
+
+    @Override
+    public String put(MultipartFile file) throws IOException {
+        String hash;
+        try (InputStream stream = file.getInputStream()) {
+            hash = sha256(stream);
+        }
+
+        try (InputStream stream = file.getInputStream()) {
+            if (!blobStore.put(hash, stream, file.getSize())) {
+                log.debug("Blob {} of {} existed, upload skipped", hash, file.getOriginalFilename());
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public void release(Collection<String> hashes) {
+        for (String hash : hashes) {
+            blobStore.release(hash);
+        }
+    }
+
+    @Override
+    public InputStream read(String hash) throws IOException {
+        return blobStore.read(hash);
+    }
+
+    @Override
+    public StoredFile stat(String hash) throws IOException {
+        return blobStore.stat(hash);
+    }
+
+    @Override
+    public int gc() {
+        Instant before = Instant.now().minus(GcGracePeriod);
+        int total = 0;
+
+        try {
+            int removed;
+            do {
+                removed = blobStore.gc(before, GcBatchSize);
+                total += removed;
+            } while (removed == GcBatchSize);
+        } catch (IOException e) {
+            log.warn("Unable to remove blob: {}", e.getMessage());
+        }
+
+        return total;
+    }
+
+    @Scheduled(cron = "0 0/30 * * * ?")
+    public void scheduleGc() {
+        taskManager.run("blob-gc", false, () -> {
+            int removed = gc();
+            log.info("{} unreferenced blobs removed", removed);
+        });
+    }
+
+    private static String sha256(InputStream stream) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[BufferSize];
+            int n;
+            while ((n = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+}
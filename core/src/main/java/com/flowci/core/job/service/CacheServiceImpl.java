@@ -16,6 +16,7 @@
 
 package com.flowci.core.job.service;
 
+import com.flowci.core.flow.event.FlowDeletedEvent;
 import com.flowci.core.job.dao.JobCacheDao;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.JobCache;
@@ -26,12 +27,15 @@ import com.flowci.store.Pathable;
 import com.flowci.store.StringPath;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
@@ -49,6 +53,9 @@ public class CacheServiceImpl implements CacheService {
     @Autowired
     private JobService jobService;
 
+    @Autowired
+    private BlobService blobService;
+
     @Override
     public JobCache put(String jobId, String key, String os, MultipartFile[] files) {
         Job job = jobService.get(jobId);
@@ -59,23 +66,43 @@ public class CacheServiceImpl implements CacheService {
             entity = optional.get();
         }
 
+        Map<String, String> previous = entity.getBlobs();
+
         entity.setJobId(job.getId());
         entity.setFlowId(job.getFlowId());
         entity.setKey(key);
         entity.setOs(os);
         entity.setFiles(new ArrayList<>(files.length));
+        entity.setBlobs(new HashMap<>(files.length));
 
         for (MultipartFile file : files) {
             try {
-                Pathable[] cachePath = getCachePath(job.getFlowId(), key);
-                fileManager.save(file.getOriginalFilename(), file.getInputStream(), file.getSize(), cachePath);
+                String hash = blobService.put(file);
                 entity.getFiles().add(file.getOriginalFilename());
+                entity.getBlobs().put(file.getOriginalFilename(), hash);
             } catch (IOException e) {
                 log.warn("failed to save file {} for cache {}", file.getName(), key);
             }
         }
 
-        return jobCacheDao.save(entity);
+        JobCache saved = jobCacheDao.save(entity);
+
+        // release after saved, unchanged files are still referenced by the new cache
+        if (previous != null) {
+            blobService.release(previous.values());
+        }
+        return saved;
+    }
+
+    @EventListener
+    public void onFlowDeleted(FlowDeletedEvent event) {
+        String flowId = event.getFlow().getId();
+        for (JobCache cache : jobCacheDao.findAllByFlowId(flowId)) {
+            if (cache.getBlobs() != null) {
+                blobService.release(cache.getBlobs().values());
+            }
+        }
+        jobCacheDao.deleteAllByFlowId(flowId);
     }
 
     @Override
@@ -102,6 +129,14 @@ public class CacheServiceImpl implements CacheService {
             throw new NotFoundException("file not found");
         }
 
+        if (cache.getBlobs() != null && cache.getBlobs().containsKey(file)) {
+            try {
+                return blobService.read(cache.getBlobs().get(file));
+            } catch (IOException e) {
+                throw new NotFoundException("file not found in file store");
+            }
+        }
+
         Pathable[] cachePath = getCachePath(cache.getFlowId(), cache.getKey());
         if (!fileManager.exist(file, cachePath)) {
             throw new NotFoundException("file not found in file store");
@@ -27,10 +27,8 @@ import com.flowci.core.agent.event.IdleAgentEvent;
 import com.flowci.core.agent.service.AgentService;
 import com.flowci.core.common.domain.Variables;
 import com.flowci.core.common.git.GitClient;
-import com.flowci.core.common.helper.ThreadHelper;
 import com.flowci.core.common.manager.ConditionManager;
 import com.flowci.core.common.manager.SpringEventManager;
-import com.flowci.core.common.rabbit.RabbitOperations;
 import com.flowci.core.flow.domain.FlowYml;
 import com.flowci.core.job.dao.JobAgentDao;
 import com.flowci.core.job.dao.JobDao;
@@ -39,7 +37,10 @@ import com.flowci.core.job.domain.*;
 import com.flowci.core.job.event.JobFinishedEvent;
 import com.flowci.core.job.event.JobReceivedEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.event.ServerLeftEvent;
+import com.flowci.core.job.manager.AgentMatchManager;
 import com.flowci.core.job.manager.CmdManager;
+import com.flowci.core.job.manager.JobQueueManager;
 import com.flowci.core.job.manager.LockManager;
 import com.flowci.core.job.manager.YmlManager;
 import com.flowci.core.job.util.Errors;
@@ -58,7 +59,11 @@ import groovy.util.ScriptException;
 import javax.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -66,7 +71,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static com.flowci.core.job.domain.Executed.Status.RUNNING;
 import static com.flowci.core.job.domain.Executed.Status.WAITING_AGENT;
@@ -117,7 +125,11 @@ public class JobActionServiceImpl implements JobActionService {
     // cancelling
     private static final Transition CancellingToCancelled = new Transition(Cancelling, Cancelled);
 
-    private static final long RetryInterval = 10 * 1000; // 10 seconds
+    private static final int MaxMatchingCandidates = 10;
+
+    private static final int MaxEnqueueRetries = 3;
+
+    private static final int MaxLockAttempts = 3;
 
     @Autowired
     private Path repoDir;
@@ -134,6 +146,9 @@ public class JobActionServiceImpl implements JobActionService {
     @Autowired
     private JobAgentDao jobAgentDao;
 
+    @Autowired
+    private TaskExecutor appTaskExecutor;
+
     @Autowired
     private CmdManager cmdManager;
 
@@ -144,7 +159,7 @@ public class JobActionServiceImpl implements JobActionService {
     private YmlManager ymlManager;
 
     @Autowired
-    private RabbitOperations jobsQueueManager;
+    private JobQueueManager jobQueueManager;
 
     @Autowired
     private ConditionManager conditionManager;
@@ -152,6 +167,9 @@ public class JobActionServiceImpl implements JobActionService {
     @Autowired
     private LockManager lockManager;
 
+    @Autowired
+    private AgentMatchManager agentMatchManager;
+
     @Autowired
     private AgentService agentService;
 
@@ -164,6 +182,12 @@ public class JobActionServiceImpl implements JobActionService {
     @Autowired
     private StateMachine<JobSmContext> sm;
 
+    @Autowired
+    private ThreadPoolTaskScheduler queueTimeoutScheduler;
+
+    // set if waiting steps of other servers have to be added to the local match index
+    private final AtomicBoolean matchIndexStale = new AtomicBoolean(false);
+
     @PostConstruct
     public void init() {
         try {
@@ -181,46 +205,30 @@ public class JobActionServiceImpl implements JobActionService {
 
     @EventListener
     public void onIdleAgent(IdleAgentEvent event) {
-        String agentId = event.getAgentId();
-        event.setFetched(true);
-
-        List<JobKey> keys = jobPriorityDao.findAllMinBuildNumber();
-        // TODO: flow priority
-
-        for (JobKey key : keys) {
-            if (key.getBuildNumber() == null) {
-                continue;
-            }
-
-            Optional<Job> optional = jobDao.findByKey(key.toString());
-            if (!optional.isPresent()) {
-                continue;
-            }
-
-            Job job = optional.get();
-            if (!job.isRunning()) {
-                continue;
-            }
+        matchIdleAgent(event.getAgentId(), event.getTags());
+    }
 
-            Optional<InterLock> lock = lockManager.lock(job.getId());
-            if (lock.isEmpty()) {
-                toFailureStatus(job, new CIException("Fail to lock job"));
-                continue;
-            }
+    /**
+     * Waiting steps of jobs handled by the server are not in the index of other servers
+     */
+    @EventListener
+    public void onServerLeft(ServerLeftEvent event) {
+        matchIndexStale.set(true);
+    }
 
-            try {
-                NodeTree tree = ymlManager.getTree(job);
-                boolean isAssigned = assignAgentToWaitingStep(agentId, job, tree, true);
+    /**
+     * Match index and queue timeouts are in memory, rebuild them from db for jobs waiting before restart
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        appTaskExecutor.execute(this::rebuildMatchIndex);
+        appTaskExecutor.execute(this::rearmQueueTimeouts);
+    }
 
-                if (isAssigned) {
-                    event.setFetched(false); // set to false since agent has been assigned
-                    return;
-                }
-            } catch (Exception e) {
-                toFailureStatus(job, new CIException(e.getMessage()));
-            } finally {
-                lockManager.unlock(lock.get(), job.getId());
-            }
+    @Scheduled(cron = "0 * * * * ?")
+    public void scheduleRebuildMatchIndex() {
+        if (matchIndexStale.compareAndSet(true, false)) {
+            rebuildMatchIndex();
         }
     }
 
@@ -367,10 +375,9 @@ public class JobActionServiceImpl implements JobActionService {
                 Job job = context.getJob();
                 setJobStatusAndSave(job, Job.Status.QUEUED, null);
 
-                String queue = job.getQueueName();
-                byte[] payload = job.getId().getBytes();
-
-                jobsQueueManager.publish(queue, payload, job.getPriority(), job.getExpire());
+                if (!enqueue(job, MaxEnqueueRetries)) {
+                    throw new CIException("Unable to publish to queue");
+                }
                 logInfo(job, "enqueue");
             }
 
@@ -382,6 +389,34 @@ public class JobActionServiceImpl implements JobActionService {
         });
     }
 
+    /**
+     * Publish job id to shard queue of flow, re-publish if not confirmed by broker
+     * and timeout the job if still lost after retries
+     *
+     * @return false if unable to publish to channel
+     */
+    private boolean enqueue(Job job, int retries) {
+        CompletableFuture<Boolean> confirmed = jobQueueManager.enqueue(job);
+        if (confirmed.isDone() && !confirmed.isCompletedExceptionally() && !confirmed.getNow(false)) {
+            return false;
+        }
+
+        confirmed.whenCompleteAsync((isConfirmed, e) -> {
+            if (e == null && isConfirmed) {
+                return;
+            }
+
+            if (retries > 0 && enqueue(job, retries - 1)) {
+                log.warn("[Job: Enqueue] {} not confirmed, retry: {}", job.getKey(), e == null ? "nacked" : e.getMessage());
+                return;
+            }
+
+            log.error("[Job: Enqueue] {} lost in queue", job.getKey());
+            toTimeout(job.getId());
+        }, appTaskExecutor);
+        return true;
+    }
+
     private void fromQueued() {
         sm.add(QueuedToTimeout, new JobActionBase() {
             @Override
@@ -411,7 +446,7 @@ public class JobActionServiceImpl implements JobActionService {
                 eventManager.publish(new JobReceivedEvent(this, job));
 
                 jobPriorityDao.addJob(job.getFlowId(), job.getBuildNumber());
-                if (!waitIfJobNotOnTopPriority(context)) {
+                if (!isJobOnTopPriority(context)) {
                     return;
                 }
 
@@ -608,29 +643,83 @@ public class JobActionServiceImpl implements JobActionService {
         return false;
     }
 
-    private boolean waitIfJobNotOnTopPriority(JobSmContext context) {
+    /**
+     * Job will be kept in QUEUED status if previous build of the flow still ongoing,
+     * it will be admitted by admitNextQueuedJob once previous build finished
+     */
+    private boolean isJobOnTopPriority(JobSmContext context) {
         Job job = context.getJob();
 
-        while (true) {
-            if (job.isExpired()) {
-                context.setError(new Exception("time out while queueing"));
-                sm.execute(context.getCurrent(), Timeout, context);
-                return false;
-            }
+        if (job.isExpired()) {
+            context.setError(new Exception("time out while queueing"));
+            sm.execute(context.getCurrent(), Timeout, context);
+            return false;
+        }
 
-            if (job.isCancelling() || job.isDone()) {
-                return false;
-            }
+        if (job.isCancelling() || job.isDone()) {
+            return false;
+        }
 
-            long topPriorityBuildNumber = jobPriorityDao.findMinBuildNumber(job.getFlowId());
-            if (job.getBuildNumber() <= topPriorityBuildNumber) {
-                return true;
-            }
+        long topPriorityBuildNumber = jobPriorityDao.findMinBuildNumber(job.getFlowId());
+        if (job.getBuildNumber() <= topPriorityBuildNumber) {
+            return true;
+        }
+
+        scheduleQueueTimeout(job);
+        log.debug("Job {}/{} wait since not on top priority", job.getFlowName(), job.getBuildNumber());
+        return false;
+    }
+
+    /**
+     * Start the queued job with top priority of the flow
+     */
+    private void admitNextQueuedJob(String flowId) {
+        long buildNumber = jobPriorityDao.findMinBuildNumber(flowId);
+        if (buildNumber == Long.MAX_VALUE) {
+            return;
+        }
+
+        Optional<Job> optional = jobDao.findByKey(JobKey.of(flowId, buildNumber).toString());
+        if (optional.isEmpty() || !optional.get().isQueued()) {
+            return;
+        }
+
+        // job may already be started by its own transition, admit only if still queued
+        String jobId = optional.get().getId();
+        appTaskExecutor.execute(() -> onTransition(jobId, Running, Job::isQueued, null));
+    }
 
-            ThreadHelper.sleep(RetryInterval);
-            job = getJob(job.getId());
-            log.debug("Job {}/{} wait since not on top priority", job.getFlowName(), job.getBuildNumber());
+    private void scheduleQueueTimeout(Job job) {
+        String jobId = job.getId();
+        queueTimeoutScheduler.schedule(() -> timeoutIfStillQueued(jobId), job.getExpireAt());
+    }
+
+    /**
+     * Expired jobs are timed out right away, the timeout is skipped if job is no longer queued.
+     * The top priority queued job of each flow is admitted, since its admission may be lost before restart
+     */
+    private void rearmQueueTimeouts() {
+        List<Job> queued = jobDao.findAllByStatus(Job.Status.QUEUED);
+        Set<String> flowIds = new HashSet<>();
+
+        for (Job job : queued) {
+            scheduleQueueTimeout(job);
+            flowIds.add(job.getFlowId());
         }
+
+        for (String flowId : flowIds) {
+            admitNextQueuedJob(flowId);
+        }
+
+        if (!queued.isEmpty()) {
+            log.info("Queue timeout of {} jobs are scheduled, {} flows are checked for admission", queued.size(), flowIds.size());
+        }
+    }
+
+    private void timeoutIfStillQueued(String jobId) {
+        onTransition(jobId, Timeout, Job::isQueued, context -> {
+            context.setError(new Exception("time out while queueing"));
+        });
     }
 
     /**
@@ -694,21 +783,106 @@ public class JobActionServiceImpl implements JobActionService {
 
         // find agent outside job, blocking thread
         Optional<Agent> optional = agentService.acquire(job.getId(), selector);
-        if (optional.isPresent()) {
-            Agent agent = optional.get();
-            AgentProfile profile = agentService.getProfile(agent.getToken());
-            job.addAgentSnapshot(agent, profile);
-            jobAgentDao.addFlowToAgent(job.getId(), agent.getId(), flow.getPathAsString());
-            setJobStatusAndSave(job, job.getStatus(), null);
-            return optional;
+        optional.ifPresent(agent -> addAgentToJob(job, flow, agent));
+        return optional;
+    }
+
+    /**
+     * Put step into waiting index, and try idle agents that were released after fetching from pool
+     */
+    private void waitForIdleAgent(Job job, Node node, Step step) {
+        FlowNode flow = node.getParent(FlowNode.class);
+        Selector selector = flow.fetchSelector();
+        agentMatchManager.addWaiting(job, step, selector);
+
+        for (String agentId : agentMatchManager.findIdleAgents(selector, MaxMatchingCandidates)) {
+            Optional<Agent> acquired = agentService.acquire(job.getId(), selector, agentId, true);
+            if (acquired.isEmpty()) {
+                agentMatchManager.removeIdle(agentId);
+                continue;
+            }
+
+            Agent agent = acquired.get();
+            addAgentToJob(job, flow, agent);
+            dispatch(job, node, step, agent);
+            return;
         }
+    }
 
-        return Optional.empty();
+    private void matchIdleAgent(String agentId, Collection<String> tags) {
+        List<String> jobIds = agentMatchManager.findWaitingJobs(tags, MaxMatchingCandidates);
+
+        for (String jobId : jobIds) {
+            // job is kept in the index, and matched by the next idle agent or index rebuild
+            Optional<InterLock> lock = lockManager.lock(jobId);
+            if (lock.isEmpty()) {
+                log.warn("Unable to lock job {} to match idle agent {}", jobId, agentId);
+                continue;
+            }
+
+            Job job = getJob(jobId);
+            try {
+                if (!job.isRunning()) {
+                    agentMatchManager.removeJob(jobId);
+                    continue;
+                }
+
+                NodeTree tree = ymlManager.getTree(job);
+                if (assignAgentToWaitingStep(agentId, job, tree, true)) {
+                    return;
+                }
+            } catch (Exception e) {
+                toFailureStatus(job, new CIException(e.getMessage()));
+            } finally {
+                lockManager.unlock(lock.get(), jobId);
+            }
+        }
+    }
+
+    /**
+     * Index is rebuilt on local server only, idle agents are matched with waiting steps right after
+     */
+    private void rebuildMatchIndex() {
+        for (Job job : jobDao.findAllByStatus(Job.Status.RUNNING)) {
+            try {
+                List<Step> steps = stepService.list(job, Sets.newHashSet(WAITING_AGENT));
+                if (steps.isEmpty()) {
+                    continue;
+                }
+
+                NodeTree tree = ymlManager.getTree(job);
+                for (Step step : steps) {
+                    if (!step.isStepType()) {
+                        continue;
+                    }
+
+                    Selector selector = tree.get(step.getNodePath()).getParent(FlowNode.class).fetchSelector();
+                    agentMatchManager.addWaiting(job, step, selector);
+                }
+            } catch (Exception e) {
+                log.warn("Unable to add waiting steps of job {}: {}", job.getId(), e.getMessage());
+            }
+        }
+
+        for (Agent agent : agentService.list()) {
+            if (agent.isIdle()) {
+                agentMatchManager.addIdle(agent.getId(), agent.getTags());
+                matchIdleAgent(agent.getId(), agent.getTags());
+            }
+        }
+    }
+
+    private void addAgentToJob(Job job, FlowNode flow, Agent agent) {
+        AgentProfile profile = agentService.getProfile(agent.getToken());
+        job.addAgentSnapshot(agent, profile);
+        jobAgentDao.addFlowToAgent(job.getId(), agent.getId(), flow.getPathAsString());
+        setJobStatusAndSave(job, job.getStatus(), null);
     }
 
     private boolean assignAgentToWaitingStep(String agentId, Job job, NodeTree tree, boolean shouldIdle) {
         List<Step> steps = stepService.list(job, Lists.newArrayList(WAITING_AGENT));
         if (steps.isEmpty()) {
+            agentMatchManager.removeJob(job.getId());
             return false;
         }
 
@@ -724,11 +898,7 @@ public class JobActionServiceImpl implements JobActionService {
             Optional<Agent> acquired = agentService.acquire(job.getId(), s, agentId, shouldIdle);
             if (acquired.isPresent()) {
                 Agent agent = acquired.get();
-                AgentProfile profile = agentService.getProfile(agent.getToken());
-                job.addAgentSnapshot(agent, profile);
-                setJobStatusAndSave(job, job.getStatus(), null);
-
-                jobAgentDao.addFlowToAgent(job.getId(), agent.getId(), f.getPathAsString());
+                addAgentToJob(job, f, agent);
                 dispatch(job, n, waitingForAgentStep, agent);
                 return true;
             }
@@ -819,16 +989,38 @@ public class JobActionServiceImpl implements JobActionService {
     }
 
     private void onTransition(String jobId, Status to, Consumer<JobSmContext> onContext) {
+        onTransition(jobId, to, job -> true, onContext);
+    }
+
+    private void onTransition(String jobId, Status to, Predicate<Job> condition, Consumer<JobSmContext> onContext) {
+        onTransition(jobId, to, condition, onContext, 1);
+    }
+
+    /**
+     * Lock timeout doesn't fail the job, the transition is retried on task executor up to MaxLockAttempts,
+     * the job is left to its timeout if the lock is still not available
+     */
+    private void onTransition(String jobId, Status to, Predicate<Job> condition, Consumer<JobSmContext> onContext, int attempt) {
         Optional<InterLock> lock = lockManager.lock(jobId);
         if (lock.isEmpty()) {
-            Job job = getJob(jobId);
-            toFailureStatus(job, new CIException("Fail to lock job"));
+            if (attempt >= MaxLockAttempts) {
+                log.error("Unable to lock job {} to {} after {} attempts", jobId, to.getName(), attempt);
+                return;
+            }
+
+            log.warn("Unable to lock job {} to {}, retry later", jobId, to.getName());
+            appTaskExecutor.execute(() -> onTransition(jobId, to, condition, onContext, attempt + 1));
             return;
         }
 
         log.debug("Job {} is locked", jobId);
         Job job = getJob(jobId);
 
+        if (!condition.test(job)) {
+            lockManager.unlock(lock.get(), jobId);
+            return;
+        }
+
         JobSmContext context = new JobSmContext(jobId);
         context.setLock(lock.get());
         context.setJob(job);
@@ -904,12 +1096,8 @@ public class JobActionServiceImpl implements JobActionService {
      */
     private boolean toNextStep(Job job, Step step) throws ScriptException {
         NodeTree tree = ymlManager.getTree(job);
-        Node node = tree.get(NodePath.create(step.getNodePath())); // current node
-
-        List<Node> next = node.getNext();
-        if (job.isOnPostSteps()) {
-            next = tree.post(step.getNodePath());
-        }
+        Node node = tree.get(step.getNodePath()); // current node
+        List<Node> next = tree.next(node, job.isOnPostSteps());
 
         if (next.isEmpty()) {
             Collection<Node> ends = Sets.newHashSet(tree.ends());
@@ -920,7 +1108,7 @@ public class JobActionServiceImpl implements JobActionService {
         }
 
         // check prev steps status
-        Collection<Node> prevs = tree.prevs(next, job.isOnPostSteps());
+        Collection<Node> prevs = tree.prevsOfNext(node, job.isOnPostSteps());
         Set<Executed.Status> previous = getStepsStatus(job, prevs);
         boolean hasFailure = !Collections.disjoint(previous, Executed.FailureStatus);
         if (hasFailure) {
@@ -1001,6 +1189,7 @@ public class JobActionServiceImpl implements JobActionService {
             }
 
             stepService.toStatus(step, WAITING_AGENT, null, false);
+            waitForIdleAgent(job, node, step);
         }
     }
 
@@ -1027,6 +1216,7 @@ public class JobActionServiceImpl implements JobActionService {
     private void dispatch(Job job, Node node, Step step, Agent agent) {
         step.setAgentId(agent.getId());
         stepService.toStatus(step, RUNNING, null, false);
+        agentMatchManager.removeWaiting(step);
 
         ShellIn cmd = cmdManager.createShellCmd(job, step, node);
         agentService.dispatch(cmd, agent);
@@ -1070,7 +1260,7 @@ public class JobActionServiceImpl implements JobActionService {
         }
 
         NodeTree tree = ymlManager.getTree(job);
-        List<Node> nextPostSteps = tree.post(step.getNodePath());
+        List<Node> nextPostSteps = new LinkedList<>(tree.post(step.getNodePath()));
         if (nextPostSteps.isEmpty()) {
             return false;
         }
@@ -1183,6 +1373,8 @@ public class JobActionServiceImpl implements JobActionService {
             String message = error == null ? "" : error.getMessage();
             setJobStatusAndSave(job, context.getTargetToJobStatus(), message);
             jobPriorityDao.removeJob(job.getFlowId(), job.getBuildNumber());
+            agentMatchManager.removeJob(job.getId());
+            admitNextQueuedJob(job.getFlowId());
 
             JobAgent agents = getJobAgent(job.getId());
             agentService.release(agents.all());
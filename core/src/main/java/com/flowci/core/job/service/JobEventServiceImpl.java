@@ -68,9 +68,7 @@ public class JobEventServiceImpl implements JobEventService {
 
     @EventListener
     public void onFlowInitiated(FlowInitEvent event) {
-        for (var f : event.getFlows()) {
-            jobService.init(f);
-        }
+        jobService.init(event.getFlows());
     }
 
     @EventListener
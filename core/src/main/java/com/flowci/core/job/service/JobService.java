@@ -36,10 +36,15 @@ import java.util.List;
 public interface JobService {
 
     /**
-     * Init job data and queue for flow
+     * Init job data for flow
      */
     void init(Flow flow);
 
+    /**
+     * Init job data for flows in batch
+     */
+    void init(List<Flow> flows);
+
     /**
      * Get job by id
      */
@@ -47,6 +47,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
@@ -149,7 +150,37 @@ public class JobServiceImpl implements JobService {
         if (optional.isEmpty()) {
             jobNumberDao.save(new JobNumber(flow.getId()));
         }
-        declareJobQueueAndStartConsumer(flow);
+    }
+
+    @Override
+    public void init(List<Flow> flows) {
+        Set<String> flowIds = new HashSet<>(flows.size());
+        for (Flow flow : flows) {
+            flowIds.add(flow.getId());
+        }
+
+        for (JobNumber number : jobNumberDao.findAllByFlowIdIn(flowIds)) {
+            flowIds.remove(number.getFlowId());
+        }
+
+        if (flowIds.isEmpty()) {
+            return;
+        }
+
+        List<JobNumber> numbers = new ArrayList<>(flowIds.size());
+        for (String flowId : flowIds) {
+            numbers.add(new JobNumber(flowId));
+        }
+
+        try {
+            jobNumberDao.saveAll(numbers);
+        } catch (DuplicateKeyException e) {
+            // inserted by other server, insert stops at the duplicate, upsert one by one for the rest
+            log.debug("Job numbers of {} flows partially existed, upsert one by one", flowIds.size());
+            for (String flowId : flowIds) {
+                jobNumberDao.createIfAbsent(flowId);
+            }
+        }
     }
 
     @Override
@@ -350,8 +381,6 @@ public class JobServiceImpl implements JobService {
     @Override
     public void delete(Flow flow) {
         appTaskExecutor.execute(() -> {
-            jobsQueueManager.removeConsumer(flow.getQueueName());
-
             jobNumberDao.deleteAllByFlowId(flow.getId());
             log.info("Deleted: job number of flow {}", flow.getName());
 
@@ -375,26 +404,6 @@ public class JobServiceImpl implements JobService {
     //        %% Utils
     //====================================================================
 
-    private void declareJobQueueAndStartConsumer(Flow flow) {
-        final String queue = flow.getQueueName();
-
-        try {
-            jobsQueueManager.declare(queue, true, 255, rabbitProperties.getJobDlExchange());
-
-            jobsQueueManager.startConsumer(queue, false, (header, body, envelope) -> {
-                try {
-                    String jobId = new String(body);
-                    eventManager.publish(new JobActionEvent(this, jobId, JobActionEvent.ACTION_TO_RUN));
-                } catch (Exception e) {
-                    log.warn("Fail to publish job action RUN", e);
-                }
-                return true;
-            }, appTaskExecutor);
-        } catch (IOException e) {
-            log.error("Unable to communicate with queue", e);
-        }
-    }
-
     private Job createJob(Flow flow, Trigger trigger, Vars<String> input) {
         // create job number
         JobNumber jobNumber = jobNumberDao.increaseBuildNumber(flow.getId());
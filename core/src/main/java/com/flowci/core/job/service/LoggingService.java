@@ -16,10 +16,11 @@
 
 package com.flowci.core.job.service;
 
-import org.springframework.core.io.Resource;
+import com.flowci.store.StoredFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 
 /**
@@ -35,15 +36,15 @@ public interface LoggingService {
     String save(MultipartFile file);
 
     /**
-     * Get log resource
+     * Get stored log file
      *
      * @param stepId step id
-     * @return file resource
+     * @return stored file that can be read by region
      */
-    Resource get(String stepId);
+    StoredFile get(String stepId);
 
     /**
      * Read cached log from step id
      */
-    Collection<byte[]> read(String stepId);
+    Collection<ByteBuffer> read(String stepId);
 }
@@ -16,31 +16,26 @@
 
 package com.flowci.core.job.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flowci.common.exception.NotFoundException;
 import com.flowci.common.exception.StatusException;
 import com.flowci.common.helper.FileHelper;
 import com.flowci.core.agent.event.OnShellLogEvent;
 import com.flowci.core.agent.event.OnTTYLogEvent;
-import com.flowci.core.common.helper.CacheHelper;
 import com.flowci.core.common.manager.SocketPushManager;
-import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Step;
-import com.flowci.core.job.domain.StepLogItem;
 import com.flowci.core.job.event.CacheShellLogEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.manager.LogBatchManager;
+import com.flowci.core.job.manager.LogBufferManager;
 import com.flowci.store.FileManager;
 import com.flowci.store.Pathable;
-import com.github.benmanes.caffeine.cache.Cache;
+import com.flowci.store.StoredFile;
 import com.google.common.collect.ImmutableList;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -49,8 +44,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 
 /**
  * @author yang
@@ -69,23 +64,17 @@ public class LoggingServiceImpl implements LoggingService {
 
     private static final Pathable LogPath = () -> "logs";
 
-    // cache current job log
-    private final Cache<String, Map<String, Queue<byte[]>>> logCache = CacheHelper.createLocalCache(50, 3600);
-
     @Autowired
     private String topicForTtyLogs;
 
     @Autowired
-    private String topicForLogs;
+    private SocketPushManager socketPushManager;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private LogBatchManager logBatchManager;
 
     @Autowired
-    private SocketPushManager socketPushManager;
-
-    @Autowired
-    private SpringEventManager eventManager;
+    private LogBufferManager logBufferManager;
 
     @Autowired
     private FileManager fileManager;
@@ -95,10 +84,7 @@ public class LoggingServiceImpl implements LoggingService {
 
     @EventListener
     public void cacheShellLog(CacheShellLogEvent event) {
-        Map<String, Queue<byte[]>> cache = logCache.getIfPresent(event.getJobId());
-        if (cache != null) {
-            cache.get(event.getStepId()).add(event.getBody());
-        }
+        logBufferManager.append(event.getJobId(), event.getStepId(), event.getBody());
     }
 
     @EventListener
@@ -109,18 +95,7 @@ public class LoggingServiceImpl implements LoggingService {
 
     @EventListener
     public void sendShellLogToClient(OnShellLogEvent event) {
-        String jobId = event.getJobId();
-        String stepId = event.getStepId();
-        String b64Log = event.getB64Log();
-
-        try {
-            byte[] bytes = objectMapper.writeValueAsBytes(new StepLogItem(stepId, b64Log));
-
-            eventManager.publish(new CacheShellLogEvent(this, jobId, stepId, bytes));
-            socketPushManager.push(topicForLogs + "/" + jobId, bytes);
-        } catch (JsonProcessingException e) {
-            log.warn("Unable to write StepLogItem", e);
-        }
+        logBatchManager.add(event.getJobId(), event.getStepId(), event.getB64Log());
     }
 
     @EventListener
@@ -128,17 +103,13 @@ public class LoggingServiceImpl implements LoggingService {
         Job job = event.getJob();
 
         if (job.getStatus() == Job.Status.CREATED) {
-            List<Step> steps = stepService.list(job);
-            Map<String, Queue<byte[]>> cache = new HashMap<>(steps.size());
-            for (Step step : steps) {
-                cache.put(step.getId(), new ConcurrentLinkedQueue<>());
-            }
-            logCache.put(job.getId(), cache);
+            logBufferManager.open(job.getId());
             return;
         }
 
         if (job.isDone()) {
-            logCache.invalidate(job.getId());
+            logBatchManager.flush(job.getId());
+            logBufferManager.remove(job.getId());
         }
     }
 
@@ -158,26 +129,18 @@ public class LoggingServiceImpl implements LoggingService {
     }
 
     @Override
-    public Resource get(String stepId) {
+    public StoredFile get(String stepId) {
         try {
             String fileName = getLogFile(stepId);
-            InputStream stream = fileManager.read(fileName, getLogDir(stepId));
-            return new InputStreamResource(stream);
+            return fileManager.stat(fileName, getLogDir(stepId));
         } catch (IOException e) {
             throw new NotFoundException("Log not available");
         }
     }
 
     @Override
-    public Collection<byte[]> read(String stepId) {
-        Step step = stepService.get(stepId);
-        Map<String, Queue<byte[]>> cached = logCache.getIfPresent(step.getJobId());
-
-        if (Objects.isNull(cached)) {
-            return Collections.emptyList();
-        }
-
-        return cached.get(stepId);
+    public Collection<ByteBuffer> read(String stepId) {
+        return logBufferManager.read(stepId);
     }
 
     private Pathable[] getLogDir(String cmdId) {
@@ -19,6 +19,7 @@ package com.flowci.core.job.service;
 import com.flowci.core.common.domain.PushEvent;
 import com.flowci.core.common.manager.SocketPushManager;
 import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.StepDelta;
 import com.flowci.core.job.event.JobCreatedEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
 import com.flowci.core.job.event.StepUpdateEvent;
@@ -67,11 +68,13 @@ public class PushServiceImpl implements PushService {
     @EventListener
     public void onStepStatusChange(StepUpdateEvent event) {
         String topic = topicForSteps + "/" + event.getJobId();
+        StepDelta delta = new StepDelta(event.getJobId(), event.getSeq(), event.getItems());
+
         if (event.isInit()) {
-            socketPushManager.push(topic, PushEvent.NEW_CREATED, event.getItems());
+            socketPushManager.push(topic, PushEvent.NEW_CREATED, delta);
             return;
         }
-        socketPushManager.push(topic, PushEvent.STATUS_CHANGE, event.getItems());
+        socketPushManager.push(topic, PushEvent.STATUS_CHANGE, delta);
     }
 
     @Override
@@ -20,6 +20,7 @@ import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.job.domain.Executed;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.domain.StepDelta;
 
 import java.util.Collection;
 import java.util.List;
@@ -46,9 +47,15 @@ public interface StepService {
 
     /**
      * List step of executed cmd for job
+     * Steps are shared with the cache and must not be modified, load it by id to update
      */
     List<Step> list(Job job);
 
+    /**
+     * All steps of job from db with current step seq
+     */
+    StepDelta snapshot(Job job);
+
     /**
      * List step by job and status
      */
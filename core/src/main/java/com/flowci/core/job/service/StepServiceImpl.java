@@ -20,15 +20,19 @@ import com.flowci.common.helper.StringHelper;
 import com.flowci.core.common.manager.SpringEventManager;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.job.dao.ExecutedCmdDao;
+import com.flowci.core.job.dao.StepSeqDao;
 import com.flowci.core.job.domain.Executed;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.domain.StepDelta;
+import com.flowci.core.job.domain.StepSeq;
 import com.flowci.core.job.event.StepUpdateEvent;
 import com.flowci.core.job.manager.YmlManager;
 import com.flowci.common.exception.NotFoundException;
 import com.flowci.tree.*;
 import com.github.benmanes.caffeine.cache.Cache;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -37,6 +41,10 @@ import java.util.*;
 /**
  * ExecutedCmd == Step
  *
+ * Steps of job are cached with the step seq, and reloaded if the seq changed by other servers.
+ * Cached steps are never modified, changed steps are copied and replaced in cache after saved,
+ * so the cached list is returned without copy.
+ *
  * @author yang
  */
 @Slf4j
@@ -44,11 +52,14 @@ import java.util.*;
 public class StepServiceImpl implements StepService {
 
     @Autowired
-    private Cache<String, List<Step>> jobStepCache;
+    private Cache<String, StepDelta> jobStepCache;
 
     @Autowired
     private ExecutedCmdDao executedCmdDao;
 
+    @Autowired
+    private StepSeqDao stepSeqDao;
+
     @Autowired
     private YmlManager ymlManager;
 
@@ -68,7 +79,9 @@ public class StepServiceImpl implements StepService {
         });
 
         executedCmdDao.insert(steps);
-        eventManager.publish(new StepUpdateEvent(this, job.getId(), steps, true));
+
+        long seq = stepSeqDao.increase(job.getId(), job.getFlowId());
+        eventManager.publish(new StepUpdateEvent(this, job.getId(), steps, true, seq));
     }
 
     @Override
@@ -95,7 +108,15 @@ public class StepServiceImpl implements StepService {
 
     @Override
     public List<Step> list(Job job) {
-        return list(job.getId(), job.getFlowId(), job.getBuildNumber());
+        return cached(job.getId(), job.getFlowId(), job.getBuildNumber()).getSteps();
+    }
+
+    @Override
+    public StepDelta snapshot(Job job) {
+        // read seq before steps, client may apply a change twice but never miss one
+        long seq = stepSeqDao.findByJobId(job.getId()).map(StepSeq::getSeq).orElse(0L);
+        List<Step> steps = executedCmdDao.findAllByFlowIdAndBuildNumber(job.getFlowId(), job.getBuildNumber());
+        return new StepDelta(job.getId(), seq, steps);
     }
 
     @Override
@@ -111,7 +132,7 @@ public class StepServiceImpl implements StepService {
     @Override
     public String toVarString(Job job, Step current) {
         StringBuilder builder = new StringBuilder();
-        for (Step step : list(job)) {
+        for (Step step : cached(job.getId(), job.getFlowId(), job.getBuildNumber()).getSteps()) {
             NodePath path = NodePath.create(step.getNodePath());
             builder.append(path.name())
                     .append("=")
@@ -127,59 +148,74 @@ public class StepServiceImpl implements StepService {
 
     @Override
     public Collection<Step> toStatus(Collection<Step> steps, Executed.Status status, String err) {
-        String jobId = "";
-        String flowId = "";
-        long buildNumber = 0L;
+        if (steps.isEmpty()) {
+            return steps;
+        }
 
         for (Step step : steps) {
-            jobId = step.getJobId();
-            flowId = step.getFlowId();
-            buildNumber = step.getBuildNumber();
-
             step.setStatus(status);
             step.setError(err);
         }
 
-        if (steps.isEmpty()) {
-            return steps;
-        }
+        Step any = steps.iterator().next();
+        String jobId = any.getJobId();
+        StepDelta cached = jobStepCache.getIfPresent(jobId);
 
-        executedCmdDao.saveAll(steps);
+        executedCmdDao.bulkSave(steps, Collections.emptyList());
 
-        jobStepCache.invalidate(jobId);
-        List<Step> list = list(jobId, flowId, buildNumber);
-        eventManager.publish(new StepUpdateEvent(this, jobId, list, false));
+        long seq = stepSeqDao.increase(jobId, any.getFlowId());
+        replaceInCache(jobId, cached, seq, steps);
+
+        eventManager.publish(new StepUpdateEvent(this, jobId, new ArrayList<>(steps), false, seq));
         return steps;
     }
 
     @Override
     public Step toStatus(Step entity, Executed.Status status, String err, boolean allChildren) {
-        saveStatus(entity, status, err);
+        entity.setStatus(status);
+        entity.setError(err);
+
+        String jobId = entity.getJobId();
+        StepDelta cached = cached(jobId, entity.getFlowId(), entity.getBuildNumber());
+
+        Map<String, Step> byPath = new HashMap<>(cached.getSteps().size());
+        for (Step step : cached.getSteps()) {
+            byPath.put(step.getNodePath(), step);
+        }
+
+        // parents and children only need status fields to be updated
+        List<Step> related = new LinkedList<>();
 
         // update parent status if not post step
         if (!entity.isPost()) {
-            Step parent = getWithNullReturn(entity.getJobId(), entity.getParent());
-            updateAllParents(parent, entity);
+            Step parent = find(byPath, jobId, entity.getParent());
+            updateAllParents(byPath, parent, entity, related);
         }
 
         if (allChildren) {
-            NodeTree tree = ymlManager.getTree(entity.getJobId());
-            NodePath path = NodePath.create(entity.getNodePath());
-            Node node = tree.get(path);
+            NodeTree tree = ymlManager.getTree(jobId);
+            Node node = tree.get(entity.getNodePath());
 
             for (Node child : node.getChildren()) {
-                Step childStep = get(entity.getJobId(), child.getPathAsString());
+                Step childStep = copyOf(find(byPath, jobId, child.getPathAsString()));
                 childStep.setStartAt(entity.getStartAt());
                 childStep.setFinishAt(entity.getFinishAt());
-                saveStatus(childStep, status, err);
+                childStep.setStatus(status);
+                childStep.setError(err);
+                related.add(childStep);
             }
         }
 
-        String jobId = entity.getJobId();
-        jobStepCache.invalidate(jobId);
+        executedCmdDao.bulkSave(List.of(entity), related);
 
-        List<Step> steps = list(jobId, entity.getFlowId(), entity.getBuildNumber());
-        eventManager.publish(new StepUpdateEvent(this, jobId, steps, false));
+        List<Step> changed = new ArrayList<>(related.size() + 1);
+        changed.add(entity);
+        changed.addAll(related);
+
+        long seq = stepSeqDao.increase(jobId, entity.getFlowId());
+        replaceInCache(jobId, cached, seq, changed);
+
+        eventManager.publish(new StepUpdateEvent(this, jobId, changed, false, seq));
         return entity;
     }
 
@@ -191,11 +227,13 @@ public class StepServiceImpl implements StepService {
 
     @Override
     public Long delete(Flow flow) {
+        stepSeqDao.deleteByFlowId(flow.getId());
         return executedCmdDao.deleteByFlowId(flow.getId());
     }
 
     @Override
     public Long delete(Job job) {
+        stepSeqDao.deleteByJobId(job.getId());
         return executedCmdDao.deleteByJobId(job.getId());
     }
 
@@ -208,11 +246,28 @@ public class StepServiceImpl implements StepService {
         return optional.orElse(null);
     }
 
-    private void updateAllParents(Step parent, Step current) {
+    /**
+     * Find step from cached steps, load from db if not cached
+     */
+    private Step find(Map<String, Step> cached, String jobId, String nodePath) {
+        if (!StringHelper.hasValue(nodePath)) {
+            return null;
+        }
+
+        Step step = cached.get(nodePath);
+        if (step != null) {
+            return step;
+        }
+
+        return getWithNullReturn(jobId, nodePath);
+    }
+
+    private void updateAllParents(Map<String, Step> cached, Step parent, Step current, List<Step> updated) {
         if (parent == null || parent.isRoot()) {
             return;
         }
 
+        parent = copyOf(parent);
         parent.setStatus(current.getStatus());
         parent.setError(current.getError());
         parent.setFinishAt(current.getFinishAt());
@@ -221,22 +276,74 @@ public class StepServiceImpl implements StepService {
             parent.setStartAt(current.getStartAt());
         }
 
-        executedCmdDao.save(parent);
+        updated.add(parent);
 
-        Step p = getWithNullReturn(parent.getJobId(), parent.getParent());
-        updateAllParents(p, current);
+        Step p = find(cached, parent.getJobId(), parent.getParent());
+        updateAllParents(cached, p, current, updated);
     }
 
-    private Step saveStatus(Step step, Step.Status status, String error) {
-        step.setError(error);
-        step.setStatus(status);
-        executedCmdDao.save(step);
-        return step;
+    /**
+     * Put steps with replaced copies to cache if no other change since the cached seq, otherwise invalidate it
+     */
+    private void replaceInCache(String jobId, StepDelta cached, long seq, Collection<Step> steps) {
+        if (cached == null) {
+            return;
+        }
+
+        if (seq != cached.getSeq() + 1) {
+            jobStepCache.invalidate(jobId);
+            return;
+        }
+
+        Map<String, Step> byId = new HashMap<>(steps.size());
+        for (Step step : steps) {
+            byId.put(step.getId(), step);
+        }
+
+        List<Step> replaced = new ArrayList<>(cached.getSteps().size());
+        int numOfReplaced = 0;
+
+        for (Step step : cached.getSteps()) {
+            Step changed = byId.get(step.getId());
+            if (changed == null) {
+                replaced.add(step);
+                continue;
+            }
+
+            replaced.add(copyOf(changed));
+            numOfReplaced++;
+        }
+
+        if (numOfReplaced != byId.size()) {
+            jobStepCache.invalidate(jobId);
+            return;
+        }
+
+        jobStepCache.put(jobId, new StepDelta(jobId, seq, Collections.unmodifiableList(replaced)));
+    }
+
+    /**
+     * Load steps from cache, reload if step seq changed since cached
+     */
+    private StepDelta cached(String jobId, String flowId, long buildNumber) {
+        // read seq before steps, the steps reloaded on next call if changed in between
+        long seq = stepSeqDao.findByJobId(jobId).map(StepSeq::getSeq).orElse(0L);
+
+        StepDelta cached = jobStepCache.getIfPresent(jobId);
+        if (cached != null && cached.getSeq() == seq) {
+            return cached;
+        }
+
+        List<Step> steps = executedCmdDao.findAllByFlowIdAndBuildNumber(flowId, buildNumber);
+        StepDelta loaded = new StepDelta(jobId, seq, Collections.unmodifiableList(steps));
+        jobStepCache.put(jobId, loaded);
+        return loaded;
     }
 
-    private List<Step> list(String jobId, String flowId, long buildNumber) {
-        return jobStepCache.get(jobId,
-                s -> executedCmdDao.findAllByFlowIdAndBuildNumber(flowId, buildNumber));
+    private static Step copyOf(Step step) {
+        Step copy = new Step();
+        BeanUtils.copyProperties(step, copy);
+        return copy;
     }
 
     private static Step newInstance(Job job, Node node) {
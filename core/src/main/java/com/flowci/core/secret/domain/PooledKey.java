@@ -0,0 +1,43 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.secret.domain;
+
+import com.flowci.common.domain.SimpleKeyPair;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * RSA key pair generated in advance, key pair is encrypted by converter
+ */
+@Getter
+@Setter
+@Document(collection = "rsa_pool")
+public class PooledKey {
+
+    @Id
+    private String id;
+
+    private SimpleKeyPair pair;
+
+    @Indexed(name = "index_created_at")
+    private Instant createdAt;
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.secret.manager;
+
+import com.flowci.common.domain.SimpleKeyPair;
+
+import java.util.List;
+
+public interface KeyPoolManager {
+
+    /**
+     * Take a pre-generated RSA key pair with email as public key comment,
+     * generate on current thread if pool is empty
+     */
+    SimpleKeyPair take(String email);
+
+    /**
+     * Take pre-generated RSA key pairs for each email,
+     * generate the rest in parallel if pool doesn't have enough
+     */
+    List<SimpleKeyPair> take(List<String> emails);
+
+    /**
+     * Generate key pairs in background until pool is full
+     */
+    void refill();
+
+    /**
+     * Num of key pairs in pool
+     */
+    long depth();
+}
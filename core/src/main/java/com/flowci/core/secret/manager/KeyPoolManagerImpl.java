@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.secret.manager;
+
+import com.flowci.common.domain.SimpleKeyPair;
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.helper.CipherHelper;
+import com.flowci.core.secret.dao.PooledKeyDao;
+import com.flowci.core.secret.domain.PooledKey;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of RSA key pairs in mongo, so key generation is not on request thread
+ * and generated key pairs are kept over restart.
+ */
+@Slf4j
+@Component
+public class KeyPoolManagerImpl implements KeyPoolManager {
+
+    private final PooledKeyDao pooledKeyDao;
+
+    private final int size;
+
+    private final AtomicLong depth = new AtomicLong();
+
+    private final AtomicBoolean filling = new AtomicBoolean(false);
+
+    private final TaskExecutor rsaPoolExecutor;
+
+    private volatile boolean stopped;
+
+    public KeyPoolManagerImpl(PooledKeyDao pooledKeyDao,
+                              AppProperties appProperties,
+                              MeterRegistry meterRegistry,
+                              @Qualifier("rsaPoolExecutor") TaskExecutor rsaPoolExecutor) {
+        this.pooledKeyDao = pooledKeyDao;
+        this.size = appProperties.getRsaPoolSize();
+        this.rsaPoolExecutor = rsaPoolExecutor;
+
+        Gauge.builder("rsa_pool_depth", depth, AtomicLong::get)
+                .description("Num of pre-generated rsa key pairs")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStarted() {
+        refill();
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void scheduleRefill() {
+        refill();
+    }
+
+    @Override
+    public SimpleKeyPair take(String email) {
+        if (size > 0) {
+            Optional<PooledKey> optional = pooledKeyDao.pop();
+            refill();
+
+            if (optional.isPresent()) {
+                depth.updateAndGet(v -> Math.max(0, v - 1));
+                return CipherHelper.RSA.withComment(optional.get().getPair(), email);
+            }
+
+            log.debug("RSA key pool is empty");
+        }
+
+        return CipherHelper.RSA.gen(email);
+    }
+
+    @Override
+    public List<SimpleKeyPair> take(List<String> emails) {
+        SimpleKeyPair[] pairs = new SimpleKeyPair[emails.size()];
+        int numOfPooled = 0;
+
+        if (size > 0) {
+            for (; numOfPooled < pairs.length; numOfPooled++) {
+                Optional<PooledKey> optional = pooledKeyDao.pop();
+                if (optional.isEmpty()) {
+                    log.debug("RSA key pool is empty");
+                    break;
+                }
+                pairs[numOfPooled] = CipherHelper.RSA.withComment(optional.get().getPair(), emails.get(numOfPooled));
+            }
+
+            long taken = numOfPooled;
+            depth.updateAndGet(v -> Math.max(0, v - taken));
+            refill();
+        }
+
+        for (int i = numOfPooled; i < pairs.length; i++) {
+            pairs[i] = CipherHelper.RSA.gen(emails.get(i));
+        }
+
+        return Arrays.asList(pairs);
+    }
+
+    @Override
+    public void refill() {
+        if (size <= 0 || stopped || !filling.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            rsaPoolExecutor.execute(this::fill);
+        } catch (RuntimeException e) {
+            filling.set(false);
+            log.warn("Unable to refill rsa key pool: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public long depth() {
+        return depth.get();
+    }
+
+    private void fill() {
+        try {
+            // count again for each key since other servers fill the same pool
+            long count;
+            while ((count = pooledKeyDao.count()) < size && !stopped) {
+                depth.set(count);
+
+                PooledKey key = new PooledKey();
+                key.setPair(CipherHelper.RSA.gen(""));
+                key.setCreatedAt(Instant.now());
+                pooledKeyDao.insert(key);
+            }
+            depth.set(count);
+        } catch (RuntimeException e) {
+            log.warn("Unable to fill rsa key pool: {}", e.getMessage());
+        } finally {
+            filling.set(false);
+        }
+    }
+}
@@ -32,6 +32,7 @@ import com.flowci.core.secret.domain.*;
 import com.flowci.core.secret.event.CreateAuthEvent;
 import com.flowci.core.secret.event.CreateRsaEvent;
 import com.flowci.core.secret.event.GetSecretEvent;
+import com.flowci.core.secret.manager.KeyPoolManager;
 import com.flowci.docker.K8sManager;
 import com.flowci.store.FileManager;
 import lombok.extern.slf4j.Slf4j;
@@ -62,6 +63,9 @@ public class SecretServiceImpl implements SecretService {
     @Autowired
     private FileManager fileManager;
 
+    @Autowired
+    private KeyPoolManager keyPoolManager;
+
     @Override
     public List<Secret> list() {
         return secretDao.findAll(Mongoable.SortByCreatedAtASC);
@@ -106,13 +110,13 @@ public class SecretServiceImpl implements SecretService {
     @Override
     public SimpleKeyPair genRSA() {
         String email = sessionManager.get().getEmail();
-        return CipherHelper.RSA.gen(email);
+        return keyPoolManager.take(email);
     }
 
     @Override
     public RSASecret createRSA(String name) {
         String email = sessionManager.get().getEmail();
-        SimpleKeyPair pair = CipherHelper.RSA.gen(email);
+        SimpleKeyPair pair = keyPoolManager.take(email);
         return createRSA(name, pair);
     }
 
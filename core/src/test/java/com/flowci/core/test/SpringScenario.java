@@ -25,6 +25,7 @@ import com.flowci.core.flow.dao.FlowDao;
 import com.flowci.core.flow.domain.*;
 import com.flowci.core.git.domain.GitConfig;
 import com.flowci.core.job.domain.*;
+import com.flowci.core.job.manager.JobQueueManager;
 import com.flowci.core.plugin.domain.Plugin;
 import com.flowci.core.secret.domain.Secret;
 import com.flowci.core.test.SpringScenario.Config;
@@ -113,6 +114,9 @@ public abstract class SpringScenario {
     @Autowired
     private RabbitOperations jobsQueueManager;
 
+    @Autowired
+    private JobQueueManager jobQueueManager;
+
     @Autowired
     private FlowDao flowDao;
 
@@ -139,7 +143,7 @@ public abstract class SpringScenario {
     @AfterEach
     public void dbAndQueueCleanUp() {
         for (Flow flow : flowDao.findAll()) {
-            jobsQueueManager.delete(flow.getQueueName());
+            jobsQueueManager.purge(jobQueueManager.queueName(flow.getId()));
         }
 
         mongoTemplate.dropCollection(Flow.class);
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.agent;
+
+import com.flowci.core.agent.domain.Agent;
+import com.flowci.core.agent.domain.Agent.Status;
+import com.flowci.core.agent.domain.AgentOption;
+import com.flowci.core.agent.service.AgentService;
+import com.flowci.core.test.ZookeeperScenario;
+import com.flowci.tree.Selector;
+import com.google.common.collect.Sets;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Simulate N jobs x M agents acquire and release agents concurrently
+ */
+@Slf4j
+public class AgentAcquireBenchmarkTest extends ZookeeperScenario {
+
+    private static final int NumOfJobs = 40;
+
+    private static final int NumOfAgents = 20;
+
+    private static final int NumOfSelectors = 4;
+
+    private static final int RoundsPerJob = 5;
+
+    @Autowired
+    private AgentService agentService;
+
+    @Test
+    void should_not_assign_agent_to_multiple_jobs_under_contention() throws Exception {
+        for (int i = 0; i < NumOfAgents; i++) {
+            String label = "label-" + (i % NumOfSelectors);
+            Agent agent = agentService.create(new AgentOption()
+                    .setName("bench-agent-" + i)
+                    .setTags(Sets.newHashSet(label)));
+            agentService.update(agent, Status.IDLE);
+        }
+
+        Map<String, String> occupied = new ConcurrentHashMap<>();
+        AtomicInteger acquired = new AtomicInteger(0);
+        AtomicInteger conflicts = new AtomicInteger(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(NumOfJobs);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(NumOfJobs);
+
+        for (int i = 0; i < NumOfJobs; i++) {
+            String jobId = "job-" + i;
+            Selector selector = new Selector("label-" + (i % NumOfSelectors));
+
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    int rounds = 0;
+                    while (rounds < RoundsPerJob) {
+                        Optional<Agent> optional = agentService.acquire(jobId, selector);
+                        if (optional.isEmpty()) {
+                            Thread.yield();
+                            continue;
+                        }
+
+                        Agent agent = optional.get();
+                        if (occupied.putIfAbsent(agent.getId(), jobId) != null) {
+                            conflicts.incrementAndGet();
+                        }
+
+                        acquired.incrementAndGet();
+                        occupied.remove(agent.getId(), jobId);
+                        agentService.release(Sets.newHashSet(agent.getId()));
+                        rounds++;
+                    }
+                } catch (InterruptedException ignore) {
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long startAt = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(120, TimeUnit.SECONDS));
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startAt);
+        executor.shutdown();
+
+        log.info("{} jobs x {} agents: {} acquire/release in {} ms, {} ops/s",
+                NumOfJobs, NumOfAgents, acquired.get(), duration, acquired.get() * 1000L / Math.max(duration, 1));
+
+        assertEquals(0, conflicts.get());
+        assertEquals(NumOfJobs * RoundsPerJob, acquired.get());
+
+        for (Agent agent : agentService.list()) {
+            assertEquals(Status.IDLE, agent.getStatus());
+            assertNull(agent.getJobId());
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.flowci.core.test.agent;
+
+import com.flowci.core.agent.dao.AgentDemandDao;
+import com.flowci.core.agent.domain.Agent;
+import com.flowci.core.agent.domain.AgentDemand;
+import com.flowci.core.agent.domain.AgentHost;
+import com.flowci.core.agent.domain.LocalUnixAgentHost;
+import com.flowci.core.agent.manager.AgentPoolManagerImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+public class AgentPoolManagerTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    // key as job id
+    private final Map<String, AgentDemand> demands = new ConcurrentHashMap<>();
+
+    private AgentPoolManagerImpl poolManager;
+
+    private AgentHost host;
+
+    @BeforeEach
+    void init() {
+        poolManager = new AgentPoolManagerImpl(demandDao(), registry);
+
+        host = new LocalUnixAgentHost();
+        host.setId("host-id");
+        host.setName("local");
+        host.setMaxSize(20);
+    }
+
+    @Test
+    void should_keep_min_idle_agents() {
+        host.setMinIdle(2);
+        assertEquals(2, poolManager.numToStart(host, List.of()));
+
+        List<Agent> agents = agents(Agent.Status.IDLE, Agent.Status.STARTING);
+        assertEquals(0, poolManager.numToStart(host, agents));
+    }
+
+    @Test
+    void should_scale_up_in_batch_by_pending_jobs() {
+        for (int i = 0; i < 6; i++) {
+            poolManager.onDemand(host, "job-" + i);
+        }
+
+        // 6 pending + predicted from arrival rate, minus agents starting
+        int numToStart = poolManager.numToStart(host, agents(Agent.Status.STARTING));
+        assertTrue(numToStart >= 5);
+        assertTrue(numToStart <= 10);
+
+        // same job waiting again is not counted twice
+        poolManager.onDemand(host, "job-0");
+        assertEquals(numToStart, poolManager.numToStart(host, agents(Agent.Status.STARTING)));
+
+        // limited by max size
+        host.setMaxSize(3);
+        assertEquals(2, poolManager.numToStart(host, agents(Agent.Status.BUSY)));
+    }
+
+    @Test
+    void should_record_time_to_agent() {
+        poolManager.onDemand(host, "job-1");
+        poolManager.onAcquired("job-1");
+        poolManager.onAcquired("job-1");
+
+        assertEquals(1, registry.get("agent_time_to_ready").timer().count());
+    }
+
+    @Test
+    void should_not_count_pending_job_once_finished() {
+        poolManager.onDemand(host, "job-1");
+        poolManager.onDemand(host, "job-2");
+
+        // 2 pending + 1 predicted from arrival rate
+        assertEquals(3, poolManager.numToStart(host, List.of()));
+
+        poolManager.onFinished("job-1");
+        assertEquals(1, poolManager.numToStart(host, List.of()));
+    }
+
+    @Test
+    void should_remove_meters_of_host_when_removed() {
+        poolManager.numToStart(host, List.of());
+        assertEquals(1, registry.find("agent_pool_utilization").tag("host", "local").gauges().size());
+
+        poolManager.remove(host);
+        assertTrue(registry.find("agent_pool_utilization").tag("host", "local").gauges().isEmpty());
+        assertTrue(registry.find("agent_pool_idle").tag("host", "local").gauges().isEmpty());
+    }
+
+    @Test
+    void should_stop_idle_agents_over_min_idle_after_timeout() {
+        host.setMinIdle(1);
+        host.setIdleTimeout(60);
+
+        List<Agent> agents = agents(Agent.Status.IDLE, Agent.Status.IDLE, Agent.Status.IDLE, Agent.Status.BUSY);
+        agents.get(0).setStatusUpdatedAt(Instant.now().minusSeconds(600));
+        agents.get(1).setStatusUpdatedAt(Instant.now().minusSeconds(300));
+        agents.get(2).setStatusUpdatedAt(Instant.now());
+
+        List<Agent> toStop = poolManager.toStop(host, agents);
+        assertEquals(2, toStop.size());
+        assertEquals("agent-0", toStop.get(0).getName());
+        assertEquals("agent-1", toStop.get(1).getName());
+
+        // utilization gauge updated
+        poolManager.numToStart(host, agents);
+        assertEquals(0.25, registry.get("agent_pool_utilization").gauge().value());
+    }
+
+    @Test
+    void should_spread_agents_over_hosts_by_free_capacity() {
+        AgentHost other = new LocalUnixAgentHost();
+        other.setId("other-id");
+        other.setName("other");
+        other.setMaxSize(10);
+
+        // host: 20 - 4 busy = 16 free, other: 10 - 2 pending jobs = 8 free
+        poolManager.onDemand(other, "job-1");
+        poolManager.onDemand(other, "job-2");
+
+        Map<AgentHost, List<Agent>> hosts = new LinkedHashMap<>();
+        hosts.put(host, agents(Agent.Status.BUSY, Agent.Status.BUSY, Agent.Status.BUSY, Agent.Status.BUSY));
+        hosts.put(other, List.of());
+
+        Map<AgentHost, Integer> spread = poolManager.spread(hosts, 12);
+        assertEquals(10, spread.get(host));
+        assertEquals(2, spread.get(other));
+
+        // limited by free capacity of all hosts
+        spread = poolManager.spread(hosts, 50);
+        assertEquals(16, spread.get(host));
+        assertEquals(8, spread.get(other));
+
+        // no free capacity
+        host.setMaxSize(4);
+        other.setMaxSize(2);
+        assertTrue(poolManager.spread(hosts, 1).isEmpty());
+    }
+
+    @Test
+    void should_count_demands_of_other_servers() {
+        poolManager.onDemand(host, "job-1");
+
+        // pool manager on other server shares demands from db
+        AgentPoolManagerImpl other = new AgentPoolManagerImpl(demandDao(), new SimpleMeterRegistry());
+        other.onDemand(host, "job-2");
+
+        int numToStart = poolManager.numToStart(host, List.of());
+        assertTrue(numToStart >= 2);
+        assertEquals(numToStart, other.numToStart(host, List.of()));
+
+        other.onAcquired("job-1");
+        assertEquals(numToStart - 1, poolManager.numToStart(host, List.of()));
+    }
+
+    /**
+     * In memory stand-in of agent demand collection
+     */
+    private AgentDemandDao demandDao() {
+        AgentDemandDao dao = Mockito.mock(AgentDemandDao.class);
+
+        Mockito.when(dao.demand(anyString(), anyString())).thenAnswer(invocation -> {
+            String jobId = invocation.getArgument(0);
+            AgentDemand existing = demands.get(jobId);
+            if (existing != null && existing.getAcquiredAt() == null) {
+                existing.setHostId(invocation.getArgument(1));
+                return false;
+            }
+
+            AgentDemand demand = new AgentDemand();
+            demand.setJobId(jobId);
+            demand.setHostId(invocation.getArgument(1));
+            demand.setSince(Instant.now());
+            demands.put(jobId, demand);
+            return true;
+        });
+
+        Mockito.when(dao.acquired(anyString())).thenAnswer(invocation -> {
+            AgentDemand demand = demands.get(invocation.<String>getArgument(0));
+            if (demand == null || demand.getAcquiredAt() != null) {
+                return Optional.empty();
+            }
+            demand.setAcquiredAt(Instant.now());
+            return Optional.of(demand);
+        });
+
+        Mockito.doAnswer(invocation -> demands.remove(invocation.<String>getArgument(0)))
+                .when(dao).deleteById(anyString());
+
+        Mockito.when(dao.countByHostIdAndAcquiredAtIsNullAndSinceAfter(anyString(), any())).thenAnswer(invocation ->
+                count(invocation.getArgument(0), invocation.getArgument(1), true));
+
+        Mockito.when(dao.countByHostIdAndSinceAfter(anyString(), any())).thenAnswer(invocation ->
+                count(invocation.getArgument(0), invocation.getArgument(1), false));
+
+        return dao;
+    }
+
+    private long count(String hostId, Instant since, boolean pendingOnly) {
+        return demands.values().stream()
+                .filter(d -> d.getHostId().equals(hostId) && d.getSince().isAfter(since))
+                .filter(d -> !pendingOnly || d.getAcquiredAt() == null)
+                .count();
+    }
+
+    private static List<Agent> agents(Agent.Status... statuses) {
+        List<Agent> list = new ArrayList<>(statuses.length);
+        for (int i = 0; i < statuses.length; i++) {
+            Agent agent = new Agent("agent-" + i);
+            agent.setStatus(statuses[i]);
+            list.add(agent);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,233 @@
+package com.flowci.core.test.common;
+
+import com.flowci.core.common.rabbit.ChannelPool;
+import com.rabbitmq.client.*;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+@Slf4j
+public class ChannelPoolTest {
+
+    private final ExecutorService broker = Executors.newSingleThreadExecutor();
+
+    private final List<BrokerChannel> channels = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        broker.shutdownNow();
+    }
+
+    @Test
+    void should_complete_pending_publish_on_batched_ack() throws Exception {
+        ChannelPool pool = new ChannelPool(connection(0, Integer.MAX_VALUE), 1);
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(pool.publish("", "q", null, new byte[0]));
+        }
+        assertEquals(10, pool.numOfPending());
+
+        channels.get(0).ack(5, true);
+        assertEquals(5, pool.numOfPending());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(futures.get(i).get(1, TimeUnit.SECONDS));
+        }
+
+        channels.get(0).nack(6, false);
+        assertFalse(futures.get(5).get(1, TimeUnit.SECONDS));
+        assertFalse(futures.get(6).isDone());
+        assertEquals(4, pool.numOfPending());
+    }
+
+    @Test
+    void should_fail_publish_if_channel_error() throws Exception {
+        ChannelPool pool = new ChannelPool(connection(0, Integer.MAX_VALUE), 1);
+        Mockito.doThrow(new IOException("closed"))
+                .when(channels.get(0).channel)
+                .basicPublish(anyString(), anyString(), any(), any());
+
+        CompletableFuture<Boolean> future = pool.publish("", "q", null, new byte[0]);
+        assertTrue(future.isDone());
+        assertFalse(future.get());
+        assertEquals(0, pool.numOfPending());
+    }
+
+    @Test
+    void should_fail_pending_publish_and_reopen_channel_on_shutdown() throws Exception {
+        ChannelPool pool = new ChannelPool(connection(0, Integer.MAX_VALUE), 1);
+
+        CompletableFuture<Boolean> future = pool.publish("", "q", null, new byte[0]);
+        assertEquals(1, pool.numOfPending());
+
+        channels.get(0).shutdown();
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(0, pool.numOfPending());
+
+        CompletableFuture<Boolean> next = pool.publish("", "q", null, new byte[0]);
+        assertEquals(2, channels.size());
+        assertEquals(1, pool.numOfPending());
+
+        channels.get(1).ack(1, false);
+        assertTrue(next.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void should_fail_publish_if_not_confirmed_in_time() throws Exception {
+        ChannelPool pool = new ChannelPool(connection(0, Integer.MAX_VALUE), 1, Duration.ofMillis(100));
+
+        CompletableFuture<Boolean> future = pool.publish("", "q", null, new byte[0]);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertEquals(0, pool.numOfPending());
+    }
+
+    @Test
+    void should_scale_publish_throughput_with_pool_size() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+
+        double single = benchmark(1, threads, perThread);
+        double pooled = benchmark(threads, threads, perThread);
+
+        log.info("ChannelPool publish/sec: 1 channel={}, {} channels={}", (long) single, threads, (long) pooled);
+        assertTrue(pooled > single);
+    }
+
+    private double benchmark(int poolSize, int threads, int perThread) throws Exception {
+        channels.clear();
+        ChannelPool pool = new ChannelPool(connection(50_000, 20), poolSize);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<CompletableFuture<Boolean>>>> results = new ArrayList<>(threads);
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                List<CompletableFuture<Boolean>> futures = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) {
+                    futures.add(pool.publish("", "q", null, new byte[64]));
+                }
+                return futures;
+            }));
+        }
+
+        List<CompletableFuture<Boolean>> all = new ArrayList<>(threads * perThread);
+        for (Future<List<CompletableFuture<Boolean>>> f : results) {
+            all.addAll(f.get());
+        }
+        long duration = System.nanoTime() - start;
+
+        for (BrokerChannel c : channels) {
+            c.ackAll();
+        }
+        CompletableFuture.allOf(all.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        for (CompletableFuture<Boolean> f : all) {
+            assertTrue(f.get());
+        }
+
+        executor.shutdown();
+        pool.close();
+        return all.size() / (duration / 1_000_000_000.0);
+    }
+
+    /**
+     * Stand-in of broker connection, publish takes publishNanos per channel
+     * and confirms are sent in batch every ackEvery messages
+     */
+    private Connection connection(long publishNanos, int ackEvery) throws IOException {
+        Connection conn = Mockito.mock(Connection.class);
+        Mockito.when(conn.createChannel()).thenAnswer(invocation -> {
+            BrokerChannel c = new BrokerChannel(publishNanos, ackEvery);
+            channels.add(c);
+            return c.channel;
+        });
+        return conn;
+    }
+
+    private class BrokerChannel {
+
+        private final Channel channel = Mockito.mock(Channel.class, Mockito.withSettings().stubOnly());
+
+        private ConfirmCallback onAck;
+
+        private ConfirmCallback onNack;
+
+        private ShutdownListener onShutdown;
+
+        private volatile boolean open = true;
+
+        private long seq;
+
+        BrokerChannel(long publishNanos, int ackEvery) throws IOException {
+            Mockito.when(channel.isOpen()).thenAnswer(invocation -> open);
+            Mockito.when(channel.getNextPublishSeqNo()).thenAnswer(invocation -> nextSeq());
+
+            Mockito.when(channel.addConfirmListener(any(ConfirmCallback.class), any(ConfirmCallback.class))).thenAnswer(invocation -> {
+                onAck = invocation.getArgument(0);
+                onNack = invocation.getArgument(1);
+                return null;
+            });
+
+            Mockito.doAnswer(invocation -> {
+                onShutdown = invocation.getArgument(0);
+                return null;
+            }).when(channel).addShutdownListener(any(ShutdownListener.class));
+
+            Mockito.doAnswer(invocation -> {
+                long tag = published(publishNanos);
+                if (tag % ackEvery == 0) {
+                    broker.execute(() -> ack(tag, true));
+                }
+                return null;
+            }).when(channel).basicPublish(anyString(), anyString(), any(), any());
+        }
+
+        synchronized long nextSeq() {
+            return seq + 1;
+        }
+
+        synchronized long published(long publishNanos) {
+            if (publishNanos > 0) {
+                LockSupport.parkNanos(publishNanos);
+            }
+            return ++seq;
+        }
+
+        synchronized void ackAll() {
+            ack(seq, true);
+        }
+
+        void shutdown() {
+            open = false;
+            onShutdown.shutdownCompleted(new ShutdownSignalException(false, false, null, channel));
+        }
+
+        void ack(long tag, boolean multiple) {
+            try {
+                onAck.handle(tag, multiple);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void nack(long tag, boolean multiple) {
+            try {
+                onNack.handle(tag, multiple);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.flowci.core.test.common;
+
+import com.flowci.core.common.helper.DownloadHelper;
+import com.flowci.store.LocalFileManager;
+import com.flowci.store.Pathable;
+import com.flowci.store.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DownloadHelperTest {
+
+    private static final String Content = "0123456789abcdefghij";
+
+    private final Pathable dir = () -> "logs";
+
+    @TempDir
+    File temp;
+
+    private StoredFile stored;
+
+    @BeforeEach
+    void init() throws IOException {
+        LocalFileManager fileManager = new LocalFileManager(temp.toPath());
+        byte[] bytes = Content.getBytes(StandardCharsets.UTF_8);
+        fileManager.save("step.log", new ByteArrayInputStream(bytes), bytes.length, dir);
+        stored = fileManager.stat("step.log", dir);
+    }
+
+    @Test
+    void should_write_full_content() throws IOException {
+        MockHttpServletResponse response = download(new MockHttpServletRequest("GET", "/"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(Content, response.getContentAsString());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("\"" + stored.getEtag() + "\"", response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void should_write_range() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("56789", response.getContentAsString());
+        assertEquals("bytes 5-9/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+
+        // tail
+        request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=-3");
+        response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("hij", response.getContentAsString());
+
+        // resume from offset
+        request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=15-");
+        response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("fghij", response.getContentAsString());
+    }
+
+    @Test
+    void should_return_416_if_range_not_satisfiable() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-");
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void should_write_full_content_if_range_malformed() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=abc");
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(Content, response.getContentAsString());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void should_use_sendfile_if_supported() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(5, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        assertEquals(stored.getLocalPath().toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(5L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void should_return_304_if_not_modified() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + stored.getEtag() + "\"");
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void should_ignore_range_if_if_range_not_matched() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"other\"");
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(Content, response.getContentAsString());
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        DownloadHelper.write(stored, "step.log", request, response);
+        return response;
+    }
+}
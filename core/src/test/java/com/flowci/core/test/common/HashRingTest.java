@@ -0,0 +1,44 @@
+package com.flowci.core.test.common;
+
+import com.flowci.core.common.domain.HashRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashRingTest {
+
+    @Test
+    void should_move_only_keys_of_new_member() {
+        HashRing ring = new HashRing(List.of("a", "b", "c"));
+        HashRing joined = new HashRing(List.of("a", "b", "c", "d"));
+
+        int numOfKeys = 10_000;
+        int moved = 0;
+        Map<String, Integer> count = new HashMap<>();
+
+        for (int i = 0; i < numOfKeys; i++) {
+            String key = "job-" + i;
+            String before = ring.ownerOf(key);
+            String after = joined.ownerOf(key);
+            count.merge(before, 1, Integer::sum);
+
+            if (!before.equals(after)) {
+                assertEquals("d", after);
+                moved++;
+            }
+        }
+
+        // then: about 1/4 keys moved to the new member and keys spread over members
+        assertTrue(moved > numOfKeys / 8 && moved < numOfKeys / 2);
+        count.values().forEach(c -> assertTrue(c > numOfKeys / 6));
+    }
+
+    @Test
+    void should_return_null_if_no_member() {
+        assertNull(new HashRing(List.of()).ownerOf("job"));
+    }
+}
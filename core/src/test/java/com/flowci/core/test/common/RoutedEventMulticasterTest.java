@@ -0,0 +1,128 @@
+package com.flowci.core.test.common;
+
+import com.flowci.core.common.event.RoutedEventMulticaster;
+import com.flowci.core.common.event.RoutedEventMulticaster.Overflow;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RoutedEventMulticasterTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private RoutedEventMulticaster multicaster;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void init() {
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(registry);
+        multicaster = new RoutedEventMulticaster(provider, false);
+    }
+
+    @AfterEach
+    void shutdown() {
+        multicaster.destroy();
+    }
+
+    @Test
+    void should_not_wait_for_listener_of_routed_event() throws InterruptedException {
+        multicaster.route(SlowEvent.class, "slow", 1, 10, Overflow.BLOCK);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<String> syncThread = new AtomicReference<>();
+
+        multicaster.addApplicationListener((ApplicationListener<ApplicationEvent>) event -> {
+            if (event instanceof SlowEvent) {
+                await(release);
+                done.countDown();
+                return;
+            }
+            syncThread.set(Thread.currentThread().getName());
+        });
+
+        long start = System.nanoTime();
+        multicaster.multicastEvent(new SlowEvent(this));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+
+        // then: not routed event handled on publisher thread
+        multicaster.multicastEvent(new FastEvent(this));
+        assertEquals(Thread.currentThread().getName(), syncThread.get());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, registry.get("event_listener_latency").tag("event", "FastEvent").timer().count());
+    }
+
+    @Test
+    void should_drop_event_when_route_is_full() throws InterruptedException {
+        multicaster.route(SlowEvent.class, "drop", 1, 1, Overflow.DROP);
+
+        CountDownLatch release = new CountDownLatch(1);
+        multicaster.addApplicationListener((ApplicationListener<ApplicationEvent>) event -> await(release));
+
+        // one running, one queued, one dropped
+        for (int i = 0; i < 3; i++) {
+            multicaster.multicastEvent(new SlowEvent(this));
+        }
+        release.countDown();
+
+        assertEquals(1.0, registry.get("event_dropped").tag("route", "drop").counter().count());
+    }
+
+    @Test
+    void should_run_on_caller_when_route_is_full() {
+        multicaster.route(SlowEvent.class, "caller", 1, 1, Overflow.CALLER_RUNS);
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<String> lastThread = new AtomicReference<>();
+        multicaster.addApplicationListener((ApplicationListener<ApplicationEvent>) event -> {
+            if (Thread.currentThread().getName().startsWith("event-caller-")) {
+                await(release);
+            }
+            lastThread.set(Thread.currentThread().getName());
+        });
+
+        for (int i = 0; i < 3; i++) {
+            multicaster.multicastEvent(new SlowEvent(this));
+        }
+        assertEquals(Thread.currentThread().getName(), lastThread.get());
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class SlowEvent extends ApplicationEvent {
+
+        SlowEvent(Object source) {
+            super(source);
+        }
+    }
+
+    private static class FastEvent extends ApplicationEvent {
+
+        FastEvent(Object source) {
+            super(source);
+        }
+    }
+}
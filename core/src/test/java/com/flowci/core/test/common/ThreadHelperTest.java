@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.common;
+
+import com.flowci.core.common.helper.ThreadHelper;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThreadHelperTest {
+
+    // over the default of app.max-pool-size
+    private static final int NumOfTasks = 1000;
+
+    @Test
+    void should_fallback_to_platform_threads_if_no_virtual_thread_factory() throws Exception {
+        ThreadPoolTaskExecutor executor = ThreadHelper.createTaskExecutor(20, 10, NumOfTasks, "bench-", (ThreadFactory) null);
+        Set<Thread> threads = runAll(executor, 100, 10);
+        executor.shutdown();
+
+        assertTrue(executor.getThreadPoolExecutor().getLargestPoolSize() <= 20);
+        for (Thread thread : threads) {
+            assertTrue(thread.getName().startsWith("bench-"));
+        }
+    }
+
+    @Test
+    void should_run_each_task_on_new_thread_with_thread_factory() throws Exception {
+        // stand-in of virtual thread factory, so it runs on any jvm
+        ThreadFactory factory = r -> new Thread(r, "virtual-");
+        ThreadPoolTaskExecutor executor = ThreadHelper.createTaskExecutor(2, 1, 1, "bound-", factory);
+
+        // then: blocking tasks are not limited by pool and queue size
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+        }
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        release.countDown();
+        executor.shutdown();
+        assertEquals(10, executor.getThreadPoolExecutor().getLargestPoolSize());
+    }
+
+    @Test
+    void should_run_blocking_tasks_on_virtual_threads_all_at_once() throws Exception {
+        Assumptions.assumeTrue(ThreadHelper.isVirtualThreadSupported(), "virtual thread not supported by jvm");
+
+        ThreadPoolTaskExecutor executor = ThreadHelper.createTaskExecutor(20, 20, 100, "bench-v-", true);
+        Set<Thread> threads = runAll(executor, NumOfTasks, 10_000);
+        executor.shutdown();
+
+        // then: each blocking task got its own virtual thread
+        assertEquals(NumOfTasks, threads.size());
+        for (Thread thread : threads) {
+            assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+            assertTrue(thread.getName().startsWith("bench-v-"));
+        }
+    }
+
+    /**
+     * Run tasks blocked until all of them started or wait millis passed
+     *
+     * @return threads which run the tasks
+     */
+    private static Set<Thread> runAll(ThreadPoolTaskExecutor executor, int numOfTasks, long waitMillis) throws InterruptedException {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch allStarted = new CountDownLatch(numOfTasks);
+        CountDownLatch done = new CountDownLatch(numOfTasks);
+
+        for (int i = 0; i < numOfTasks; i++) {
+            executor.execute(() -> {
+                threads.add(Thread.currentThread());
+                allStarted.countDown();
+
+                try {
+                    allStarted.await(waitMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ignore) {
+
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        return threads;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ignore) {
+
+        }
+    }
+}
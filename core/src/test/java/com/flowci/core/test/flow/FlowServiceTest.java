@@ -28,6 +28,7 @@ import com.flowci.core.flow.domain.CreateOption;
 import com.flowci.core.flow.domain.Flow;
 import com.flowci.core.flow.event.GitTestEvent;
 import com.flowci.core.flow.service.FlowService;
+import com.flowci.core.flow.service.FlowServiceImpl;
 import com.flowci.core.flow.service.FlowSettingService;
 import com.flowci.core.flow.service.GitConnService;
 import com.flowci.core.git.domain.GitCommit;
@@ -35,10 +36,12 @@ import com.flowci.core.git.domain.GitPushTrigger;
 import com.flowci.core.git.domain.GitTrigger;
 import com.flowci.core.git.domain.GitUser;
 import com.flowci.core.git.event.GitHookEvent;
+import com.flowci.core.job.dao.JobNumberDao;
 import com.flowci.core.job.event.CreateNewJobEvent;
 import com.flowci.core.secret.domain.AuthSecret;
 import com.flowci.core.secret.service.SecretService;
 import com.flowci.core.test.MockLoggedInScenario;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
@@ -73,6 +76,12 @@ public class FlowServiceTest extends MockLoggedInScenario {
     @Autowired
     private SecretService secretService;
 
+    @Autowired
+    private JobNumberDao jobNumberDao;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private String defaultYml;
 
     @BeforeEach
@@ -96,6 +105,28 @@ public class FlowServiceTest extends MockLoggedInScenario {
         assertFalse(nameVar.isEditable());
     }
 
+    @Test
+    void should_init_job_number_of_flows_in_batch() {
+        var option = new CreateOption();
+        option.setRawYaml(StringHelper.toBase64(defaultYml));
+
+        List<Flow> flows = new LinkedList<>();
+        for (int i = 0; i < 3; i++) {
+            Flow flow = flowService.create("init-test-" + i, option);
+            jobNumberDao.deleteAllByFlowId(flow.getId());
+            flows.add(flow);
+        }
+
+        // when:
+        ((FlowServiceImpl) flowService).initFlows();
+
+        // then:
+        for (Flow flow : flows) {
+            assertTrue(jobNumberDao.findByFlowId(flow.getId()).isPresent());
+        }
+        assertTrue(meterRegistry.get("startup_phase").tag("phase", "total").timer().count() > 0);
+    }
+
     @Test
     void should_list_flow_by_credential_name() {
         // init:
@@ -22,7 +22,7 @@ import com.flowci.core.flow.domain.MatrixItem;
 import com.flowci.core.flow.domain.MatrixType;
 import com.flowci.core.flow.service.MatrixService;
 import com.flowci.core.job.domain.Job;
-import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.event.JobFinishedEvent;
 import com.flowci.core.test.SpringScenario;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,7 +51,7 @@ public class MatrixServiceTest extends SpringScenario {
         job.setCreatedAt(new Date());
         job.setStatus(Job.Status.SUCCESS);
 
-        multicastEvent(new JobStatusChangeEvent(this, job));
+        multicastEvent(new JobFinishedEvent(this, job));
         ThreadHelper.sleep(1000);
 
         MatrixItem item = matrixService.get(job.getFlowId(), MatrixType.JOB_STATUS, DateHelper.toIntDay(new Date()));
@@ -94,9 +94,9 @@ public class MatrixServiceTest extends SpringScenario {
         job3.setCreatedAt(tomorrow);
         job3.setStatus(Job.Status.FAILURE);
 
-        multicastEvent(new JobStatusChangeEvent(this, job1));
-        multicastEvent(new JobStatusChangeEvent(this, job2));
-        multicastEvent(new JobStatusChangeEvent(this, job3));
+        multicastEvent(new JobFinishedEvent(this, job1));
+        multicastEvent(new JobFinishedEvent(this, job2));
+        multicastEvent(new JobFinishedEvent(this, job3));
         ThreadHelper.sleep(1000);
 
         int fromDay = DateHelper.toIntDay(yesterday);
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.job;
+
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.domain.Step;
+import com.flowci.core.job.manager.AgentMatchManager;
+import com.flowci.core.job.manager.AgentMatchManagerImpl;
+import com.flowci.tree.Selector;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgentMatchManagerTest {
+
+    private final AgentMatchManager manager = new AgentMatchManagerImpl();
+
+    @Test
+    void should_match_waiting_jobs_by_tags_and_priority() {
+        Job low = mockJob("job-low", 1);
+        Job high = mockJob("job-high", 10);
+        Job other = mockJob("job-other", 1);
+
+        manager.addWaiting(low, mockStep(low, "flow/a"), new Selector("linux"));
+        manager.addWaiting(other, mockStep(other, "flow/a"), new Selector("windows"));
+        manager.addWaiting(high, mockStep(high, "flow/a"), new Selector("linux", "docker"));
+
+        List<String> jobs = manager.findWaitingJobs(Sets.newHashSet("linux", "docker"), 10);
+        assertEquals(List.of("job-high", "job-low"), jobs);
+
+        assertEquals(List.of("job-other"), manager.findWaitingJobs(Sets.newHashSet("windows"), 10));
+        assertTrue(manager.findWaitingJobs(Collections.emptySet(), 10).isEmpty());
+
+        manager.removeJob("job-high");
+        assertEquals(List.of("job-low"), manager.findWaitingJobs(Sets.newHashSet("docker", "linux"), 10));
+
+        manager.removeWaiting(mockStep(low, "flow/a"));
+        assertTrue(manager.findWaitingJobs(Sets.newHashSet("linux"), 10).isEmpty());
+    }
+
+    @Test
+    void should_match_agent_without_tags_to_selector_without_label() {
+        Job job = mockJob("job", 1);
+        manager.addWaiting(job, mockStep(job, "flow/a"), Selector.EMPTY);
+
+        assertEquals(List.of("job"), manager.findWaitingJobs(Collections.emptySet(), 10));
+        assertTrue(manager.findWaitingJobs(Sets.newHashSet("linux"), 10).isEmpty());
+    }
+
+    @Test
+    void should_find_idle_agents_in_idle_order() {
+        manager.addIdle("a1", Sets.newHashSet("linux"));
+        manager.addIdle("a2", Sets.newHashSet("linux", "docker"));
+        manager.addIdle("a3", Collections.emptySet());
+
+        assertEquals(List.of("a1", "a2"), manager.findIdleAgents(new Selector("docker", "linux"), 10));
+        assertEquals(List.of("a1"), manager.findIdleAgents(new Selector("linux"), 1));
+        assertEquals(List.of("a3"), manager.findIdleAgents(Selector.EMPTY, 10));
+
+        manager.removeIdle("a1");
+        assertEquals(List.of("a2"), manager.findIdleAgents(new Selector("linux"), 10));
+    }
+
+    private static Job mockJob(String id, int priority) {
+        Job job = new Job();
+        job.setId(id);
+        job.setPriority(priority);
+        return job;
+    }
+
+    private static Step mockStep(Job job, String path) {
+        return new Step().setJobId(job.getId()).setNodePath(path);
+    }
+}
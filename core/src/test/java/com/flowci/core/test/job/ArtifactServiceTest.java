@@ -21,7 +21,9 @@ import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.JobArtifact;
 import com.flowci.core.job.service.ArtifactService;
 import com.flowci.core.test.SpringScenario;
+import com.flowci.store.BlobStore;
 import com.flowci.store.FileManager;
+import com.flowci.store.StoredFile;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -57,11 +59,11 @@ public class ArtifactServiceTest extends SpringScenario {
         ByteArrayInputStream content = new ByteArrayInputStream("content".getBytes());
         MockMultipartFile file = new MockMultipartFile("file", "test.jar", null, content);
 
-        Mockito.when(fileManager.save(eq(file.getOriginalFilename()), any(), anyLong(), any()))
+        Mockito.when(fileManager.save(anyString(), any(), anyLong(), any()))
                 .thenReturn("artifact/file/path");
 
-        Mockito.when(fileManager.read(eq(file.getOriginalFilename()), any()))
-                .thenReturn(content);
+        Mockito.when(fileManager.stat(anyString(), any()))
+                .thenReturn(new StoredFile("blob", 7, 0, "etag", (position, length) -> null));
 
         // when: save artifact
         artifactService.save(job, "foo/boo", "md5..", file);
@@ -77,6 +79,6 @@ public class ArtifactServiceTest extends SpringScenario {
         assertNotNull(fetched);
         assertNotNull(fetched.getSrc());
         assertEquals("test.jar", fetched.getFileName());
-        assertEquals("artifact/file/path", fetched.getPath());
+        assertEquals(BlobStore.pathOf(fetched.getBlob()), fetched.getPath());
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.job;
+
+import com.flowci.common.domain.StringVars;
+import com.flowci.core.common.helper.ThreadHelper;
+import com.flowci.core.common.manager.ConditionManager;
+import com.flowci.core.common.manager.ConditionManagerImpl;
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compare condition evaluation throughput of parsing per call and cached compiled script
+ */
+@Slf4j
+public class ConditionManagerBenchmarkTest {
+
+    private static final int Evaluations = 200;
+
+    private static final String Condition = "return FLOW_BRANCH == 'master' && FLOW_TRIGGER != 'MANUAL'";
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private ThreadPoolTaskExecutor executor;
+
+    private ConditionManager conditionManager;
+
+    @BeforeEach
+    void init() {
+        executor = ThreadHelper.createTaskExecutor(4, 4, 100, "cond-bench-");
+        conditionManager = new ConditionManagerImpl(executor, registry);
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void should_compile_condition_once_and_evaluate_faster() throws Exception {
+        StringVars vars = new StringVars();
+        vars.put("FLOW_BRANCH", "master");
+        vars.put("FLOW_TRIGGER", "PUSH");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < Evaluations; i++) {
+            Binding binding = new Binding();
+            vars.forEach(binding::setVariable);
+            assertEquals(Boolean.TRUE, new GroovyShell(binding).evaluate(Condition));
+        }
+        long parsePerCall = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < Evaluations; i++) {
+            assertTrue(conditionManager.run(Condition, vars));
+        }
+        long cached = System.nanoTime() - start;
+
+        log.info("{} evaluations: parse per call {} ms, cached {} ms",
+                Evaluations, parsePerCall / 1_000_000, cached / 1_000_000);
+
+        double hits = registry.get("cache.gets").tag("cache", "condition_script").tag("result", "hit")
+                .functionCounter().count();
+        double misses = registry.get("cache.gets").tag("cache", "condition_script").tag("result", "miss")
+                .functionCounter().count();
+
+        assertEquals(1, misses);
+        assertEquals(Evaluations - 1, hits);
+        assertEquals(1, registry.get("condition_script_compile").timer().count());
+    }
+
+    @Test
+    void should_use_fresh_binding_for_each_evaluation() throws Exception {
+        String condition = "return FOO == 'a'";
+
+        StringVars a = new StringVars();
+        a.put("FOO", "a");
+
+        StringVars b = new StringVars();
+        b.put("FOO", "b");
+
+        assertTrue(conditionManager.run(condition, a));
+        assertEquals(false, conditionManager.run(condition, b));
+        assertTrue(conditionManager.run(condition, a));
+    }
+}
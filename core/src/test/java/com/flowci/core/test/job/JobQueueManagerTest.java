@@ -0,0 +1,226 @@
+/*
+ * Copyright 2021 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.job;
+
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.common.rabbit.RabbitOperations;
+import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.domain.Job;
+import com.flowci.core.job.event.JobActionEvent;
+import com.flowci.core.job.manager.JobQueueManagerImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+
+@Slf4j
+public class JobQueueManagerTest {
+
+    private static final int NumOfShards = 16;
+
+    private static final int NumOfFlows = 10_000;
+
+    // latency of queue declare or consume on broker stand-in
+    private static final long BrokerCallNanos = 50_000;
+
+    private RabbitOperations jobsQueueManager;
+
+    private JobDao jobDao;
+
+    private SpringEventManager eventManager;
+
+    private JobQueueManagerImpl jobQueueManager;
+
+    @BeforeEach
+    void init() throws Exception {
+        jobsQueueManager = Mockito.mock(RabbitOperations.class);
+        jobDao = Mockito.mock(JobDao.class);
+        eventManager = Mockito.mock(SpringEventManager.class);
+
+        Mockito.when(jobsQueueManager.publish(anyString(), any(byte[].class), anyInt(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        AppProperties.Job jobProperties = new AppProperties.Job();
+        jobProperties.setQueueShards(NumOfShards);
+
+        AppProperties.RabbitMQ rabbitProperties = new AppProperties.RabbitMQ();
+        rabbitProperties.setJobQueue("flow.q.job.shard.test");
+        rabbitProperties.setJobDlExchange("flow.ex.job-dl.test");
+
+        jobQueueManager = new JobQueueManagerImpl(
+                jobProperties,
+                rabbitProperties,
+                jobsQueueManager,
+                jobDao,
+                eventManager,
+                new SyncTaskExecutor()
+        );
+    }
+
+    @Test
+    void should_be_ready_for_10k_flows_with_shards_only() throws Exception {
+        Mockito.when(jobsQueueManager.declare(anyString(), anyBoolean(), anyInt(), anyString())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(BrokerCallNanos);
+            return 0;
+        });
+
+        Mockito.doAnswer(invocation -> {
+            LockSupport.parkNanos(BrokerCallNanos);
+            return null;
+        }).when(jobsQueueManager).startConsumer(anyString(), anyBoolean(), any(), any());
+
+        long start = System.nanoTime();
+        jobQueueManager.init();
+
+        Set<String> queues = new HashSet<>();
+        for (int i = 0; i < NumOfFlows; i++) {
+            queues.add(jobQueueManager.queueName("flow-" + i));
+        }
+        long sharded = System.nanoTime() - start;
+
+        assertEquals(NumOfShards, queues.size());
+        Mockito.verify(jobsQueueManager, Mockito.times(NumOfShards)).declare(anyString(), anyBoolean(), anyInt(), anyString());
+        Mockito.verify(jobsQueueManager, Mockito.never()).startConsumer(anyString(), anyBoolean(), any(), any());
+
+        // queue and consumer per flow as before
+        start = System.nanoTime();
+        for (int i = 0; i < NumOfFlows; i++) {
+            String queue = "flow.q.flow-" + i + ".job";
+            jobsQueueManager.declare(queue, true, 255, "flow.ex.job-dl.test");
+            jobsQueueManager.startConsumer(queue, false, null, null);
+        }
+        long perFlow = System.nanoTime() - start;
+
+        log.info("Time to ready for {} flows: per flow queue={}ms, {} shards={}ms",
+                NumOfFlows, perFlow / 1_000_000, NumOfShards, sharded / 1_000_000);
+        assertTrue(sharded < perFlow);
+    }
+
+    @Test
+    void should_consume_jobs_of_flows_on_same_shard_in_order() throws Exception {
+        jobQueueManager.init();
+
+        String flowA = "flow-1";
+        String flowB = flowOnSameShard(flowA);
+        String queue = jobQueueManager.queueName(flowA);
+        assertEquals(queue, jobQueueManager.queueName(flowB));
+
+        // broker stand-in delivers one message at a time, the next is delivered once the previous acked
+        Deque<byte[]> messages = new ArrayDeque<>();
+        List<RabbitOperations.OnMessage> consumers = new ArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            consumers.add(invocation.getArgument(2));
+            return null;
+        }).when(jobsQueueManager).startConsumer(eq(queue), anyBoolean(), any(), any());
+        Mockito.when(jobsQueueManager.publish(eq(queue), any(byte[].class), anyInt(), anyInt())).thenAnswer(invocation -> {
+            messages.addLast(invocation.getArgument(1));
+            return CompletableFuture.completedFuture(true);
+        });
+
+        // jobs never get agent, since nothing handles the run action
+        List<String> enqueued = List.of("job-a-1", "job-b-1", "job-a-2", "job-b-2");
+        for (String jobId : enqueued) {
+            String flowId = jobId.startsWith("job-a") ? flowA : flowB;
+            assertTrue(jobQueueManager.enqueue(newJob(jobId, flowId)).get());
+        }
+        assertEquals(1, consumers.size());
+
+        while (!messages.isEmpty()) {
+            assertTrue(consumers.get(0).on(null, messages.pollFirst(), null));
+        }
+
+        // then: all jobs consumed in order though previous jobs of the shard still wait for agent
+        ArgumentCaptor<JobActionEvent> captor = ArgumentCaptor.forClass(JobActionEvent.class);
+        Mockito.verify(eventManager, Mockito.times(enqueued.size())).publish(captor.capture());
+
+        List<String> consumed = new ArrayList<>();
+        for (JobActionEvent event : captor.getAllValues()) {
+            assertTrue(event.isToRun());
+            consumed.add(event.getJobId());
+        }
+        assertEquals(enqueued, consumed);
+    }
+
+    @Test
+    void should_move_queued_jobs_from_flow_queue_to_shard() throws Exception {
+        Job queued = newJob("job-1", "flow-1");
+        queued.setStatus(Job.Status.QUEUED);
+        Mockito.when(jobDao.findAllByStatus(Job.Status.QUEUED)).thenReturn(List.of(queued, queued));
+
+        String shardQueue = jobQueueManager.queueName("flow-1");
+        Mockito.when(jobsQueueManager.move("flow.q.flow-1.job", shardQueue)).thenReturn(2);
+
+        jobQueueManager.init();
+        assertTrue(jobQueueManager.isActivated("flow-1"));
+        Mockito.verify(jobsQueueManager, Mockito.times(1)).move("flow.q.flow-1.job", shardQueue);
+        Mockito.verify(jobsQueueManager, Mockito.times(1)).startConsumer(eq(shardQueue), eq(false), any(), any());
+    }
+
+    @Test
+    void should_activate_shard_consumer_on_first_enqueue() throws Exception {
+        jobQueueManager.init();
+
+        Job job = newJob("job-1", "flow-1");
+        assertFalse(jobQueueManager.isActivated("flow-1"));
+
+        assertTrue(jobQueueManager.enqueue(job).get());
+        assertTrue(jobQueueManager.enqueue(job).get());
+        assertTrue(jobQueueManager.isActivated("flow-1"));
+
+        String queue = jobQueueManager.queueName("flow-1");
+        Mockito.verify(jobsQueueManager, Mockito.times(1)).startConsumer(eq(queue), eq(false), any(), any());
+        Mockito.verify(jobsQueueManager, Mockito.times(2)).publish(eq(queue), any(byte[].class), anyInt(), eq(100));
+    }
+
+    @Test
+    void should_activate_shard_with_pending_messages_on_init() throws Exception {
+        String queue = jobQueueManager.queueName("flow-1");
+        Mockito.when(jobsQueueManager.declare(eq(queue), anyBoolean(), anyInt(), anyString())).thenReturn(3);
+
+        jobQueueManager.init();
+        assertTrue(jobQueueManager.isActivated("flow-1"));
+        Mockito.verify(jobsQueueManager, Mockito.times(1)).startConsumer(eq(queue), eq(false), any(), any());
+    }
+
+    private String flowOnSameShard(String flowId) {
+        String queue = jobQueueManager.queueName(flowId);
+        for (int i = 0; ; i++) {
+            String other = "flow-other-" + i;
+            if (jobQueueManager.queueName(other).equals(queue)) {
+                return other;
+            }
+        }
+    }
+
+    private static Job newJob(String id, String flowId) {
+        Job job = new Job();
+        job.setId(id);
+        job.setFlowId(flowId);
+        job.setExpire(100);
+        return job;
+    }
+}
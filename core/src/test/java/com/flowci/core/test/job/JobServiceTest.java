@@ -34,6 +34,7 @@ import com.flowci.core.flow.service.YmlService;
 import com.flowci.core.job.dao.ExecutedCmdDao;
 import com.flowci.core.job.dao.JobAgentDao;
 import com.flowci.core.job.dao.JobDao;
+import com.flowci.core.job.dao.JobPriorityDao;
 import com.flowci.core.job.domain.Job;
 import com.flowci.core.job.domain.Job.Status;
 import com.flowci.core.job.domain.Job.Trigger;
@@ -41,6 +42,7 @@ import com.flowci.core.job.domain.JobDesc;
 import com.flowci.core.job.domain.Step;
 import com.flowci.core.job.event.JobReceivedEvent;
 import com.flowci.core.job.event.JobStatusChangeEvent;
+import com.flowci.core.job.event.StepUpdateEvent;
 import com.flowci.core.job.manager.YmlManager;
 import com.flowci.core.job.service.JobActionService;
 import com.flowci.core.job.service.JobEventService;
@@ -86,6 +88,9 @@ public class JobServiceTest extends ZookeeperScenario {
     @Autowired
     private JobAgentDao jobAgentDao;
 
+    @Autowired
+    private JobPriorityDao jobPriorityDao;
+
     @Autowired
     private ExecutedCmdDao executedCmdDao;
 
@@ -184,6 +189,44 @@ public class JobServiceTest extends ZookeeperScenario {
         }
     }
 
+    @Test
+    void should_update_parent_step_status_and_cached_steps() throws IOException {
+        var yaml = StringHelper.toString(load("step-in-step.yml"));
+        var option = new CreateOption().setRawYaml(StringHelper.toBase64(yaml));
+        Flow nested = flowService.create("nested", option);
+        FlowYml nestedYml = ymlService.get(nested.getId());
+
+        Job job = jobService.create(nested, nestedYml.getList(), Trigger.MANUAL, StringVars.EMPTY);
+        assertEquals(6, stepService.list(job).size());
+
+        long initSeq = stepService.snapshot(job).getSeq();
+
+        ObjectWrapper<StepUpdateEvent> delta = new ObjectWrapper<>();
+        addEventListener((ApplicationListener<StepUpdateEvent>) delta::setValue);
+
+        // when: child step to running
+        Step child = stepService.get(job.getId(), "flow/step2/step-2-1");
+        child.setStartAt(new Date());
+        stepService.toStatus(child, Step.Status.RUNNING, null, false);
+
+        // then: only child and parent should be pushed with next seq
+        assertEquals(2, delta.getValue().getItems().size());
+        assertEquals(initSeq + 1, delta.getValue().getSeq());
+        assertEquals(initSeq + 1, stepService.snapshot(job).getSeq());
+
+        // then: parent should be updated
+        Step parent = stepService.get(job.getId(), "flow/step2");
+        assertEquals(Step.Status.RUNNING, parent.getStatus());
+        assertEquals(child.getStartAt(), parent.getStartAt());
+
+        // then: cached steps should be updated without reload
+        for (Step step : stepService.list(job)) {
+            if (step.getNodePath().equals(child.getNodePath()) || step.getNodePath().equals(parent.getNodePath())) {
+                assertEquals(Step.Status.RUNNING, step.getStatus());
+            }
+        }
+    }
+
     @Test
     void should_start_new_job() throws Throwable {
         ObjectWrapper<Job> receivedJob = new ObjectWrapper<>();
@@ -215,6 +258,41 @@ public class JobServiceTest extends ZookeeperScenario {
         assertEquals(job, receivedJob.getValue());
     }
 
+    @Test
+    void should_admit_queued_job_when_previous_build_finished() throws InterruptedException {
+        // init: two queued jobs of the same flow
+        Job first = jobService.create(flow, ymlEntity.getList(), Trigger.MANUAL, StringVars.EMPTY);
+        Job second = jobService.create(flow, ymlEntity.getList(), Trigger.MANUAL, StringVars.EMPTY);
+
+        for (Job job : List.of(first, second)) {
+            job.setStatus(Status.QUEUED);
+            jobDao.save(job);
+        }
+
+        jobPriorityDao.addJob(flow.getId(), first.getBuildNumber());
+
+        // when: second job received from queue
+        jobActionService.toRun(second.getId());
+
+        // then: it should stay in queue without holding a thread
+        assertEquals(Status.QUEUED, jobService.get(second.getId()).getStatus());
+
+        // when: first job finished
+        CountDownLatch waitForSecond = new CountDownLatch(1);
+        addEventListener((ApplicationListener<JobStatusChangeEvent>) event -> {
+            Job job = event.getJob();
+            if (job.getId().equals(second.getId()) && job.getStatus() == Status.RUNNING) {
+                waitForSecond.countDown();
+            }
+        });
+
+        jobActionService.toCancelled(first.getId(), null);
+        assertEquals(Status.CANCELLED, jobService.get(first.getId()).getStatus());
+
+        // then: second job should be admitted
+        assertTrue(waitForSecond.await(10, TimeUnit.SECONDS));
+    }
+
     @Test
     void should_get_job_expire() {
         Job job = jobService.create(flow, ymlEntity.getList(), Trigger.MANUAL, StringVars.EMPTY);
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2021 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.core.test.job;
+
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.job.event.ServerLeftEvent;
+import com.flowci.core.job.manager.LockManagerImpl;
+import com.flowci.zookeeper.InterLock;
+import com.flowci.zookeeper.ZookeeperClient;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.framework.recipes.locks.InterProcessLock;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+
+public class LockManagerTest {
+
+    private final AtomicReference<List<String>> servers = new AtomicReference<>();
+
+    private ZookeeperClient zk;
+
+    private SpringEventManager eventManager;
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    private LockManagerImpl lockManager;
+
+    @BeforeEach
+    void init() {
+        zk = Mockito.mock(ZookeeperClient.class);
+        Mockito.when(zk.makePath(anyString(), anyString())).thenAnswer(i -> ZKPaths.makePath(i.getArgument(0), i.getArgument(1)));
+        Mockito.when(zk.children(anyString())).thenAnswer(i -> servers.get());
+        Mockito.when(zk.lease(anyString(), anyInt())).thenAnswer(i -> Optional.of(new InterLock(i.getArgument(0), Mockito.mock(InterProcessLock.class))));
+
+        AppProperties.Zookeeper zkProperties = new AppProperties.Zookeeper();
+        zkProperties.setServerRoot("/flow-servers-test");
+
+        eventManager = Mockito.mock(SpringEventManager.class);
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+
+        lockManager = new LockManagerImpl(zk, zkProperties, eventManager, scheduler);
+        servers.set(List.of(lockManager.getServerId()));
+        lockManager.init();
+    }
+
+    @AfterEach
+    void shutdown() {
+        lockManager.shutdown();
+        scheduler.destroy();
+    }
+
+    @Test
+    void should_lock_job_locally_on_owner() {
+        String jobId = "job-1";
+        assertTrue(lockManager.isOwner(jobId));
+
+        for (int i = 0; i < 1000; i++) {
+            InterLock lock = lockManager.lock(jobId).orElseThrow();
+            lockManager.unlock(lock, jobId);
+        }
+
+        // then: zookeeper lock taken once as lease
+        Mockito.verify(zk, Mockito.times(1)).lease(anyString(), anyInt());
+        Mockito.verify(zk, Mockito.never()).release(any());
+        assertTrue(lockManager.hasLease(jobId));
+    }
+
+    @Test
+    void should_lock_job_on_zookeeper_if_not_owner() {
+        servers.set(List.of("other-server"));
+        lockManager.refreshServers();
+
+        String jobId = "job-1";
+        assertFalse(lockManager.isOwner(jobId));
+
+        for (int i = 0; i < 3; i++) {
+            InterLock lock = lockManager.lock(jobId).orElseThrow();
+            lockManager.unlock(lock, jobId);
+        }
+
+        Mockito.verify(zk, Mockito.times(3)).lease(anyString(), anyInt());
+        Mockito.verify(zk, Mockito.times(3)).release(any());
+        assertFalse(lockManager.hasLease(jobId));
+    }
+
+    @Test
+    void should_put_want_node_while_waiting_lock_of_other_server() {
+        servers.set(List.of("other-server"));
+        lockManager.refreshServers();
+
+        String want = "/job-lock-wants/job-1-0000000001";
+        Mockito.when(zk.create(CreateMode.EPHEMERAL_SEQUENTIAL, "/job-lock-wants/job-1-", null)).thenReturn(want);
+
+        InterLock lock = lockManager.lock("job-1").orElseThrow();
+        lockManager.unlock(lock, "job-1");
+
+        Mockito.verify(zk).create(CreateMode.EPHEMERAL_SEQUENTIAL, "/job-lock-wants/job-1-", null);
+        Mockito.verify(zk).delete(want, false);
+    }
+
+    @Test
+    void should_give_up_lease_when_wanted_by_other_server() throws Exception {
+        InterLock lock = lockManager.lock("job-1").orElseThrow();
+        lockManager.unlock(lock, "job-1");
+        assertTrue(lockManager.hasLease("job-1"));
+
+        onLeaseWanted("job-1");
+        assertFalse(lockManager.hasLease("job-1"));
+        Mockito.verify(zk, Mockito.times(1)).release(lock);
+    }
+
+    @Test
+    void should_give_up_lease_on_unlock_if_wanted_while_locked() throws Exception {
+        InterLock lock = lockManager.lock("job-1").orElseThrow();
+
+        onLeaseWanted("job-1");
+        assertTrue(lockManager.hasLease("job-1"));
+        Mockito.verify(zk, Mockito.never()).release(any());
+
+        lockManager.unlock(lock, "job-1");
+        assertFalse(lockManager.hasLease("job-1"));
+        Mockito.verify(zk, Mockito.times(1)).release(lock);
+
+        // then: lease taken again on next lock
+        InterLock relock = lockManager.lock("job-1").orElseThrow();
+        assertNotSame(lock, relock);
+        lockManager.unlock(relock, "job-1");
+        assertTrue(lockManager.hasLease("job-1"));
+    }
+
+    @Test
+    void should_publish_event_when_server_left() {
+        servers.set(List.of(lockManager.getServerId(), "other-server"));
+        lockManager.refreshServers();
+        Mockito.verify(eventManager, Mockito.never()).publish(any());
+
+        servers.set(List.of(lockManager.getServerId()));
+        lockManager.refreshServers();
+
+        ArgumentCaptor<ServerLeftEvent> event = ArgumentCaptor.forClass(ServerLeftEvent.class);
+        Mockito.verify(eventManager).publish(event.capture());
+        assertEquals(Set.of("other-server"), event.getValue().getServers());
+    }
+
+    @Test
+    void should_release_lease_when_idle_or_ownership_moved() throws InterruptedException {
+        InterLock lock = lockManager.lock("job-1").orElseThrow();
+        lockManager.unlock(lock, "job-1");
+        assertTrue(lockManager.hasLease("job-1"));
+
+        servers.set(List.of("other-server"));
+        lockManager.refreshServers();
+
+        for (int i = 0; i < 50 && lockManager.hasLease("job-1"); i++) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+
+        assertFalse(lockManager.hasLease("job-1"));
+        Mockito.verify(zk, Mockito.times(1)).release(lock);
+    }
+
+    @Test
+    void should_release_leases_on_reconnected_and_drop_on_session_lost() {
+        ArgumentCaptor<Runnable> onReconnected = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Runnable> onLost = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(zk).onReconnected(onReconnected.capture());
+        Mockito.verify(zk).onConnectionLost(onLost.capture());
+
+        InterLock lock = lockManager.lock("job-1").orElseThrow();
+        lockManager.unlock(lock, "job-1");
+
+        // lease nodes still exist after reconnected, release them
+        onReconnected.getValue().run();
+        assertFalse(lockManager.hasLease("job-1"));
+        Mockito.verify(zk, Mockito.times(1)).release(lock);
+
+        // lease nodes gone with session
+        lock = lockManager.lock("job-2").orElseThrow();
+        lockManager.unlock(lock, "job-2");
+
+        onLost.getValue().run();
+        assertFalse(lockManager.hasLease("job-2"));
+        Mockito.verify(zk, Mockito.never()).release(lock);
+    }
+
+    @Test
+    void should_register_server_again_when_reconnected_after_session_lost() {
+        ArgumentCaptor<Runnable> onReconnected = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(zk).onReconnected(onReconnected.capture());
+
+        String path = ZKPaths.makePath("/flow-servers-test", lockManager.getServerId());
+        Mockito.verify(zk, Mockito.times(1)).create(CreateMode.EPHEMERAL, path, null);
+
+        // server node still exists if session kept
+        Mockito.when(zk.exist(path)).thenReturn(true);
+        onReconnected.getValue().run();
+        Mockito.verify(zk, Mockito.times(1)).create(CreateMode.EPHEMERAL, path, null);
+
+        // server node gone with the lost session
+        Mockito.when(zk.exist(path)).thenReturn(false);
+        onReconnected.getValue().run();
+        Mockito.verify(zk, Mockito.times(2)).create(CreateMode.EPHEMERAL, path, null);
+    }
+
+    @Test
+    void should_release_stripe_if_session_lost_while_locked() {
+        ArgumentCaptor<Runnable> onLost = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(zk).onConnectionLost(onLost.capture());
+
+        InterLock lock = lockManager.lock("job-1").orElseThrow();
+        onLost.getValue().run();
+        assertFalse(lockManager.hasLease("job-1"));
+
+        // then: lease node gone with session, stripe released without zookeeper
+        lockManager.unlock(lock, "job-1");
+        Mockito.verify(zk, Mockito.never()).release(any());
+
+        long start = System.currentTimeMillis();
+        InterLock relock = lockManager.lock("job-1").orElseThrow();
+        assertNotSame(lock, relock);
+        lockManager.unlock(relock, "job-1");
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertTrue(lockManager.hasLease("job-1"));
+    }
+
+    @Test
+    void should_not_block_other_jobs_while_waiting_on_zookeeper() throws InterruptedException {
+        CountDownLatch leaseCalled = new CountDownLatch(1);
+        CountDownLatch leaseReturn = new CountDownLatch(1);
+        Mockito.when(zk.lease(Mockito.eq("/job-locks/slow"), anyInt())).thenAnswer(i -> {
+            leaseCalled.countDown();
+            leaseReturn.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        new Thread(() -> lockManager.lock("slow")).start();
+        assertTrue(leaseCalled.await(5, TimeUnit.SECONDS));
+
+        // all stripes are free while waiting for the lease
+        for (int i = 0; i < 300; i++) {
+            String jobId = "job-" + i;
+            InterLock lock = lockManager.lock(jobId).orElseThrow();
+            lockManager.unlock(lock, jobId);
+        }
+        leaseReturn.countDown();
+    }
+
+    @Test
+    void should_block_other_thread_until_unlocked() throws InterruptedException {
+        InterLock lock = lockManager.lock("job-1").orElseThrow();
+
+        CountDownLatch locked = new CountDownLatch(1);
+        new Thread(() -> {
+            InterLock other = lockManager.lock("job-1").orElseThrow();
+            locked.countDown();
+            lockManager.unlock(other, "job-1");
+        }).start();
+
+        assertFalse(locked.await(200, TimeUnit.MILLISECONDS));
+
+        lockManager.unlock(lock, "job-1");
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+    }
+
+    private void onLeaseWanted(String jobId) throws Exception {
+        ArgumentCaptor<PathChildrenCacheListener> listener = ArgumentCaptor.forClass(PathChildrenCacheListener.class);
+        Mockito.verify(zk).watchChildren(Mockito.eq("/job-lock-wants"), listener.capture());
+
+        ChildData data = new ChildData("/job-lock-wants/" + jobId + "-0000000001", null, null);
+        listener.getValue().childEvent(null, new PathChildrenCacheEvent(PathChildrenCacheEvent.Type.CHILD_ADDED, data));
+    }
+}
@@ -0,0 +1,103 @@
+package com.flowci.core.test.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flowci.core.common.manager.SocketPushManager;
+import com.flowci.core.common.manager.SpringEventManager;
+import com.flowci.core.job.event.CacheShellLogEvent;
+import com.flowci.core.job.manager.LogBatchManagerImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class LogBatchManagerTest {
+
+    private static final String Topic = "/topic/logs";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private SocketPushManager socketPushManager;
+
+    private SpringEventManager eventManager;
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    private LogBatchManagerImpl logBatchManager;
+
+    @BeforeEach
+    void init() {
+        socketPushManager = Mockito.mock(SocketPushManager.class);
+        eventManager = Mockito.mock(SpringEventManager.class);
+
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+
+        logBatchManager = new LogBatchManagerImpl(Topic, objectMapper, socketPushManager, eventManager, registry, scheduler);
+    }
+
+    @AfterEach
+    void shutdown() {
+        logBatchManager.shutdown();
+        scheduler.destroy();
+    }
+
+    @Test
+    void should_push_log_lines_in_batch_and_in_order() throws Exception {
+        int numOfLines = 500;
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < numOfLines; i++) {
+            String line = "line " + i + "\n";
+            expected.append(line);
+            logBatchManager.add("job", "step", toB64(line));
+        }
+        logBatchManager.flush("job");
+
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        Mockito.verify(socketPushManager, Mockito.atLeastOnce()).push(eq(Topic + "/job"), captor.capture());
+
+        List<byte[]> batches = captor.getAllValues();
+        assertTrue(batches.size() < numOfLines);
+
+        StringBuilder actual = new StringBuilder();
+        for (byte[] batch : batches) {
+            Map<?, ?> item = objectMapper.readValue(batch, Map.class);
+            assertEquals("step", item.get("id"));
+            actual.append(new String(Base64.getDecoder().decode(item.get("content").toString()), StandardCharsets.UTF_8));
+        }
+        assertEquals(expected.toString(), actual.toString());
+
+        // then: cache event sent per batch
+        Mockito.verify(eventManager, Mockito.times(batches.size())).publish(any(CacheShellLogEvent.class));
+        assertEquals(numOfLines, registry.get("shell_log_lines").counter().count());
+        assertEquals(batches.size(), registry.get("shell_log_batches").counter().count());
+    }
+
+    @Test
+    void should_flush_when_batch_size_reached() {
+        String line = "x".repeat(20 * 1024);
+        logBatchManager.add("job", "step", toB64(line));
+
+        Mockito.verify(socketPushManager, Mockito.times(1)).push(eq(Topic + "/job"), any(byte[].class));
+    }
+
+    private static String toB64(String line) {
+        return Base64.getEncoder().encodeToString(line.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,145 @@
+package com.flowci.core.test.job;
+
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.job.manager.LogBufferManagerImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogBufferManagerTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private LogBufferManagerImpl logBufferManager;
+
+    @BeforeEach
+    void init() {
+        AppProperties.Job jobProperties = new AppProperties.Job();
+        jobProperties.setLogBufferMb(1);
+        logBufferManager = new LogBufferManagerImpl(jobProperties, registry);
+    }
+
+    @Test
+    void should_read_records_in_order() {
+        logBufferManager.open("job");
+        for (int i = 0; i < 5000; i++) {
+            logBufferManager.append("job", "step", toBytes("line " + i));
+        }
+
+        List<ByteBuffer> records = logBufferManager.read("step");
+        assertEquals(5000, records.size());
+        assertTrue(records.get(0).isDirect());
+        assertTrue(records.get(0).isReadOnly());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("line " + i, toString(records.get(i)));
+        }
+
+        // then: records not appended if job not opened
+        logBufferManager.append("other", "other-step", toBytes("ignored"));
+        assertTrue(logBufferManager.read("other-step").isEmpty());
+    }
+
+    @Test
+    void should_evict_oldest_chunk_when_buffer_full() {
+        logBufferManager.open("job");
+        byte[] record = new byte[1024];
+
+        for (int i = 0; i < 2048; i++) {
+            logBufferManager.append("job", "step-" + (i % 2), record);
+        }
+
+        assertTrue(logBufferManager.getBytesHeld() <= 1024 * 1024);
+        assertTrue(registry.get("log_buffer_evictions").counter().count() > 0);
+        assertEquals(logBufferManager.getBytesHeld(), registry.get("log_buffer_bytes").gauge().value());
+
+        int total = logBufferManager.read("step-0").size() + logBufferManager.read("step-1").size();
+        assertTrue(total > 0 && total < 2048);
+    }
+
+    @Test
+    void should_release_buffer_when_job_removed() {
+        logBufferManager.open("job");
+        logBufferManager.append("job", "step", toBytes("hello"));
+        List<ByteBuffer> records = logBufferManager.read("step");
+
+        logBufferManager.remove("job");
+        assertEquals(0, logBufferManager.getBytesHeld());
+        assertTrue(logBufferManager.read("step").isEmpty());
+
+        // then: view read before removal still valid
+        assertEquals("hello", toString(records.get(0)));
+    }
+
+    @Test
+    void should_keep_records_read_valid_after_eviction() {
+        logBufferManager.open("job");
+        logBufferManager.append("job", "step", toBytes("first"));
+        List<ByteBuffer> records = logBufferManager.read("step");
+
+        // then: chunk evicted by the other job is released from buffer though its records are read
+        logBufferManager.open("other");
+        byte[] record = new byte[1024];
+        for (int i = 0; i < 1024; i++) {
+            logBufferManager.append("other", "other-step", record);
+        }
+
+        assertTrue(logBufferManager.read("step").isEmpty());
+        assertTrue(logBufferManager.getBytesHeld() <= 1024 * 1024);
+        assertEquals("first", toString(records.get(0)));
+    }
+
+    @Test
+    void should_append_concurrently_to_jobs() throws Exception {
+        int numOfJobs = 8;
+        int numOfRecords = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(numOfJobs);
+
+        List<Future<?>> futures = new ArrayList<>(numOfJobs);
+        for (int j = 0; j < numOfJobs; j++) {
+            String jobId = "job-" + j;
+            logBufferManager.open(jobId);
+
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < numOfRecords; i++) {
+                    logBufferManager.append(jobId, jobId + "-step", toBytes("line " + i));
+                }
+            }));
+        }
+
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (int j = 0; j < numOfJobs; j++) {
+            List<ByteBuffer> records = logBufferManager.read("job-" + j + "-step");
+            assertEquals(numOfRecords, records.size());
+            assertEquals("line " + (numOfRecords - 1), toString(records.get(numOfRecords - 1)));
+        }
+
+        for (int j = 0; j < numOfJobs; j++) {
+            logBufferManager.remove("job-" + j);
+        }
+        assertEquals(0, logBufferManager.getBytesHeld());
+    }
+
+    private static byte[] toBytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String toString(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+}
@@ -6,12 +6,12 @@ import com.flowci.core.job.service.LoggingService;
 import com.flowci.core.job.service.StepService;
 import com.flowci.core.test.SpringScenario;
 import com.flowci.store.FileManager;
+import com.flowci.store.StoredFile;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.core.io.Resource;
 import org.springframework.mock.web.MockMultipartFile;
 
 import java.io.IOException;
@@ -50,8 +50,8 @@ public class LoggingServiceTest extends SpringScenario {
         assertNotNull(fileKey);
 
         // then:
-        Resource resource = loggingService.get(cmdId);
-        assertNotNull(resource);
+        StoredFile stored = loggingService.get(cmdId);
+        assertNotNull(stored);
     }
 
     @AfterEach
@@ -0,0 +1,157 @@
+package com.flowci.core.test.secret;
+
+import com.flowci.common.domain.SimpleKeyPair;
+import com.flowci.core.common.config.AppProperties;
+import com.flowci.core.secret.dao.PooledKeyDao;
+import com.flowci.core.secret.domain.PooledKey;
+import com.flowci.core.secret.manager.KeyPoolManagerImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+@Slf4j
+public class KeyPoolManagerTest {
+
+    private static final int PoolSize = 4;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final Queue<PooledKey> keys = new ConcurrentLinkedQueue<>();
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    private KeyPoolManagerImpl keyPoolManager;
+
+    @BeforeEach
+    void init() {
+        executor.initialize();
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (keyPoolManager != null) {
+            keyPoolManager.shutdown();
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void should_fill_pool_in_background_and_take_with_email() throws InterruptedException {
+        keyPoolManager = create(PoolSize);
+        keyPoolManager.refill();
+
+        assertTrue(waitFor(() -> keyPoolManager.depth() == PoolSize));
+        assertEquals(PoolSize, keys.size());
+        assertEquals(PoolSize, registry.get("rsa_pool_depth").gauge().value());
+
+        PooledKey first = keys.peek();
+        SimpleKeyPair pair = keyPoolManager.take("agent.a@flow.ci");
+
+        assertEquals(first.getPair().getPrivateKey(), pair.getPrivateKey());
+        assertTrue(pair.getPublicKey().startsWith("ssh-rsa "));
+        assertTrue(pair.getPublicKey().trim().endsWith(" agent.a@flow.ci"));
+
+        // refilled after taken
+        assertTrue(waitFor(() -> keys.size() == PoolSize));
+    }
+
+    @Test
+    void should_generate_if_pool_disabled() {
+        keyPoolManager = create(0);
+        keyPoolManager.refill();
+
+        SimpleKeyPair pair = keyPoolManager.take("agent.b@flow.ci");
+        assertTrue(pair.getPublicKey().trim().endsWith(" agent.b@flow.ci"));
+        assertTrue(keys.isEmpty());
+    }
+
+    @Test
+    void should_take_from_pool_and_generate_the_rest() throws InterruptedException {
+        keyPoolManager = create(2);
+        keyPoolManager.refill();
+        assertTrue(waitFor(() -> keys.size() == 2));
+        keyPoolManager.shutdown();
+
+        List<String> emails = List.of("agent.a@flow.ci", "agent.b@flow.ci", "agent.c@flow.ci", "agent.d@flow.ci");
+        List<SimpleKeyPair> pairs = keyPoolManager.take(emails);
+
+        assertEquals(emails.size(), pairs.size());
+        assertTrue(keys.isEmpty());
+        for (int i = 0; i < emails.size(); i++) {
+            assertTrue(pairs.get(i).getPublicKey().trim().endsWith(" " + emails.get(i)));
+        }
+    }
+
+    @Test
+    void benchmark_agent_keys_per_second() throws InterruptedException {
+        int num = 8;
+
+        keyPoolManager = create(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < num; i++) {
+            keyPoolManager.take("agent." + i + "@flow.ci");
+        }
+        long generated = System.nanoTime() - start;
+        keyPoolManager.shutdown();
+
+        keyPoolManager = create(num);
+        keyPoolManager.refill();
+        assertTrue(waitFor(() -> keys.size() == num));
+        keyPoolManager.shutdown();
+
+        start = System.nanoTime();
+        for (int i = 0; i < num; i++) {
+            keyPoolManager.take("agent." + i + "@flow.ci");
+        }
+        long pooled = System.nanoTime() - start;
+
+        log.info("RSA keys for {} agents: generate {}/s, pool {}/s",
+                num, perSecond(num, generated), perSecond(num, pooled));
+        assertTrue(pooled < generated);
+    }
+
+    private KeyPoolManagerImpl create(int size) {
+        PooledKeyDao dao = Mockito.mock(PooledKeyDao.class);
+        Mockito.when(dao.pop()).thenAnswer(invocation -> Optional.ofNullable(keys.poll()));
+        Mockito.when(dao.count()).thenAnswer(invocation -> (long) keys.size());
+        Mockito.when(dao.insert(any(PooledKey.class))).thenAnswer(invocation -> {
+            PooledKey key = invocation.getArgument(0);
+            keys.add(key);
+            return key;
+        });
+
+        AppProperties appProperties = new AppProperties();
+        appProperties.setRsaPoolSize(size);
+        return new KeyPoolManagerImpl(dao, appProperties, registry, executor);
+    }
+
+    private static long perSecond(int num, long nanos) {
+        return num * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.docker;
+
+import com.flowci.docker.domain.Unit;
+import com.flowci.docker.domain.UnitWatcher;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In memory view of containers or pods, loaded by list once and kept by watch.
+ * Fallback to list from container manager if watch not available
+ */
+@Slf4j
+public class ContainerInventory implements Closeable {
+
+    private static final long RetryIntervalMillis = 10 * 1000;
+
+    private final ContainerManager cm;
+
+    private final Map<String, Unit> units = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    private volatile Closeable watch;
+
+    private volatile Watcher watcher;
+
+    private volatile long lastTryAt;
+
+    private volatile boolean closed;
+
+    private volatile Consumer<Unit> onExited;
+
+    public ContainerInventory(ContainerManager cm) {
+        this.cm = cm;
+    }
+
+    /**
+     * Set listener for container exited or pod finished
+     */
+    public void onExited(Consumer<Unit> listener) {
+        this.onExited = listener;
+    }
+
+    public boolean isWatching() {
+        return watch != null;
+    }
+
+    /**
+     * Load and start watching in advance, return false if not available
+     */
+    public boolean watch() {
+        return ensureWatching();
+    }
+
+    /**
+     * List containers with name prefix
+     */
+    public List<Unit> list(String namePrefix) throws Exception {
+        if (!ensureWatching()) {
+            return cm.list(null, namePrefix + "*");
+        }
+
+        List<Unit> list = new ArrayList<>();
+        for (Map.Entry<String, Unit> entry : units.entrySet()) {
+            if (entry.getKey().startsWith(namePrefix)) {
+                list.add(entry.getValue());
+            }
+        }
+        return list;
+    }
+
+    public Optional<Unit> get(String name) throws Exception {
+        if (!ensureWatching()) {
+            List<Unit> list = cm.list(null, name);
+            return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+        }
+        return Optional.ofNullable(units.get(normalize(name)));
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            closeWatch();
+            units.clear();
+        }
+    }
+
+    private boolean ensureWatching() {
+        if (watch != null) {
+            return true;
+        }
+
+        synchronized (lock) {
+            if (watch != null) {
+                return true;
+            }
+
+            long now = System.currentTimeMillis();
+            if (closed || now - lastTryAt < RetryIntervalMillis) {
+                return false;
+            }
+            lastTryAt = now;
+
+            Closeable opened = null;
+            try {
+                // watch before list, so changes during list are not missed
+                units.clear();
+                Watcher current = new Watcher();
+                watcher = current;
+                opened = cm.watch(current);
+
+                // list result is older than any event received during list, keep the unit from event
+                for (Unit unit : cm.list(null, null)) {
+                    units.compute(normalize(unit.getName()), (name, v) -> current.seen.contains(name) ? v : unit);
+                }
+
+                current.loaded = true;
+                current.seen.clear();
+                watch = opened;
+                log.debug("Container inventory loaded with {} units", units.size());
+                return true;
+            } catch (Exception e) {
+                log.warn("Unable to watch containers: {}", e.getMessage());
+                closeQuietly(opened);
+                units.clear();
+                return false;
+            }
+        }
+    }
+
+    private void closeWatch() {
+        Closeable current = watch;
+        watch = null;
+        watcher = null;
+        closeQuietly(current);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException ignore) {
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+
+    private class Watcher implements UnitWatcher {
+
+        /**
+         * Names changed or removed by events before list applied
+         */
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean loaded;
+
+        private String markSeen(String name) {
+            String key = normalize(name);
+            if (!loaded) {
+                seen.add(key);
+            }
+            return key;
+        }
+
+        @Override
+        public void onChanged(Unit unit) {
+            if (watcher != this) {
+                return;
+            }
+
+            Unit previous = units.put(markSeen(unit.getName()), unit);
+
+            boolean exited = unit.getExitCode() != null;
+            boolean wasExited = previous != null && previous.getExitCode() != null;
+
+            Consumer<Unit> listener = onExited;
+            if (exited && !wasExited && listener != null) {
+                try {
+                    listener.accept(unit);
+                } catch (RuntimeException e) {
+                    log.warn("Unable to handle exited container {}: {}", unit.getName(), e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void onRemoved(String name) {
+            if (watcher != this) {
+                return;
+            }
+            units.remove(markSeen(name));
+        }
+
+        @Override
+        public void onClosed(Throwable cause) {
+            synchronized (lock) {
+                if (closed || watcher != this) {
+                    return;
+                }
+
+                // reload by list on next read
+                closeWatch();
+                log.warn("Container watch closed: {}", cause == null ? "by server" : cause.getMessage());
+            }
+        }
+    }
+}
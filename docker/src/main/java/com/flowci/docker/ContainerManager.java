@@ -3,7 +3,9 @@ package com.flowci.docker;
 import com.flowci.docker.domain.Output;
 import com.flowci.docker.domain.StartOption;
 import com.flowci.docker.domain.Unit;
+import com.flowci.docker.domain.UnitWatcher;
 
+import java.io.Closeable;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -22,4 +24,9 @@ public interface ContainerManager {
     void resume(String id) throws Exception;
 
     void delete(String id) throws Exception;
+
+    /**
+     * Watch changes of all containers until returned closeable been closed
+     */
+    Closeable watch(UnitWatcher watcher) throws Exception;
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.docker;
+
+import com.flowci.docker.domain.ContainerUnit;
+import com.flowci.docker.domain.UnitWatcher;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventActor;
+import com.github.dockerjava.api.model.EventType;
+
+import java.util.Map;
+
+/**
+ * Map docker container events to unit changes
+ */
+abstract class DockerEvents {
+
+    static void dispatch(Event event, UnitWatcher watcher) {
+        if (event.getType() != null && event.getType() != EventType.CONTAINER) {
+            return;
+        }
+
+        EventActor actor = event.getActor();
+        if (actor == null || actor.getAttributes() == null) {
+            return;
+        }
+
+        String id = actor.getId();
+        Map<String, String> attributes = actor.getAttributes();
+        String name = attributes.get("name");
+        if (id == null || name == null) {
+            return;
+        }
+
+        String action = event.getAction() == null ? event.getStatus() : event.getAction();
+        if (action == null) {
+            return;
+        }
+
+        switch (action) {
+            case "create":
+                watcher.onChanged(new ContainerUnit(id, name, "created", null, false));
+                break;
+            case "start":
+            case "restart":
+            case "unpause":
+                watcher.onChanged(new ContainerUnit(id, name, "running", null, true));
+                break;
+            case "pause":
+                watcher.onChanged(new ContainerUnit(id, name, "paused", null, false));
+                break;
+            case "die":
+                watcher.onChanged(new ContainerUnit(id, name, "exited", toExitCode(attributes.get("exitCode")), false));
+                break;
+            case "destroy":
+                watcher.onRemoved(name);
+                break;
+            default:
+                // exec, attach, kill and others not changed the state
+                break;
+        }
+    }
+
+    private static Long toExitCode(String value) {
+        if (value == null) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
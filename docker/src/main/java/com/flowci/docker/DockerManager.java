@@ -8,5 +8,7 @@ public interface DockerManager {
 
     ImageManager getImageManager();
 
+    ContainerInventory getInventory();
+
     void close();
 }
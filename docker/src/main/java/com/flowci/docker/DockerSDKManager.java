@@ -3,17 +3,24 @@ package com.flowci.docker;
 import com.flowci.common.helper.StringHelper;
 import com.flowci.docker.domain.*;
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
 import com.github.dockerjava.api.command.*;
 import com.github.dockerjava.api.exception.DockerException;
 import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
 import com.github.dockerjava.api.model.Frame;
 import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.api.model.PullResponseItem;
 import com.github.dockerjava.core.DefaultDockerClientConfig;
 import com.github.dockerjava.core.DockerClientBuilder;
+import com.github.dockerjava.core.DockerClientImpl;
+import com.github.dockerjava.transport.DockerHttpClient;
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -24,14 +31,26 @@ import java.util.function.Consumer;
 @Slf4j
 public class DockerSDKManager implements DockerManager {
 
-    private final String dockerHost;
+    private final DockerClient client;
 
     private final ContainerManager containerManager = new ContainerManagerImpl();
 
     private final ImageManager imageManager = new ImageMangerImpl();
 
+    private final ContainerInventory inventory = new ContainerInventory(containerManager);
+
     public DockerSDKManager(String dockerHost) {
-        this.dockerHost = dockerHost;
+        DefaultDockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder()
+                .withDockerHost(dockerHost).build();
+        this.client = DockerClientBuilder.getInstance(config).build();
+    }
+
+    /**
+     * Docker api over the given http client, ex: tunnel to remote docker socket
+     */
+    public DockerSDKManager(DockerHttpClient httpClient) {
+        DefaultDockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder().build();
+        this.client = DockerClientImpl.getInstance(config, httpClient);
     }
 
     @Override
@@ -44,9 +63,23 @@ public class DockerSDKManager implements DockerManager {
         return imageManager;
     }
 
+    @Override
+    public ContainerInventory getInventory() {
+        return inventory;
+    }
+
     @Override
     public void close() {
-        // ignore
+        // ignore, client is shared by local agent host and job
+    }
+
+    protected void closeClient() {
+        inventory.close();
+        try {
+            client.close();
+        } catch (IOException e) {
+            log.warn("Unable to close docker client: {}", e.getMessage());
+        }
     }
 
     private class ImageMangerImpl implements ImageManager {
@@ -58,29 +91,27 @@ public class DockerSDKManager implements DockerManager {
                 imageUrl = "docker.io/" + image;
             }
 
-            try (DockerClient client = newClient()) {
-                if (findImage(client, image).size() >= 1) {
-                    return;
-                }
+            if (findImage(image).size() >= 1) {
+                return;
+            }
 
-                PullImageCallback callback = client.pullImageCmd(imageUrl).exec(new PullImageCallback(progress));
-                boolean await = callback.getCounter().await(timeoutInSeconds, TimeUnit.SECONDS);
+            PullImageCallback callback = client.pullImageCmd(imageUrl).exec(new PullImageCallback(progress));
+            boolean await = callback.getCounter().await(timeoutInSeconds, TimeUnit.SECONDS);
 
-                if (!await) {
-                    throw new DockerException(String.format("Timeout when pull image %s", image), 0);
-                }
+            if (!await) {
+                throw new DockerException(String.format("Timeout when pull image %s", image), 0);
+            }
 
-                if (callback.hasError()) {
-                    throw new DockerException(callback.getThrowable().getMessage(), 0);
-                }
+            if (callback.hasError()) {
+                throw new DockerException(callback.getThrowable().getMessage(), 0);
+            }
 
-                if (findImage(client, image).isEmpty()) {
-                    throw new DockerException(String.format("Failed on pull image %s", image), 0);
-                }
+            if (findImage(image).isEmpty()) {
+                throw new DockerException(String.format("Failed on pull image %s", image), 0);
             }
         }
 
-        private List<Image> findImage(DockerClient client, String image) {
+        private List<Image> findImage(String image) {
             return client.listImagesCmd().withImageNameFilter(image).exec();
         }
     }
@@ -89,32 +120,28 @@ public class DockerSDKManager implements DockerManager {
 
         @Override
         public List<Unit> list(String statusFilter, String nameFilter) throws Exception {
-            try (DockerClient client = newClient()) {
-                ListContainersCmd cmd = client.listContainersCmd().withShowAll(true);
+            ListContainersCmd cmd = client.listContainersCmd().withShowAll(true);
 
-                if (StringHelper.hasValue(nameFilter)) {
-                    cmd.withNameFilter(Lists.newArrayList(nameFilter));
-                }
+            if (StringHelper.hasValue(nameFilter)) {
+                cmd.withNameFilter(Lists.newArrayList(nameFilter));
+            }
 
-                if (StringHelper.hasValue(statusFilter)) {
-                    cmd.withStatusFilter(Lists.newArrayList(statusFilter));
-                }
+            if (StringHelper.hasValue(statusFilter)) {
+                cmd.withStatusFilter(Lists.newArrayList(statusFilter));
+            }
 
-                List<Container> containers = cmd.exec();
-                List<Unit> list = new ArrayList<>(containers.size());
-                for (Container c : containers) {
-                    list.add(new ContainerUnit(c));
-                }
-                return list;
+            List<Container> containers = cmd.exec();
+            List<Unit> list = new ArrayList<>(containers.size());
+            for (Container c : containers) {
+                list.add(new ContainerUnit(c));
             }
+            return list;
         }
 
         @Override
         public Unit inspect(String containerId) throws Exception {
-            try (DockerClient client = newClient()) {
-                InspectContainerResponse exec = client.inspectContainerCmd(containerId).exec();
-                return new ContainerUnit(exec);
-            }
+            InspectContainerResponse exec = client.inspectContainerCmd(containerId).exec();
+            return new ContainerUnit(exec);
         }
 
         @Override
@@ -125,35 +152,34 @@ public class DockerSDKManager implements DockerManager {
 
             ContainerStartOption option = (ContainerStartOption) startOption;
 
-            try (DockerClient client = newClient()) {
-                CreateContainerCmd createCmd = client.createContainerCmd(option.getImage());
-                createCmd.withEnv(option.toEnvList());
-                createCmd.withBinds(option.toBindList());
-                createCmd.withEntrypoint(option.getEntrypoint());
+            CreateContainerCmd createCmd = client.createContainerCmd(option.getImage());
+            createCmd.withEnv(option.toEnvList());
+            createCmd.withBinds(option.toBindList());
+            createCmd.withEntrypoint(option.getEntrypoint());
 
-                if (option.hasName()) {
-                    createCmd.withName(option.getName());
-                }
-
-                CreateContainerResponse container = createCmd.exec();
-                client.startContainerCmd(container.getId()).exec();
-                return container.getId();
+            if (option.hasName()) {
+                createCmd.withName(option.getName());
             }
+
+            CreateContainerResponse container = createCmd.exec();
+            client.startContainerCmd(container.getId()).exec();
+            return container.getId();
         }
 
         @Override
         public void wait(String containerId, int timeoutInSeconds, Consumer<Output> onLog) throws Exception {
             Instant expire = Instant.now().plus(timeoutInSeconds, ChronoUnit.SECONDS);
 
-            try (DockerClient client = newClient()) {
-                if (onLog != null) {
-                    client.logContainerCmd(containerId)
-                            .withStdOut(true)
-                            .withStdErr(true)
-                            .withFollowStream(true)
-                            .exec(new FrameCallback(onLog));
-                }
+            FrameCallback logs = null;
+            if (onLog != null) {
+                logs = client.logContainerCmd(containerId)
+                        .withStdOut(true)
+                        .withStdErr(true)
+                        .withFollowStream(true)
+                        .exec(new FrameCallback(onLog));
+            }
 
+            try {
                 for (; ; ) {
                     InspectContainerResponse.ContainerState state = client.inspectContainerCmd(containerId).exec().getState();
                     if (state.getRunning() == null || !state.getRunning()) {
@@ -166,40 +192,44 @@ public class DockerSDKManager implements DockerManager {
 
                     Thread.sleep(2000);
                 }
+            } finally {
+                if (logs != null) {
+                    logs.close();
+                }
             }
         }
 
         @Override
         public void stop(String containerId) throws Exception {
-            try (DockerClient client = newClient()) {
-                InspectContainerResponse.ContainerState state = client.inspectContainerCmd(containerId).exec().getState();
-                Boolean running = state.getRunning();
-                if (running != null && running) {
-                    client.stopContainerCmd(containerId).exec();
-                }
+            InspectContainerResponse.ContainerState state = client.inspectContainerCmd(containerId).exec().getState();
+            Boolean running = state.getRunning();
+            if (running != null && running) {
+                client.stopContainerCmd(containerId).exec();
             }
         }
 
         @Override
         public void resume(String containerId) throws Exception {
-            try (DockerClient client = newClient()) {
-                client.removeContainerCmd(containerId).exec();
-            }
+            client.startContainerCmd(containerId).exec();
         }
 
         @Override
         public void delete(String containerId) throws Exception {
-            try (DockerClient client = newClient()) {
-                RemoveContainerCmd removeCmd = client.removeContainerCmd(containerId).withForce(true);
-                removeCmd.exec();
-            }
+            RemoveContainerCmd removeCmd = client.removeContainerCmd(containerId).withForce(true);
+            removeCmd.exec();
         }
-    }
 
-    private DockerClient newClient() {
-        DefaultDockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder()
-                .withDockerHost(dockerHost).build();
-        return DockerClientBuilder.getInstance(config).build();
+        @Override
+        public Closeable watch(UnitWatcher watcher) throws Exception {
+            EventCallback callback = new EventCallback(watcher);
+            client.eventsCmd().withEventTypeFilter(EventType.CONTAINER).exec(callback);
+            callback.awaitStarted(10, TimeUnit.SECONDS);
+
+            return () -> {
+                callback.stopped = true;
+                callback.close();
+            };
+        }
     }
 
     private static class PullImageCallback extends DockerCallback<PullResponseItem> {
@@ -218,6 +248,38 @@ public class DockerSDKManager implements DockerManager {
         }
     }
 
+    private static class EventCallback extends ResultCallback.Adapter<Event> {
+
+        private final UnitWatcher watcher;
+
+        private volatile boolean stopped;
+
+        private EventCallback(UnitWatcher watcher) {
+            this.watcher = watcher;
+        }
+
+        @Override
+        public void onNext(Event event) {
+            DockerEvents.dispatch(event, watcher);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            super.onError(throwable);
+            if (!stopped) {
+                watcher.onClosed(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            super.onComplete();
+            if (!stopped) {
+                watcher.onClosed(null);
+            }
+        }
+    }
+
     private static class FrameCallback extends DockerCallback<Frame> {
 
         private final Consumer<Output> onLog;
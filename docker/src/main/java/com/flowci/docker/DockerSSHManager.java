@@ -1,294 +1,250 @@
 package com.flowci.docker;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.flowci.common.helper.StringHelper;
-import com.flowci.docker.domain.*;
-import com.flowci.common.domain.ObjectWrapper;
-import com.github.dockerjava.api.command.InspectContainerResponse;
-import com.github.dockerjava.api.model.Container;
-import com.github.dockerjava.api.model.Image;
-import com.jcraft.jsch.*;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-
-import java.io.*;
-import java.util.LinkedList;
-import java.util.List;
+import com.flowci.docker.domain.SSHOption;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
 import java.util.Objects;
-import java.util.function.Consumer;
+import java.util.concurrent.TimeUnit;
 
-public class DockerSSHManager implements DockerManager {
+/**
+ * Docker api of remote host over one ssh session, each http connection is a channel
+ * running 'docker system dial-stdio' and is reused for following requests
+ */
+@Slf4j
+public class DockerSSHManager extends DockerSDKManager {
 
-    private static final int ChannelTimeout = 10 * 1000;
+    private static final String DialStdio = "docker system dial-stdio";
 
-    private static final String FormatAsJson = "--format \"{{json .}}\"";
+    // channels of one session are limited by MaxSessions of sshd, which is 10 by default
+    private static final int MaxConnections = 6;
 
-    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int MaxStreams = 4;
+
+    private static final int ServerAliveInterval = 30 * 1000;
 
     private final Session session;
 
-    private final ContainerManager containerManager = new ContainerManagerImpl();
+    public DockerSSHManager(SSHOption option) throws Exception {
+        this(connect(option));
+    }
+
+    private DockerSSHManager(Session session) {
+        super(new TunnelDockerHttpClient(new SshTunnel(session), MaxConnections, MaxStreams));
+        this.session = session;
+    }
 
-    private final ImageManager imageManager = new ImageManagerImpl();
+    @Override
+    public void close() {
+        closeClient();
 
-    static {
-        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        if (Objects.isNull(session)) {
+            return;
+        }
+        session.disconnect();
     }
 
-    public DockerSSHManager(SSHOption option) throws Exception {
+    private static Session connect(SSHOption option) throws Exception {
+        Session session = null;
         try {
             JSch jsch = new JSch();
             jsch.addIdentity("name", option.getPrivateKey().getBytes(), null, null);
 
             session = jsch.getSession(option.getRemoteUser(), option.getRemoteHost(), option.getPort());
             session.setConfig("StrictHostKeyChecking", "no");
+            session.setServerAliveInterval(ServerAliveInterval);
             session.connect(option.getTimeoutInSeconds() * 1000);
+            return session;
         } catch (JSchException e) {
-            this.close();
+            if (session != null) {
+                session.disconnect();
+            }
             throw new Exception(String.format("Ssh connection error: %s", e.getMessage()));
         }
     }
 
-    @Override
-    public ContainerManager getContainerManager() {
-        return containerManager;
-    }
+    private static class SshTunnel implements DockerTunnel {
 
-    @Override
-    public ImageManager getImageManager() {
-        return imageManager;
-    }
+        private final Session session;
 
-    @Override
-    public void close() {
-        if (Objects.isNull(session)) {
-            return;
+        SshTunnel(Session session) {
+            this.session = session;
         }
-        session.disconnect();
-    }
-
-    private class ImageManagerImpl implements ImageManager {
 
         @Override
-        public void pull(String image, int ignore, Consumer<String> progress) throws Exception {
-            List<Image> list = findImage(image);
-            if (list.size() > 0) {
-                return;
+        public Socket connect(int timeoutInMillis) throws IOException {
+            if (!session.isConnected()) {
+                throw new IOException("Ssh session is disconnected");
             }
-            String cmd = String.format("docker pull %s", image);
-            Result result = runCmd(cmd, (log) -> {
-                if (progress != null) {
-                    progress.accept(log);
-                }
-            });
-            throwExceptionIfError(result);
-        }
 
-        private List<Image> findImage(String image) throws Exception {
-            String cmd = String.format("docker image ls --filter reference=\"%s\" %s", image, FormatAsJson);
-            List<Image> list = new LinkedList<>();
-            Result result = runCmd(cmd, (line) -> {
-                try {
-                    list.add(mapper.readValue(line, Image.class));
-                } catch (JsonProcessingException ignore) {
-                }
-            });
-            throwExceptionIfError(result);
-            return list;
-        }
-    }
+            try {
+                ChannelExec exec = (ChannelExec) session.openChannel("exec");
+                exec.setCommand(DialStdio);
 
-    private class ContainerManagerImpl implements ContainerManager {
+                InputStream in = exec.getInputStream();
+                OutputStream out = exec.getOutputStream();
+                exec.connect(timeoutInMillis);
 
-        @Override
-        public List<Unit> list(String statusFilter, String nameFilter) throws Exception {
-            StringBuilder cmd = new StringBuilder();
-            cmd.append("docker ps -a ");
-            if (StringHelper.hasValue(statusFilter)) {
-                cmd.append(String.format("--filter \"status=%s\" ", statusFilter));
-            }
-            if (StringHelper.hasValue(nameFilter)) {
-                cmd.append(String.format("--filter \"name=%s\" ", nameFilter));
+                return new ChannelSocket(exec, in, out);
+            } catch (JSchException e) {
+                throw new IOException(String.format("Unable to open ssh channel: %s", e.getMessage()), e);
             }
-            cmd.append(FormatAsJson);
+        }
+    }
 
-            List<Unit> list = new LinkedList<>();
-            Result result = runCmd(cmd.toString(), (line) -> {
-                try {
-                    Container container = mapper.readValue(line, Container.class);
-                    list.add(new ContainerUnit(container));
-                } catch (JsonProcessingException ignore) {
-                }
-            });
+    /**
+     * Socket view of ssh channel for http client, socket options are not applied
+     * except read timeout, which is needed by the stale connection check
+     */
+    private static class ChannelSocket extends Socket {
 
-            throwExceptionIfError(result);
-            return list;
-        }
+        private final ChannelExec channel;
 
-        @Override
-        public Unit inspect(String containerId) throws Exception {
-            String cmd = String.format("docker inspect %s %s", containerId, FormatAsJson);
-            final ObjectWrapper<InspectContainerResponse> inspected = new ObjectWrapper<>();
+        private final InputStream in;
 
-            Result result = runCmd(cmd, (line) -> {
-                try {
-                    inspected.setValue(mapper.readValue(line, InspectContainerResponse.class));
-                } catch (JsonProcessingException ignore) {
-                }
-            });
-            throwExceptionIfError(result);
+        private final OutputStream out;
 
-            if (!inspected.hasValue()) {
-                throw new Exception(String.format("Unable to inspect container %s result", containerId));
-            }
+        private int soTimeout;
 
-            return new ContainerUnit(inspected.getValue());
+        ChannelSocket(ChannelExec channel, InputStream in, OutputStream out) {
+            this.channel = channel;
+            this.in = in;
+            this.out = out;
         }
 
         @Override
-        public String start(StartOption startOption) throws Exception {
-            if (!(startOption instanceof ContainerStartOption)) {
-                throw new IllegalArgumentException();
-            }
-
-            ContainerStartOption option = (ContainerStartOption) startOption;
-            StringBuilder cmd = new StringBuilder();
-            cmd.append("docker run -d ");
-
-            if (option.hasName()) {
-                cmd.append(String.format("--name %s ", option.getName()));
-            }
-
-            List<String> entrypoint = option.getEntrypoint();
-            if (!entrypoint.isEmpty()) {
-                cmd.append(String.format("--entrypoint %s ", entrypoint.get(0)));
-            }
-
-            option.getEnv().forEach((k, v) -> cmd.append(String.format("-e %s=%s ", k, v)));
-            option.getBind().forEach((s, t) -> cmd.append(String.format("-v %s:%s ", s, t)));
-            cmd.append(option.getImage());
-
-            if (!entrypoint.isEmpty() && entrypoint.size() > 1) {
-                cmd.append(" ");
-                for (int i = 1; i < entrypoint.size(); i++) {
-                    cmd.append(entrypoint.get(i)).append(" ");
-                }
-            }
+        public void connect(SocketAddress endpoint, int timeout) {
+            // connected on created
+        }
 
-            ObjectWrapper<String> cid = new ObjectWrapper<>();
-            Result result = runCmd(cmd.toString(), cid::setValue);
-            throwExceptionIfError(result);
+        @Override
+        public InputStream getInputStream() {
+            return new TimedInputStream();
+        }
 
-            if (!cid.hasValue()) {
-                throw new Exception("Unable to get container line from output");
-            }
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
 
-            return cid.getValue();
+        @Override
+        public InetAddress getInetAddress() {
+            return InetAddress.getLoopbackAddress();
         }
 
+        @Override
+        public InetAddress getLocalAddress() {
+            return InetAddress.getLoopbackAddress();
+        }
 
         @Override
-        public void wait(String containerId, int timeoutInSeconds, Consumer<Output> onLog) throws Exception {
-            String cmd = String.format("docker logs -f %s", containerId);
-            Result result = runCmd(cmd, (log) -> {
-                if (onLog != null) {
-                    onLog.accept(new Output(log.getBytes()));
-                }
-            });
-            throwExceptionIfError(result);
+        public boolean isConnected() {
+            return true;
         }
 
         @Override
-        public void stop(String containerId) throws Exception {
-            Boolean running = inspect(containerId).isRunning();
+        public boolean isClosed() {
+            return channel.isClosed();
+        }
 
-            if (running != null && running) {
-                String cmd = String.format("docker stop %s", containerId);
-                Result result = runCmd(cmd, null);
-                throwExceptionIfError(result);
-            }
+        @Override
+        public synchronized void setSoTimeout(int timeout) {
+            this.soTimeout = timeout;
         }
 
         @Override
-        public void resume(String containerId) throws Exception {
-            String cmd = String.format("docker start %s", containerId);
-            Result result = runCmd(cmd, null);
-            throwExceptionIfError(result);
+        public synchronized int getSoTimeout() {
+            return soTimeout;
         }
 
         @Override
-        public void delete(String containerId) throws Exception {
-            String cmd = String.format("docker rm -f %s", containerId);
-            Result result = runCmd(cmd, null);
-            throwExceptionIfError(result);
+        public void setTcpNoDelay(boolean on) {
         }
-    }
 
-    private void throwExceptionIfError(Result result) throws Exception {
-        if (result.getExit() != 0) {
-            throw new Exception(result.getErr());
+        @Override
+        public void setKeepAlive(boolean on) {
         }
-    }
 
-    private Result runCmd(String bash, Consumer<String> handler) throws JSchException, IOException {
-        if (Objects.isNull(session)) {
-            throw new IllegalStateException("Please init ssh session first");
+        @Override
+        public void setReuseAddress(boolean on) {
         }
 
-        Channel channel = null;
+        @Override
+        public void setSoLinger(boolean on, int linger) {
+        }
 
-        try {
-            channel = session.openChannel("exec");
-            try (PipedInputStream out = new PipedInputStream(); PipedInputStream err = new PipedInputStream()) {
-                ChannelExec exec = (ChannelExec) channel;
-                exec.setCommand(bash);
+        @Override
+        public void shutdownInput() {
+        }
 
-                exec.setOutputStream(new PipedOutputStream(out));
-                exec.setErrStream(new PipedOutputStream(err));
+        @Override
+        public void shutdownOutput() {
+        }
 
-                channel.connect(ChannelTimeout);
+        @Override
+        public synchronized void close() {
+            channel.disconnect();
+        }
 
-                return Result.of(
-                        collectOutput(out, handler).toString(),
-                        collectOutput(err, null).toString(),
-                        channel.getExitStatus()
-                );
-            }
-        } finally {
-            if (channel != null) {
-                channel.disconnect();
+        /**
+         * Channel stream blocks on read, wait for data until timeout if read timeout is set
+         */
+        private void awaitReadable() throws IOException {
+            int timeout = getSoTimeout();
+            if (timeout <= 0) {
+                return;
             }
-        }
-    }
 
-    private static StringBuilder collectOutput(InputStream in, Consumer<String> handler) throws IOException {
-        try (BufferedReader buffer = new BufferedReader(new InputStreamReader(in))) {
-            String line;
-            StringBuilder builder = new StringBuilder();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (in.available() <= 0 && !channel.isEOF() && !channel.isClosed()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("Read timed out");
+                }
 
-            while ((line = buffer.readLine()) != null) {
-                builder.append(line);
-                if (handler != null) {
-                    handler.accept(line);
+                try {
+                    Thread.sleep(Math.min(remaining, 10));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
                 }
             }
-
-            return builder;
         }
-    }
 
-    @AllArgsConstructor(staticName = "of")
-    @Getter
-    private static class Result {
+        private class TimedInputStream extends InputStream {
 
-        final String out;
+            @Override
+            public int read() throws IOException {
+                awaitReadable();
+                return in.read();
+            }
 
-        final String err;
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                awaitReadable();
+                return in.read(b, off, len);
+            }
+
+            @Override
+            public int available() throws IOException {
+                return in.available();
+            }
 
-        final int exit;
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        }
     }
 }
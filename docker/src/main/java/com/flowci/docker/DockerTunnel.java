@@ -0,0 +1,13 @@
+package com.flowci.docker;
+
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Open a connected stream to remote docker api, ex: ssh channel to docker socket
+ */
+@FunctionalInterface
+public interface DockerTunnel {
+
+    Socket connect(int timeoutInMillis) throws IOException;
+}
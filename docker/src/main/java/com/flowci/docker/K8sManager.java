@@ -10,6 +10,8 @@ import io.fabric8.kubernetes.api.model.rbac.SubjectBuilder;
 import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.WatcherException;
 import io.fabric8.kubernetes.client.dsl.LogWatch;
 import io.fabric8.kubernetes.client.dsl.NonNamespaceOperation;
 import io.fabric8.kubernetes.client.dsl.PodResource;
@@ -17,6 +19,7 @@ import io.fabric8.kubernetes.client.dsl.Resource;
 import io.fabric8.kubernetes.client.internal.KubeConfigUtils;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
@@ -46,6 +49,8 @@ public class K8sManager implements DockerManager {
 
     private final ImageManager im = new ImageManagerImpl();
 
+    private final ContainerInventory inventory = new ContainerInventory(cm);
+
     public K8sManager(K8sOption option) throws IOException {
         this.option = option;
 
@@ -167,8 +172,13 @@ public class K8sManager implements DockerManager {
     }
 
     @Override
-    public void close() {
+    public ContainerInventory getInventory() {
+        return inventory;
+    }
 
+    @Override
+    public void close() {
+        inventory.close();
     }
 
     private class ContainerManagerImpl implements ContainerManager {
@@ -253,6 +263,35 @@ public class K8sManager implements DockerManager {
                 throw new Exception(String.format("Pod %s not deleted", podName));
             }
         }
+
+        @Override
+        public Closeable watch(UnitWatcher watcher) throws Exception {
+            try {
+                return client.pods().inNamespace(option.getNamespace()).watch(new Watcher<Pod>() {
+                    @Override
+                    public void eventReceived(Action action, Pod pod) {
+                        switch (action) {
+                            case ADDED:
+                            case MODIFIED:
+                                watcher.onChanged(new PodUnit(pod));
+                                break;
+                            case DELETED:
+                                watcher.onRemoved(pod.getMetadata().getName());
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+
+                    @Override
+                    public void onClose(WatcherException cause) {
+                        watcher.onClosed(cause);
+                    }
+                });
+            } catch (KubernetesClientException e) {
+                throw new Exception(e.getMessage());
+            }
+        }
     }
 
     private class ImageManagerImpl implements ImageManager {
@@ -0,0 +1,219 @@
+package com.flowci.docker;
+
+import com.github.dockerjava.transport.DockerHttpClient;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Docker http client over pooled and reused tunnel connections
+ */
+@Slf4j
+public class TunnelDockerHttpClient implements DockerHttpClient {
+
+    private static final HttpHost Host = new HttpHost("docker", 80, "http");
+
+    private static final int ConnectTimeout = 10 * 1000;
+
+    private static final int ConnectionRequestTimeout = 30 * 1000;
+
+    private static final int ValidateAfterInactivity = 2 * 1000;
+
+    private static final int DefaultMaxStreams = 4;
+
+    private final CloseableHttpClient client;
+
+    /**
+     * Events, followed logs and attach hold connection until closed, keep them in own pool
+     * so they cannot use up the connections of short requests
+     */
+    private final CloseableHttpClient streamClient;
+
+    public TunnelDockerHttpClient(DockerTunnel tunnel, int maxConnections) {
+        this(tunnel, maxConnections, DefaultMaxStreams);
+    }
+
+    public TunnelDockerHttpClient(DockerTunnel tunnel, int maxConnections, int maxStreams) {
+        ConnectionSocketFactory factory = new TunnelSocketFactory(tunnel);
+        this.client = newClient(factory, maxConnections);
+        this.streamClient = newClient(factory, maxStreams);
+    }
+
+    @Override
+    public Response execute(Request request) {
+        if (request.hijackedInput() != null) {
+            throw new UnsupportedOperationException("Hijacked connection is not supported by tunnel");
+        }
+
+        RequestBuilder builder = RequestBuilder.create(request.method()).setUri(request.path());
+        request.headers().forEach(builder::addHeader);
+
+        byte[] bytes = request.bodyBytes();
+        if (bytes != null) {
+            builder.setEntity(new ByteArrayEntity(bytes));
+        } else {
+            InputStream body = request.body();
+            if (body != null) {
+                builder.setEntity(new InputStreamEntity(body));
+            }
+        }
+
+        try {
+            boolean streaming = isStreaming(request.path());
+            CloseableHttpResponse response = (streaming ? streamClient : client).execute(Host, builder.build());
+            return new TunnelResponse(response, streaming);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            streamClient.close();
+        } finally {
+            client.close();
+        }
+    }
+
+    private static CloseableHttpClient newClient(ConnectionSocketFactory factory, int maxConnections) {
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create().register("http", factory).build(),
+                null,
+                null,
+                host -> new InetAddress[]{InetAddress.getLoopbackAddress()},
+                -1,
+                TimeUnit.MILLISECONDS
+        );
+        cm.setMaxTotal(maxConnections);
+        cm.setDefaultMaxPerRoute(maxConnections);
+
+        // check connection closed by remote after idle, the tunnel socket must apply read timeout
+        cm.setValidateAfterInactivity(ValidateAfterInactivity);
+
+        RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(ConnectTimeout)
+                .setConnectionRequestTimeout(ConnectionRequestTimeout)
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(cm)
+                .setDefaultRequestConfig(config)
+                .evictIdleConnections(60, TimeUnit.SECONDS)
+                .disableContentCompression()
+                .build();
+    }
+
+    /**
+     * Response of events, followed logs and attach never end, close connection instead of reading to the end
+     */
+    private static boolean isStreaming(String path) {
+        return path.contains("/events") || path.contains("follow=") || path.contains("/attach");
+    }
+
+    private static class TunnelResponse implements Response {
+
+        private final CloseableHttpResponse response;
+
+        private final boolean streaming;
+
+        private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        TunnelResponse(CloseableHttpResponse response, boolean streaming) {
+            this.response = response;
+            this.streaming = streaming;
+
+            for (Header header : response.getAllHeaders()) {
+                headers.computeIfAbsent(header.getName(), k -> new ArrayList<>()).add(header.getValue());
+            }
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.getStatusLine().getStatusCode();
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+
+            try {
+                return entity.getContent();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                // read to the end, so connection is returned to pool and reused
+                if (!streaming) {
+                    EntityUtils.consume(response.getEntity());
+                }
+                response.close();
+            } catch (IOException e) {
+                log.debug("Unable to close docker response: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static class TunnelSocketFactory implements ConnectionSocketFactory {
+
+        private final DockerTunnel tunnel;
+
+        TunnelSocketFactory(DockerTunnel tunnel) {
+            this.tunnel = tunnel;
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) {
+            // placeholder, tunnel socket is created on connect
+            return new Socket();
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout,
+                                    Socket socket,
+                                    HttpHost host,
+                                    InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress,
+                                    HttpContext context) throws IOException {
+            return tunnel.connect(connectTimeout);
+        }
+    }
+}
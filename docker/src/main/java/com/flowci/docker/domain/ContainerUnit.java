@@ -25,6 +25,14 @@ public class ContainerUnit implements Unit {
         this.running = null;
     }
 
+    public ContainerUnit(String id, String name, String status, Long exitCode, Boolean running) {
+        this.id = id;
+        this.name = name;
+        this.status = status;
+        this.exitCode = exitCode;
+        this.running = running;
+    }
+
     public ContainerUnit(InspectContainerResponse r) {
         this.id = r.getId();
         this.name = r.getName();
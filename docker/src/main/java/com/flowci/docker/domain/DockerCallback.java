@@ -15,9 +15,11 @@ public abstract class DockerCallback<T> implements ResultCallback<T> {
     @Getter
     protected Throwable throwable;
 
+    private volatile Closeable stream;
+
     @Override
     public void onStart(Closeable closeable) {
-
+        this.stream = closeable;
     }
 
     @Override
@@ -33,7 +35,10 @@ public abstract class DockerCallback<T> implements ResultCallback<T> {
 
     @Override
     public void close() throws IOException {
-
+        Closeable current = stream;
+        if (current != null) {
+            current.close();
+        }
     }
 
     public boolean hasError() {
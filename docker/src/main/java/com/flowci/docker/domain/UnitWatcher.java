@@ -0,0 +1,32 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.docker.domain;
+
+/**
+ * Receive container or pod changes from docker events or k8s watch
+ */
+public interface UnitWatcher {
+
+    void onChanged(Unit unit);
+
+    void onRemoved(String name);
+
+    /**
+     * Watch closed by server or connection lost, cause is null if closed normally
+     */
+    void onClosed(Throwable cause);
+}
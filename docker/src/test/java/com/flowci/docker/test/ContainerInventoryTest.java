@@ -0,0 +1,181 @@
+package com.flowci.docker.test;
+
+import com.flowci.docker.ContainerInventory;
+import com.flowci.docker.ContainerManager;
+import com.flowci.docker.domain.ContainerUnit;
+import com.flowci.docker.domain.Output;
+import com.flowci.docker.domain.StartOption;
+import com.flowci.docker.domain.Unit;
+import com.flowci.docker.domain.UnitWatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContainerInventoryTest {
+
+    private StandIn cm;
+
+    private ContainerInventory inventory;
+
+    @BeforeEach
+    void init() {
+        cm = new StandIn();
+        cm.containers.add(new ContainerUnit("1", "/flowci-agent-a", "running", null, true));
+        cm.containers.add(new ContainerUnit("2", "/other", "running", null, true));
+        inventory = new ContainerInventory(cm);
+    }
+
+    @Test
+    void should_list_once_and_read_from_memory() throws Exception {
+        assertEquals(1, inventory.list("flowci-agent").size());
+        assertTrue(inventory.get("flowci-agent-a").isPresent());
+        assertFalse(inventory.get("flowci-agent-b").isPresent());
+        assertEquals(1, inventory.list("flowci-agent").size());
+
+        assertTrue(inventory.isWatching());
+        assertEquals(1, cm.numOfList);
+        assertEquals(1, cm.numOfWatch);
+    }
+
+    @Test
+    void should_update_by_watched_changes() throws Exception {
+        List<Unit> exited = new ArrayList<>();
+        inventory.onExited(exited::add);
+        inventory.watch();
+
+        cm.watcher.onChanged(new ContainerUnit("3", "flowci-agent-b", "running", null, true));
+        assertEquals(2, inventory.list("flowci-agent").size());
+
+        cm.watcher.onChanged(new ContainerUnit("3", "flowci-agent-b", "exited", 1L, false));
+        cm.watcher.onChanged(new ContainerUnit("3", "flowci-agent-b", "exited", 1L, false));
+        assertEquals(1, exited.size());
+        assertEquals(1L, exited.get(0).getExitCode());
+
+        cm.watcher.onRemoved("flowci-agent-b");
+        assertFalse(inventory.get("flowci-agent-b").isPresent());
+        assertEquals(1, cm.numOfList);
+    }
+
+    @Test
+    void should_not_apply_list_result_older_than_watched_changes() throws Exception {
+        cm.containers.add(new ContainerUnit("3", "/flowci-agent-b", "running", null, true));
+
+        // events received while list is running, the list result is taken before them
+        cm.duringList = () -> {
+            cm.watcher.onRemoved("flowci-agent-a");
+            cm.watcher.onChanged(new ContainerUnit("3", "flowci-agent-b", "exited", 1L, false));
+        };
+        inventory.watch();
+
+        assertFalse(inventory.get("flowci-agent-a").isPresent());
+        assertEquals(1L, inventory.get("flowci-agent-b").get().getExitCode());
+        assertTrue(inventory.get("other").isPresent());
+    }
+
+    @Test
+    void should_reload_after_watch_closed() throws Exception {
+        inventory.watch();
+        UnitWatcher closed = cm.watcher;
+
+        closed.onClosed(new IllegalStateException("connection lost"));
+        assertFalse(inventory.isWatching());
+
+        // retry is limited, fallback to list from container manager
+        cm.containers.add(new ContainerUnit("4", "/flowci-agent-c", "running", null, true));
+        assertEquals(2, inventory.list("flowci-agent").size());
+        assertEquals(2, cm.numOfList);
+
+        // changes from closed watch are ignored
+        closed.onRemoved("flowci-agent-a");
+        assertTrue(inventory.get("flowci-agent-a").isPresent());
+    }
+
+    @Test
+    void should_fallback_to_list_if_watch_not_available() throws Exception {
+        cm.watchable = false;
+
+        assertEquals(1, inventory.list("flowci-agent").size());
+        assertEquals(1, inventory.list("flowci-agent").size());
+
+        assertFalse(inventory.isWatching());
+        assertEquals(2, cm.numOfList);
+    }
+
+    private static class StandIn implements ContainerManager {
+
+        private final List<Unit> containers = new ArrayList<>();
+
+        private UnitWatcher watcher;
+
+        private boolean watchable = true;
+
+        private Runnable duringList;
+
+        private int numOfList;
+
+        private int numOfWatch;
+
+        @Override
+        public List<Unit> list(String statusFilter, String nameFilter) {
+            numOfList++;
+            List<Unit> list = new ArrayList<>();
+            for (Unit unit : containers) {
+                String name = unit.getName().substring(1);
+                if (nameFilter == null || name.startsWith(nameFilter.replace("*", ""))) {
+                    list.add(unit);
+                }
+            }
+
+            if (duringList != null) {
+                duringList.run();
+            }
+            return list;
+        }
+
+        @Override
+        public Closeable watch(UnitWatcher watcher) throws Exception {
+            if (!watchable) {
+                throw new Exception("events not available");
+            }
+            numOfWatch++;
+            this.watcher = watcher;
+            return () -> this.watcher = null;
+        }
+
+        @Override
+        public Unit inspect(String id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String start(StartOption option) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void wait(String id, int timeoutInSeconds, Consumer<Output> onLog) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void stop(String id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void resume(String id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(String id) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.flowci.docker.test;
+
+import com.flowci.docker.ContainerManager;
+import com.flowci.docker.DockerSDKManager;
+import com.flowci.docker.DockerTunnel;
+import com.flowci.docker.TunnelDockerHttpClient;
+import com.flowci.docker.domain.ContainerStartOption;
+import com.flowci.docker.domain.Unit;
+import com.github.dockerjava.transport.DockerHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Docker api served in process, tunnel stand-in opens loopback connection with the latency
+ * of opening ssh channel and starting 'docker system dial-stdio' on remote host
+ */
+@Slf4j
+public class TunnelDockerHttpClientTest {
+
+    private static final long ChannelOpenLatencyMs = 20;
+
+    private static final int NumOfOps = 100;
+
+    private final AtomicInteger numOfConnections = new AtomicInteger();
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    private DockerTunnel tunnel;
+
+    private final CountDownLatch endOfEvents = new CountDownLatch(1);
+
+    @BeforeEach
+    void init() throws IOException {
+        // avoid delayed ack on small responses
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverExecutor = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+
+        tunnel = timeout -> {
+            numOfConnections.incrementAndGet();
+            try {
+                Thread.sleep(ChannelOpenLatencyMs);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getAddress().getPort());
+            socket.setTcpNoDelay(true);
+            return socket;
+        };
+    }
+
+    @AfterEach
+    void shutdown() {
+        endOfEvents.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void should_run_container_commands_over_tunnel() throws Exception {
+        DockerSDKManager manager = new DockerSDKManager(new TunnelDockerHttpClient(tunnel, 4));
+        ContainerManager cm = manager.getContainerManager();
+
+        List<Unit> list = cm.list(null, "flowci-agent*");
+        assertEquals(1, list.size());
+        assertEquals("/flowci-agent-a", list.get(0).getName());
+
+        Unit unit = cm.inspect("abc");
+        assertEquals("running", unit.getStatus());
+        assertTrue(unit.isRunning());
+
+        ContainerStartOption option = new ContainerStartOption();
+        option.setImage("flowci/agent");
+        option.setName("flowci-agent-b");
+        assertEquals("new1", cm.start(option));
+
+        // all requests on one reused connection
+        assertEquals(1, numOfConnections.get());
+    }
+
+    @Test
+    void should_reuse_connections_and_faster_than_connection_per_command() throws Exception {
+        // connection per command like exec channel per docker cli command
+        long start = System.nanoTime();
+        for (int i = 0; i < NumOfOps; i++) {
+            try (TunnelDockerHttpClient httpClient = new TunnelDockerHttpClient(tunnel, 1)) {
+                new DockerSDKManager(httpClient).getContainerManager().inspect("abc");
+            }
+        }
+        long perCommand = System.nanoTime() - start;
+        assertEquals(NumOfOps, numOfConnections.getAndSet(0));
+
+        // persistent connections shared by concurrent callers
+        ContainerManager cm = new DockerSDKManager(new TunnelDockerHttpClient(tunnel, 4)).getContainerManager();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        start = System.nanoTime();
+
+        List<Future<Unit>> futures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < NumOfOps; i++) {
+            futures.add(executor.submit(() -> cm.inspect("abc")));
+        }
+        for (Future<Unit> f : futures) {
+            assertEquals("abc", f.get(30, TimeUnit.SECONDS).getId());
+        }
+        long persistent = System.nanoTime() - start;
+        executor.shutdown();
+
+        log.info("Docker api over tunnel: connection per command {} ops/s, persistent {} ops/s",
+                opsPerSecond(perCommand), opsPerSecond(persistent));
+
+        assertTrue(numOfConnections.get() <= 4);
+        assertTrue(persistent < perCommand);
+    }
+
+    @Test
+    void should_not_block_requests_by_streaming_connection() throws Exception {
+        try (TunnelDockerHttpClient httpClient = new TunnelDockerHttpClient(tunnel, 1, 1)) {
+            DockerHttpClient.Request events = DockerHttpClient.Request.builder()
+                    .method(DockerHttpClient.Request.Method.GET)
+                    .path("/events")
+                    .build();
+
+            try (DockerHttpClient.Response response = httpClient.execute(events)) {
+                assertEquals(200, response.getStatusCode());
+
+                // events connection is held, inspect goes through its own pool
+                ContainerManager cm = new DockerSDKManager(httpClient).getContainerManager();
+                ExecutorService executor = Executors.newSingleThreadExecutor();
+                Future<Unit> inspected = executor.submit(() -> cm.inspect("abc"));
+                assertEquals("abc", inspected.get(5, TimeUnit.SECONDS).getId());
+                executor.shutdown();
+            }
+        }
+
+        assertEquals(2, numOfConnections.get());
+    }
+
+    private static long opsPerSecond(long nanos) {
+        return NumOfOps * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        exchange.getRequestBody().readAllBytes();
+
+        if (method.equals("GET") && path.endsWith("/events")) {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().flush();
+            try {
+                endOfEvents.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            exchange.close();
+            return;
+        }
+
+        if (method.equals("GET") && path.endsWith("/containers/json")) {
+            reply(exchange, 200, "[{\"Id\":\"abc\",\"Names\":[\"/flowci-agent-a\"],\"Status\":\"Up 1 second\"}]");
+            return;
+        }
+
+        if (method.equals("GET") && path.endsWith("/containers/abc/json")) {
+            reply(exchange, 200, "{\"Id\":\"abc\",\"Name\":\"/flowci-agent-a\","
+                    + "\"State\":{\"Status\":\"running\",\"Running\":true,\"ExitCode\":0}}");
+            return;
+        }
+
+        if (method.equals("POST") && path.endsWith("/containers/create")) {
+            reply(exchange, 201, "{\"Id\":\"new1\",\"Warnings\":[]}");
+            return;
+        }
+
+        if (method.equals("POST") && path.endsWith("/containers/new1/start")) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+
+        reply(exchange, 404, "{\"message\":\"not found\"}");
+    }
+
+    private static void reply(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.store;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Reference counter of content addressed blobs, record is ready after blob been written,
+ * and is marked as removing by gc before the blob deleted
+ */
+public interface BlobRefs {
+
+    enum State {
+
+        PENDING, // blob not written yet
+
+        READY,
+
+        REMOVING
+    }
+
+    /**
+     * Add a reference, create the record if not existed, reference not added if the record is removing
+     *
+     * @return state of the record
+     */
+    State increase(String hash, long size);
+
+    /**
+     * Remove a reference, return number of references
+     */
+    long decrease(String hash);
+
+    /**
+     * Set record to ready after blob written
+     */
+    void ready(String hash);
+
+    /**
+     * Hashes without reference since the instant
+     */
+    List<String> findUnreferenced(Instant before, int limit);
+
+    /**
+     * Mark record as removing if it still has no reference since the instant, so it cannot be referenced again
+     */
+    boolean markRemoving(String hash, Instant before);
+
+    /**
+     * Clear the removing mark if blob not removed, so it can be referenced again
+     */
+    void unmarkRemoving(String hash);
+
+    /**
+     * Remove record marked as removing
+     */
+    void remove(String hash);
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+
+/**
+ * Stores blobs under _blobs_/{first two chars of hash}/{hash} by file manager.
+ * A put adds a reference and writes the blob only if its record is not ready. Gc marks unreferenced
+ * records as removing before deleting blobs, puts of a removing hash wait until the record is gone.
+ */
+public class BlobStore {
+
+    private static final Pathable BlobRoot = new StringPath("_blobs_");
+
+    private static final String Separator = "/";
+
+    private static final int RemovingRetries = 50;
+
+    private static final long RemovingRetryMillis = 100;
+
+    private final FileManager fileManager;
+
+    private final BlobRefs refs;
+
+    public BlobStore(FileManager fileManager, BlobRefs refs) {
+        this.fileManager = fileManager;
+        this.refs = refs;
+    }
+
+    public static String pathOf(String hash) {
+        return BlobRoot.pathName() + Separator + hash.substring(0, 2) + Separator + hash;
+    }
+
+    /**
+     * Add a reference to blob, the data is uploaded only if blob not stored yet
+     *
+     * @return true if data uploaded
+     */
+    public boolean put(String hash, InputStream data, long size) throws IOException {
+        Pathable[] dir = dirOf(hash);
+
+        BlobRefs.State state = increase(hash, size);
+        if (state == BlobRefs.State.READY && fileManager.exist(hash, dir)) {
+            return false;
+        }
+
+        // write again if not ready, since the other put might be failed
+        try {
+            fileManager.save(hash, data, size, dir);
+            refs.ready(hash);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            refs.decrease(hash);
+            throw e;
+        }
+    }
+
+    public void release(String hash) {
+        refs.decrease(hash);
+    }
+
+    public InputStream read(String hash) throws IOException {
+        return fileManager.read(hash, dirOf(hash));
+    }
+
+    public StoredFile stat(String hash) throws IOException {
+        return fileManager.stat(hash, dirOf(hash));
+    }
+
+    /**
+     * Remove blobs that have no reference since the instant
+     *
+     * @return num of blobs removed
+     */
+    public int gc(Instant before, int limit) throws IOException {
+        int removed = 0;
+        for (String hash : refs.findUnreferenced(before, limit)) {
+            if (!refs.markRemoving(hash, before)) {
+                continue;
+            }
+
+            try {
+                fileManager.remove(hash, dirOf(hash));
+            } catch (IOException | RuntimeException e) {
+                refs.unmarkRemoving(hash);
+                throw e;
+            }
+
+            refs.remove(hash);
+            removed++;
+        }
+        return removed;
+    }
+
+    private BlobRefs.State increase(String hash, long size) throws IOException {
+        for (int i = 0; i < RemovingRetries; i++) {
+            BlobRefs.State state = refs.increase(hash, size);
+            if (state != BlobRefs.State.REMOVING) {
+                return state;
+            }
+
+            try {
+                Thread.sleep(RemovingRetryMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while blob is removing");
+            }
+        }
+        throw new IOException("Blob " + hash + " is removing");
+    }
+
+    private static Pathable[] dirOf(String hash) {
+        return new Pathable[]{BlobRoot, new StringPath(hash.substring(0, 2))};
+    }
+}
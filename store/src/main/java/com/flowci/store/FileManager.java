@@ -36,6 +36,11 @@ public interface FileManager {
      */
     InputStream read(String fileName, Pathable... objs) throws IOException;
 
+    /**
+     * Get file size, last modified and etag, content can be read by region from returned object
+     */
+    StoredFile stat(String fileName, Pathable... objs) throws IOException;
+
     /**
      * Remove file
      */
@@ -21,10 +21,13 @@ import com.flowci.common.helper.FileHelper;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * Local file system storage manager,
@@ -64,8 +67,15 @@ public class LocalFileManager implements FileManager {
             create(objs);
         }
 
+        // write to temp file then move, so readers never see partial file
         Path filePath = Paths.get(dir.toString(), fileName);
-        Files.copy(data, filePath, StandardCopyOption.REPLACE_EXISTING);
+        Path temp = Files.createTempFile(dir, fileName, ".tmp");
+        try {
+            Files.copy(data, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
         return filePath.toString();
     }
 
@@ -81,6 +91,27 @@ public class LocalFileManager implements FileManager {
         return new FileInputStream(target.toFile());
     }
 
+    @Override
+    public StoredFile stat(String fileName, Pathable... objs) throws IOException {
+        Path dir = connect(base, objs);
+        Path target = Paths.get(dir.toString(), fileName);
+
+        if (!Files.exists(target)) {
+            throw new IOException("File not found");
+        }
+
+        BasicFileAttributes attrs = Files.readAttributes(target, BasicFileAttributes.class);
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String etag = Long.toHexString(lastModified) + "-" + Long.toHexString(size);
+
+        return new StoredFile(fileName, size, lastModified, etag, (position, length) -> {
+            FileChannel channel = FileChannel.open(target, StandardOpenOption.READ);
+            channel.position(position);
+            return channel;
+        }, target);
+    }
+
     @Override
     public String remove(String fileName, Pathable... objs) throws IOException {
         Path dir = connect(base, objs);
@@ -17,10 +17,12 @@
 package com.flowci.store;
 
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
 
 /**
  * Minio storage manager,
@@ -33,11 +35,32 @@ public class MinioFileManager implements FileManager {
 
     private final String bucket;
 
+    private static final String NoSuchKey = "NoSuchKey";
+
+    private static final String NoSuchBucket = "NoSuchBucket";
+
     private final MinioClient minioClient;
 
+    /**
+     * Null if multipart upload not enabled
+     */
+    private final MultipartUploader uploader;
+
+    /**
+     * Bucket is checked or created once, reset if the bucket been removed
+     */
+    private volatile boolean bucketReady;
+
     public MinioFileManager(MinioClient minioClient, String bucket) {
+        this(minioClient, null, bucket, 1);
+    }
+
+    public MinioFileManager(MinioClient minioClient, MinioAsyncClient asyncClient, String bucket, int uploadParallelism) {
         this.minioClient = minioClient;
         this.bucket = bucket;
+        this.uploader = asyncClient == null
+                ? null
+                : new MultipartUploader(new MinioMultipartStore(asyncClient, bucket), uploadParallelism);
     }
 
     /**
@@ -58,42 +81,12 @@ public class MinioFileManager implements FileManager {
 
     @Override
     public boolean exist(Pathable... objs) {
-        try {
-            if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
-                return false;
-            }
-
-            String objectName = getObjectName(objs);
-            minioClient.statObject(StatObjectArgs
-                    .builder()
-                    .bucket(bucket)
-                    .object(objectName)
-                    .build());
-            return true;
-        } catch (Exception e) {
-            log.error("Minio Error", e);
-            return false;
-        }
+        return statObject(getObjectName(objs));
     }
 
     @Override
     public boolean exist(String fileName, Pathable... objs) {
-        try {
-            if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
-                return false;
-            }
-
-            String objectName = getObjectName(objs) + fileName;
-            minioClient.statObject(StatObjectArgs
-                    .builder()
-                    .bucket(bucket)
-                    .object(objectName)
-                    .build());
-            return true;
-        } catch (Exception e) {
-            log.error("Minio Error", e);
-            return false;
-        }
+        return statObject(getObjectName(objs) + fileName);
     }
 
     @Override
@@ -102,13 +95,27 @@ public class MinioFileManager implements FileManager {
             String bucketName = initBucket();
             String objectName = getObjectName(objs) + fileName;
 
+            // multipart for large or unknown size content, parts uploaded in parallel
+            if (uploader != null && (size < 0 || size > MultipartUploader.MinPartSize)) {
+                uploader.upload(objectName, data, size);
+                return bucketName + Separator + objectName;
+            }
+
             minioClient.putObject(PutObjectArgs
                     .builder()
                     .bucket(bucketName)
                     .object(objectName)
-                    .stream(data, size, -1)
+                    .stream(data, size, size < 0 ? MultipartUploader.partSize(size, 1) : -1)
                     .build());
             return bucketName + Separator + objectName;
+        } catch (ErrorResponseException e) {
+            if (NoSuchBucket.equals(e.errorResponse().code())) {
+                bucketReady = false;
+            }
+            throw new IOException(e.getMessage());
+        } catch (IOException e) {
+            bucketReady = false;
+            throw e;
         } catch (Exception e) {
             throw new IOException(e.getMessage());
         }
@@ -128,6 +135,37 @@ public class MinioFileManager implements FileManager {
         }
     }
 
+    @Override
+    public StoredFile stat(String fileName, Pathable... objs) throws IOException {
+        String objectName = getObjectName(objs) + fileName;
+
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs
+                    .builder()
+                    .bucket(bucket)
+                    .object(objectName)
+                    .build());
+
+            long lastModified = stat.lastModified().toInstant().toEpochMilli();
+
+            return new StoredFile(fileName, stat.size(), lastModified, stat.etag(), (position, length) -> {
+                try {
+                    return Channels.newChannel(minioClient.getObject(GetObjectArgs
+                            .builder()
+                            .bucket(bucket)
+                            .object(objectName)
+                            .offset(position)
+                            .length(length)
+                            .build()));
+                } catch (Exception e) {
+                    throw new IOException(e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
     @Override
     public String remove(String fileName, Pathable... objs) throws IOException {
         try {
@@ -156,12 +194,48 @@ public class MinioFileManager implements FileManager {
     }
 
     private String initBucket() throws Exception {
-        if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
-            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
+        if (bucketReady) {
+            return bucket;
+        }
+
+        synchronized (this) {
+            if (!bucketReady) {
+                if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build())) {
+                    minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
+                }
+                bucketReady = true;
+            }
         }
         return bucket;
     }
 
+    private boolean statObject(String objectName) {
+        try {
+            minioClient.statObject(StatObjectArgs
+                    .builder()
+                    .bucket(bucket)
+                    .object(objectName)
+                    .build());
+            return true;
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if (NoSuchBucket.equals(code)) {
+                bucketReady = false;
+                return false;
+            }
+
+            if (NoSuchKey.equals(code)) {
+                return false;
+            }
+
+            log.error("Minio Error", e);
+            return false;
+        } catch (Exception e) {
+            log.error("Minio Error", e);
+            return false;
+        }
+    }
+
     private static String getObjectName(Pathable... objs) {
         StringBuilder builder = new StringBuilder();
         for (Pathable item : objs) {
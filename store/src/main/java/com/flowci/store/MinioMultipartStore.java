@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.store;
+
+import io.minio.MinioAsyncClient;
+import io.minio.messages.Part;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Expose multipart operations of minio client for parallel part uploads
+ */
+class MinioMultipartStore extends MinioAsyncClient implements MultipartStore {
+
+    private final String bucket;
+
+    MinioMultipartStore(MinioAsyncClient client, String bucket) {
+        super(client);
+        this.bucket = bucket;
+    }
+
+    @Override
+    public String create(String object) throws IOException {
+        try {
+            return createMultipartUploadAsync(bucket, null, object, null, null).get().result().uploadId();
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> upload(String object, String uploadId, int partNumber, byte[] data, int length) {
+        try {
+            return uploadPartAsync(bucket, null, object, data, length, uploadId, partNumber, null, null)
+                    .thenApply(r -> r.etag());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public void complete(String object, String uploadId, Map<Integer, String> etags) throws IOException {
+        Part[] parts = new Part[etags.size()];
+        int i = 0;
+        for (Map.Entry<Integer, String> entry : etags.entrySet()) {
+            parts[i++] = new Part(entry.getKey(), entry.getValue());
+        }
+
+        try {
+            completeMultipartUploadAsync(bucket, null, object, uploadId, parts, null, null).get();
+        } catch (Exception e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void abort(String object, String uploadId) {
+        try {
+            abortMultipartUploadAsync(bucket, null, object, uploadId, null, null).get();
+        } catch (Exception ignore) {
+
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.store;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * S3 style multipart upload operations
+ */
+public interface MultipartStore {
+
+    /**
+     * Start multipart upload and return upload id
+     */
+    String create(String object) throws IOException;
+
+    /**
+     * Upload part asynchronously and return part etag
+     */
+    CompletableFuture<String> upload(String object, String uploadId, int partNumber, byte[] data, int length);
+
+    /**
+     * Complete upload with etags sorted by part number
+     */
+    void complete(String object, String uploadId, Map<Integer, String> etags) throws IOException;
+
+    void abort(String object, String uploadId);
+}
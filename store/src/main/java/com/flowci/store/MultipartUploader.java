@@ -0,0 +1,148 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stream data to multipart store part by part, at most 'parallelism' parts are buffered and uploading
+ */
+public class MultipartUploader {
+
+    public static final long MinPartSize = 5L * 1024 * 1024;
+
+    public static final long MaxPartSize = 16L * 1024 * 1024;
+
+    public static final int MaxParts = 10000;
+
+    private static final long MB = 1024 * 1024;
+
+    private final MultipartStore store;
+
+    private final int parallelism;
+
+    public MultipartUploader(MultipartStore store, int parallelism) {
+        this.store = store;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Split content evenly to parallel uploads within 5MB to 16MB,
+     * grow the part size only if the content needs more than max parts
+     */
+    public static long partSize(long size, int parallelism) {
+        if (size < 0) {
+            return MaxPartSize;
+        }
+
+        long partSize = ceil(size, Math.max(1, parallelism));
+        partSize = Math.max(MinPartSize, Math.min(MaxPartSize, partSize));
+        partSize = Math.max(partSize, ceil(size, MaxParts));
+        return ceil(partSize, MB) * MB;
+    }
+
+    /**
+     * Upload data, the size could be -1 if unknown
+     */
+    public void upload(String object, InputStream data, long size) throws IOException {
+        int partSize = (int) partSize(size, parallelism);
+        String uploadId = store.create(object);
+
+        BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(parallelism);
+        Map<Integer, String> etags = new ConcurrentSkipListMap<>();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        try {
+            int numOfBuffers = 0;
+            int partNumber = 0;
+
+            while (error.get() == null) {
+                byte[] buffer = buffers.poll();
+                if (buffer == null) {
+                    if (numOfBuffers < parallelism) {
+                        buffer = new byte[partSize];
+                        numOfBuffers++;
+                    } else {
+                        buffer = buffers.take();
+                    }
+                }
+
+                int length = readFully(data, buffer);
+                if (length == 0 && partNumber > 0) {
+                    break;
+                }
+
+                int number = ++partNumber;
+                byte[] part = buffer;
+
+                futures.add(store.upload(object, uploadId, number, part, length).whenComplete((etag, e) -> {
+                    if (e != null) {
+                        error.compareAndSet(null, e);
+                    } else {
+                        etags.put(number, etag);
+                    }
+                    buffers.offer(part);
+                }));
+
+                if (length < partSize) {
+                    break;
+                }
+            }
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            store.complete(object, uploadId, etags);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            store.abort(object, uploadId);
+            throw new IOException("Upload interrupted");
+        } catch (CompletionException e) {
+            store.abort(object, uploadId);
+            throw new IOException(e.getCause().getMessage());
+        } catch (IOException | RuntimeException e) {
+            store.abort(object, uploadId);
+            throw e;
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int n = in.read(buffer, offset, buffer.length - offset);
+            if (n < 0) {
+                break;
+            }
+            offset += n;
+        }
+        return offset;
+    }
+
+    private static long ceil(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flowci.store;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Metadata of stored file, the content is read by region on demand
+ */
+@Getter
+@AllArgsConstructor
+public class StoredFile {
+
+    @FunctionalInterface
+    public interface RegionReader {
+
+        ReadableByteChannel open(long position, long length) throws IOException;
+    }
+
+    private final String name;
+
+    private final long size;
+
+    private final long lastModified;
+
+    private final String etag;
+
+    private final RegionReader reader;
+
+    /**
+     * Path of file on local disk, null if the file is not stored locally
+     */
+    private final Path localPath;
+
+    public StoredFile(String name, long size, long lastModified, String etag, RegionReader reader) {
+        this(name, size, lastModified, etag, reader, null);
+    }
+
+    /**
+     * Open channel to read file from position,
+     * the local file returns FileChannel that can be used with transferTo
+     */
+    public ReadableByteChannel read(long position, long length) throws IOException {
+        return reader.open(position, length);
+    }
+}
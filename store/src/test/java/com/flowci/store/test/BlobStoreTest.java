@@ -0,0 +1,230 @@
+package com.flowci.store.test;
+
+import com.flowci.common.helper.StringHelper;
+import com.flowci.store.BlobRefs;
+import com.flowci.store.BlobStore;
+import com.flowci.store.FileManager;
+import com.flowci.store.LocalFileManager;
+import com.flowci.store.Pathable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlobStoreTest {
+
+    private static final String Hash = "ab12cd34";
+
+    @TempDir
+    File temp;
+
+    private InMemoryRefs refs;
+
+    private BlobStore blobStore;
+
+    @BeforeEach
+    void init() {
+        refs = new InMemoryRefs();
+        blobStore = new BlobStore(new LocalFileManager(temp.toPath()), refs);
+    }
+
+    @Test
+    void should_store_same_content_once() throws IOException {
+        assertTrue(blobStore.put(Hash, StringHelper.toInputStream("content"), 7));
+        assertFalse(blobStore.put(Hash, StringHelper.toInputStream("content"), 7));
+
+        assertEquals(2, refs.counts.get(Hash));
+        assertEquals("content", StringHelper.toString(blobStore.read(Hash)));
+        assertEquals(7, blobStore.stat(Hash).getSize());
+        assertTrue(Files.exists(blobPath()));
+    }
+
+    @Test
+    void should_remove_blob_without_reference_by_gc() throws IOException {
+        blobStore.put(Hash, StringHelper.toInputStream("content"), 7);
+        blobStore.put(Hash, StringHelper.toInputStream("content"), 7);
+
+        // when: one reference released
+        blobStore.release(Hash);
+        assertEquals(0, blobStore.gc(Instant.now().plusSeconds(1), 10));
+        assertTrue(Files.exists(blobPath()));
+
+        // when: all released, but still in grace period
+        blobStore.release(Hash);
+        assertEquals(0, blobStore.gc(Instant.now().minusSeconds(60), 10));
+        assertTrue(Files.exists(blobPath()));
+
+        // then: removed after grace period
+        assertEquals(1, blobStore.gc(Instant.now().plusSeconds(1), 10));
+        assertFalse(Files.exists(blobPath()));
+        assertFalse(refs.counts.containsKey(Hash));
+
+        // then: upload again if put after gc
+        assertTrue(blobStore.put(Hash, StringHelper.toInputStream("content"), 7));
+    }
+
+    @Test
+    void should_upload_if_referenced_but_blob_missing() throws IOException {
+        blobStore.put(Hash, StringHelper.toInputStream("content"), 7);
+        Files.delete(blobPath());
+
+        assertTrue(blobStore.put(Hash, StringHelper.toInputStream("content"), 7));
+        assertTrue(Files.exists(blobPath()));
+    }
+
+    @Test
+    void should_upload_again_if_blob_not_ready() throws IOException {
+        // when: first upload failed
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+        assertThrows(IOException.class, () -> blobStore.put(Hash, broken, 7));
+        assertFalse(Files.exists(blobPath()));
+        assertEquals(0, refs.counts.get(Hash));
+
+        // then: next put writes the blob
+        assertTrue(blobStore.put(Hash, StringHelper.toInputStream("content"), 7));
+        assertTrue(refs.ready.contains(Hash));
+        assertEquals("content", StringHelper.toString(blobStore.read(Hash)));
+    }
+
+    @Test
+    void should_wait_for_gc_before_put_removing_blob() throws Exception {
+        blobStore.put(Hash, StringHelper.toInputStream("content"), 7);
+        blobStore.release(Hash);
+
+        // when: gc marked the record as removing
+        Instant before = Instant.now().plusSeconds(1);
+        assertTrue(refs.markRemoving(Hash, before));
+
+        CompletableFuture<Boolean> put = CompletableFuture.supplyAsync(() -> {
+            try {
+                return blobStore.put(Hash, StringHelper.toInputStream("content"), 7);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        Thread.sleep(200);
+        assertFalse(put.isDone());
+
+        // then: put uploads again after blob and record removed
+        Files.delete(blobPath());
+        refs.remove(Hash);
+
+        assertTrue(put.get(5, TimeUnit.SECONDS));
+        assertTrue(Files.exists(blobPath()));
+        assertEquals(1, refs.counts.get(Hash));
+    }
+
+    @Test
+    void should_clear_removing_mark_if_gc_fails_to_remove_blob() throws IOException {
+        FileManager failing = new LocalFileManager(temp.toPath()) {
+            @Override
+            public String remove(String fileName, Pathable... dirs) throws IOException {
+                throw new IOException("storage not available");
+            }
+        };
+        blobStore = new BlobStore(failing, refs);
+
+        blobStore.put(Hash, StringHelper.toInputStream("content"), 7);
+        blobStore.release(Hash);
+
+        // when: blob failed to remove
+        assertThrows(IOException.class, () -> blobStore.gc(Instant.now().plusSeconds(1), 10));
+
+        // then: record can be referenced right away and blob kept
+        assertFalse(refs.removing.contains(Hash));
+        assertFalse(blobStore.put(Hash, StringHelper.toInputStream("content"), 7));
+        assertEquals(1, refs.counts.get(Hash));
+        assertTrue(Files.exists(blobPath()));
+    }
+
+    private Path blobPath() {
+        return temp.toPath().resolve(BlobStore.pathOf(Hash));
+    }
+
+    private static class InMemoryRefs implements BlobRefs {
+
+        private final Map<String, Long> counts = new ConcurrentHashMap<>();
+
+        private final Map<String, Instant> updatedAt = new ConcurrentHashMap<>();
+
+        private final Set<String> ready = ConcurrentHashMap.newKeySet();
+
+        private final Set<String> removing = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public synchronized State increase(String hash, long size) {
+            if (removing.contains(hash)) {
+                return State.REMOVING;
+            }
+            updatedAt.put(hash, Instant.now());
+            counts.merge(hash, 1L, Long::sum);
+            return ready.contains(hash) ? State.READY : State.PENDING;
+        }
+
+        @Override
+        public synchronized long decrease(String hash) {
+            updatedAt.put(hash, Instant.now());
+            return counts.computeIfPresent(hash, (k, v) -> Math.max(0, v - 1));
+        }
+
+        @Override
+        public void ready(String hash) {
+            ready.add(hash);
+        }
+
+        @Override
+        public synchronized List<String> findUnreferenced(Instant before, int limit) {
+            List<String> list = new ArrayList<>();
+            counts.forEach((hash, count) -> {
+                if (count <= 0 && updatedAt.get(hash).isBefore(before) && list.size() < limit) {
+                    list.add(hash);
+                }
+            });
+            return list;
+        }
+
+        @Override
+        public synchronized boolean markRemoving(String hash, Instant before) {
+            if (counts.getOrDefault(hash, 1L) <= 0 && updatedAt.get(hash).isBefore(before)) {
+                removing.add(hash);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void unmarkRemoving(String hash) {
+            removing.remove(hash);
+        }
+
+        @Override
+        public synchronized void remove(String hash) {
+            if (removing.remove(hash)) {
+                counts.remove(hash);
+                updatedAt.remove(hash);
+                ready.remove(hash);
+            }
+        }
+    }
+}
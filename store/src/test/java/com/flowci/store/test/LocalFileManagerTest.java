@@ -20,6 +20,7 @@ import com.flowci.common.helper.StringHelper;
 import com.flowci.store.FileManager;
 import com.flowci.store.LocalFileManager;
 import com.flowci.store.Pathable;
+import com.flowci.store.StoredFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -27,6 +28,10 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -78,6 +83,30 @@ public class LocalFileManagerTest {
         assertFalse(exist);
     }
 
+    @Test
+    void should_stat_and_read_region() throws IOException {
+        final String fileName = "region.log";
+        final String content = "0123456789";
+        final Pathable[] dir = {flow, job, logDir};
+
+        fileManager.save(fileName, StringHelper.toInputStream(content), -1, dir);
+
+        StoredFile stored = fileManager.stat(fileName, dir);
+        assertEquals(content.length(), stored.getSize());
+        assertNotNull(stored.getEtag());
+        assertTrue(stored.getLastModified() > 0);
+
+        try (ReadableByteChannel channel = stored.read(3, 4)) {
+            assertTrue(channel instanceof FileChannel);
+
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.read(buffer);
+            assertEquals("3456", new String(buffer.array(), StandardCharsets.UTF_8));
+        }
+
+        assertThrows(IOException.class, () -> fileManager.stat("hello", dir));
+    }
+
     @Test
     void should_throw_exception_if_not_found() {
         assertThrows(IOException.class, () -> {
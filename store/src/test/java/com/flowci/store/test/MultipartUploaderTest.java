@@ -0,0 +1,162 @@
+package com.flowci.store.test;
+
+import com.flowci.store.MultipartStore;
+import com.flowci.store.MultipartUploader;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.flowci.store.MultipartUploader.MaxPartSize;
+import static com.flowci.store.MultipartUploader.MinPartSize;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class MultipartUploaderTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void should_tune_part_size_by_content_length() {
+        assertEquals(MaxPartSize, MultipartUploader.partSize(-1, 4));
+        assertEquals(MinPartSize, MultipartUploader.partSize(6 * MB, 4));
+        assertEquals(8 * MB, MultipartUploader.partSize(32 * MB, 4));
+        assertEquals(MaxPartSize, MultipartUploader.partSize(1024 * MB, 4));
+
+        // more than max parts
+        long huge = 200L * 1024 * MB;
+        long partSize = MultipartUploader.partSize(huge, 4);
+        assertTrue(partSize > MaxPartSize);
+        assertTrue(huge / partSize <= MultipartUploader.MaxParts);
+    }
+
+    @Test
+    void should_upload_parts_in_parallel_and_faster() throws IOException {
+        byte[] content = new byte[(int) (64 * MB)];
+        new Random(1).nextBytes(content);
+
+        long sequential = uploadAndVerify(content, content.length, 1);
+        long parallel = uploadAndVerify(content, content.length, 4);
+
+        log.info("MultipartUploader 64MB sequential={}ms parallel={}ms", sequential, parallel);
+        assertTrue(parallel < sequential);
+    }
+
+    @Test
+    void should_upload_stream_with_unknown_size() throws IOException {
+        byte[] content = new byte[(int) (40 * MB)];
+        new Random(2).nextBytes(content);
+        uploadAndVerify(content, -1, 4);
+    }
+
+    @Test
+    void should_abort_if_part_failed() {
+        StandIn store = new StandIn(0);
+        store.failOn = 2;
+
+        MultipartUploader uploader = new MultipartUploader(store, 4);
+        byte[] content = new byte[(int) (32 * MB)];
+
+        assertThrows(IOException.class, () -> uploader.upload("obj", new ByteArrayInputStream(content), content.length));
+        assertTrue(store.aborted.containsKey("obj"));
+        assertFalse(store.objects.containsKey("obj"));
+    }
+
+    private long uploadAndVerify(byte[] content, long size, int parallelism) throws IOException {
+        StandIn store = new StandIn(50);
+        MultipartUploader uploader = new MultipartUploader(store, parallelism);
+
+        long start = System.nanoTime();
+        uploader.upload("obj", new ByteArrayInputStream(content), size);
+        long duration = (System.nanoTime() - start) / 1_000_000;
+
+        assertArrayEquals(content, store.objects.get("obj"));
+        assertTrue(store.maxInFlight.get() <= parallelism);
+        return duration;
+    }
+
+    /**
+     * In memory multipart store with per part latency
+     */
+    private class StandIn implements MultipartStore {
+
+        private final long latencyMs;
+
+        private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+        private final Map<String, Boolean> aborted = new ConcurrentHashMap<>();
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        private int failOn = -1;
+
+        StandIn(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public String create(String object) {
+            uploads.put(object, new ConcurrentHashMap<>());
+            return object;
+        }
+
+        @Override
+        public CompletableFuture<String> upload(String object, String uploadId, int partNumber, byte[] data, int length) {
+            byte[] copy = Arrays.copyOf(data, length);
+            return CompletableFuture.supplyAsync(() -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(latencyMs);
+                    if (partNumber == failOn) {
+                        throw new IllegalStateException("part failed");
+                    }
+                    uploads.get(uploadId).put(partNumber, copy);
+                    return "etag-" + partNumber;
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }, executor);
+        }
+
+        @Override
+        public void complete(String object, String uploadId, Map<Integer, String> etags) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int expected = 1;
+            for (Map.Entry<Integer, String> entry : etags.entrySet()) {
+                assertEquals(expected++, entry.getKey());
+                out.writeBytes(uploads.get(uploadId).get(entry.getKey()));
+            }
+            objects.put(object, out.toByteArray());
+        }
+
+        @Override
+        public void abort(String object, String uploadId) {
+            uploads.remove(uploadId);
+            aborted.put(object, true);
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.flowci.tree;
 
 import com.flowci.common.exception.ArgumentException;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.*;
@@ -43,6 +44,12 @@ public final class NodeTree {
      */
     private final Map<NodePath, Node> flatted = new HashMap<>(DefaultSize);
 
+    /**
+     * Node ordinal by path string, the ordinal is index of nodes and navigation arrays
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Integer> ordinals = new HashMap<>(DefaultSize);
+
     private final FlowNode root;
 
     private final Set<Node> ends = new HashSet<>();
@@ -59,15 +66,48 @@ public final class NodeTree {
 
     private int maxHeight = 1;
 
+    @Getter(AccessLevel.NONE)
+    private final Node[] nodes;
+
+    /**
+     * Precomputed navigation by node ordinal, all lists are immutable
+     */
+    @Getter(AccessLevel.NONE)
+    private final List<Node>[] postOf;
+
+    @Getter(AccessLevel.NONE)
+    private final List<Node>[] skipOf;
+
+    @Getter(AccessLevel.NONE)
+    private final List<Node>[] prevsOfNext;
+
+    @Getter(AccessLevel.NONE)
+    private final List<Node>[] prevsOfPost;
+
+    @SuppressWarnings("unchecked")
     public NodeTree(FlowNode root) {
         this.root = root;
-        buildGraph(this.root);
+
+        List<Node> ordered = new ArrayList<>(DefaultSize);
+        buildGraph(this.root, ordered);
         buildMetaData();
         buildEndNodes();
+
+        int size = ordered.size();
+        this.nodes = ordered.toArray(new Node[0]);
+        for (int i = 0; i < size; i++) {
+            ordinals.put(nodes[i].getPathAsString(), i);
+        }
+
+        this.postOf = new List[size];
+        this.skipOf = new List[size];
+        this.prevsOfNext = new List[size];
+        this.prevsOfPost = new List[size];
+        buildNavigation();
     }
 
     public int numOfNode() {
-        return flatted.size();
+        return nodes.length;
     }
 
     /**
@@ -82,7 +122,7 @@ public final class NodeTree {
     public Collection<Node> prevs(Collection<Node> nodes, boolean post) {
         Collection<Node> ps = prevs(nodes);
 
-        if (!post) {
+        if (!post || ps.isEmpty()) {
             return ps;
         }
 
@@ -101,55 +141,64 @@ public final class NodeTree {
     }
 
     /**
-     * Skip current node and return next nodes with the same root of current
+     * Next nodes of current node, or next post steps if it's on post steps
      */
-    public List<Node> skip(NodePath current) {
-        Node node = get(current);
-
-        Node parent = node.getParent();
-        if (parent == null) {
-            return Collections.emptyList();
-        }
-
-        if (parent instanceof ParallelStepNode) {
-            parent = parent.parent;
-        } else {
-            List<Node> children = parent.getChildren();
-            if (children.get(children.size() - 1).equals(node)) {
-                return node.next;
-            }
-        }
+    public List<Node> next(Node current, boolean post) {
+        return post ? postOf[indexOf(current)] : current.getNext();
+    }
 
-        Node nextWithSameParent = findNextWithSameParent(node, parent);
-        if (nextWithSameParent == null) {
-            return Collections.emptyList();
-        }
+    /**
+     * Previous nodes of the nodes returned by next(current, post)
+     */
+    public List<Node> prevsOfNext(Node current, boolean post) {
+        int i = indexOf(current);
+        return post ? prevsOfPost[i] : prevsOfNext[i];
+    }
 
-        return List.of(nextWithSameParent);
+    /**
+     * Skip current node and return next nodes with the same root of current
+     */
+    public List<Node> skip(NodePath current) {
+        return skipOf[indexOf(current.getPathInStr())];
     }
 
     public List<Node> post(NodePath path) {
-        List<Node> post = findNextPost(NodePath.create(path));
-        Collections.reverse(post);
-        return post;
+        return postOf[indexOf(path.getPathInStr())];
     }
 
     public List<Node> post(String path) {
-        List<Node> post = findNextPost(NodePath.create(path));
-        Collections.reverse(post);
-        return post;
+        return postOf[indexOf(path)];
     }
 
     public Node get(NodePath path) {
-        Node node = flatted.get(path);
-        if (node == null) {
-            throw new ArgumentException("invalid node path {0}", path.getPathInStr());
-        }
-        return node;
+        return nodes[indexOf(path.getPathInStr())];
     }
 
     public Node get(String nodePath) {
-        return get(NodePath.create(nodePath));
+        return nodes[indexOf(nodePath)];
+    }
+
+    public Node get(int ordinal) {
+        return nodes[ordinal];
+    }
+
+    /**
+     * Get node ordinal from path, the path string stored in step is used directly,
+     * other format will be normalized by NodePath
+     */
+    public int indexOf(String nodePath) {
+        Integer i = ordinals.get(nodePath);
+        if (i == null) {
+            i = ordinals.get(NodePath.create(nodePath).getPathInStr());
+        }
+        if (i == null) {
+            throw new ArgumentException("invalid node path {0}", nodePath);
+        }
+        return i;
+    }
+
+    private int indexOf(Node node) {
+        return indexOf(node.getPathAsString());
     }
 
     /**
@@ -163,13 +212,17 @@ public final class NodeTree {
         return list;
     }
 
-    private Node findNextWithSameParent(Node node, Node parent) {
+    private Node findNextWithSameParent(Node node, Node parent, Set<Node> visited) {
         for (Node next : node.next) {
             if (parent.equals((next.parent))) {
                 return next;
             }
 
-            Node n = findNextWithSameParent(next, parent);
+            if (!visited.add(next)) {
+                continue;
+            }
+
+            Node n = findNextWithSameParent(next, parent, visited);
             if (n != null) {
                 return n;
             }
@@ -209,8 +262,9 @@ public final class NodeTree {
     /**
      * Build graph from yaml tree
      */
-    private List<Node> buildGraph(Node root) {
+    private List<Node> buildGraph(Node root, List<Node> ordered) {
         flatted.put(root.getPath(), root);
+        ordered.add(root);
 
         if (!root.hasChildren()) {
             return List.of(root);
@@ -230,7 +284,7 @@ public final class NodeTree {
                 subflow.prev.add(n);
                 n.next.add(subflow);
 
-                prevs.addAll(buildGraph(subflow));
+                prevs.addAll(buildGraph(subflow, ordered));
             });
 
             return prevs;
@@ -246,7 +300,7 @@ public final class NodeTree {
                 prev.next.add(current);
             }
 
-            prevs = buildGraph(current);
+            prevs = buildGraph(current, ordered);
         }
 
         return prevs;
@@ -260,9 +314,49 @@ public final class NodeTree {
         });
     }
 
-    private List<Node> findNextPost(NodePath path) {
-        Node n = get(path);
+    /**
+     * Precompute post, skip and prevs for each node, so navigation on step callback has no graph traversal
+     */
+    private void buildNavigation() {
+        Map<Node, Collection<Node>> postCache = new HashMap<>(nodes.length);
+
+        for (int i = 0; i < nodes.length; i++) {
+            Node n = nodes[i];
+
+            List<Node> post = findNextPost(n, postCache);
+            Collections.reverse(post);
+            postOf[i] = List.copyOf(post);
+
+            skipOf[i] = List.copyOf(findSkip(n));
+            prevsOfNext[i] = List.copyOf(prevs(n.getNext(), false));
+            prevsOfPost[i] = List.copyOf(prevs(postOf[i], true));
+        }
+    }
+
+    private List<Node> findSkip(Node node) {
+        Node parent = node.getParent();
+        if (parent == null) {
+            return Collections.emptyList();
+        }
+
+        if (parent instanceof ParallelStepNode) {
+            parent = parent.parent;
+        } else {
+            List<Node> children = parent.getChildren();
+            if (children.get(children.size() - 1).equals(node)) {
+                return node.next;
+            }
+        }
+
+        Node nextWithSameParent = findNextWithSameParent(node, parent, new HashSet<>());
+        if (nextWithSameParent == null) {
+            return Collections.emptyList();
+        }
+
+        return List.of(nextWithSameParent);
+    }
 
+    private List<Node> findNextPost(Node n, Map<Node, Collection<Node>> cache) {
         // check if step in parallel
         if (!isPostStep(n)) {
             ParallelStepNode parent = n.getParent(ParallelStepNode.class);
@@ -273,39 +367,42 @@ public final class NodeTree {
 
         Collection<Node> post = new HashSet<>();
         for (Node next : n.next) {
-            post.addAll(findNextPost(next));
+            post.addAll(findNextPostOfNode(next, cache));
         }
 
         return new ArrayList<>(post);
     }
 
-    private Collection<Node> findNextPost(Node node) {
+    private Collection<Node> findNextPostOfNode(Node node, Map<Node, Collection<Node>> cache) {
+        Collection<Node> cached = cache.get(node);
+        if (cached != null) {
+            return cached;
+        }
+
+        Collection<Node> output = Collections.emptyList();
+
         if (node instanceof ParallelStepNode) {
-            Collection<Node> output = findPostSteps((ParallelStepNode) node);
-            if (!output.isEmpty()) {
-                return output;
-            }
+            output = findPostSteps((ParallelStepNode) node);
         }
 
-        if (node instanceof FlowNode) {
-            Collection<Node> output = findPostSteps((FlowNode) node);
-            if (!output.isEmpty()) {
-                return output;
-            }
+        if (output.isEmpty() && node instanceof FlowNode) {
+            output = findPostSteps((FlowNode) node);
         }
 
-        if (node instanceof RegularStepNode) {
-            Collection<Node> output = findPostSteps((RegularStepNode) node);
-            if (!output.isEmpty()) {
-                return output;
-            }
+        if (output.isEmpty() && node instanceof RegularStepNode) {
+            output = findPostSteps((RegularStepNode) node);
         }
 
-        Collection<Node> post = new HashSet<>();
-        for (Node next : node.next) {
-            post.addAll(findNextPost(next));
+        if (output.isEmpty()) {
+            Collection<Node> post = new HashSet<>();
+            for (Node next : node.next) {
+                post.addAll(findNextPostOfNode(next, cache));
+            }
+            output = post;
         }
-        return post;
+
+        cache.put(node, output);
+        return output;
     }
 
     private Collection<Node> findPostSteps(ParallelStepNode p) {
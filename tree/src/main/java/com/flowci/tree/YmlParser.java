@@ -19,8 +19,16 @@ package com.flowci.tree;
 import com.flowci.common.exception.YmlException;
 import com.flowci.common.helper.YamlHelper;
 import com.flowci.tree.yml.FlowYml;
+import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.error.YAMLException;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static com.flowci.tree.FlowNode.DEFAULT_ROOT_NAME;
 
 /**
@@ -28,25 +36,95 @@ import static com.flowci.tree.FlowNode.DEFAULT_ROOT_NAME;
  */
 public class YmlParser {
 
+    private static final int MaxCachedYmls = 256;
+
+    /**
+     * SnakeYAML instances are not thread safe, keep one per thread instead of a global lock
+     */
+    private static final ThreadLocal<Yaml> FlowYmlLoader = ThreadLocal.withInitial(() -> YamlHelper.create(FlowYml.class));
+
+    /**
+     * Parsed and validated yml keyed by hash of yml content, access ordered for LRU eviction.
+     * The FlowYml is never handed out, each caller gets nodes newly built from it
+     */
+    private static final Map<String, FlowYml> YmlCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FlowYml> eldest) {
+            return size() > MaxCachedYmls;
+        }
+    };
+
     /**
-     * Create Node instance from yml
+     * Create Node instance from yml, the node is owned by caller and can be modified
      */
-    public static synchronized FlowNode load(String ...ymls) {
+    public static FlowNode load(String ...ymls) {
         if (ymls.length == 0) {
             return new FlowNode(DEFAULT_ROOT_NAME);
         }
 
+        String key = hash(ymls);
+
+        FlowYml cached;
+        synchronized (YmlCache) {
+            cached = YmlCache.get(key);
+        }
+
         try {
-            var root = new FlowYml();
-            for (var yml : ymls) {
-                var ymlObj = YamlHelper.create(FlowYml.class);
-                FlowYml tmp = ymlObj.load(yml);
-                root.merge(tmp);
+            if (cached != null) {
+                return cached.toNode(null);
             }
-            root.setName(DEFAULT_ROOT_NAME);
-            return root.toNode(null);
+
+            // parse out of the lock, two threads may parse the same yml but the result is identical
+            FlowYml root = parse(ymls);
+            FlowNode node = root.toNode(null);
+
+            synchronized (YmlCache) {
+                YmlCache.putIfAbsent(key, root);
+            }
+            return node;
         } catch (YAMLException e) {
             throw new YmlException(e.getMessage());
         }
     }
+
+    /**
+     * Create NodeTree from yml, the tree is owned by caller and can be modified
+     */
+    public static NodeTree loadTree(String ...ymls) {
+        return NodeTree.create(load(ymls));
+    }
+
+    public static void clearCache() {
+        synchronized (YmlCache) {
+            YmlCache.clear();
+        }
+    }
+
+    private static FlowYml parse(String ...ymls) {
+        var loader = FlowYmlLoader.get();
+        var root = new FlowYml();
+        for (var yml : ymls) {
+            FlowYml tmp = loader.load(yml);
+            root.merge(tmp);
+        }
+        root.setName(DEFAULT_ROOT_NAME);
+        return root;
+    }
+
+    private static String hash(String ...ymls) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (var yml : ymls) {
+                byte[] bytes = yml.getBytes(StandardCharsets.UTF_8);
+
+                // length prefix to avoid collision when concatenated content is equal
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ':');
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
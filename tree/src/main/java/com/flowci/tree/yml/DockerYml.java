@@ -21,6 +21,8 @@ import com.flowci.common.domain.DockerOption;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -60,10 +62,10 @@ public class DockerYml {
         ObjectsHelper.ifNotNull(auth, option::setAuth);
         ObjectsHelper.ifNotNull(name, option::setName);
         ObjectsHelper.ifNotNull(network, option::setNetwork);
-        ObjectsHelper.ifNotNull(ports, option::setPorts);
-        ObjectsHelper.ifNotNull(entrypoint, option::setEntrypoint);
-        ObjectsHelper.ifNotNull(command, option::setCommand);
-        ObjectsHelper.ifNotNull(environment, option::setEnvironment);
+        ObjectsHelper.ifNotNull(ports, v -> option.setPorts(new LinkedList<>(v)));
+        ObjectsHelper.ifNotNull(entrypoint, v -> option.setEntrypoint(new LinkedList<>(v)));
+        ObjectsHelper.ifNotNull(command, v -> option.setCommand(new LinkedList<>(v)));
+        ObjectsHelper.ifNotNull(environment, v -> option.setEnvironment(new HashMap<>(v)));
         ObjectsHelper.ifNotNull(is_runtime, option::setRuntime);
         ObjectsHelper.ifNotNull(stop_on_finish, option::setStopContainer);
         ObjectsHelper.ifNotNull(delete_on_finish, option::setDeleteContainer);
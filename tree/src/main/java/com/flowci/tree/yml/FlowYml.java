@@ -77,12 +77,19 @@ public class FlowYml extends YmlBase<FlowNode> {
     }
 
     public FlowNode toNode(Node parent) {
+        return toNode(parent, name);
+    }
+
+    /**
+     * Build node with the name, the yml is read only so it can be shared by callers
+     */
+    public FlowNode toNode(Node parent, String name) {
         if (!NodePath.validate(name)) {
             throw new YmlException("Invalid name {0}", name);
         }
 
         FlowNode node = new FlowNode(name, parent);
-        node.setSelector(selector == null ? Selector.EMPTY : selector);
+        node.setSelector(selector == null ? Selector.EMPTY : copyOf(selector));
         node.setCondition(condition);
         node.setEnvironments(getVariableMap());
 
@@ -97,4 +104,12 @@ public class FlowYml extends YmlBase<FlowNode> {
         setStepsToParent(node, post, true, uniqueNames);
         return node;
     }
+
+    private static Selector copyOf(Selector selector) {
+        Selector copy = new Selector();
+        if (selector.getLabel() != null) {
+            copy.setLabel(new HashSet<>(selector.getLabel()));
+        }
+        return copy;
+    }
 }
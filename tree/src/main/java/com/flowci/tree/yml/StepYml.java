@@ -92,10 +92,9 @@ public class StepYml extends YmlBase<RegularStepNode> {
                 String subflowName = entry.getKey();
 
                 FlowYml yaml = entry.getValue();
-                yaml.setName(subflowName);
 
                 // set parallel flow node parent to parallel step
-                FlowNode pFlowNode = yaml.toNode(step);
+                FlowNode pFlowNode = yaml.toNode(step, subflowName);
                 pFlowNode.setParent(step);
 
                 step.getParallel().put(subflowName, pFlowNode);
@@ -164,23 +163,21 @@ public class StepYml extends YmlBase<RegularStepNode> {
             throw new YmlException("Invalid cache key {0}", cache.getKey());
         }
 
-        if (!ObjectsHelper.hasCollection(cache.getPaths())) {
-            cache.setPaths(Collections.emptyList());
-        }
+        List<String> paths = ObjectsHelper.hasCollection(cache.getPaths()) ? cache.getPaths() : Collections.emptyList();
 
-        for (String path : cache.getPaths()) {
+        for (String path : paths) {
             if (FileHelper.isStartWithRoot(path)) {
                 throw new YmlException("Cache path cannot be defined as absolute path");
             }
         }
 
-        if (FileHelper.hasOverlapOrDuplicatePath(cache.getPaths())) {
+        if (FileHelper.hasOverlapOrDuplicatePath(paths)) {
             throw new YmlException("Cache paths are overlap or duplicate");
         }
 
         Cache c = new Cache();
         c.setKey(cache.getKey());
-        c.setPaths(cache.getPaths());
+        c.setPaths(new ArrayList<>(paths));
 
         node.setCache(c);
     }
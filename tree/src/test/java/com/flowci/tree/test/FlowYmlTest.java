@@ -17,12 +17,17 @@
 package com.flowci.tree.test;
 
 import com.flowci.common.exception.YmlException;
+import com.flowci.tree.Cache;
+import com.flowci.tree.FlowNode;
+import com.flowci.tree.ParallelStepNode;
+import com.flowci.tree.RegularStepNode;
 import com.flowci.tree.yml.FlowYml;
 import com.flowci.tree.yml.StepYml;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class FlowYmlTest {
 
@@ -41,6 +46,41 @@ public class FlowYmlTest {
         assertEquals(main.getSteps(), other.getSteps());
     }
 
+    @Test
+    void should_not_change_yml_when_build_nodes() {
+        Cache cache = new Cache();
+        cache.setKey("mycache");
+
+        var cacheStep = new StepYml();
+        cacheStep.setName("cache-step");
+        cacheStep.setBash("echo cache");
+        cacheStep.setCache(cache);
+
+        FlowYml subflow = new FlowYml();
+        subflow.getSteps().add(cacheStep);
+
+        var parallelStep = new StepYml();
+        parallelStep.setParallel(Map.of("subflow-A", subflow));
+
+        FlowYml main = new FlowYml();
+        main.setName("root");
+        main.getSteps().add(parallelStep);
+
+        for (int i = 0; i < 2; i++) {
+            FlowNode root = main.toNode(null);
+            ParallelStepNode parallel = (ParallelStepNode) root.getChildren().get(0);
+            FlowNode subflowNode = parallel.getParallel().get("subflow-A");
+            assertEquals("subflow-A", subflowNode.getName());
+
+            RegularStepNode step = (RegularStepNode) subflowNode.getChildren().get(0);
+            assertTrue(step.getCache().getPaths().isEmpty());
+        }
+
+        // then: yml is read only, so it can be cached and shared
+        assertNull(subflow.getName());
+        assertNull(cache.getPaths());
+    }
+
     @Test
     void should_throw_yml_exception_on_duplicated_element() {
         var stepYml = new StepYml();
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2026 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flowci.tree.test;
+
+import com.flowci.tree.FlowNode;
+import com.flowci.tree.NodeTree;
+import com.flowci.tree.YmlParser;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static com.flowci.tree.FlowNode.DEFAULT_ROOT_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measure load throughput of YmlParser from 1 to 32 threads, on cache miss and cache hit
+ */
+@Slf4j
+public class YmlParserBenchmarkTest {
+
+    private static final int[] Threads = {1, 2, 4, 8, 16, 32};
+
+    private static final int ParsesPerThread = 50;
+
+    private String content;
+
+    @BeforeEach
+    void init() throws IOException {
+        ClassLoader classLoader = YmlParserBenchmarkTest.class.getClassLoader();
+        content = StreamUtils.copyToString(classLoader.getResourceAsStream("flow.yml"), StandardCharsets.UTF_8);
+        YmlParser.clearCache();
+    }
+
+    @Test
+    void should_parse_concurrently_without_global_lock() throws Exception {
+        // warm up
+        for (int i = 0; i < ParsesPerThread; i++) {
+            YmlParser.load(distinct(-1, i));
+        }
+
+        for (int n : Threads) {
+            // cache miss, each load parses a distinct yml
+            double miss = run(n, t -> i -> distinct(t, i));
+
+            // cache hit, nodes are built from the parsed yml
+            YmlParser.load(content);
+            double hit = run(n, t -> i -> content);
+
+            log.info("YmlParser.load threads={} miss parses/sec={} hit loads/sec={}", n, (long) miss, (long) hit);
+        }
+    }
+
+    /**
+     * @return loads per second
+     */
+    private static double run(int n, IntFunction<IntFunction<String>> ymlOfThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        List<Future<Integer>> futures = new ArrayList<>(n);
+
+        long start = System.nanoTime();
+        for (int t = 0; t < n; t++) {
+            IntFunction<String> ymls = ymlOfThread.apply(t);
+            futures.add(executor.submit(() -> {
+                int count = 0;
+                for (int i = 0; i < ParsesPerThread; i++) {
+                    FlowNode root = YmlParser.load(ymls.apply(i));
+                    assertEquals(DEFAULT_ROOT_NAME, root.getName());
+                    assertEquals(2, root.getChildren().size());
+                    count++;
+                }
+                return count;
+            }));
+        }
+
+        int total = 0;
+        for (Future<Integer> f : futures) {
+            total += f.get();
+        }
+        long duration = System.nanoTime() - start;
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(n * ParsesPerThread, total);
+
+        return total / (duration / 1_000_000_000.0);
+    }
+
+    // same flow with different content hash
+    private String distinct(int thread, int i) {
+        return content + "\n# " + thread + "-" + i + "-" + System.nanoTime() + "\n";
+    }
+
+    @Test
+    void should_build_new_tree_from_cached_yml() {
+        NodeTree first = YmlParser.loadTree(content);
+        NodeTree second = YmlParser.loadTree(new String(content.toCharArray()));
+        assertNotSame(first, second);
+        assertNotSame(first.getRoot(), second.getRoot());
+        assertEquals(first.numOfNode(), second.numOfNode());
+
+        // changes on one node are not visible to others loaded from the same yml
+        FlowNode root = YmlParser.load(content);
+        root.getEnvironments().put("FLOW_CHANGED", "true");
+        assertFalse(YmlParser.load(content).getEnvironments().containsKey("FLOW_CHANGED"));
+        assertFalse(first.getRoot().getEnvironments().containsKey("FLOW_CHANGED"));
+    }
+}
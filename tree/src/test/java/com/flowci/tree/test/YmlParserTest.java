@@ -16,6 +16,7 @@
 
 package com.flowci.tree.test;
 
+import com.flowci.common.exception.ArgumentException;
 import com.flowci.common.exception.YmlException;
 import com.flowci.common.domain.DockerOption;
 import com.flowci.tree.*;
@@ -380,6 +381,55 @@ public class YmlParserTest {
         assertEquals(2, prevsOfPost1.size());
     }
 
+    @Test
+    void should_navigate_from_precomputed_index() throws IOException {
+        content = loadContent("flow-with-post.yml");
+        NodeTree tree = NodeTree.create(YmlParser.load(content));
+
+        Node subC = tree.get("flow/parallel-3/subflow-C/C");
+        assertEquals(subC, tree.get(tree.indexOf("/flow/parallel-3/subflow-C/C")));
+        assertSame(tree.post(subC.getPath()), tree.next(subC, true));
+        assertEquals(subC.getNext(), tree.next(subC, false));
+
+        Node postOfSubD = tree.get("flow/parallel-3/subflow-D/Post-D");
+        assertEquals(tree.prevs(tree.next(postOfSubD, true), true), new HashSet<>(tree.prevsOfNext(postOfSubD, true)));
+        assertEquals(tree.prevs(postOfSubD.getNext(), false), new HashSet<>(tree.prevsOfNext(postOfSubD, false)));
+
+        // navigation result is shared, should not be modified
+        assertThrows(UnsupportedOperationException.class, () -> tree.post(postOfSubD.getPath()).clear());
+        assertThrows(ArgumentException.class, () -> tree.get("flow/not-existed"));
+    }
+
+    @Test
+    void should_build_tree_with_many_parallel_steps() {
+        int numOfParallel = 5;
+        int numOfSubflow = 60;
+
+        StringBuilder builder = new StringBuilder("steps:\n");
+        for (int p = 0; p < numOfParallel; p++) {
+            builder.append("  - parallel:\n");
+            for (int f = 0; f < numOfSubflow; f++) {
+                builder.append("      sub-").append(p).append("-").append(f).append(":\n")
+                        .append("        steps:\n")
+                        .append("          - name: s\n")
+                        .append("            bash: echo ").append(f).append("\n");
+            }
+        }
+        builder.append("post:\n  - name: post-1\n    bash: echo post\n");
+
+        NodeTree tree = NodeTree.create(YmlParser.load(builder.toString()));
+        assertEquals(1 + numOfParallel * (1 + numOfSubflow * 2) + 1, tree.numOfNode());
+
+        Node last = tree.get("flow/parallel-1/sub-0-0/s");
+        assertEquals(1, tree.next(last, false).size());
+        assertEquals(numOfSubflow, tree.prevsOfNext(last, false).size());
+
+        List<Node> post = tree.next(tree.getRoot(), true);
+        assertEquals(1, post.size());
+        assertEquals("post-1", post.get(0).getName());
+        assertTrue(tree.prevsOfNext(tree.getRoot(), true).isEmpty());
+    }
+
     private String loadContent(String resource) throws IOException {
         ClassLoader classLoader = YmlParserTest.class.getClassLoader();
         return StreamUtils.copyToString(classLoader.getResourceAsStream(resource), StandardCharsets.UTF_8);
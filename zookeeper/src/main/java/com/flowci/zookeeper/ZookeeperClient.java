@@ -21,21 +21,33 @@ import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.framework.api.DeleteBuilder;
+import org.apache.curator.framework.api.transaction.CuratorOp;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.PathChildrenCache;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
 import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreMutex;
+import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.retry.RetryNTimes;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 /**
@@ -45,6 +57,8 @@ public class ZookeeperClient implements AutoCloseable {
 
     private static final int RetryBetweenInMs = 1000 * 10;
 
+    private static final String[] Operations = {"exist", "create", "children", "delete", "get", "set", "lock", "multi"};
+
     private final CuratorFramework client;
 
     @Getter
@@ -56,11 +70,28 @@ public class ZookeeperClient implements AutoCloseable {
     @Getter
     private final Executor watchExecutor;
 
+    /**
+     * Roots mirrored locally by tree cache, reads under these roots do not hit the server
+     */
+    private final Map<String, TreeCache> treeCaches = new ConcurrentHashMap<>();
+
+    /**
+     * Server round trips per operation
+     */
+    @Getter
+    private final Map<String, OpStats> stats;
+
     public ZookeeperClient(String connection, int retryTimes, int timeOutInSeconds, Executor watchExecutor) {
         RetryPolicy policy = new RetryNTimes(retryTimes, RetryBetweenInMs);
         client = CuratorFrameworkFactory.newClient(connection, policy);
         this.timeout = timeOutInSeconds;
         this.watchExecutor = watchExecutor;
+
+        Map<String, OpStats> map = new LinkedHashMap<>(Operations.length);
+        for (String op : Operations) {
+            map.put(op, new OpStats());
+        }
+        this.stats = map;
     }
 
     public String makePath(String parent, String child) {
@@ -81,11 +112,50 @@ public class ZookeeperClient implements AutoCloseable {
         }
     }
 
+    /**
+     * Keep a local copy of nodes under root, updated by watch events,
+     * so exist, get and children under root might be stale for a moment after write
+     */
+    public boolean cache(String root) {
+        if (treeCaches.containsKey(root)) {
+            return false;
+        }
+
+        TreeCache cache = TreeCache.newBuilder(client, root).build();
+        CountDownLatch initialized = new CountDownLatch(1);
+        cache.getListenable().addListener((c, event) -> {
+            if (event.getType() == TreeCacheEvent.Type.INITIALIZED) {
+                initialized.countDown();
+            }
+        });
+
+        try {
+            cache.start();
+            if (!initialized.await(timeout, TimeUnit.SECONDS)) {
+                cache.close();
+                return false;
+            }
+            treeCaches.put(root, cache);
+            return true;
+        } catch (Throwable e) {
+            cache.close();
+            throw new ZookeeperException("Unable to cache root {0}: {1}", root, e.getMessage());
+        }
+    }
+
     public boolean exist(String path) {
+        TreeCache cache = cacheOf(path);
+        if (cache != null) {
+            return cache.getCurrentData(path) != null;
+        }
+
+        long start = System.nanoTime();
         try {
             return client.checkExists().forPath(path) != null;
         } catch (Throwable e) {
             throw new ZookeeperException("Cannot check existing for path: {0}", e.getMessage());
+        } finally {
+            record("exist", start);
         }
     }
 
@@ -94,29 +164,41 @@ public class ZookeeperClient implements AutoCloseable {
             data = new byte[0];
         }
 
+        long start = System.nanoTime();
         try {
             return client.create()
                     .withMode(mode)
                     .forPath(path, data);
         } catch (Throwable e) {
             throw new ZookeeperException("Fail to create node: {0}", e.getMessage());
+        } finally {
+            record("create", start);
         }
     }
 
     public List<String> children(String root) {
+        TreeCache cache = cacheOf(root);
+        if (cache != null) {
+            Map<String, ?> children = cache.getCurrentChildren(root);
+            if (children == null) {
+                throw new ZookeeperException("Fail to list children of {0} : node not existed", root);
+            }
+            return new ArrayList<>(children.keySet());
+        }
+
+        long start = System.nanoTime();
         try {
             return client.getChildren().forPath(root);
         } catch (Throwable e) {
             throw new ZookeeperException("Fail to list children of {0} : {1}", root, e.getMessage());
+        } finally {
+            record("children", start);
         }
     }
 
     public void delete(String path, boolean isDeleteChildren) {
+        long start = System.nanoTime();
         try {
-            if (!exist(path)) {
-                return;
-            }
-
             DeleteBuilder builder = client.delete();
 
             if (isDeleteChildren) {
@@ -125,32 +207,82 @@ public class ZookeeperClient implements AutoCloseable {
             }
 
             builder.guaranteed().forPath(path);
+        } catch (KeeperException.NoNodeException ignore) {
+
         } catch (Throwable e) {
             throw new ZookeeperException("Fail to delete node of path: {0}", e.getMessage());
+        } finally {
+            record("delete", start);
+        }
+    }
+
+    /**
+     * Delete nodes and their direct children in a single transaction,
+     * fallback to delete one by one if transaction failed
+     */
+    public void deleteAll(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<CuratorOp> ops = new ArrayList<>(paths.size());
+            for (String path : paths) {
+                if (!exist(path)) {
+                    continue;
+                }
+
+                for (String child : children(path)) {
+                    ops.add(client.transactionOp().delete().forPath(makePath(path, child)));
+                }
+                ops.add(client.transactionOp().delete().forPath(path));
+            }
+
+            if (!ops.isEmpty()) {
+                client.transaction().forOperations(ops);
+            }
+        } catch (Throwable e) {
+            for (String path : paths) {
+                delete(path, true);
+            }
+        } finally {
+            record("multi", start);
         }
     }
 
     public byte[] get(String path) {
-        if (!exist(path)) {
-            throw new ZookeeperException("Node path {0} does not existed", path);
+        TreeCache cache = cacheOf(path);
+        if (cache != null) {
+            ChildData data = cache.getCurrentData(path);
+            if (data == null) {
+                throw new ZookeeperException("Node path {0} does not existed", path);
+            }
+            return data.getData();
         }
 
+        long start = System.nanoTime();
         try {
             return client.getData().forPath(path);
+        } catch (KeeperException.NoNodeException e) {
+            throw new ZookeeperException("Node path {0} does not existed", path);
         } catch (Throwable e) {
             throw new ZookeeperException("Fail to get data for node: {0}", e.getMessage());
+        } finally {
+            record("get", start);
         }
     }
 
     public void set(String path, byte[] data) {
-        if (!exist(path)) {
-            throw new ZookeeperException("Node path {} does not existed", path);
-        }
-
+        long start = System.nanoTime();
         try {
             client.setData().forPath(path, data);
+        } catch (KeeperException.NoNodeException e) {
+            throw new ZookeeperException("Node path {0} does not existed", path);
         } catch (Throwable e) {
             throw new ZookeeperException("Fail to set data for node: {0}", e.getMessage());
+        } finally {
+            record("set", start);
         }
     }
 
@@ -174,16 +306,55 @@ public class ZookeeperClient implements AutoCloseable {
 
     public Optional<InterLock> lock(String path, int timeout) {
         InterProcessMutex lock = new InterProcessMutex(client, path);
+        long start = System.nanoTime();
+        try {
+            if (lock.acquire(timeout, TimeUnit.SECONDS)) {
+                return Optional.of(new InterLock(path, lock));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            throw new ZookeeperException("Cannot acquire the lock on path {0}: {1}", path, e.getMessage());
+        } finally {
+            record("lock", start);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Lock not bound to thread, so it can be held across threads and released by any thread
+     */
+    public Optional<InterLock> lease(String path, int timeout) {
+        InterProcessSemaphoreMutex lock = new InterProcessSemaphoreMutex(client, path);
+        long start = System.nanoTime();
         try {
             if (lock.acquire(timeout, TimeUnit.SECONDS)) {
                 return Optional.of(new InterLock(path, lock));
             }
-        } catch (Exception ignore) {
-            ignore.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            throw new ZookeeperException("Cannot acquire the lock on path {0}: {1}", path, e.getMessage());
+        } finally {
+            record("lock", start);
         }
         return Optional.empty();
     }
 
+    /**
+     * Run action when session lost, ephemeral nodes and locks are gone
+     */
+    public void onConnectionLost(Runnable action) {
+        onConnectionState(ConnectionState.LOST, action);
+    }
+
+    /**
+     * Run action when connection back after suspended or lost
+     */
+    public void onReconnected(Runnable action) {
+        onConnectionState(ConnectionState.RECONNECTED, action);
+    }
+
     public void release(InterLock lock) {
         try {
             lock.getLock().release();
@@ -218,6 +389,48 @@ public class ZookeeperClient implements AutoCloseable {
         if (Objects.isNull(client)) {
             return;
         }
+
+        treeCaches.values().forEach(TreeCache::close);
+        treeCaches.clear();
         client.close();
     }
+
+    private void onConnectionState(ConnectionState expected, Runnable action) {
+        client.getConnectionStateListenable().addListener((c, state) -> {
+            if (state == expected) {
+                action.run();
+            }
+        });
+    }
+
+    private TreeCache cacheOf(String path) {
+        for (Map.Entry<String, TreeCache> entry : treeCaches.entrySet()) {
+            String root = entry.getKey();
+            if (path.equals(root) || path.startsWith(root + ZKPaths.PATH_SEPARATOR)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void record(String op, long start) {
+        OpStats s = stats.get(op);
+        s.count.increment();
+        s.totalNanos.add(System.nanoTime() - start);
+    }
+
+    public static class OpStats {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getTotalNanos() {
+            return totalNanos.sum();
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package com.flowci.zookeeper.test;
+
+import com.flowci.zookeeper.ZookeeperClient;
+import com.flowci.zookeeper.ZookeeperException;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.CreateMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZookeeperCacheTest {
+
+    private static final String Root = "/cache-test";
+
+    private TestingServer server;
+
+    private ExecutorService executor;
+
+    private ZookeeperClient client;
+
+    @BeforeEach
+    void init() throws Exception {
+        server = new TestingServer(true);
+        executor = Executors.newFixedThreadPool(1);
+        client = new ZookeeperClient(server.getConnectString(), 1, 10, executor);
+        assertTrue(client.start());
+
+        client.create(CreateMode.PERSISTENT, Root, null);
+        client.create(CreateMode.PERSISTENT, client.makePath(Root, "a"), "hello".getBytes());
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        client.close();
+        executor.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    void should_read_from_cache_without_server_round_trip() {
+        assertTrue(client.cache(Root));
+        assertFalse(client.cache(Root));
+
+        long exist = client.getStats().get("exist").getCount();
+        long get = client.getStats().get("get").getCount();
+        long children = client.getStats().get("children").getCount();
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(client.exist(client.makePath(Root, "a")));
+            assertFalse(client.exist(client.makePath(Root, "b")));
+            assertEquals("hello", new String(client.get(client.makePath(Root, "a"))));
+            assertEquals(List.of("a"), client.children(Root));
+        }
+
+        assertEquals(exist, client.getStats().get("exist").getCount());
+        assertEquals(get, client.getStats().get("get").getCount());
+        assertEquals(children, client.getStats().get("children").getCount());
+    }
+
+    @Test
+    void should_update_cache_by_watch() throws Exception {
+        assertTrue(client.cache(Root));
+
+        String path = client.makePath(Root, "b");
+        client.create(CreateMode.EPHEMERAL, path, null);
+        assertTrue(waitFor(() -> client.exist(path)));
+
+        client.delete(path, false);
+        assertTrue(waitFor(() -> !client.exist(path)));
+    }
+
+    @Test
+    void should_delete_nodes_in_one_transaction() {
+        client.create(CreateMode.PERSISTENT, client.makePath(Root, "b"), null);
+        client.create(CreateMode.PERSISTENT, client.makePath(Root, "b/child"), null);
+
+        client.deleteAll(List.of(client.makePath(Root, "a"), client.makePath(Root, "b"), client.makePath(Root, "none")));
+
+        assertTrue(client.children(Root).isEmpty());
+        assertEquals(1, client.getStats().get("multi").getCount());
+        assertEquals(0, client.getStats().get("delete").getCount());
+    }
+
+    @Test
+    void should_ignore_missing_node_on_delete_and_throw_on_get() {
+        String path = client.makePath(Root, "none");
+        client.delete(path, true);
+        assertThrows(ZookeeperException.class, () -> client.get(path));
+        assertThrows(ZookeeperException.class, () -> client.set(path, new byte[0]));
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}